@@ -0,0 +1,396 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.test.Check;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Compact binary {@link Serializer} for simple POJOs. The fields of the class
+ * are examined once, when the serializer is created, and {@link
+ * MethodHandle}s are bound to them and to the no-argument constructor, so
+ * reading and writing objects don't use reflection.
+ * <p>
+ * Every non-static, non-transient field of the class and its superclasses is
+ * written in the order of their names, without field names or type tags.
+ * Supported field types are primitives and their wrappers, {@link String},
+ * <code>byte[]</code>, {@link Date} and enums. Fields must not be final, and
+ * the class must have a no-argument constructor, which can be private.
+ * <p>
+ * Every entry starts with a hash of the field names and types (and enum
+ * constant names), so entries written before the class was changed are
+ * rejected when read, instead of being misinterpreted.
+ *
+ * @param <T> Type of objects the serializer handles
+ * @author Zsolt Jurányi
+ * @see Serializer
+ * @see SerializerFileCache
+ * @since 26.10
+ */
+public final class BinarySerializer<T> implements Serializer<T> {
+
+	private final Class<T> type;
+	private final MethodHandle constructor;
+	private final Property[] properties;
+	private final int schema;
+
+	private BinarySerializer(@Nonnull Class<T> type, @Nonnull MethodHandle constructor, @Nonnull Property[] properties) {
+		this.type = type;
+		this.constructor = constructor;
+		this.properties = properties;
+		StringBuilder s = new StringBuilder();
+		for (Property p : properties) {
+			s.append(p.name).append(':').append(p.kind);
+			if (Kind.ENUM == p.kind) {
+				for (Object c : p.type.getEnumConstants()) {
+					s.append(',').append(((Enum<?>) c).name());
+				}
+			}
+			s.append(';');
+		}
+		this.schema = s.toString().hashCode(); // String.hashCode is specified, stable between JVMs
+	}
+
+	/**
+	 * Creates a serializer for the given class.
+	 *
+	 * @param type Class of the objects
+	 * @param <T>  Type of the objects
+	 * @return A new serializer
+	 * @throws IllegalArgumentException If the class has no no-argument
+	 *                                  constructor, or it has a final field or
+	 *                                  a field of unsupported type
+	 */
+	@Nonnull
+	public static <T> BinarySerializer<T> of(@Nonnull Class<T> type) {
+		Check.notNull(type, "type must not be null");
+		Check.argument(!type.isInterface() && !Modifier.isAbstract(type.getModifiers()), "type must be a concrete class");
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		try {
+			Constructor<T> c = type.getDeclaredConstructor();
+			c.setAccessible(true);
+			MethodHandle constructor = lookup.unreflectConstructor(c).asType(MethodType.methodType(Object.class));
+			List<Field> fields = new ArrayList<Field>();
+			for (Class<?> t = type; Object.class != t; t = t.getSuperclass()) {
+				for (Field f : t.getDeclaredFields()) {
+					int m = f.getModifiers();
+					if (!Modifier.isStatic(m) && !Modifier.isTransient(m) && !f.isSynthetic()) {
+						Check.argument(!Modifier.isFinal(m), "final field is not supported: " + f);
+						fields.add(f);
+					}
+				}
+			}
+			Collections.sort(fields, new Comparator<Field>() {
+				@Override
+				public int compare(Field a, Field b) {
+					int c = a.getName().compareTo(b.getName());
+					return 0 != c ? c : a.getDeclaringClass().getName().compareTo(b.getDeclaringClass().getName());
+				}
+			});
+			Property[] properties = new Property[fields.size()];
+			for (int i = 0; i < properties.length; i++) {
+				Field f = fields.get(i);
+				Kind kind = Kind.of(f.getType());
+				Check.argument(null != kind, "field type is not supported: " + f);
+				f.setAccessible(true);
+				Class<?> handleType = f.getType().isPrimitive() ? f.getType() : Object.class;
+				MethodHandle getter = lookup.unreflectGetter(f).asType(MethodType.methodType(handleType, Object.class));
+				MethodHandle setter = lookup.unreflectSetter(f).asType(MethodType.methodType(void.class, Object.class, handleType));
+				properties[i] = new Property(f.getName(), kind, f.getType(), getter, setter);
+			}
+			return new BinarySerializer<T>(type, constructor, properties);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException("type must have a no-argument constructor: " + type.getName(), e);
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("type cannot be accessed: " + type.getName(), e);
+		}
+	}
+
+	/**
+	 * @return Class of the objects
+	 */
+	@Nonnull
+	public Class<T> getType() {
+		return type;
+	}
+
+	@Nonnull
+	@Override
+	public T read(@Nonnull InputStream in) throws IOException {
+		DataInputStream d = in instanceof DataInputStream ? (DataInputStream) in : new DataInputStream(in);
+		if (schema != d.readInt()) {
+			throw new IOException("Data was written by a different version of " + type.getName());
+		}
+		try {
+			Object value = (Object) constructor.invokeExact();
+			for (Property p : properties) {
+				p.read(value, d);
+			}
+			return type.cast(value);
+		} catch (IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new IOException("Failed to create " + type.getName(), t);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "BinarySerializer{" +
+				"type=" + type.getName() +
+				", fields=" + properties.length +
+				'}';
+	}
+
+	@Override
+	public void write(@Nonnull T value, @Nonnull OutputStream out) throws IOException {
+		DataOutputStream d = out instanceof DataOutputStream ? (DataOutputStream) out : new DataOutputStream(out);
+		d.writeInt(schema);
+		try {
+			for (Property p : properties) {
+				p.write(value, d);
+			}
+		} catch (IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new IOException("Failed to write " + type.getName(), t);
+		}
+		d.flush();
+	}
+
+	/**
+	 * Supported field types.
+	 */
+	private enum Kind {
+		BOOLEAN, BYTE, CHAR, SHORT, INT, LONG, FLOAT, DOUBLE,
+		BOOLEAN_OBJECT, BYTE_OBJECT, CHAR_OBJECT, SHORT_OBJECT, INT_OBJECT, LONG_OBJECT, FLOAT_OBJECT, DOUBLE_OBJECT,
+		STRING, BYTES, DATE, ENUM;
+
+		private static final Class<?>[] TYPES = {
+				boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class,
+				Boolean.class, Byte.class, Character.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+				String.class, byte[].class, Date.class};
+
+		@CheckForNull
+		private static Kind of(@Nonnull Class<?> type) {
+			for (int i = 0; i < TYPES.length; i++) {
+				if (TYPES[i] == type) {
+					return values()[i];
+				}
+			}
+			return type.isEnum() ? ENUM : null;
+		}
+	}
+
+	/**
+	 * A field with handles to get and set its value. Primitive fields are
+	 * accessed without boxing.
+	 */
+	private static final class Property {
+
+		private final String name;
+		private final Kind kind;
+		private final Class<?> type;
+		private final MethodHandle getter;
+		private final MethodHandle setter;
+
+		private Property(@Nonnull String name, @Nonnull Kind kind, @Nonnull Class<?> type, @Nonnull MethodHandle getter, @Nonnull MethodHandle setter) {
+			this.name = name;
+			this.kind = kind;
+			this.type = type;
+			this.getter = getter;
+			this.setter = setter;
+		}
+
+		@CheckForNull
+		private static byte[] readBytes(@Nonnull DataInputStream in) throws IOException {
+			int length = in.readInt();
+			if (0 > length) {
+				return null;
+			}
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			return bytes;
+		}
+
+		private static void writeBytes(@CheckForNull byte[] bytes, @Nonnull DataOutputStream out) throws IOException {
+			if (null == bytes) {
+				out.writeInt(-1);
+			} else {
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		}
+
+		private void read(@Nonnull Object bean, @Nonnull DataInputStream in) throws Throwable {
+			switch (kind) {
+				case BOOLEAN:
+					setter.invokeExact(bean, in.readBoolean());
+					return;
+				case BYTE:
+					setter.invokeExact(bean, in.readByte());
+					return;
+				case CHAR:
+					setter.invokeExact(bean, in.readChar());
+					return;
+				case SHORT:
+					setter.invokeExact(bean, in.readShort());
+					return;
+				case INT:
+					setter.invokeExact(bean, in.readInt());
+					return;
+				case LONG:
+					setter.invokeExact(bean, in.readLong());
+					return;
+				case FLOAT:
+					setter.invokeExact(bean, in.readFloat());
+					return;
+				case DOUBLE:
+					setter.invokeExact(bean, in.readDouble());
+					return;
+				default:
+					setter.invokeExact(bean, readObject(in));
+			}
+		}
+
+		@CheckForNull
+		private Object readObject(@Nonnull DataInputStream in) throws IOException {
+			switch (kind) {
+				case STRING:
+					byte[] bytes = readBytes(in);
+					return null == bytes ? null : new String(bytes, StandardCharsets.UTF_8);
+				case BYTES:
+					return readBytes(in);
+				case ENUM:
+					int ordinal = in.readInt();
+					Object[] constants = type.getEnumConstants();
+					if (ordinal >= constants.length) {
+						throw new IOException("Invalid ordinal of " + type.getName() + ": " + ordinal);
+					}
+					return 0 > ordinal ? null : constants[ordinal];
+			}
+			if (!in.readBoolean()) {
+				return null;
+			}
+			switch (kind) {
+				case BOOLEAN_OBJECT:
+					return in.readBoolean();
+				case BYTE_OBJECT:
+					return in.readByte();
+				case CHAR_OBJECT:
+					return in.readChar();
+				case SHORT_OBJECT:
+					return in.readShort();
+				case INT_OBJECT:
+					return in.readInt();
+				case LONG_OBJECT:
+					return in.readLong();
+				case FLOAT_OBJECT:
+					return in.readFloat();
+				case DOUBLE_OBJECT:
+					return in.readDouble();
+				case DATE:
+					return new Date(in.readLong());
+				default:
+					throw new IllegalStateException("Unknown kind: " + kind);
+			}
+		}
+
+		private void write(@Nonnull Object bean, @Nonnull DataOutputStream out) throws Throwable {
+			switch (kind) {
+				case BOOLEAN:
+					out.writeBoolean((boolean) getter.invokeExact(bean));
+					return;
+				case BYTE:
+					out.writeByte((byte) getter.invokeExact(bean));
+					return;
+				case CHAR:
+					out.writeChar((char) getter.invokeExact(bean));
+					return;
+				case SHORT:
+					out.writeShort((short) getter.invokeExact(bean));
+					return;
+				case INT:
+					out.writeInt((int) getter.invokeExact(bean));
+					return;
+				case LONG:
+					out.writeLong((long) getter.invokeExact(bean));
+					return;
+				case FLOAT:
+					out.writeFloat((float) getter.invokeExact(bean));
+					return;
+				case DOUBLE:
+					out.writeDouble((double) getter.invokeExact(bean));
+					return;
+				default:
+					writeObject((Object) getter.invokeExact(bean), out);
+			}
+		}
+
+		private void writeObject(@CheckForNull Object value, @Nonnull DataOutputStream out) throws IOException {
+			switch (kind) {
+				case STRING:
+					writeBytes(null == value ? null : ((String) value).getBytes(StandardCharsets.UTF_8), out);
+					return;
+				case BYTES:
+					writeBytes((byte[]) value, out);
+					return;
+				case ENUM:
+					out.writeInt(null == value ? -1 : ((Enum<?>) value).ordinal());
+					return;
+			}
+			out.writeBoolean(null != value);
+			if (null == value) {
+				return;
+			}
+			switch (kind) {
+				case BOOLEAN_OBJECT:
+					out.writeBoolean((Boolean) value);
+					break;
+				case BYTE_OBJECT:
+					out.writeByte((Byte) value);
+					break;
+				case CHAR_OBJECT:
+					out.writeChar((Character) value);
+					break;
+				case SHORT_OBJECT:
+					out.writeShort((Short) value);
+					break;
+				case INT_OBJECT:
+					out.writeInt((Integer) value);
+					break;
+				case LONG_OBJECT:
+					out.writeLong((Long) value);
+					break;
+				case FLOAT_OBJECT:
+					out.writeFloat((Float) value);
+					break;
+				case DOUBLE_OBJECT:
+					out.writeDouble((Double) value);
+					break;
+				case DATE:
+					out.writeLong(((Date) value).getTime());
+					break;
+				default:
+					throw new IllegalStateException("Unknown kind: " + kind);
+			}
+		}
+	}
+}
@@ -1,9 +1,16 @@
 package hu.juzraai.toolbox.cache;
 
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Check;
+import org.slf4j.Logger;
+
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import java.util.Collection;
 import java.util.Date;
-import java.util.concurrent.TimeUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
 
 /**
  * This interface describes the common functionalities of a cache.
@@ -14,7 +21,11 @@ import java.util.concurrent.TimeUnit;
  */
 public abstract class Cache<T> {
 
+	private static final Logger L = LoggerFactory.getLogger(Cache.class);
+
 	private final Long expiration;
+	private final CacheMetrics metrics = new CacheMetrics();
+	private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<String, Flight>();
 
 	/**
 	 * Creates a new instance.
@@ -73,6 +84,43 @@ public abstract class Cache<T> {
 	@CheckForNull
 	public abstract T fetch(@Nonnull String key);
 
+	/**
+	 * Returns the stored contents identified by the given keys. The default
+	 * implementation calls {@link #fetch(String)} for every key, subclasses
+	 * may override it with a more efficient solution.
+	 *
+	 * @param keys Keys to identify the required contents
+	 * @return Map of the keys found in the cache and their contents, in the
+	 * order of the given keys
+	 */
+	@Nonnull
+	public Map<String, T> fetchAll(@Nonnull Collection<String> keys) {
+		Map<String, T> result = new LinkedHashMap<String, T>();
+		for (String key : keys) {
+			T content = fetch(key);
+			if (null != content) {
+				result.put(key, content);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the stored content identified by the given key together with its
+	 * timestamp. The default implementation calls {@link #fetch(String)} and
+	 * {@link #timestampOf(String)}, subclasses may override it to get both in
+	 * one pass.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content and its timestamp or <code>null</code> if the key
+	 * doesn't exist in the cache
+	 */
+	@CheckForNull
+	public CacheEntry<T> fetchEntry(@Nonnull String key) {
+		T content = fetch(key);
+		return null == content ? null : new CacheEntry<T>(content, timestampOf(key));
+	}
+
 	/**
 	 * Returns the stored content identified by the given key only if it's not
 	 * expired.
@@ -96,6 +144,114 @@ public abstract class Cache<T> {
 		return expiration;
 	}
 
+	/**
+	 * Returns the operation counters and latency histograms of this cache.
+	 * Implementations record fetches, stores and removals into it; decorators
+	 * record the operations of their own tier, e.g. hits of {@link
+	 * MemoryCache} are memory hits, while its backend counts the disk reads.
+	 *
+	 * @return The metrics of this cache
+	 * @see CacheMetrics#register(String)
+	 */
+	@Nonnull
+	public CacheMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns the content of the given key if it's cached and not expired,
+	 * otherwise computes it with the loader and stores it. Only one
+	 * computation runs per key at a time: concurrent callers asking for the
+	 * same key wait for the running computation and get its result, instead of
+	 * computing and storing the same content again. Computations started by
+	 * {@link #getOrComputeAsync(String, CacheLoader, Executor)} are joined
+	 * too.
+	 * <p>
+	 * If the loader throws an exception, every waiting caller gets it: runtime
+	 * exceptions and errors are rethrown as they are, checked exceptions are
+	 * wrapped into {@link IllegalStateException}. The loader must not call
+	 * this method with the same key, it would wait for itself.
+	 *
+	 * @param key    Key to identify the required content
+	 * @param loader Computes the content if it's missing or expired
+	 * @return The cached or computed content, or <code>null</code> if the
+	 * loader returned <code>null</code> or the thread was interrupted while
+	 * waiting
+	 * @see #fetchIfNotExpired(String)
+	 */
+	@CheckForNull
+	public T getOrCompute(@Nonnull String key, @Nonnull CacheLoader<? extends T> loader) {
+		Check.notNull(loader, "loader must not be null");
+		T content = fetchIfNotExpired(key);
+		if (null != content) {
+			return content;
+		}
+		Flight flight = new Flight(key, loader);
+		Flight running = flights.putIfAbsent(key, flight);
+		if (null == running) {
+			flight.run();
+			running = flight;
+		}
+		try {
+			return running.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			L.warn("Interrupted while waiting for the computation of '{}'", key);
+			return null;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Asynchronous variant of {@link #getOrCompute(String, CacheLoader)}. If
+	 * the content is cached and not expired, it returns a completed future.
+	 * Otherwise it joins the running computation of the key, or submits a new
+	 * one to the executor. The computation stores its result, so callers
+	 * don't need to wait for it. Cancelling the returned future cancels the
+	 * computation for every caller waiting for it.
+	 *
+	 * @param key      Key to identify the required content
+	 * @param loader   Computes the content if it's missing or expired
+	 * @param executor Runs the computation if needed
+	 * @return A future of the cached or computed content, it fails with the
+	 * exception of the loader
+	 */
+	@Nonnull
+	public Future<T> getOrComputeAsync(@Nonnull String key, @Nonnull CacheLoader<? extends T> loader, @Nonnull Executor executor) {
+		Check.notNull(loader, "loader must not be null");
+		Check.notNull(executor, "executor must not be null");
+		T content = fetchIfNotExpired(key);
+		if (null != content) {
+			FutureTask<T> done = new FutureTask<T>(new Runnable() {
+				@Override
+				public void run() {
+				}
+			}, content);
+			done.run();
+			return done;
+		}
+		Flight flight = new Flight(key, loader);
+		Flight running = flights.putIfAbsent(key, flight);
+		if (null != running) {
+			return running;
+		}
+		try {
+			executor.execute(flight);
+		} catch (RejectedExecutionException e) {
+			flights.remove(key, flight);
+			throw e;
+		}
+		return flight;
+	}
+
 	/**
 	 * Determines whether the element identified by the given key is expired or
 	 * not. If <code>expiration</code> is <code>null</code> it will return
@@ -123,8 +279,38 @@ public abstract class Cache<T> {
 	 * now</code>, <code>false</code> otherwise and in case timestamp or
 	 * <code>expiration</code> is <code>null</code>.
 	 */
-	private boolean isExpired(Date timestamp) { // arg can be null
-		return null != expiration && null != timestamp && (timestamp.getTime() + expiration) < new Date().getTime();
+	protected boolean isExpired(@CheckForNull Date timestamp) {
+		return null != timestamp && isExpired(timestamp.getTime());
+	}
+
+	/**
+	 * Determines whether the given timestamp is expired or not based on
+	 * <code>expiration</code> field, without allocating {@link Date}
+	 * objects. If <code>expiration</code> is <code>null</code> it will return
+	 * <code>false</code>.
+	 *
+	 * @param timestamp Timestamp to test, in milliseconds since the epoch
+	 * @return <code>true</code> if the <code>timestamp + expiration <
+	 * now</code>, <code>false</code> otherwise and in case
+	 * <code>expiration</code> is <code>null</code>.
+	 */
+	protected boolean isExpired(long timestamp) {
+		return null != expiration && (timestamp + expiration) < System.currentTimeMillis();
+	}
+
+	/**
+	 * Removes every expired element from the cache. A cache is not required to
+	 * be able to enumerate its keys, so the default implementation removes
+	 * nothing and returns {@link PurgeResult#EMPTY}. Expired elements are
+	 * still reported as expired by {@link #fetchIfNotExpired(String)} and
+	 * {@link #containsAndNotExpired(String)}.
+	 *
+	 * @return Number of entries and bytes reclaimed
+	 * @see #getExpiration()
+	 */
+	@Nonnull
+	public PurgeResult purgeExpired() {
+		return PurgeResult.EMPTY;
 	}
 
 	/**
@@ -134,6 +320,19 @@ public abstract class Cache<T> {
 	 */
 	public abstract void remove(@Nonnull String key);
 
+	/**
+	 * Removes the contents identified by the given keys from the cache. The
+	 * default implementation calls {@link #remove(String)} for every key,
+	 * subclasses may override it with a more efficient solution.
+	 *
+	 * @param keys Keys to be removed from cache
+	 */
+	public void removeAll(@Nonnull Collection<String> keys) {
+		for (String key : keys) {
+			remove(key);
+		}
+	}
+
 	/**
 	 * Removes the content identified by the key from the cache only if it's
 	 * expired.
@@ -156,6 +355,23 @@ public abstract class Cache<T> {
 	 */
 	public abstract boolean store(@Nonnull String key, @Nonnull T content);
 
+	/**
+	 * Stores the given contents identified by the given keys. The default
+	 * implementation calls {@link #store(String, Object)} for every entry,
+	 * subclasses may override it with a more efficient solution.
+	 *
+	 * @param entries Keys and contents to be stored
+	 * @return <code>true</code> if storing of all entries succeeded,
+	 * <code>false</code> if any of them failed
+	 */
+	public boolean storeAll(@Nonnull Map<String, ? extends T> entries) {
+		boolean success = true;
+		for (Map.Entry<String, ? extends T> e : entries.entrySet()) {
+			success &= store(e.getKey(), e.getValue());
+		}
+		return success;
+	}
+
 	/**
 	 * Should return the timestamp of the element identified by the given key.
 	 * It can return <code>null</code> if expiration feature is not applicable.
@@ -167,4 +383,36 @@ public abstract class Cache<T> {
 	@CheckForNull
 	public abstract Date timestampOf(@Nonnull String key);
 
+	/**
+	 * Computation of a missing key. It checks the cache again before calling
+	 * the loader, because another computation of the key may have finished
+	 * since the caller's fetch, and it removes itself from the running
+	 * computations when it's done.
+	 */
+	private final class Flight extends FutureTask<T> {
+
+		private final String key;
+
+		private Flight(@Nonnull final String key, @Nonnull final CacheLoader<? extends T> loader) {
+			super(new Callable<T>() {
+				@Override
+				public T call() throws Exception {
+					T content = fetchIfNotExpired(key);
+					if (null == content) {
+						content = loader.load(key);
+						if (null != content) {
+							store(key, content);
+						}
+					}
+					return content;
+				}
+			});
+			this.key = key;
+		}
+
+		@Override
+		protected void done() {
+			flights.remove(key, this);
+		}
+	}
 }
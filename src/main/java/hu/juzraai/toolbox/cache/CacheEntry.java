@@ -0,0 +1,70 @@
+package hu.juzraai.toolbox.cache;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.Date;
+
+/**
+ * A content fetched from a {@link Cache} together with its timestamp.
+ *
+ * @param <T> Type of content which the cache handles.
+ * @author Zsolt Jurányi
+ * @see Cache#fetchEntry(String)
+ * @since 26.10
+ */
+public final class CacheEntry<T> {
+
+	private final T content;
+	private final Date timestamp;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param content   The content
+	 * @param timestamp Timestamp of the content, or <code>null</code> if it's
+	 *                  not applicable
+	 */
+	public CacheEntry(@Nonnull T content, @CheckForNull Date timestamp) {
+		this.content = content;
+		this.timestamp = timestamp;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof CacheEntry)) return false;
+		CacheEntry<?> that = (CacheEntry<?>) o;
+		if (!content.equals(that.content)) return false;
+		return timestamp != null ? timestamp.equals(that.timestamp) : that.timestamp == null;
+	}
+
+	/**
+	 * @return The content
+	 */
+	@Nonnull
+	public T getContent() {
+		return content;
+	}
+
+	/**
+	 * @return Timestamp of the content, or <code>null</code> if it's not
+	 * applicable
+	 */
+	@CheckForNull
+	public Date getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * content.hashCode() + (timestamp != null ? timestamp.hashCode() : 0);
+	}
+
+	@Override
+	public String toString() {
+		return "CacheEntry{" +
+				"content=" + content +
+				", timestamp=" + timestamp +
+				'}';
+	}
+}
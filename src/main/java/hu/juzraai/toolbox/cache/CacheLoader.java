@@ -0,0 +1,27 @@
+package hu.juzraai.toolbox.cache;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * Computes the content of a key which is missing from the cache, e.g. by
+ * downloading and parsing a page.
+ *
+ * @param <T> Type of content which the cache handles.
+ * @author Zsolt Jurányi
+ * @see Cache#getOrCompute(String, CacheLoader)
+ * @since 26.10
+ */
+public interface CacheLoader<T> {
+
+	/**
+	 * Computes the content of the given key.
+	 *
+	 * @param key Key of the missing content
+	 * @return The content, or <code>null</code> if there is no content for the
+	 * key, in which case nothing will be stored
+	 * @throws Exception If the computation failed
+	 */
+	@CheckForNull
+	T load(@Nonnull String key) throws Exception;
+}
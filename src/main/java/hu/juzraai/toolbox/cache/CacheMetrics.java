@@ -0,0 +1,253 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Check;
+import org.slf4j.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Operation counters and latency histograms of a {@link Cache}, available
+ * via {@link Cache#getMetrics()}. Recording is lock-free and costs a few
+ * atomic additions per operation, so it's always enabled. Values can be read
+ * one by one, copied with {@link #snapshot()}, or exposed over JMX with
+ * {@link #register(String)}.
+ * <p>
+ * Cache implementations record their operations by passing the value of
+ * {@link System#nanoTime()} taken when the operation started to the
+ * <code>record*</code> methods. Bytes are counted as they are read from or
+ * written to the storage, e.g. the compressed size of a file.
+ *
+ * @author Zsolt Jurányi
+ * @see Cache#getMetrics()
+ * @since 26.10
+ */
+public class CacheMetrics implements CacheMetricsMXBean {
+
+	/**
+	 * Domain of the JMX object names registered by {@link #register(String)}.
+	 */
+	public static final String JMX_DOMAIN = "hu.juzraai.toolbox.cache";
+
+	private static final Logger L = LoggerFactory.getLogger(CacheMetrics.class);
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong expiredHits = new AtomicLong();
+	private final AtomicLong stores = new AtomicLong();
+	private final AtomicLong removals = new AtomicLong();
+	private final AtomicLong bytesRead = new AtomicLong();
+	private final AtomicLong bytesWritten = new AtomicLong();
+	private final LatencyHistogram fetchLatency = new LatencyHistogram();
+	private final LatencyHistogram storeLatency = new LatencyHistogram();
+	private final LatencyHistogram removeLatency = new LatencyHistogram();
+	private ObjectName objectName; // guarded by this
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+	@Override
+	public long getExpiredHits() {
+		return expiredHits.get();
+	}
+
+	@Override
+	@Nonnull
+	public LatencySnapshot getFetchLatency() {
+		return fetchLatency.snapshot();
+	}
+
+	@Override
+	public double getHitRatio() {
+		return CacheMetricsSnapshot.hitRatio(hits.get(), misses.get(), expiredHits.get());
+	}
+
+	@Override
+	public long getHits() {
+		return hits.get();
+	}
+
+	@Override
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return The JMX object name this instance is registered with, or
+	 * <code>null</code> if it's not registered
+	 */
+	@CheckForNull
+	public synchronized ObjectName getObjectName() {
+		return objectName;
+	}
+
+	@Override
+	public long getRemovals() {
+		return removals.get();
+	}
+
+	@Override
+	@Nonnull
+	public LatencySnapshot getRemoveLatency() {
+		return removeLatency.snapshot();
+	}
+
+	@Override
+	@Nonnull
+	public LatencySnapshot getStoreLatency() {
+		return storeLatency.snapshot();
+	}
+
+	@Override
+	public long getStores() {
+		return stores.get();
+	}
+
+	/**
+	 * Records a fetch which found the key but didn't return the content
+	 * because it was expired.
+	 *
+	 * @param startNanos Value of {@link System#nanoTime()} when the fetch
+	 *                   started
+	 */
+	public void recordExpiredHit(long startNanos) {
+		fetchLatency.record(System.nanoTime() - startNanos);
+		expiredHits.incrementAndGet();
+	}
+
+	/**
+	 * Records a fetch which returned a content.
+	 *
+	 * @param startNanos Value of {@link System#nanoTime()} when the fetch
+	 *                   started
+	 * @param bytes      Number of bytes read from the storage
+	 */
+	public void recordHit(long startNanos, long bytes) {
+		fetchLatency.record(System.nanoTime() - startNanos);
+		hits.incrementAndGet();
+		if (0 < bytes) {
+			bytesRead.addAndGet(bytes);
+		}
+	}
+
+	/**
+	 * Records a fetch which didn't find the key or failed to read it.
+	 *
+	 * @param startNanos Value of {@link System#nanoTime()} when the fetch
+	 *                   started
+	 */
+	public void recordMiss(long startNanos) {
+		fetchLatency.record(System.nanoTime() - startNanos);
+		misses.incrementAndGet();
+	}
+
+	/**
+	 * Records the removal of an entry.
+	 *
+	 * @param startNanos Value of {@link System#nanoTime()} when the removal
+	 *                   started
+	 */
+	public void recordRemoval(long startNanos) {
+		removeLatency.record(System.nanoTime() - startNanos);
+		removals.incrementAndGet();
+	}
+
+	/**
+	 * Records a successful store.
+	 *
+	 * @param startNanos Value of {@link System#nanoTime()} when the store
+	 *                   started
+	 * @param bytes      Number of bytes written to the storage
+	 */
+	public void recordStore(long startNanos, long bytes) {
+		storeLatency.record(System.nanoTime() - startNanos);
+		stores.incrementAndGet();
+		if (0 < bytes) {
+			bytesWritten.addAndGet(bytes);
+		}
+	}
+
+	/**
+	 * Registers this instance in the platform MBean server, with the object
+	 * name <code>hu.juzraai.toolbox.cache:type=Cache,name=&lt;name&gt;</code>.
+	 * If it was registered before, the previous registration is removed.
+	 *
+	 * @param name Name of the cache, it will be quoted
+	 * @return The object name, or <code>null</code> if the registration
+	 * failed, e.g. because the name is already used
+	 */
+	@CheckForNull
+	public synchronized ObjectName register(@Nonnull String name) {
+		Check.notNull(name, "name must not be null");
+		unregister();
+		try {
+			ObjectName on = new ObjectName(JMX_DOMAIN + ":type=Cache,name=" + ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+			objectName = on;
+			L.debug("Cache metrics registered as {}", on);
+			return on;
+		} catch (JMException e) {
+			L.error(String.format("Failed to register cache metrics as '%s'", name), e);
+			return null;
+		}
+	}
+
+	@Override
+	public void reset() {
+		hits.set(0);
+		misses.set(0);
+		expiredHits.set(0);
+		stores.set(0);
+		removals.set(0);
+		bytesRead.set(0);
+		bytesWritten.set(0);
+		fetchLatency.reset();
+		storeLatency.reset();
+		removeLatency.reset();
+	}
+
+	/**
+	 * Copies the current values. Operations recorded concurrently may be
+	 * partially reflected.
+	 *
+	 * @return A new snapshot
+	 */
+	@Nonnull
+	public CacheMetricsSnapshot snapshot() {
+		return new CacheMetricsSnapshot(hits.get(), misses.get(), expiredHits.get(), stores.get(), removals.get(),
+				bytesRead.get(), bytesWritten.get(), fetchLatency.snapshot(), storeLatency.snapshot(),
+				removeLatency.snapshot());
+	}
+
+	/**
+	 * Removes this instance from the platform MBean server, if it was
+	 * registered by {@link #register(String)}.
+	 */
+	public synchronized void unregister() {
+		if (null == objectName) {
+			return;
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+		} catch (JMException e) {
+			L.error(String.format("Failed to unregister cache metrics '%s'", objectName), e);
+		}
+		objectName = null;
+	}
+}
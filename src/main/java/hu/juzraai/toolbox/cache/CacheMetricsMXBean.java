@@ -0,0 +1,74 @@
+package hu.juzraai.toolbox.cache;
+
+/**
+ * JMX interface of {@link CacheMetrics}. Counters are cumulative since the
+ * creation of the cache or the last {@link #reset()}, latencies are exposed
+ * as composite values.
+ *
+ * @author Zsolt Jurányi
+ * @see CacheMetrics#register(String)
+ * @since 26.10
+ */
+public interface CacheMetricsMXBean {
+
+	/**
+	 * @return Number of bytes read from the storage by fetches
+	 */
+	long getBytesRead();
+
+	/**
+	 * @return Number of bytes written to the storage by stores
+	 */
+	long getBytesWritten();
+
+	/**
+	 * @return Number of fetches which found the key but didn't return it,
+	 * because it was expired
+	 */
+	long getExpiredHits();
+
+	/**
+	 * @return Latencies of fetches, including misses
+	 */
+	LatencySnapshot getFetchLatency();
+
+	/**
+	 * @return Number of fetches which returned a content
+	 */
+	long getHits();
+
+	/**
+	 * @return Ratio of hits to all fetches, or 0 if there were no fetches
+	 */
+	double getHitRatio();
+
+	/**
+	 * @return Number of fetches which didn't find the key
+	 */
+	long getMisses();
+
+	/**
+	 * @return Number of removed entries
+	 */
+	long getRemovals();
+
+	/**
+	 * @return Latencies of removals
+	 */
+	LatencySnapshot getRemoveLatency();
+
+	/**
+	 * @return Latencies of successful stores
+	 */
+	LatencySnapshot getStoreLatency();
+
+	/**
+	 * @return Number of successful stores
+	 */
+	long getStores();
+
+	/**
+	 * Clears all counters and histograms.
+	 */
+	void reset();
+}
@@ -0,0 +1,155 @@
+package hu.juzraai.toolbox.cache;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Immutable copy of the {@link CacheMetrics} of a cache, returned by {@link
+ * CacheMetrics#snapshot()}.
+ *
+ * @author Zsolt Jurányi
+ * @see CacheMetrics
+ * @since 26.10
+ */
+public final class CacheMetricsSnapshot {
+
+	private final long hits;
+	private final long misses;
+	private final long expiredHits;
+	private final long stores;
+	private final long removals;
+	private final long bytesRead;
+	private final long bytesWritten;
+	private final LatencySnapshot fetchLatency;
+	private final LatencySnapshot storeLatency;
+	private final LatencySnapshot removeLatency;
+
+	CacheMetricsSnapshot(long hits, long misses, long expiredHits, long stores, long removals, long bytesRead,
+						 long bytesWritten, @Nonnull LatencySnapshot fetchLatency, @Nonnull LatencySnapshot storeLatency,
+						 @Nonnull LatencySnapshot removeLatency) {
+		this.hits = hits;
+		this.misses = misses;
+		this.expiredHits = expiredHits;
+		this.stores = stores;
+		this.removals = removals;
+		this.bytesRead = bytesRead;
+		this.bytesWritten = bytesWritten;
+		this.fetchLatency = fetchLatency;
+		this.storeLatency = storeLatency;
+		this.removeLatency = removeLatency;
+	}
+
+	/**
+	 * @param hits        Number of hits
+	 * @param misses      Number of misses
+	 * @param expiredHits Number of expired hits
+	 * @return Ratio of hits to all fetches, or 0 if there were no fetches
+	 */
+	static double hitRatio(long hits, long misses, long expiredHits) {
+		long fetches = hits + misses + expiredHits;
+		return 0 == fetches ? 0 : (double) hits / fetches;
+	}
+
+	/**
+	 * @return Number of bytes read from the storage by fetches
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * @return Number of bytes written to the storage by stores
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * @return Number of fetches which found the key but didn't return it,
+	 * because it was expired
+	 */
+	public long getExpiredHits() {
+		return expiredHits;
+	}
+
+	/**
+	 * @return Latencies of fetches, including misses
+	 */
+	@Nonnull
+	public LatencySnapshot getFetchLatency() {
+		return fetchLatency;
+	}
+
+	/**
+	 * @return Number of fetches: hits, misses and expired hits
+	 */
+	public long getFetches() {
+		return hits + misses + expiredHits;
+	}
+
+	/**
+	 * @return Ratio of hits to all fetches, or 0 if there were no fetches
+	 */
+	public double getHitRatio() {
+		return hitRatio(hits, misses, expiredHits);
+	}
+
+	/**
+	 * @return Number of fetches which returned a content
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return Number of fetches which didn't find the key
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return Number of removed entries
+	 */
+	public long getRemovals() {
+		return removals;
+	}
+
+	/**
+	 * @return Latencies of removals
+	 */
+	@Nonnull
+	public LatencySnapshot getRemoveLatency() {
+		return removeLatency;
+	}
+
+	/**
+	 * @return Latencies of successful stores
+	 */
+	@Nonnull
+	public LatencySnapshot getStoreLatency() {
+		return storeLatency;
+	}
+
+	/**
+	 * @return Number of successful stores
+	 */
+	public long getStores() {
+		return stores;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheMetricsSnapshot{" +
+				"hits=" + hits +
+				", misses=" + misses +
+				", expiredHits=" + expiredHits +
+				", stores=" + stores +
+				", removals=" + removals +
+				", bytesRead=" + bytesRead +
+				", bytesWritten=" + bytesWritten +
+				", fetchLatency=" + fetchLatency +
+				", storeLatency=" + storeLatency +
+				", removeLatency=" + removeLatency +
+				'}';
+	}
+}
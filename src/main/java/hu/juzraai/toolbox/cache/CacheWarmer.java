@@ -0,0 +1,372 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Check;
+import org.slf4j.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prepares a {@link FileCache} for traffic after a restart: walks its
+ * directory in parallel to build a {@link FileIndex}, attaches the index to
+ * the cache, so <code>contains</code> and misses are answered from memory,
+ * then optionally loads the hottest entries into a {@link MemoryCache}.
+ * <p>
+ * Directories are listed by a fork-join pool, every directory is a separate
+ * task, so deep layouts like {@link HashedFileLayout} are walked by all
+ * threads. Hotness is the last access time recorded by the file system,
+ * which may be coarse (e.g. with the <code>relatime</code> mount option) or
+ * equal to the modification time if access times are not recorded at all.
+ * <p>
+ * The warm-up can be limited by a time budget: when it runs out, the walk
+ * stops and the index is left incomplete, which is still used for the keys
+ * it contains. Progress is reported periodically on the calling thread.
+ *
+ * @param <T> Type of content which the cache handles.
+ * @author Zsolt Jurányi
+ * @see FileCache#setIndex(FileIndex)
+ * @since 26.10
+ */
+public class CacheWarmer<T> {
+
+	/**
+	 * Time between progress reports in milliseconds.
+	 */
+	public static final long PROGRESS_INTERVAL = 1000;
+
+	private static final Logger L = LoggerFactory.getLogger(CacheWarmer.class);
+	private static final int FILES_PER_DEADLINE_CHECK = 1000;
+	private static final int PRELOAD_BATCH = 16;
+
+	private final FileCache<T> cache;
+	private int parallelism;
+	private long timeBudget;
+	private MemoryCache<T> memory;
+	private int preloadEntries;
+	private ProgressListener listener;
+
+	/**
+	 * Creates a new instance which uses as many threads as the parallelism of
+	 * the cache, without time budget and preloading.
+	 *
+	 * @param cache The cache to be warmed up
+	 */
+	public CacheWarmer(@Nonnull FileCache<T> cache) {
+		this.cache = Check.notNull(cache, "cache must not be null");
+		this.parallelism = cache.getParallelism();
+	}
+
+	/**
+	 * Waits for the task to finish, reporting progress periodically.
+	 */
+	private static void await(@Nonnull ForkJoinTask<?> task, @Nonnull WarmUp w) {
+		while (true) {
+			try {
+				task.get(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+				return;
+			} catch (TimeoutException e) {
+				w.report();
+			} catch (InterruptedException e) {
+				w.stopped.set(true); // tasks finish at the next check
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				w.failed.set(true);
+				L.error("Warm-up task failed", e.getCause());
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Selects the most recently accessed, not expired keys of the index.
+	 *
+	 * @return Keys to be preloaded, the hottest first
+	 */
+	@Nonnull
+	private List<String> hottestKeys(@Nonnull final FileIndex index) {
+		Comparator<String> coldestFirst = new Comparator<String>() {
+			@Override
+			public int compare(String a, String b) {
+				long x = index.lastAccessOf(a);
+				long y = index.lastAccessOf(b);
+				return x < y ? -1 : (x == y ? 0 : 1);
+			}
+		};
+		PriorityQueue<String> hottest = new PriorityQueue<String>(Math.max(1, preloadEntries), coldestFirst);
+		for (String key : index.keys()) {
+			Date timestamp = index.timestampOf(key);
+			if (null != timestamp && !cache.isExpired(timestamp.getTime())) { // null if removed meanwhile
+				hottest.add(key);
+				if (preloadEntries < hottest.size()) {
+					hottest.poll();
+				}
+			}
+		}
+		List<String> keys = new ArrayList<String>(hottest);
+		Collections.sort(keys, Collections.reverseOrder(coldestFirst));
+		return keys;
+	}
+
+	/**
+	 * Sets the number of threads walking the directory and preloading
+	 * entries.
+	 *
+	 * @param parallelism Number of threads, must be positive
+	 */
+	public void setParallelism(int parallelism) {
+		Check.argument(0 < parallelism, "parallelism must be positive");
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Enables preloading: after the index is built, the given number of the
+	 * most recently accessed, not expired entries are fetched through the
+	 * memory tier, which keeps them. It should not exceed the capacity of the
+	 * memory tier.
+	 *
+	 * @param memory     Memory tier decorating the cache being warmed up, or
+	 *                   <code>null</code> to disable preloading
+	 * @param maxEntries Maximum number of entries to be preloaded
+	 */
+	public void setPreload(@CheckForNull MemoryCache<T> memory, int maxEntries) {
+		Check.argument(null == memory || memory.getBackend() == cache, "memory must decorate the cache being warmed up");
+		Check.argument(0 <= maxEntries, "maxEntries must be non-negative");
+		this.memory = memory;
+		this.preloadEntries = maxEntries;
+	}
+
+	/**
+	 * @param listener Receives progress reports, or <code>null</code> to
+	 *                 disable them
+	 */
+	public void setProgressListener(@CheckForNull ProgressListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Limits the duration of the warm-up, including indexing and preloading.
+	 *
+	 * @param timeBudget Maximum duration, or 0 for no limit
+	 * @param timeUnit   Time unit of <code>timeBudget</code>
+	 */
+	public void setTimeBudget(long timeBudget, @Nonnull TimeUnit timeUnit) {
+		Check.argument(0 <= timeBudget, "timeBudget must be non-negative");
+		this.timeBudget = timeUnit.toMillis(timeBudget);
+	}
+
+	/**
+	 * Builds the index of the cache directory and attaches it to the cache,
+	 * then preloads the hottest entries if enabled. The index is attached
+	 * before the walk, so entries stored or removed meanwhile are tracked.
+	 * It's marked complete only if the walk finished within the time budget
+	 * and without errors.
+	 *
+	 * @return The index attached to the cache
+	 */
+	@Nonnull
+	public FileIndex warmUp() {
+		WarmUp w = new WarmUp(cache, listener, 0 < timeBudget ? System.currentTimeMillis() + timeBudget : Long.MAX_VALUE);
+		L.info("Warming up cache directory: {}", cache.getDirectory().getAbsolutePath());
+		cache.setIndex(w.index);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			if (Files.isDirectory(w.root)) {
+				await(pool.submit(new IndexTask(w, w.root)), w);
+			}
+			if (!w.stopped.get() && !w.failed.get()) {
+				w.index.setComplete();
+			}
+			if (null != memory && 0 < preloadEntries && !w.stopped.get()) {
+				List<String> keys = hottestKeys(w.index);
+				await(pool.submit(new PreloadTask<T>(w, memory, keys, 0, keys.size())), w);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		w.report();
+		L.info("Warm-up finished in {} ms: {} entries ({} bytes) indexed{}, {} preloaded", w.elapsed(), w.index.size(), w.index.getBytes(), w.index.isComplete() ? "" : " (incomplete)", w.preloaded.get());
+		return w.index;
+	}
+
+	/**
+	 * Receives progress reports of a warm-up.
+	 */
+	public interface ProgressListener {
+
+		/**
+		 * Called every {@link #PROGRESS_INTERVAL} milliseconds and when the
+		 * warm-up finished, on the thread which called {@link #warmUp()}.
+		 *
+		 * @param indexedEntries   Number of keys indexed so far
+		 * @param indexedBytes     Total size of indexed files
+		 * @param preloadedEntries Number of entries preloaded so far
+		 * @param elapsedMillis    Time since the warm-up started
+		 */
+		void progress(long indexedEntries, long indexedBytes, long preloadedEntries, long elapsedMillis);
+	}
+
+	/**
+	 * Lists a directory, indexes its files and forks a task for each
+	 * subdirectory.
+	 */
+	private static final class IndexTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final WarmUp w;
+		private final Path directory;
+
+		private IndexTask(@Nonnull WarmUp w, @Nonnull Path directory) {
+			this.w = w;
+			this.directory = directory;
+		}
+
+		@Override
+		protected void compute() {
+			if (w.isOutOfTime()) {
+				return;
+			}
+			List<IndexTask> subdirectories = new ArrayList<IndexTask>();
+			try (DirectoryStream<Path> ds = Files.newDirectoryStream(directory)) {
+				int n = 0;
+				for (Path path : ds) {
+					if (0 == ++n % FILES_PER_DEADLINE_CHECK && w.isOutOfTime()) {
+						break;
+					}
+					BasicFileAttributes attrs;
+					try {
+						attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					} catch (NoSuchFileException e) {
+						continue; // removed since listed
+					}
+					if (attrs.isDirectory()) {
+						subdirectories.add(new IndexTask(w, path));
+					} else if (attrs.isRegularFile()) {
+						w.found(path, attrs);
+					}
+				}
+			} catch (NoSuchFileException e) {
+				// removed since listed
+			} catch (IOException e) {
+				w.failed.set(true);
+				L.error(String.format("Failed to index directory: %s", directory), e);
+			}
+			invokeAll(subdirectories);
+		}
+	}
+
+	/**
+	 * Fetches a range of keys through the memory tier, splitting it into
+	 * smaller ranges processed in parallel.
+	 */
+	private static final class PreloadTask<T> extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final WarmUp w;
+		private final MemoryCache<T> memory;
+		private final List<String> keys;
+		private final int from;
+		private final int to;
+
+		private PreloadTask(@Nonnull WarmUp w, @Nonnull MemoryCache<T> memory, @Nonnull List<String> keys, int from, int to) {
+			this.w = w;
+			this.memory = memory;
+			this.keys = keys;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > PRELOAD_BATCH) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new PreloadTask<T>(w, memory, keys, from, mid), new PreloadTask<T>(w, memory, keys, mid, to));
+				return;
+			}
+			for (int i = from; i < to && !w.isOutOfTime(); i++) {
+				if (null != memory.fetchEntry(keys.get(i))) {
+					w.preloaded.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * State of a running warm-up, shared by its tasks.
+	 */
+	private static final class WarmUp {
+
+		private final long start = System.currentTimeMillis();
+		private final FileIndex index = new FileIndex();
+		private final AtomicLong preloaded = new AtomicLong();
+		private final AtomicBoolean stopped = new AtomicBoolean();
+		private final AtomicBoolean failed = new AtomicBoolean();
+		private final Path root;
+		private final FileLayout layout;
+		private final ProgressListener listener;
+		private final long deadline;
+
+		private WarmUp(@Nonnull FileCache<?> cache, @CheckForNull ProgressListener listener, long deadline) {
+			this.root = cache.getDirectory().toPath();
+			this.layout = cache.getLayout();
+			this.listener = listener;
+			this.deadline = deadline;
+		}
+
+		private long elapsed() {
+			return System.currentTimeMillis() - start;
+		}
+
+		private void found(@Nonnull Path file, @Nonnull BasicFileAttributes attrs) {
+			String key = layout.keyOf(FileLayout.relativePath(root, file));
+			if (null != key && key.matches(FileCache.VALID_KEY_PATTERN)) {
+				index.found(key, attrs.size(), attrs.lastModifiedTime().toMillis(), attrs.lastAccessTime().toMillis());
+			}
+		}
+
+		/**
+		 * @return <code>true</code> if the warm-up was stopped or the time
+		 * budget ran out, in which case it's stopped
+		 */
+		private boolean isOutOfTime() {
+			if (deadline < System.currentTimeMillis() && stopped.compareAndSet(false, true)) {
+				L.warn("Warm-up ran out of time budget");
+			}
+			return stopped.get();
+		}
+
+		private void report() {
+			if (null != listener) {
+				try {
+					listener.progress(index.size(), index.getBytes(), preloaded.get(), elapsed());
+				} catch (RuntimeException e) {
+					L.error("Progress listener failed", e);
+				}
+			}
+		}
+	}
+}
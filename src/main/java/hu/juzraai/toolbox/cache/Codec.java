@@ -0,0 +1,52 @@
+package hu.juzraai.toolbox.cache;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compression algorithm used by {@link CodecFileCacheForStrings}.
+ * Implementations must be thread-safe. The ID of the codec is recorded with
+ * every entry, so entries written by different codecs can be read from the
+ * same cache directory.
+ *
+ * @author Zsolt Jurányi
+ * @see CodecFileCacheForStrings
+ * @see DeflateCodec
+ * @see GzipCodec
+ * @see LzCodec
+ * @since 26.10
+ */
+public interface Codec {
+
+	/**
+	 * Decodes the given data.
+	 *
+	 * @param data          Array containing the encoded data
+	 * @param offset        Start of the encoded data
+	 * @param length        Length of the encoded data
+	 * @param decodedLength Length of the original data, as it was recorded
+	 *                      when encoding
+	 * @return The original data
+	 * @throws IOException If the data is corrupt
+	 */
+	@Nonnull
+	byte[] decode(@Nonnull byte[] data, int offset, int length, int decodedLength) throws IOException;
+
+	/**
+	 * Encodes the given data and writes it into the stream.
+	 *
+	 * @param data   Array containing the data to be encoded
+	 * @param offset Start of the data
+	 * @param length Length of the data
+	 * @param out    Stream to write the encoded data into, it won't be closed
+	 * @throws IOException If writing the stream failed
+	 */
+	void encode(@Nonnull byte[] data, int offset, int length, @Nonnull OutputStream out) throws IOException;
+
+	/**
+	 * @return ID of the codec, it's recorded with every entry encoded by this
+	 * codec
+	 */
+	byte getId();
+}
@@ -0,0 +1,414 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Check;
+import org.slf4j.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * {@link FileCache} implementation which stores {@link String} objects in
+ * files compressed by a pluggable {@link Codec}.
+ * <p>
+ * Every file starts with a 9 bytes header: a magic number, the ID of the
+ * codec and the length of the original content. When loading, the codec is
+ * selected by the ID in the header, so the codec can be changed anytime and a
+ * cache directory can contain entries of different codecs. Files without the
+ * header are handled as legacy entries: GZip files (written by {@link
+ * GzFileCacheForStrings}) are decoded by {@link GzipCodec}, other files are
+ * read as plain text (written by {@link FileCacheForStrings}).
+ * <p>
+ * Streams returned by {@link #openStream(String)} and used by {@link
+ * #store(String, InputStream)} decode and encode on the fly if the codec
+ * supports it, see {@link #openInputStream(String, File)} and {@link
+ * #openOutputStream(String, File)}.
+ * <p>
+ * {@link DeflateCodec}, {@link GzipCodec} and {@link LzCodec} are registered
+ * by default. Codecs using a preset dictionary have to be registered with
+ * {@link #registerCodec(Codec)} or {@link #setCodec(Codec)}.
+ *
+ * @author Zsolt Jurányi
+ * @see Codec
+ * @see FileCache
+ * @since 26.10
+ */
+public class CodecFileCacheForStrings extends FileCache<String> {
+
+	private static final Logger L = LoggerFactory.getLogger(CodecFileCacheForStrings.class);
+
+	private static final byte[] MAGIC = {(byte) 0x89, 'J', 'Z', 'C'}; // 0x89 can't start UTF-8 text
+	private static final int HEADER_SIZE = MAGIC.length + 5;
+
+	private final ConcurrentMap<Byte, Codec> codecs = defaultCodecs();
+	private volatile Codec codec = codecs.get(DeflateCodec.ID);
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory The cache directory where files will be stored
+	 */
+	public CodecFileCacheForStrings(@Nonnull File directory) {
+		super(directory);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory  The cache directory where files will be stored.
+	 * @param expiration Expiration in milliseconds. Elements in cache will be
+	 *                   handled as expired if this amount of time have elapsed
+	 *                   since their timestamp. If it's <code>null</code>,
+	 *                   cached elements will never expire.
+	 */
+	public CodecFileCacheForStrings(@Nonnull File directory, Long expiration) {
+		super(directory, expiration);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory  The cache directory where files will be stored.
+	 * @param expiration Expiration in the time unit of your choice. Elements in
+	 *                   cache will be handled as expired if this amount of time
+	 *                   have elapsed since their timestamp.
+	 * @param timeUnit   {@link TimeUnit} object representing the time unit you
+	 *                   specified <code>duration</code> in. It's used to
+	 *                   convert <code>duration</code> to milliseconds.
+	 */
+	public CodecFileCacheForStrings(@Nonnull File directory, long expiration, @Nonnull TimeUnit timeUnit) {
+		super(directory, expiration, timeUnit);
+	}
+
+	@Nonnull
+	private static ConcurrentMap<Byte, Codec> defaultCodecs() {
+		ConcurrentMap<Byte, Codec> codecs = new ConcurrentHashMap<Byte, Codec>();
+		for (Codec c : new Codec[]{new DeflateCodec(), new GzipCodec(), new LzCodec()}) {
+			codecs.put(c.getId(), c);
+		}
+		return codecs;
+	}
+
+	@Nonnull
+	private static byte[] header(byte id, int decodedLength) {
+		return ByteBuffer.allocate(HEADER_SIZE).put(MAGIC).put(id).putInt(decodedLength).array();
+	}
+
+	private static boolean hasHeader(@Nonnull byte[] data, int length) {
+		if (length < HEADER_SIZE) {
+			return false;
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (MAGIC[i] != data[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Nonnull
+	private Codec codecOf(byte id) throws IOException {
+		Codec c = codecs.get(id);
+		if (null == c) {
+			throw new IOException(String.format("No codec registered with ID %d", id));
+		}
+		return c;
+	}
+
+	/**
+	 * Reads and decodes the whole file.
+	 *
+	 * @return A buffer wrapping the array which contains the decoded bytes
+	 * from index 0 to its limit. It may be the buffer of the current thread,
+	 * only valid until the next read.
+	 */
+	@Nonnull
+	private ByteBuffer decode(@Nonnull File file) throws IOException {
+		ByteBuffer bytes = TextFiles.readAll(file);
+		byte[] data = bytes.array();
+		int length = bytes.limit();
+		if (hasHeader(data, length)) {
+			Codec c = codecOf(data[MAGIC.length]);
+			int decodedLength = ByteBuffer.wrap(data, MAGIC.length + 1, 4).getInt();
+			if (decodedLength < 0) {
+				throw new IOException("Corrupt header");
+			}
+			return ByteBuffer.wrap(c.decode(data, HEADER_SIZE, length - HEADER_SIZE, decodedLength));
+		} else if (GzipCodec.isGzip(data, 0, length)) {
+			return ByteBuffer.wrap(codecOf(GzipCodec.ID).decode(data, 0, length, 0));
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return The codec used when storing contents
+	 */
+	@Nonnull
+	public Codec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Reads the specified {@link File} and decodes it with the codec recorded
+	 * in its header, or as a legacy GZip or plain text file.
+	 *
+	 * @param key  The key {@link #fetch(String)} was called with, now can be
+	 *             used in logs
+	 * @param file {@link File} to be loaded
+	 * @return The decoded content
+	 */
+	@Override
+	@CheckForNull
+	protected String load(@Nonnull String key, @Nonnull File file) {
+		String content = null;
+		try {
+			ByteBuffer bytes = decode(file);
+			content = new String(bytes.array(), 0, bytes.limit(), StandardCharsets.UTF_8);
+			L.info("'{}' fetched from cache, content length: {}", key, content.length());
+			L.debug("'{}' <- {}", key, file.getAbsolutePath());
+		} catch (IOException e) {
+			L.error(String.format("IO error when fetching '%s'", key), e);
+		}
+		return content;
+	}
+
+	/**
+	 * Opens the file for reading. Entries of {@link DeflateCodec} (without
+	 * dictionary) and {@link GzipCodec}, as well as legacy GZip and plain
+	 * files are decoded on the fly. Entries of other codecs are block based,
+	 * they are decoded in memory first.
+	 *
+	 * @param key  The key {@link #openStream(String)} was called with, now
+	 *             can be used in logs
+	 * @param file {@link File} to be read
+	 * @return A stream providing the decoded content
+	 * @throws IOException If the file cannot be opened or decoded
+	 */
+	@Nonnull
+	@Override
+	protected InputStream openInputStream(@Nonnull String key, @Nonnull File file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file), STREAM_BUFFER_SIZE);
+		try {
+			byte[] head = new byte[HEADER_SIZE];
+			in.mark(HEADER_SIZE);
+			int n = readFully(in, head);
+			if (hasHeader(head, n)) {
+				Codec c = codecOf(head[MAGIC.length]);
+				if (c instanceof GzipCodec) {
+					return new GZIPInputStream(in, STREAM_BUFFER_SIZE);
+				} else if (c instanceof DeflateCodec && DeflateCodec.ID == c.getId()) {
+					final Inflater inflater = new Inflater();
+					return new InflaterInputStream(in, inflater, STREAM_BUFFER_SIZE) {
+						@Override
+						public void close() throws IOException {
+							try {
+								super.close();
+							} finally {
+								inflater.end();
+							}
+						}
+					};
+				}
+				in.close();
+				ByteBuffer decoded = decode(file);
+				return new ByteArrayInputStream(decoded.array(), 0, decoded.limit());
+			}
+			in.reset();
+			return GzipCodec.isGzip(head, 0, n) ? new GZIPInputStream(in, STREAM_BUFFER_SIZE) : in;
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens the file for writing with the current codec. {@link DeflateCodec}
+	 * (without dictionary) and {@link GzipCodec} compress on the fly, and the
+	 * length in the header is filled in when the stream is closed. Other
+	 * codecs are block based, the data is collected in memory and encoded
+	 * when the stream is closed.
+	 *
+	 * @param key  The key {@link #store(String, InputStream)} was called
+	 *             with, now can be used in logs
+	 * @param file {@link File} to be written
+	 * @return A stream which encodes data into the file
+	 * @throws IOException If the file cannot be opened
+	 */
+	@Nonnull
+	@Override
+	protected OutputStream openOutputStream(@Nonnull String key, @Nonnull final File file) throws IOException {
+		final Codec c = codec;
+		if (c instanceof GzipCodec || (c instanceof DeflateCodec && DeflateCodec.ID == c.getId())) {
+			FileOutputStream out = new FileOutputStream(file);
+			try {
+				out.write(header(c.getId(), 0));
+				DeflaterOutputStream encoder;
+				if (c instanceof GzipCodec) {
+					final int level = ((GzipCodec) c).getLevel();
+					encoder = new GZIPOutputStream(out, STREAM_BUFFER_SIZE) {
+						{
+							def.setLevel(level);
+						}
+					};
+				} else {
+					final Deflater deflater = new Deflater(((DeflateCodec) c).getLevel());
+					encoder = new DeflaterOutputStream(out, deflater, STREAM_BUFFER_SIZE) {
+						@Override
+						public void close() throws IOException {
+							try {
+								super.close();
+							} finally {
+								deflater.end();
+							}
+						}
+					};
+				}
+				return new LengthRecordingOutputStream(encoder, out);
+			} catch (IOException e) {
+				out.close();
+				throw e;
+			}
+		}
+		return new ByteArrayOutputStream(STREAM_BUFFER_SIZE) {
+			private boolean closed;
+
+			@Override
+			public void close() throws IOException {
+				if (!closed) {
+					closed = true;
+					writeEncoded(file, c, buf, count);
+				}
+			}
+		};
+	}
+
+	private static int readFully(@Nonnull InputStream in, @Nonnull byte[] buffer) throws IOException {
+		int n = 0;
+		int r;
+		while (n < buffer.length && -1 != (r = in.read(buffer, n, buffer.length - n))) {
+			n += r;
+		}
+		return n;
+	}
+
+	/**
+	 * Registers a codec for loading. It replaces the codec registered with the
+	 * same ID.
+	 *
+	 * @param codec The codec to be registered
+	 */
+	public void registerCodec(@Nonnull Codec codec) {
+		Check.notNull(codec, "codec must not be null");
+		codecs.put(codec.getId(), codec);
+	}
+
+	/**
+	 * Encodes the given content with the current codec and saves it with a
+	 * header.
+	 *
+	 * @param key     The key {@link #fetch(String)} was called with, now can be
+	 *                used in logs
+	 * @param file    {@link File} to write
+	 * @param content Content to be saved
+	 * @return <code>true</code> if the storing succeded, <code>false</code> if
+	 * it failed
+	 */
+	@Override
+	protected boolean save(@Nonnull String key, @Nonnull File file, @Nonnull String content) {
+		try {
+			byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+			writeEncoded(file, codec, bytes, bytes.length);
+			L.info("'{}' stored, content length: {}, file size: {}", key, content.length(), file.length());
+			L.debug("'{}' -> {}", key, file.getAbsolutePath());
+		} catch (IOException e) {
+			L.error(String.format("Failed to store key '%s' to file: %s", key, file.getAbsolutePath()), e);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Sets the codec used when storing contents, and registers it for loading.
+	 * Existing files are not affected.
+	 *
+	 * @param codec The codec to be used
+	 */
+	public void setCodec(@Nonnull Codec codec) {
+		registerCodec(codec);
+		this.codec = codec;
+	}
+
+	private void writeEncoded(@Nonnull File file, @Nonnull Codec codec, @Nonnull byte[] data, int length) throws IOException {
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(header(codec.getId(), length));
+			codec.encode(data, 0, length, out);
+		}
+	}
+
+	/**
+	 * Counts the bytes written into a compressing stream, and records their
+	 * number in the file header when closed.
+	 */
+	private static final class LengthRecordingOutputStream extends FilterOutputStream {
+
+		private final FileOutputStream file;
+		private long length;
+		private boolean closed;
+
+		private LengthRecordingOutputStream(@Nonnull DeflaterOutputStream out, @Nonnull FileOutputStream file) {
+			super(out);
+			this.file = file;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				((DeflaterOutputStream) out).finish();
+				if (Integer.MAX_VALUE < length) {
+					throw new IOException("Content is too long");
+				}
+				ByteBuffer decodedLength = ByteBuffer.allocate(4).putInt(0, (int) length);
+				file.getChannel().write(decodedLength, MAGIC.length + 1);
+			} finally {
+				out.close();
+			}
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			length++;
+		}
+
+		@Override
+		public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			length += len;
+		}
+	}
+}
@@ -0,0 +1,371 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Check;
+import org.slf4j.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Abstract {@link Cache} implementation which stores every distinct content
+ * only once, in a content-addressed file store. Contents are written as
+ * blobs named after their SHA-256 hash and length into the <code>blobs</code>
+ * subdirectory, and keys are small reference files in the <code>refs</code>
+ * subdirectory, which contain the name of their blob. Storing a content which
+ * is already in the cache under another key only writes the reference file,
+ * which saves disk space and write I/O when many keys have the same content
+ * (e.g. mirror URLs of the same page). A collision-resistant hash is needed,
+ * because an existing blob is trusted without comparing its bytes. Blobs
+ * named after MD5 hashes by earlier versions are still read. The concrete
+ * conversion of contents to bytes must be implemented in child classes.
+ * <p>
+ * Timestamps and expiration belong to the references. Blobs which are not
+ * referenced anymore are deleted by mark-and-sweep garbage collection: {@link
+ * #collectGarbage()} reads every reference, then deletes the blobs which
+ * were not found. Blobs reused or written during a collection are kept, as
+ * every store refreshes the modification time of its blob. Collection runs
+ * after {@link #purgeExpired()}, or it can be called separately after
+ * removals.
+ *
+ * @param <T> Type of content which the cache handles
+ * @author Zsolt Jurányi
+ * @see ContentAddressedFileCacheForStrings
+ * @since 26.10
+ */
+public abstract class ContentAddressedFileCache<T> extends Cache<T> {
+
+	/**
+	 * Default grace period of garbage collection in milliseconds.
+	 *
+	 * @see #collectGarbage(long, TimeUnit)
+	 */
+	public static final long DEFAULT_GC_GRACE_PERIOD = TimeUnit.MINUTES.toMillis(1);
+
+	private static final Logger L = LoggerFactory.getLogger(ContentAddressedFileCache.class);
+	private static final String BLOB_PATTERN = "([0-9a-f]{64}|[0-9a-f]{32})-[0-9]+"; // SHA-256 or legacy MD5
+
+	private final File directory;
+	private final FileCacheForStrings refs;
+	private final FileCacheForBytes blobs;
+	private final ReadWriteLock sweepLock = new ReentrantReadWriteLock();
+	private final AtomicLong duplicateStores = new AtomicLong();
+
+	/**
+	 * Creates a new instance. Elements of the cache will never expire.
+	 *
+	 * @param directory The cache directory where references and blobs will be
+	 *                  stored
+	 */
+	public ContentAddressedFileCache(@Nonnull File directory) {
+		this(directory, null);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory  The cache directory where references and blobs will
+	 *                   be stored
+	 * @param expiration Expiration in milliseconds. Elements in cache will be
+	 *                   handled as expired if this amount of time have elapsed
+	 *                   since their timestamp. If it's <code>null</code>,
+	 *                   cached elements will never expire.
+	 */
+	public ContentAddressedFileCache(@Nonnull File directory, Long expiration) {
+		super(expiration);
+		this.directory = Check.notNull(directory, "directory must not be null");
+		this.refs = new FileCacheForStrings(new File(directory, "refs"), expiration);
+		this.blobs = new FileCacheForBytes(new File(directory, "blobs"));
+		this.blobs.setLayout(new HashedFileLayout());
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory  The cache directory where references and blobs will
+	 *                   be stored
+	 * @param expiration Expiration in the time unit of your choice. Elements in
+	 *                   cache will be handled as expired if this amount of time
+	 *                   have elapsed since their timestamp.
+	 * @param timeUnit   {@link TimeUnit} object representing the time unit you
+	 *                   specified <code>duration</code> in. It's used to
+	 *                   convert <code>duration</code> to milliseconds.
+	 */
+	public ContentAddressedFileCache(@Nonnull File directory, long expiration, @Nonnull TimeUnit timeUnit) {
+		this(directory, timeUnit.toMillis(expiration));
+	}
+
+	/**
+	 * Generates the name of the blob of the given bytes: their SHA-256 hash
+	 * in hexadecimal and their length.
+	 */
+	@Nonnull
+	private static String blobOf(@Nonnull byte[] bytes) {
+		byte[] hash;
+		try {
+			hash = MessageDigest.getInstance("SHA-256").digest(bytes);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+		StringBuilder s = new StringBuilder(2 * hash.length + 12);
+		for (byte b : hash) {
+			s.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return s.append('-').append(bytes.length).toString();
+	}
+
+	private static boolean isTempFile(@Nonnull Path file) {
+		String name = file.getFileName().toString();
+		return name.contains("~") && name.endsWith(".tmp"); // valid keys can't contain '~'
+	}
+
+	/**
+	 * Collects garbage with the default grace period.
+	 *
+	 * @return Number of blobs and bytes reclaimed
+	 * @see #collectGarbage(long, TimeUnit)
+	 * @see #DEFAULT_GC_GRACE_PERIOD
+	 */
+	@Nonnull
+	public PurgeResult collectGarbage() {
+		return collectGarbage(DEFAULT_GC_GRACE_PERIOD, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Deletes the blobs which are not referenced by any key, and leftover
+	 * temporary files of interrupted stores. Stores can run meanwhile.
+	 *
+	 * @param gracePeriod Files modified within this time before the
+	 *                    collection are kept, as the reference of a blob may
+	 *                    still be on its way to the disk. It should be longer
+	 *                    than a store and the precision of modification times
+	 *                    of the file system.
+	 * @param timeUnit    {@link TimeUnit} object representing the time unit
+	 *                    you specified <code>gracePeriod</code> in
+	 * @return Number of blobs and bytes reclaimed
+	 */
+	@Nonnull
+	public PurgeResult collectGarbage(long gracePeriod, @Nonnull TimeUnit timeUnit) {
+		Check.argument(0 <= gracePeriod, "gracePeriod must be non-negative");
+		final long t = System.currentTimeMillis();
+		final long limit = t - timeUnit.toMillis(gracePeriod);
+		final Set<String> marked = new HashSet<String>();
+		final AtomicLong entries = new AtomicLong();
+		final AtomicLong bytes = new AtomicLong();
+		try {
+			if (refs.getDirectory().isDirectory()) {
+				Files.walkFileTree(refs.getDirectory().toPath(), new SimpleFileVisitor<Path>() {
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+						if (attrs.isRegularFile() && !isTempFile(file)) {
+							try {
+								marked.add(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+							} catch (NoSuchFileException e) {
+								// removed meanwhile
+							}
+						}
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			}
+			if (blobs.getDirectory().isDirectory()) {
+				final Path root = blobs.getDirectory().toPath();
+				Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+						String blob = blobs.getLayout().keyOf(FileLayout.relativePath(root, file));
+						boolean garbage = null != blob && blob.matches(BLOB_PATTERN) && !marked.contains(blob);
+						if (attrs.isRegularFile() && (garbage || isTempFile(file)) && attrs.lastModifiedTime().toMillis() <= limit) {
+							sweep(file.toFile(), limit, garbage, entries, bytes);
+						}
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			}
+		} catch (IOException e) {
+			L.error(String.format("Failed to collect garbage in cache directory: %s", directory.getAbsolutePath()), e);
+		}
+		PurgeResult result = new PurgeResult(entries.get(), bytes.get());
+		L.info("Collected {} unreferenced blobs ({} bytes) of {} references in {} ms from {}", result.getEntries(), result.getBytes(), marked.size(), System.currentTimeMillis() - t, directory.getAbsolutePath());
+		return result;
+	}
+
+	@Override
+	public boolean contains(@Nonnull String key) {
+		return refs.contains(key);
+	}
+
+	/**
+	 * Converts the bytes of a blob to content.
+	 *
+	 * @param bytes Bytes of the content
+	 * @return The content
+	 */
+	@Nonnull
+	protected abstract T decode(@Nonnull byte[] bytes);
+
+	/**
+	 * Converts the content to the bytes of a blob.
+	 *
+	 * @param content The content
+	 * @return Bytes of the content
+	 */
+	@Nonnull
+	protected abstract byte[] encode(@Nonnull T content);
+
+	@CheckForNull
+	@Override
+	public T fetch(@Nonnull String key) {
+		CacheEntry<T> entry = fetchEntry(key);
+		return null == entry ? null : entry.getContent();
+	}
+
+	/**
+	 * Reads the reference of the key, then its blob.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content and its timestamp or <code>null</code> if the key
+	 * doesn't exist in the cache
+	 */
+	@CheckForNull
+	@Override
+	public CacheEntry<T> fetchEntry(@Nonnull String key) {
+		long start = System.nanoTime();
+		CacheEntry<String> ref = refs.fetchEntry(key);
+		byte[] bytes = null == ref || !ref.getContent().matches(BLOB_PATTERN) ? null : blobs.fetch(ref.getContent());
+		if (null == bytes) {
+			getMetrics().recordMiss(start);
+			return null;
+		}
+		getMetrics().recordHit(start, bytes.length);
+		return new CacheEntry<T>(decode(bytes), ref.getTimestamp());
+	}
+
+	/**
+	 * @return The cache directory, which contains the <code>refs</code> and
+	 * <code>blobs</code> subdirectories
+	 */
+	@Nonnull
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return Number of stores which found their content already stored, so
+	 * they only wrote a reference
+	 */
+	public long getDuplicateStores() {
+		return duplicateStores.get();
+	}
+
+	/**
+	 * Removes the expired references, then collects garbage.
+	 *
+	 * @return Number of references and blobs, and bytes reclaimed
+	 * @see #collectGarbage()
+	 */
+	@Nonnull
+	@Override
+	public PurgeResult purgeExpired() {
+		PurgeResult r = refs.purgeExpired();
+		PurgeResult g = collectGarbage();
+		return new PurgeResult(r.getEntries() + g.getEntries(), r.getBytes() + g.getBytes());
+	}
+
+	/**
+	 * Removes the reference of the key. Its blob is deleted by the next
+	 * garbage collection if no other key references it.
+	 *
+	 * @param key Key to be removed from cache
+	 */
+	@Override
+	public void remove(@Nonnull String key) {
+		long start = System.nanoTime();
+		if (refs.contains(key)) {
+			refs.remove(key);
+			getMetrics().recordRemoval(start);
+		}
+	}
+
+	/**
+	 * Writes the blob of the content if it's not stored yet, otherwise
+	 * refreshes its modification time, then writes the reference.
+	 *
+	 * @param key     Key to identify the content
+	 * @param content Content to be stored
+	 * @return <code>true</code> if the storing succeded, <code>false</code> if
+	 * it failed
+	 */
+	@Override
+	public boolean store(@Nonnull String key, @Nonnull T content) {
+		Check.argument(key.matches(FileCache.VALID_KEY_PATTERN), "key must match FileCache.VALID_KEY_PATTERN");
+		Check.notNull(content, "content must not be null");
+		long start = System.nanoTime();
+		byte[] bytes = encode(content);
+		String blob = blobOf(bytes);
+		long written = blob.length();
+		sweepLock.readLock().lock();
+		try {
+			File file = new File(blobs.getDirectory(), blobs.getLayout().pathOf(blob));
+			if (file.setLastModified(System.currentTimeMillis())) {
+				duplicateStores.incrementAndGet();
+				L.debug("'{}' has the same content as blob {}", key, blob);
+			} else if (blobs.store(blob, bytes)) {
+				written += bytes.length;
+			} else {
+				return false;
+			}
+		} finally {
+			sweepLock.readLock().unlock();
+		}
+		if (!refs.store(key, blob)) {
+			return false;
+		}
+		getMetrics().recordStore(start, written);
+		return true;
+	}
+
+	/**
+	 * Deletes the blob unless a store has touched it since it was found
+	 * unreferenced.
+	 */
+	private void sweep(@Nonnull File file, long limit, boolean blob, @Nonnull AtomicLong entries, @Nonnull AtomicLong bytes) {
+		sweepLock.writeLock().lock();
+		try {
+			long size = file.length();
+			if (file.lastModified() <= limit && file.delete()) {
+				if (blob) {
+					entries.incrementAndGet();
+				}
+				bytes.addAndGet(size);
+				L.trace("Deleted unreferenced file: {}", file.getAbsolutePath());
+			}
+		} finally {
+			sweepLock.writeLock().unlock();
+		}
+	}
+
+	@CheckForNull
+	@Override
+	public Date timestampOf(@Nonnull String key) {
+		return refs.timestampOf(key);
+	}
+}
@@ -0,0 +1,69 @@
+package hu.juzraai.toolbox.cache;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ContentAddressedFileCache} implementation which stores {@link
+ * String} objects, encoded in UTF-8.
+ *
+ * @author Zsolt Jurányi
+ * @see ContentAddressedFileCache
+ * @since 26.10
+ */
+public class ContentAddressedFileCacheForStrings extends ContentAddressedFileCache<String> {
+
+	/**
+	 * Creates a new instance. Elements of the cache will never expire.
+	 *
+	 * @param directory The cache directory where references and blobs will be
+	 *                  stored
+	 */
+	public ContentAddressedFileCacheForStrings(@Nonnull File directory) {
+		super(directory);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory  The cache directory where references and blobs will
+	 *                   be stored
+	 * @param expiration Expiration in milliseconds. Elements in cache will be
+	 *                   handled as expired if this amount of time have elapsed
+	 *                   since their timestamp. If it's <code>null</code>,
+	 *                   cached elements will never expire.
+	 */
+	public ContentAddressedFileCacheForStrings(@Nonnull File directory, Long expiration) {
+		super(directory, expiration);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory  The cache directory where references and blobs will
+	 *                   be stored
+	 * @param expiration Expiration in the time unit of your choice. Elements in
+	 *                   cache will be handled as expired if this amount of time
+	 *                   have elapsed since their timestamp.
+	 * @param timeUnit   {@link TimeUnit} object representing the time unit you
+	 *                   specified <code>duration</code> in. It's used to
+	 *                   convert <code>duration</code> to milliseconds.
+	 */
+	public ContentAddressedFileCacheForStrings(@Nonnull File directory, long expiration, @Nonnull TimeUnit timeUnit) {
+		super(directory, expiration, timeUnit);
+	}
+
+	@Nonnull
+	@Override
+	protected String decode(@Nonnull byte[] bytes) {
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Nonnull
+	@Override
+	protected byte[] encode(@Nonnull String content) {
+		return content.getBytes(StandardCharsets.UTF_8);
+	}
+}
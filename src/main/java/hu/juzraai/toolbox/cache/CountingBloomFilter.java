@@ -0,0 +1,244 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.test.Check;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counting Bloom filter of the keys of a {@link FileCache}, which answers
+ * most lookups of keys that were never cached without touching the disk. It
+ * never reports a stored key as missing, but may report a missing key as
+ * possibly stored, with the false positive rate it was sized for.
+ * <p>
+ * Every slot is a 4-bit counter instead of a bit, so keys can be removed as
+ * well. Counters are updated lock-free, and saturated counters (at 15) are
+ * never decremented, so they can only cause false positives. Overwriting a
+ * key adds it again, which also only increases the false positive rate, so
+ * the filter should be rebuilt from time to time if keys are overwritten
+ * often. Memory usage is half a byte per slot, about 4.8 bytes per key at
+ * 1% false positive rate.
+ * <p>
+ * The filter can be saved next to the cache directory at shutdown and loaded
+ * at the next start, but it must be rebuilt if the cache directory was
+ * modified meanwhile, e.g. after a crash.
+ *
+ * @author Zsolt Jurányi
+ * @see FileCache#buildFilter(long, double)
+ * @see FileCache#setFilter(CountingBloomFilter)
+ * @since 26.10
+ */
+public final class CountingBloomFilter {
+
+	private static final int MAGIC = 0x43424631; // CBF1
+	private static final int COUNTERS_PER_WORD = 16;
+	private static final long COUNTER_MASK = 0xF;
+
+	private final long slots;
+	private final int hashes;
+	private final AtomicLongArray counters;
+	private volatile boolean complete;
+
+	/**
+	 * Creates an empty filter sized for the given number of keys and false
+	 * positive rate. It must be filled with the keys of the cache before it's
+	 * used, see {@link FileCache#buildFilter(long, double)}.
+	 *
+	 * @param expectedKeys      Expected number of keys in the cache
+	 * @param falsePositiveRate Desired probability of reporting a missing key
+	 *                          as possibly stored, between 0 and 1 (exclusive)
+	 */
+	public CountingBloomFilter(long expectedKeys, double falsePositiveRate) {
+		Check.argument(0 < expectedKeys, "expectedKeys must be positive");
+		Check.argument(0 < falsePositiveRate && falsePositiveRate < 1, "falsePositiveRate must be between 0 and 1");
+		double ln2 = Math.log(2);
+		long m = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (ln2 * ln2));
+		Check.argument(m <= (long) Integer.MAX_VALUE * COUNTERS_PER_WORD, "filter would be too big");
+		this.slots = Math.max(COUNTERS_PER_WORD, m);
+		this.hashes = Math.max(1, (int) Math.round((double) slots / expectedKeys * ln2));
+		this.counters = new AtomicLongArray((int) ((slots + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD));
+	}
+
+	private CountingBloomFilter(long slots, int hashes, @Nonnull AtomicLongArray counters) {
+		this.slots = slots;
+		this.hashes = hashes;
+		this.counters = counters;
+		this.complete = true;
+	}
+
+	/**
+	 * Loads a filter saved by {@link #save(File)}. The loaded filter is
+	 * complete.
+	 *
+	 * @param file The file to be read
+	 * @return The loaded filter
+	 * @throws IOException If the file could not be read or it's not a saved
+	 *                     filter
+	 */
+	@Nonnull
+	public static CountingBloomFilter load(@Nonnull File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (MAGIC != in.readInt()) {
+				throw new IOException("Not a counting Bloom filter: " + file.getAbsolutePath());
+			}
+			long slots = in.readLong();
+			int hashes = in.readInt();
+			int words = in.readInt();
+			if (slots <= 0 || hashes <= 0 || words != (slots + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD) {
+				throw new IOException("Corrupt counting Bloom filter: " + file.getAbsolutePath());
+			}
+			AtomicLongArray counters = new AtomicLongArray(words);
+			for (int i = 0; i < words; i++) {
+				counters.set(i, in.readLong());
+			}
+			return new CountingBloomFilter(slots, hashes, counters);
+		}
+	}
+
+	/**
+	 * Adds the key to the filter.
+	 *
+	 * @param key Key to be added
+	 */
+	public void add(@Nonnull String key) {
+		long h1 = Hashes.hash(key);
+		long h2 = Hashes.mix(h1) | 1;
+		for (int i = 0; i < hashes; i++) {
+			update(slot(h1, h2, i), 1);
+		}
+	}
+
+	private long counter(long slot) {
+		int shift = (int) (slot % COUNTERS_PER_WORD) * 4;
+		return (counters.get((int) (slot / COUNTERS_PER_WORD)) >>> shift) & COUNTER_MASK;
+	}
+
+	/**
+	 * @return Number of hash functions, the number of counters updated for
+	 * every key
+	 */
+	public int getHashes() {
+		return hashes;
+	}
+
+	/**
+	 * @return Number of counters
+	 */
+	public long getSlots() {
+		return slots;
+	}
+
+	/**
+	 * @return <code>true</code> if the filter contains every key of the cache,
+	 * so its negative answers can be trusted
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @param key Key to be checked
+	 * @return <code>false</code> if the key was definitely not added,
+	 * <code>true</code> if it may have been added
+	 */
+	public boolean mightContain(@Nonnull String key) {
+		long h1 = Hashes.hash(key);
+		long h2 = Hashes.mix(h1) | 1;
+		for (int i = 0; i < hashes; i++) {
+			if (0 == counter(slot(h1, h2, i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the key from the filter. It must only be called for keys which
+	 * were added, otherwise other keys may be reported missing. Removals are
+	 * ignored until the filter is complete, because the key may not have
+	 * been added yet by the directory scan.
+	 *
+	 * @param key Key to be removed
+	 */
+	public void remove(@Nonnull String key) {
+		if (!complete) {
+			return;
+		}
+		long h1 = Hashes.hash(key);
+		long h2 = Hashes.mix(h1) | 1;
+		for (int i = 0; i < hashes; i++) {
+			update(slot(h1, h2, i), -1);
+		}
+	}
+
+	/**
+	 * Saves the filter into the given file, atomically replacing it. The
+	 * filter can be used meanwhile, but the saved state is only consistent
+	 * if the cache is not modified during the save.
+	 *
+	 * @param file The file to be written
+	 * @throws IOException If the file could not be written
+	 */
+	public void save(@Nonnull File file) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeLong(slots);
+			out.writeInt(hashes);
+			out.writeInt(counters.length());
+			for (int i = 0; i < counters.length(); i++) {
+				out.writeLong(counters.get(i));
+			}
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	void setComplete() {
+		complete = true;
+	}
+
+	/**
+	 * Derives the i-th slot from two hashes (Kirsch-Mitzenmacher).
+	 */
+	private long slot(long h1, long h2, int i) {
+		return ((h1 + i * h2) & Long.MAX_VALUE) % slots;
+	}
+
+	@Override
+	public String toString() {
+		return "CountingBloomFilter{" +
+				"slots=" + slots +
+				", hashes=" + hashes +
+				", complete=" + complete +
+				'}';
+	}
+
+	/**
+	 * Adds <code>delta</code> to the counter of the slot, unless the counter
+	 * is saturated or it would go below zero.
+	 */
+	private void update(long slot, int delta) {
+		int word = (int) (slot / COUNTERS_PER_WORD);
+		int shift = (int) (slot % COUNTERS_PER_WORD) * 4;
+		while (true) {
+			long w = counters.get(word);
+			long c = (w >>> shift) & COUNTER_MASK;
+			if (COUNTER_MASK == c || (delta < 0 && 0 == c)) {
+				return;
+			}
+			if (counters.compareAndSet(word, w, w + ((long) delta << shift))) {
+				return;
+			}
+		}
+	}
+}
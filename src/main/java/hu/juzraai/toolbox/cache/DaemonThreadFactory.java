@@ -0,0 +1,35 @@
+package hu.juzraai.toolbox.cache;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ThreadFactory} which creates named daemon threads, so background
+ * tasks of caches won't prevent the JVM from exiting.
+ *
+ * @author Zsolt Jurányi
+ * @since 26.10
+ */
+class DaemonThreadFactory implements ThreadFactory {
+
+	private final String prefix;
+	private final AtomicInteger counter = new AtomicInteger();
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param prefix Thread names will start with this string
+	 */
+	DaemonThreadFactory(@Nonnull String prefix) {
+		this.prefix = prefix;
+	}
+
+	@Override
+	@Nonnull
+	public Thread newThread(@Nonnull Runnable r) {
+		Thread t = new Thread(r, prefix + "-" + counter.incrementAndGet());
+		t.setDaemon(true);
+		return t;
+	}
+}
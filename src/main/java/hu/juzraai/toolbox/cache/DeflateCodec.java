@@ -0,0 +1,194 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.test.Check;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * {@link Codec} which produces ZLIB (deflate) streams, optionally using a
+ * preset dictionary. A dictionary made of the common parts of similar
+ * contents (e.g. HTML pages of the same site) improves the ratio of small
+ * entries significantly. {@link Deflater} and {@link Inflater} instances are
+ * reused per thread.
+ *
+ * @author Zsolt Jurányi
+ * @see Codec
+ * @since 26.10
+ */
+public class DeflateCodec implements Codec {
+
+	/**
+	 * ID of deflate codecs without dictionary.
+	 */
+	public static final byte ID = 1;
+
+	/**
+	 * ID of deflate codecs using a preset dictionary. Each entry also carries
+	 * the Adler-32 checksum of its dictionary in the ZLIB header, which is
+	 * checked before inflating, so an entry is never decoded with another
+	 * dictionary.
+	 */
+	public static final byte DICTIONARY_ID = 3;
+
+	private static final int SCRATCH_SIZE = 64 * 1024;
+	private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[SCRATCH_SIZE];
+		}
+	};
+
+	private final int level;
+	private final byte[] dictionary;
+	private final int dictionaryChecksum;
+	private final ThreadLocal<Deflater> deflater;
+	private final ThreadLocal<Inflater> inflater = new ThreadLocal<Inflater>() {
+		@Override
+		protected Inflater initialValue() {
+			return new Inflater();
+		}
+	};
+
+	/**
+	 * Creates a new instance with default compression level and without
+	 * dictionary.
+	 */
+	public DeflateCodec() {
+		this(Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Creates a new instance without dictionary.
+	 *
+	 * @param level Compression level, 0-9 or {@link Deflater#DEFAULT_COMPRESSION}
+	 */
+	public DeflateCodec(int level) {
+		this(level, null);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param level      Compression level, 0-9 or {@link
+	 *                   Deflater#DEFAULT_COMPRESSION}
+	 * @param dictionary Preset dictionary or <code>null</code>. Entries
+	 *                   encoded with a dictionary can only be decoded with
+	 *                   the same dictionary.
+	 */
+	public DeflateCodec(final int level, @CheckForNull byte[] dictionary) {
+		this.level = checkLevel(level);
+		this.dictionary = null == dictionary ? null : dictionary.clone();
+		this.dictionaryChecksum = null == dictionary ? 0 : checksumOf(dictionary);
+		this.deflater = new ThreadLocal<Deflater>() {
+			@Override
+			protected Deflater initialValue() {
+				return new Deflater(level);
+			}
+		};
+	}
+
+	static int checkLevel(int level) {
+		Check.argument(Deflater.DEFAULT_COMPRESSION == level
+				|| (Deflater.NO_COMPRESSION <= level && level <= Deflater.BEST_COMPRESSION), "invalid compression level");
+		return level;
+	}
+
+	/**
+	 * @return Adler-32 checksum of the dictionary, as stored in ZLIB headers
+	 */
+	private static int checksumOf(@Nonnull byte[] dictionary) {
+		Adler32 adler = new Adler32();
+		adler.update(dictionary, 0, dictionary.length);
+		return (int) adler.getValue();
+	}
+
+	@Nonnull
+	@Override
+	public byte[] decode(@Nonnull byte[] data, int offset, int length, int decodedLength) throws IOException {
+		return inflate(inflater.get(), dictionary, dictionaryChecksum, data, offset, length, decodedLength);
+	}
+
+	/**
+	 * Compresses the data with the given deflater and writes the result into
+	 * the stream. The deflater is reset before use.
+	 */
+	static void deflate(@Nonnull Deflater deflater, @CheckForNull byte[] dictionary, @Nonnull byte[] data, int offset, int length, @Nonnull OutputStream out) throws IOException {
+		deflater.reset();
+		if (null != dictionary) {
+			deflater.setDictionary(dictionary);
+		}
+		deflater.setInput(data, offset, length);
+		deflater.finish();
+		byte[] scratch = SCRATCH.get();
+		while (!deflater.finished()) {
+			int n = deflater.deflate(scratch);
+			out.write(scratch, 0, n);
+		}
+	}
+
+	@Override
+	public void encode(@Nonnull byte[] data, int offset, int length, @Nonnull OutputStream out) throws IOException {
+		deflate(deflater.get(), dictionary, data, offset, length, out);
+	}
+
+	@Override
+	public byte getId() {
+		return null == dictionary ? ID : DICTIONARY_ID;
+	}
+
+	/**
+	 * @return Compression level used when encoding
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Decompresses the data with the given inflater. The inflater is reset
+	 * before use. If the stream requires a preset dictionary, the checksum of
+	 * the given dictionary must match the one in the stream.
+	 *
+	 * @return The decompressed data, its length is exact
+	 */
+	@Nonnull
+	static byte[] inflate(@Nonnull Inflater inflater, @CheckForNull byte[] dictionary, int dictionaryChecksum, @Nonnull byte[] data, int offset, int length, int expectedLength) throws IOException {
+		inflater.reset();
+		inflater.setInput(data, offset, length);
+		byte[] out = new byte[Math.max(expectedLength, 16)];
+		int n = 0;
+		try {
+			while (!inflater.finished()) {
+				if (n == out.length) {
+					out = Arrays.copyOf(out, 2 * out.length);
+				}
+				int r = inflater.inflate(out, n, out.length - n);
+				n += r;
+				if (0 == r && !inflater.finished()) {
+					if (inflater.needsDictionary()) {
+						if (null == dictionary) {
+							throw new IOException("Preset dictionary required");
+						}
+						if (inflater.getAdler() != dictionaryChecksum) {
+							throw new IOException(String.format("Entry was encoded with another dictionary (checksum: %08x, expected: %08x)",
+									inflater.getAdler(), dictionaryChecksum));
+						}
+						inflater.setDictionary(dictionary);
+					} else if (inflater.needsInput()) {
+						throw new IOException("Unexpected end of compressed data");
+					}
+				}
+			}
+		} catch (DataFormatException | IllegalArgumentException e) {
+			throw new IOException("Corrupt compressed data or wrong dictionary", e);
+		}
+		return n == out.length ? out : Arrays.copyOf(out, n);
+	}
+}
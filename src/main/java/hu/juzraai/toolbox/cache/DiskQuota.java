@@ -0,0 +1,95 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.test.Check;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Limits of the disk usage of a {@link FileCache}: maximum total size of
+ * files and maximum number of entries, and the policy which chooses the
+ * entries to be evicted when a limit is exceeded.
+ *
+ * @author Zsolt Jurányi
+ * @see FileCache#setQuota(DiskQuota)
+ * @since 26.10
+ */
+public final class DiskQuota {
+
+	private final long maxBytes;
+	private final long maxEntries;
+	private final Eviction eviction;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param maxBytes   Maximum total size of files in bytes, or 0 for no
+	 *                   limit
+	 * @param maxEntries Maximum number of entries, or 0 for no limit
+	 * @param eviction   Chooses the entries to be evicted
+	 */
+	public DiskQuota(long maxBytes, long maxEntries, @Nonnull Eviction eviction) {
+		Check.argument(0 <= maxBytes, "maxBytes must be non-negative");
+		Check.argument(0 <= maxEntries, "maxEntries must be non-negative");
+		this.maxBytes = maxBytes;
+		this.maxEntries = maxEntries;
+		this.eviction = Check.notNull(eviction, "eviction must not be null");
+	}
+
+	/**
+	 * @return The policy which chooses the entries to be evicted
+	 */
+	@Nonnull
+	public Eviction getEviction() {
+		return eviction;
+	}
+
+	/**
+	 * @return Maximum total size of files in bytes, or 0 if there's no limit
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * @return Maximum number of entries, or 0 if there's no limit
+	 */
+	public long getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * @param bytes   Total size of files
+	 * @param entries Number of entries
+	 * @return <code>true</code> if any of the limits is exceeded
+	 */
+	public boolean isExceededBy(long bytes, long entries) {
+		return (0 < maxBytes && maxBytes < bytes) || (0 < maxEntries && maxEntries < entries);
+	}
+
+	@Override
+	public String toString() {
+		return "DiskQuota{" +
+				"maxBytes=" + maxBytes +
+				", maxEntries=" + maxEntries +
+				", eviction=" + eviction +
+				'}';
+	}
+
+	/**
+	 * Eviction policies of {@link DiskQuota}.
+	 */
+	public enum Eviction {
+
+		/**
+		 * The least recently stored or fetched entries are evicted first.
+		 */
+		LRU,
+
+		/**
+		 * Entries with the lowest number of reads per byte are evicted first,
+		 * so big, rarely read entries go before small, popular ones. Read
+		 * counts are halved after every eviction, so past popularity fades.
+		 */
+		SIZE_WEIGHTED_FREQUENCY
+	}
+}
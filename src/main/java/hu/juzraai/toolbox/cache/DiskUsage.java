@@ -0,0 +1,196 @@
+package hu.juzraai.toolbox.cache;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Incrementally tracked disk usage of a {@link FileCache} with a {@link
+ * DiskQuota}: size, last access and read count of every entry, updated by
+ * the cache operations, so limits can be checked without walking the
+ * directory tree. It costs about a hundred bytes of memory per entry.
+ *
+ * @author Zsolt Jurányi
+ * @see FileCache#setQuota(DiskQuota)
+ * @since 26.10
+ */
+final class DiskUsage {
+
+	/**
+	 * Eviction removes entries until usage goes below this fraction of the
+	 * limits, so it doesn't run again after every store.
+	 */
+	static final double LOW_WATERMARK = 0.9;
+
+	private final DiskQuota quota;
+	private final ConcurrentMap<String, Usage> usages = new ConcurrentHashMap<String, Usage>();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicBoolean evicting = new AtomicBoolean();
+
+	DiskUsage(@Nonnull DiskQuota quota) {
+		this.quota = quota;
+	}
+
+	/**
+	 * Updates the last access and read count of the entry, if it's tracked.
+	 */
+	void accessed(@Nonnull String key) {
+		Usage u = usages.get(key);
+		if (null != u) {
+			u.lastAccess = System.currentTimeMillis();
+			u.reads++; // lost updates are tolerable
+		}
+	}
+
+	/**
+	 * Allows the next eviction to start.
+	 */
+	void finishEviction() {
+		evicting.set(false);
+	}
+
+	/**
+	 * Adds an entry found by a directory scan, unless it's already tracked.
+	 */
+	void found(@Nonnull String key, long size, long lastModified) {
+		Usage u = new Usage(size, lastModified);
+		if (null == usages.putIfAbsent(key, u)) {
+			bytes.addAndGet(size);
+		}
+	}
+
+	long getBytes() {
+		return bytes.get();
+	}
+
+	long getEntries() {
+		return usages.size();
+	}
+
+	@Nonnull
+	DiskQuota getQuota() {
+		return quota;
+	}
+
+	boolean isExceeded() {
+		return quota.isExceededBy(bytes.get(), usages.size());
+	}
+
+	/**
+	 * Removes the entry from the tracked ones.
+	 */
+	void removed(@Nonnull String key) {
+		Usage u = usages.remove(key);
+		if (null != u) {
+			bytes.addAndGet(-u.size);
+		}
+	}
+
+	/**
+	 * Tracks the new size of the entry.
+	 */
+	void stored(@Nonnull String key, long size) {
+		Usage old = usages.put(key, new Usage(size, System.currentTimeMillis()));
+		bytes.addAndGet(null == old ? size : size - old.size);
+	}
+
+	/**
+	 * @return <code>true</code> if the caller should start an eviction,
+	 * because the quota is exceeded and no eviction is running
+	 */
+	boolean tryStartEviction() {
+		return isExceeded() && evicting.compareAndSet(false, true);
+	}
+
+	/**
+	 * Chooses the entries to be evicted to get below the low watermark of the
+	 * limits, in eviction order. Read counts are halved for the next round.
+	 *
+	 * @return Keys and sizes of the chosen entries
+	 */
+	@Nonnull
+	Map<String, Long> victims() {
+		List<Candidate> candidates = new ArrayList<Candidate>(usages.size());
+		for (Map.Entry<String, Usage> e : usages.entrySet()) {
+			Usage u = e.getValue();
+			candidates.add(new Candidate(e.getKey(), u.size, u.lastAccess, u.reads));
+			u.reads /= 2;
+		}
+		Collections.sort(candidates, DiskQuota.Eviction.LRU == quota.getEviction() ? Candidate.LRU : Candidate.SIZE_WEIGHTED_FREQUENCY);
+		long targetBytes = (long) (quota.getMaxBytes() * LOW_WATERMARK);
+		long targetEntries = (long) (quota.getMaxEntries() * LOW_WATERMARK);
+		long b = bytes.get();
+		long n = candidates.size();
+		Map<String, Long> victims = new LinkedHashMap<String, Long>();
+		for (Candidate c : candidates) {
+			if ((0 == quota.getMaxBytes() || b <= targetBytes) && (0 == quota.getMaxEntries() || n <= targetEntries)) {
+				break;
+			}
+			victims.put(c.key, c.size);
+			b -= c.size;
+			n--;
+		}
+		return victims;
+	}
+
+	/**
+	 * Immutable copy of a {@link Usage}, so sorting is not affected by
+	 * concurrent updates.
+	 */
+	private static final class Candidate {
+
+		private static final Comparator<Candidate> LRU = new Comparator<Candidate>() {
+			@Override
+			public int compare(Candidate a, Candidate b) {
+				return a.lastAccess < b.lastAccess ? -1 : (a.lastAccess == b.lastAccess ? 0 : 1);
+			}
+		};
+
+		private static final Comparator<Candidate> SIZE_WEIGHTED_FREQUENCY = new Comparator<Candidate>() {
+			@Override
+			public int compare(Candidate a, Candidate b) {
+				int c = Double.compare(a.score(), b.score());
+				return 0 != c ? c : LRU.compare(a, b);
+			}
+		};
+
+		private final String key;
+		private final long size;
+		private final long lastAccess;
+		private final int reads;
+
+		private Candidate(String key, long size, long lastAccess, int reads) {
+			this.key = key;
+			this.size = size;
+			this.lastAccess = lastAccess;
+			this.reads = reads;
+		}
+
+		private double score() {
+			return (reads + 1.0) / Math.max(1, size);
+		}
+	}
+
+	/**
+	 * Tracked state of an entry.
+	 */
+	private static final class Usage {
+
+		private final long size;
+		private volatile long lastAccess;
+		private volatile int reads;
+
+		private Usage(long size, long lastAccess) {
+			this.size = size;
+			this.lastAccess = lastAccess;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Check;
+import org.slf4j.Logger;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls {@link FileCache#purgeExpired(int)} periodically on a background
+ * thread, so expired files get removed even if nobody asks for them.
+ *
+ * @author Zsolt Jurányi
+ * @see FileCache#purgeExpired(int)
+ * @since 26.10
+ */
+public class ExpirationSweeper implements Closeable {
+
+	private static final Logger L = LoggerFactory.getLogger(ExpirationSweeper.class);
+
+	private final FileCache<?> cache;
+	private final int maxFilesPerSecond;
+	private final ScheduledExecutorService scheduler;
+	private volatile PurgeResult lastResult = PurgeResult.EMPTY;
+	private volatile PurgeResult totalResult = PurgeResult.EMPTY;
+
+	/**
+	 * Creates a new instance and schedules the first sweep after the given
+	 * interval.
+	 *
+	 * @param cache             The cache to be swept
+	 * @param interval          Delay between the end of a sweep and the
+	 *                          start of the next one
+	 * @param timeUnit          Time unit of <code>interval</code>
+	 * @param maxFilesPerSecond Maximum number of files examined in a second,
+	 *                          or 0 for no limit
+	 */
+	public ExpirationSweeper(@Nonnull FileCache<?> cache, long interval, @Nonnull TimeUnit timeUnit, int maxFilesPerSecond) {
+		Check.argument(0 < interval, "interval must be positive");
+		Check.argument(0 <= maxFilesPerSecond, "maxFilesPerSecond must be non-negative");
+		this.cache = Check.notNull(cache, "cache must not be null");
+		this.maxFilesPerSecond = maxFilesPerSecond;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("expiration-sweeper"));
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				sweep();
+			}
+		}, interval, interval, timeUnit);
+	}
+
+	/**
+	 * Stops the sweeper, interrupting the running sweep if there's any.
+	 */
+	@Override
+	public void close() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * @return Result of the last finished sweep
+	 */
+	@Nonnull
+	public PurgeResult getLastResult() {
+		return lastResult;
+	}
+
+	/**
+	 * @return Sum of the results of all finished sweeps
+	 */
+	@Nonnull
+	public PurgeResult getTotalResult() {
+		return totalResult;
+	}
+
+	private void sweep() {
+		try {
+			PurgeResult result = cache.purgeExpired(maxFilesPerSecond);
+			lastResult = result;
+			totalResult = totalResult.plus(result);
+		} catch (RuntimeException e) {
+			L.error(String.format("Sweep failed in %s", cache.getDirectory().getAbsolutePath()), e);
+		}
+	}
+}
@@ -6,16 +6,60 @@ import org.slf4j.Logger;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import java.io.BufferedReader;
 import java.io.File;
-import java.util.Date;
-import java.util.concurrent.TimeUnit;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Abstract {@link Cache} implementation which stores contents in files, in the
- * specified cache directory. The key is the filename. The 4 main methods are
- * all <code>synchronized</code> to avoid concurrent I/O operations. The
- * concrete file read and write operations must be implemented in child
- * classes.
+ * specified cache directory. The key is the filename by default, but it can be
+ * changed by setting a {@link FileLayout}. The 4 main methods are
+ * guarded by locks to avoid concurrent I/O operations on the same file, see
+ * {@link Locking} for the available modes. The concrete file read and write
+ * operations must be implemented in child classes.
+ * <p>
+ * Big entries can be read and written incrementally with {@link
+ * #openStream(String)}, {@link #openReader(String)} and {@link
+ * #store(String, InputStream)}, without materializing them in memory. Child
+ * classes which transform the file contents (e.g. compress them) should
+ * override {@link #openInputStream(String, File)} and {@link
+ * #openOutputStream(String, File)} accordingly.
+ * <p>
+ * Contents are written into a temporary file next to the target file, which
+ * is then atomically renamed into place, so concurrent readers and crashes
+ * never leave a half-written file behind. Leftover temporary files which
+ * weren't modified for {@link #TEMP_FILE_MAX_AGE} are removed by {@link
+ * #purgeExpired(int)}, even if the entries of the cache don't expire.
+ * <p>
+ * Operations are recorded in {@link #getMetrics()}, bytes read and written
+ * are counted as file sizes.
+ * <p>
+ * Disk usage can be limited with {@link #setQuota(DiskQuota)}, entries
+ * exceeding the quota are evicted in the background. Lookups of missing keys
+ * can be answered from memory by a {@link CountingBloomFilter} or a {@link
+ * FileIndex}.
  *
  * @param <T> Type of content which the cache handles.
  * @author Zsolt Jurányi
@@ -29,10 +73,38 @@ public abstract class FileCache<T> extends Cache<T> {
 	 * should not end with slash or backslash.
 	 */
 	public static final String VALID_KEY_PATTERN = "[A-Za-z0-9_.\\-/\\\\]*[^\\\\/]";
+
+	/**
+	 * Default number of threads used by bulk operations.
+	 */
+	public static final int DEFAULT_PARALLELISM = 4;
+	/**
+	 * Temporary files which weren't modified for this many milliseconds are
+	 * considered to be left behind by interrupted stores.
+	 */
+	public static final long TEMP_FILE_MAX_AGE = TimeUnit.HOURS.toMillis(1);
+	/**
+	 * Size of buffers used by streaming operations.
+	 */
+	protected static final int STREAM_BUFFER_SIZE = 64 * 1024;
+	/**
+	 * Temporary file names contain this character, which is not valid in
+	 * keys.
+	 */
+	private static final String TEMP_FILE_MARKER = "~";
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
 	private static final Logger L = LoggerFactory.getLogger(FileCache.class);
 
 	private final File directory;
-
+	private volatile FileLayout layout = FileLayout.FLAT;
+	private volatile Locking locking = Locking.INSTANCE;
+	private volatile StripedLocks locks = StripedLocks.exclusive();
+	private volatile int parallelism = DEFAULT_PARALLELISM;
+	private volatile DiskUsage usage;
+	private volatile FileIndex index;
+	private volatile CountingBloomFilter filter;
+	private ExecutorService executor; // guarded by this
+	private ExecutorService evictor; // guarded by this
 
 	/**
 	 * Creates a new instance. Elements of the cache will never expire.
@@ -74,15 +146,167 @@ public abstract class FileCache<T> extends Cache<T> {
 		this.directory = directory;
 	}
 
+	static boolean isTempFile(@Nonnull String name) {
+		return name.contains(TEMP_FILE_MARKER) && name.endsWith(TEMP_FILE_SUFFIX);
+	}
+
+	/**
+	 * Reads the basic attributes of the file in one I/O operation, which tells
+	 * whether the file exists and when it was modified. The caller should hold
+	 * a lock of the key. Keys known to be missing by the filter or the index
+	 * are not looked up on the disk.
+	 *
+	 * @return Attributes of the file or <code>null</code> if it doesn't exist
+	 * or the attributes cannot be read
+	 */
+	@CheckForNull
+	private BasicFileAttributes attributesOf(@Nonnull String key, @Nonnull File file) {
+		if (isKnownMissing(key)) {
+			return null;
+		}
+		try {
+			return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			L.error(String.format("Failed to read attributes of '%s': %s", key, file.getAbsolutePath()), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a counting Bloom filter, attaches it to this cache and fills it
+	 * with the keys found in the cache directory. Keys stored meanwhile are
+	 * added too. The filter is marked complete only if the scan succeeded.
+	 *
+	 * @param expectedKeys      Expected number of keys in the cache
+	 * @param falsePositiveRate Desired probability of reporting a missing key
+	 *                          as possibly stored
+	 * @return The attached filter
+	 * @see #setFilter(CountingBloomFilter)
+	 */
+	@Nonnull
+	public CountingBloomFilter buildFilter(long expectedKeys, double falsePositiveRate) {
+		long t = System.currentTimeMillis();
+		final CountingBloomFilter f = new CountingBloomFilter(expectedKeys, falsePositiveRate);
+		final AtomicLong keys = new AtomicLong();
+		filter = f;
+		if (scan(new ScanVisitor() {
+			@Override
+			public void found(@Nonnull String key, @Nonnull BasicFileAttributes attrs) {
+				f.add(key);
+				keys.incrementAndGet();
+			}
+		})) {
+			f.setComplete();
+		}
+		L.info("Built {} from {} keys in {} ms: {}", f, keys.get(), System.currentTimeMillis() - t, directory.getAbsolutePath());
+		return f;
+	}
+
 	/**
-	 * Checks if the specified file exists in the cache directory.
+	 * Checks if the specified file exists in the cache directory. If a filter
+	 * or an index is attached, it's answered from memory when possible.
 	 *
 	 * @param key Filename inside cache directory to be checked
 	 * @return <code>true</code> if the key exists, <code>false</code> otherwise
 	 */
 	@Override
-	public synchronized boolean contains(@Nonnull String key) {
-		return key2File(key).exists(); // checks performed inside
+	public boolean contains(@Nonnull String key) {
+		File file = key2File(key); // checks performed inside
+		if (isKnownMissing(key)) {
+			return false;
+		}
+		FileIndex i = index;
+		if (null != i && i.contains(key)) {
+			return true;
+		}
+		Lock lock = locks.readLock(key);
+		lock.lock();
+		try {
+			return file.exists();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Checks if the specified file exists in the cache directory and it's not
+	 * expired, using a single attribute read.
+	 *
+	 * @param key Filename inside cache directory to be checked
+	 * @return <code>true</code> if the key exists and not expired,
+	 * <code>false</code> otherwise
+	 */
+	@Override
+	public boolean containsAndNotExpired(@Nonnull String key) {
+		File file = key2File(key); // checks performed inside
+		Lock lock = locks.readLock(key);
+		lock.lock();
+		try {
+			BasicFileAttributes attrs = attributesOf(key, file);
+			return null != attrs && !isExpired(attrs.lastModifiedTime().toMillis());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes a temporary file which could not be published, logging if it
+	 * failed.
+	 *
+	 * @param temp Temporary file created by {@link #tempFileOf(File)}
+	 */
+	protected void deleteTempFile(@Nonnull File temp) {
+		if (!temp.delete() && temp.exists()) {
+			L.error("Could not remove temporary file: {}", temp.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Evicts entries until the disk usage goes below 90% of the limits of the
+	 * quota, in the order determined by its eviction policy. It's called
+	 * automatically in the background when a store exceeds the quota.
+	 *
+	 * @return Number of entries and bytes evicted
+	 * @see #setQuota(DiskQuota)
+	 */
+	@Nonnull
+	public PurgeResult evict() {
+		DiskUsage u = usage;
+		return null == u ? PurgeResult.EMPTY : evict(u);
+	}
+
+	@Nonnull
+	private PurgeResult evict(@Nonnull DiskUsage u) {
+		long t = System.currentTimeMillis();
+		long entries = 0;
+		long bytes = 0;
+		for (Map.Entry<String, Long> victim : u.victims().entrySet()) {
+			String key = victim.getKey(); // tracked keys are valid
+			if (remove(key, new File(directory, layout.pathOf(key)))) {
+				entries++;
+				bytes += victim.getValue();
+			}
+		}
+		L.info("Evicted {} entries ({} bytes) in {} ms from {}", entries, bytes, System.currentTimeMillis() - t, directory.getAbsolutePath());
+		return new PurgeResult(entries, bytes);
+	}
+
+	@Nonnull
+	private synchronized ExecutorService evictor() {
+		if (null == evictor) {
+			evictor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("file-cache-eviction"));
+		}
+		return evictor;
+	}
+
+	@Nonnull
+	private synchronized ExecutorService executor() {
+		if (null == executor) {
+			executor = Executors.newFixedThreadPool(parallelism, new DaemonThreadFactory("file-cache-bulk"));
+		}
+		return executor;
 	}
 
 	/**
@@ -94,9 +318,113 @@ public abstract class FileCache<T> extends Cache<T> {
 	 */
 	@Override
 	@CheckForNull
-	public synchronized T fetch(@Nonnull String key) {
+	public T fetch(@Nonnull String key) {
+		return fetch(key, key2File(key)); // checks performed inside
+	}
+
+	@CheckForNull
+	private T fetch(@Nonnull String key, @Nonnull File file) {
+		long start = System.nanoTime();
+		Lock lock = locks.readLock(key);
+		lock.lock();
+		try {
+			BasicFileAttributes attrs = attributesOf(key, file);
+			T content = null == attrs ? null : load(key, file);
+			recordFetch(key, start, attrs, content);
+			return content;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Reads the specified files in parallel, using as many threads as set by
+	 * {@link #setParallelism(int)}. Every key is validated before any I/O
+	 * operation starts.
+	 *
+	 * @param keys Keys to identify the required contents
+	 * @return Map of the keys found in the cache and their contents, in the
+	 * order of the given keys
+	 */
+	@Override
+	@Nonnull
+	public Map<String, T> fetchAll(@Nonnull Collection<String> keys) {
+		Map<String, File> files = keys2Files(keys);
+		final Map<String, T> found = new ConcurrentHashMap<String, T>();
+		parallel(files, new KeyTask() {
+			@Override
+			public boolean run(@Nonnull String key, @Nonnull File file) {
+				T content = fetch(key, file);
+				if (null != content) {
+					found.put(key, content);
+				}
+				return true;
+			}
+		});
+		Map<String, T> result = new LinkedHashMap<String, T>();
+		for (String key : files.keySet()) {
+			T content = found.get(key);
+			if (null != content) {
+				result.put(key, content);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the contents of the specified file from cache directory, together
+	 * with its last modified date. Existence and date are determined by a
+	 * single attribute read, then the file is loaded.
+	 *
+	 * @param key Filename inside cache directory to be loaded
+	 * @return The content and its timestamp or <code>null</code> if the key
+	 * doesn't exist in the cache
+	 */
+	@Override
+	@CheckForNull
+	public CacheEntry<T> fetchEntry(@Nonnull String key) {
+		File file = key2File(key); // checks performed inside
+		long start = System.nanoTime();
+		Lock lock = locks.readLock(key);
+		lock.lock();
+		try {
+			BasicFileAttributes attrs = attributesOf(key, file);
+			T content = null == attrs ? null : load(key, file);
+			recordFetch(key, start, attrs, content);
+			return null == content ? null : new CacheEntry<T>(content, new Date(attrs.lastModifiedTime().toMillis()));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Reads the contents of the specified file from cache directory only if
+	 * it's not expired. Existence and expiration are determined by a single
+	 * attribute read, then the file is loaded only if needed.
+	 *
+	 * @param key Filename inside cache directory to be loaded
+	 * @return The content or <code>null</code> if the key is expired or
+	 * doesn't exist in the cache
+	 */
+	@Override
+	@CheckForNull
+	public T fetchIfNotExpired(@Nonnull String key) {
 		File file = key2File(key); // checks performed inside
-		return file.exists() ? load(key, file) : null;
+		long start = System.nanoTime();
+		Lock lock = locks.readLock(key);
+		lock.lock();
+		try {
+			BasicFileAttributes attrs = attributesOf(key, file);
+			if (null != attrs && isExpired(attrs.lastModifiedTime().toMillis())) {
+				getMetrics().recordExpiredHit(start);
+				return null;
+			}
+			T content = null == attrs ? null : load(key, file);
+			recordFetch(key, start, attrs, content);
+			return content;
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
@@ -107,18 +435,117 @@ public abstract class FileCache<T> extends Cache<T> {
 		return directory;
 	}
 
+	/**
+	 * @return The filter attached to this cache, or <code>null</code> if
+	 * there's none
+	 */
+	@CheckForNull
+	public CountingBloomFilter getFilter() {
+		return filter;
+	}
+
+	/**
+	 * @return The index attached to this cache, or <code>null</code> if
+	 * there's none
+	 */
+	@CheckForNull
+	public FileIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return The current layout of the cache directory
+	 */
+	@Nonnull
+	public FileLayout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * @return The current locking mode
+	 */
+	@Nonnull
+	public Locking getLocking() {
+		return locking;
+	}
+
+	/**
+	 * @return Number of threads used by bulk operations
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * @return The disk quota of this cache, or <code>null</code> if there's
+	 * no quota
+	 */
+	@CheckForNull
+	public DiskQuota getQuota() {
+		DiskUsage u = usage;
+		return null == u ? null : u.getQuota();
+	}
+
+	/**
+	 * @return Total size of files in the cache directory, tracked since the
+	 * quota was set, or 0 if there's no quota
+	 */
+	public long getUsedBytes() {
+		DiskUsage u = usage;
+		return null == u ? 0 : u.getBytes();
+	}
+
+	/**
+	 * @return Number of entries in the cache directory, tracked since the
+	 * quota was set, or 0 if there's no quota
+	 */
+	public long getUsedEntries() {
+		DiskUsage u = usage;
+		return null == u ? 0 : u.getEntries();
+	}
+
+	/**
+	 * @return <code>true</code> if the complete filter or the complete index
+	 * tells that the key is missing
+	 */
+	private boolean isKnownMissing(@Nonnull String key) {
+		CountingBloomFilter f = filter;
+		if (null != f && f.isComplete() && !f.mightContain(key)) {
+			return true;
+		}
+		FileIndex i = index;
+		return null != i && i.isComplete() && !i.contains(key);
+	}
+
 	/**
 	 * Validates the given key then generates a {@link File} object from it. It
 	 * will throw an {@link IllegalArgumentException} when the key is invalid.
 	 *
 	 * @param key Key to be transformed into a {@link File}
-	 * @return A {@link File} object which points to a file having the key as
-	 * its name, inside the cache directory
+	 * @return A {@link File} object which points to a file inside the cache
+	 * directory, its path is determined by the current {@link FileLayout}
 	 */
 	@Nonnull
 	protected File key2File(@Nonnull String key) {
 		Check.argument(key.matches(VALID_KEY_PATTERN), "key must contain characters valid in a filename");
-		return new File(directory, key);
+		return new File(directory, layout.pathOf(key));
+	}
+
+	/**
+	 * Validates all keys and generates their {@link File} objects.
+	 *
+	 * @param keys Keys to be transformed
+	 * @return Map of distinct keys and their files, in the order of the given
+	 * keys
+	 * @see #key2File(String)
+	 */
+	@Nonnull
+	private Map<String, File> keys2Files(@Nonnull Collection<String> keys) {
+		Map<String, File> files = new LinkedHashMap<String, File>();
+		for (String key : keys) {
+			files.put(key, key2File(key));
+		}
+		return files;
 	}
 
 	/**
@@ -144,25 +571,387 @@ public abstract class FileCache<T> extends Cache<T> {
 		File parent = file.getParentFile();
 		if (null != parent && (!parent.exists() || !parent.isDirectory())) {
 			L.info("Creating cache directory: {}", parent.getAbsolutePath());
-			if (!parent.mkdirs()) { // TODO exception?
+			if (!parent.mkdirs() && !parent.isDirectory()) { // another thread may have created it, TODO exception?
 				L.error("Could not create cache directory: {}", parent.getAbsolutePath());
 			}
 		}
 	}
 
+	/**
+	 * Opens the file for reading. It's called by {@link #openStream(String)}
+	 * and the returned stream must provide the same bytes {@link #load(String,
+	 * File)} decodes the content from, e.g. decompressed data. The caller
+	 * ensures that the file exists when this method is called.
+	 *
+	 * @param key  The key {@link #openStream(String)} was called with, now
+	 *             can be used in logs
+	 * @param file {@link File} to be read
+	 * @return A new stream, it will be closed by the caller
+	 * @throws IOException If the file cannot be opened
+	 */
+	@Nonnull
+	protected InputStream openInputStream(@Nonnull String key, @Nonnull File file) throws IOException {
+		return new FileInputStream(file);
+	}
+
+	/**
+	 * Opens the file for writing. It's called by {@link #store(String,
+	 * InputStream)} and the returned stream must write the file in the format
+	 * {@link #save(String, File, Object)} does, e.g. compress the data.
+	 *
+	 * @param key  The key {@link #store(String, InputStream)} was called
+	 *             with, now can be used in logs
+	 * @param file {@link File} to be written
+	 * @return A new stream, it will be closed by the caller
+	 * @throws IOException If the file cannot be opened
+	 */
+	@Nonnull
+	protected OutputStream openOutputStream(@Nonnull String key, @Nonnull File file) throws IOException {
+		return new FileOutputStream(file);
+	}
+
+	/**
+	 * Opens the entry as a UTF-8 text stream. Useful for caches storing text,
+	 * see {@link #openStream(String)}.
+	 *
+	 * @param key Filename inside cache directory to be read
+	 * @return A buffered reader which must be closed by the caller, or
+	 * <code>null</code> if the key doesn't exist in the cache or the file
+	 * cannot be opened
+	 */
+	@CheckForNull
+	public Reader openReader(@Nonnull String key) {
+		InputStream in = openStream(key);
+		return null == in ? null : new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), STREAM_BUFFER_SIZE);
+	}
+
+	/**
+	 * Opens the entry for incremental reading, e.g. to parse or forward big
+	 * entries without loading them into memory. The stream provides the
+	 * decoded (e.g. decompressed) bytes of the entry. The lock of the key is
+	 * held only while the file is being opened. A concurrent store of the same
+	 * key doesn't block the reading, and as it renames a new file into place,
+	 * the open stream keeps reading the previous content.
+	 *
+	 * @param key Filename inside cache directory to be read
+	 * @return A stream which must be closed by the caller, or
+	 * <code>null</code> if the key doesn't exist in the cache or the file
+	 * cannot be opened
+	 */
+	@CheckForNull
+	public InputStream openStream(@Nonnull String key) {
+		File file = key2File(key); // checks performed inside
+		long start = System.nanoTime();
+		Lock lock = locks.readLock(key);
+		lock.lock();
+		try {
+			BasicFileAttributes attrs = attributesOf(key, file);
+			InputStream in = null == attrs ? null : openInputStream(key, file);
+			recordFetch(key, start, attrs, in);
+			return in;
+		} catch (IOException e) {
+			L.error(String.format("IO error when opening '%s'", key), e);
+			getMetrics().recordMiss(start);
+			return null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Runs the task for every key, distributing them evenly between as many
+	 * threads as set by {@link #setParallelism(int)}.
+	 *
+	 * @return <code>true</code> if the task succeeded for every key
+	 */
+	private boolean parallel(@Nonnull Map<String, File> files, @Nonnull final KeyTask task) {
+		final List<Map.Entry<String, File>> entries = new ArrayList<Map.Entry<String, File>>(files.entrySet());
+		int n = Math.min(parallelism, entries.size());
+		if (n <= 1) {
+			boolean success = true;
+			for (Map.Entry<String, File> e : entries) {
+				success &= task.run(e.getKey(), e.getValue());
+			}
+			return success;
+		}
+		List<Callable<Boolean>> chunks = new ArrayList<Callable<Boolean>>();
+		for (int i = 0; i < n; i++) {
+			final List<Map.Entry<String, File>> chunk = entries.subList(i * entries.size() / n, (i + 1) * entries.size() / n);
+			chunks.add(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					boolean success = true;
+					for (Map.Entry<String, File> e : chunk) {
+						success &= task.run(e.getKey(), e.getValue());
+					}
+					return success;
+				}
+			});
+		}
+		boolean success = true;
+		try {
+			for (Future<Boolean> f : executor().invokeAll(chunks)) {
+				success &= f.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			L.warn("Interrupted while waiting for bulk operation in {}", directory.getAbsolutePath());
+			return false;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+		return success;
+	}
+
+	/**
+	 * Atomically renames the temporary file to the file of the key, replacing
+	 * it. Readers see either the old or the new file, never a partially
+	 * written one. If the file system doesn't support atomic moves, the file
+	 * is replaced non-atomically. Callers must hold the write lock of the
+	 * key.
+	 *
+	 * @param key  The key being stored, now can be used in logs
+	 * @param temp Temporary file created by {@link #tempFileOf(File)}
+	 * @param file The file of the key
+	 * @return <code>true</code> if the file was replaced, <code>false</code>
+	 * if it failed, in this case the temporary file is removed
+	 */
+	protected boolean publish(@Nonnull String key, @Nonnull File temp, @Nonnull File file) {
+		try {
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				L.warn("Atomic move is not supported, replacing file non-atomically: {}", file.getAbsolutePath());
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			return true;
+		} catch (IOException e) {
+			L.error(String.format("Failed to publish key '%s' to file: %s", key, file.getAbsolutePath()), e);
+			deleteTempFile(temp);
+			return false;
+		}
+	}
+
+	/**
+	 * Deletes the file of the key if it's expired. Expiration is checked again
+	 * while holding the lock of the key, because it may have been stored
+	 * since the scan found it.
+	 */
+	private void purge(@Nonnull String key, @Nonnull File file, @Nonnull AtomicLong entries, @Nonnull AtomicLong bytes) {
+		Lock lock = locks.writeLock(key);
+		lock.lock();
+		try {
+			long size = file.length();
+			if (file.exists() && isExpired(file.lastModified()) && remove(key, file)) {
+				entries.incrementAndGet();
+				bytes.addAndGet(size);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes every expired file from the cache directory, without limiting
+	 * the rate of I/O operations.
+	 *
+	 * @return Number of entries and bytes reclaimed
+	 * @see #purgeExpired(int)
+	 */
+	@Override
+	@Nonnull
+	public PurgeResult purgeExpired() {
+		return purgeExpired(0);
+	}
+
+	/**
+	 * Removes every expired file from the cache directory. Subdirectories of
+	 * the cache directory are scanned in parallel, using as many threads as set
+	 * by {@link #setParallelism(int)}. Files which cannot be mapped to a key
+	 * by the current {@link FileLayout} are left untouched, except temporary
+	 * files older than {@link #TEMP_FILE_MAX_AGE}, which were left behind by
+	 * interrupted stores. These are removed even if entries don't expire.
+	 *
+	 * @param maxFilesPerSecond Maximum number of files examined in a second
+	 *                          by all threads together, to leave I/O capacity
+	 *                          for foreground operations, or 0 for no limit
+	 * @return Number of entries and bytes reclaimed
+	 */
+	@Nonnull
+	public PurgeResult purgeExpired(int maxFilesPerSecond) {
+		final Throttle throttle = Throttle.of(maxFilesPerSecond);
+		File[] children = directory.listFiles();
+		if (null == children) {
+			return PurgeResult.EMPTY;
+		}
+		long t = System.currentTimeMillis();
+		final Path root = directory.toPath();
+		final AtomicLong entries = new AtomicLong();
+		final AtomicLong bytes = new AtomicLong();
+		final SimpleFileVisitor<Path> visitor = new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				try {
+					throttle.acquire();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return FileVisitResult.TERMINATE;
+				}
+				String key = layout.keyOf(FileLayout.relativePath(root, file));
+				if (attrs.isRegularFile() && null != key && key.matches(VALID_KEY_PATTERN)
+						&& isExpired(attrs.lastModifiedTime().toMillis())) {
+					purge(key, file.toFile(), entries, bytes);
+				} else if (attrs.isRegularFile() && isTempFile(file.getFileName().toString())
+						&& attrs.lastModifiedTime().toMillis() + TEMP_FILE_MAX_AGE < System.currentTimeMillis()) {
+					deleteTempFile(file.toFile());
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+				if (e instanceof NoSuchFileException) {
+					return FileVisitResult.CONTINUE; // removed since listed
+				}
+				throw e;
+			}
+		};
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (final File child : children) {
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					Files.walkFileTree(child.toPath(), visitor);
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> f : executor().invokeAll(tasks)) {
+				try {
+					f.get();
+				} catch (ExecutionException e) {
+					L.error(String.format("Failed to scan cache directory: %s", directory.getAbsolutePath()), e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			L.warn("Interrupted while purging expired entries from {}", directory.getAbsolutePath());
+		}
+		PurgeResult result = new PurgeResult(entries.get(), bytes.get());
+		L.info("Purged {} expired entries ({} bytes) in {} ms from {}", result.getEntries(), result.getBytes(), System.currentTimeMillis() - t, directory.getAbsolutePath());
+		return result;
+	}
+
+	/**
+	 * Returns the lock which guards reads of the given key. Child classes
+	 * implementing additional I/O operations should hold it while reading the
+	 * file of the key.
+	 *
+	 * @param key Key to be guarded
+	 * @return The read lock of the key in the current locking mode
+	 */
+	@Nonnull
+	protected Lock readLock(@Nonnull String key) {
+		return locks.readLock(key);
+	}
+
+	/**
+	 * Records a fetch in the metrics: a hit with the file size if the content
+	 * was loaded, a miss otherwise.
+	 */
+	private void recordFetch(@Nonnull String key, long start, @CheckForNull BasicFileAttributes attrs, @CheckForNull Object content) {
+		if (null == attrs || null == content) {
+			getMetrics().recordMiss(start);
+		} else {
+			getMetrics().recordHit(start, attrs.size());
+			DiskUsage u = usage;
+			if (null != u) {
+				u.accessed(key);
+			}
+		}
+	}
+
+	/**
+	 * Records a successful store in the metrics, the filter, the index and the
+	 * disk usage, and starts a background eviction if the quota is exceeded.
+	 * Child classes implementing additional store operations should call it
+	 * after publishing the file, while holding the write lock of the key.
+	 *
+	 * @param key   Key of the stored entry
+	 * @param start Value of {@link System#nanoTime()} when the store started
+	 * @param size  Size of the written file
+	 */
+	protected void recordStore(@Nonnull String key, long start, long size) {
+		getMetrics().recordStore(start, size);
+		CountingBloomFilter f = filter;
+		if (null != f) {
+			f.add(key);
+		}
+		FileIndex i = index;
+		if (null != i) {
+			i.stored(key, size, key2File(key).lastModified()); // as fetchEntry reads it
+		}
+		DiskUsage u = usage;
+		if (null != u) {
+			u.stored(key, size);
+			startEviction(u);
+		}
+	}
+
 	/**
 	 * Deletes the specified file from cache directory.
 	 *
 	 * @param key Filename inside cache directory to be removed
 	 */
 	@Override
-	public synchronized void remove(@Nonnull String key) {
-		File file = key2File(key); // checks performed inside
-		if (file.exists() && !file.delete()) {
-			L.error("Failed to remove '{}': {}", key, file.getAbsolutePath());
+	public void remove(@Nonnull String key) {
+		remove(key, key2File(key)); // checks performed inside
+	}
+
+	private boolean remove(@Nonnull String key, @Nonnull File file) {
+		long start = System.nanoTime();
+		Lock lock = locks.writeLock(key);
+		lock.lock();
+		try {
+			boolean deleted = file.delete();
+			if (deleted) {
+				getMetrics().recordRemoval(start);
+			} else if (file.exists()) {
+				L.error("Failed to remove '{}': {}", key, file.getAbsolutePath());
+				return false;
+			}
+			untrack(key, deleted);
+			return true;
+		} finally {
+			lock.unlock();
 		}
 	}
 
+	/**
+	 * Deletes the specified files in parallel, using as many threads as set by
+	 * {@link #setParallelism(int)}. Every key is validated before any I/O
+	 * operation starts.
+	 *
+	 * @param keys Keys to be removed from cache
+	 */
+	@Override
+	public void removeAll(@Nonnull Collection<String> keys) {
+		parallel(keys2Files(keys), new KeyTask() {
+			@Override
+			public boolean run(@Nonnull String key, @Nonnull File file) {
+				return remove(key, file);
+			}
+		});
+	}
+
 	/**
 	 * This method is called from {@link #store(String, Object)} and is
 	 * responsible for saving the given content to the specified file.
@@ -177,6 +966,211 @@ public abstract class FileCache<T> extends Cache<T> {
 	 */
 	protected abstract boolean save(@Nonnull String key, @Nonnull File file, @Nonnull T content);
 
+	/**
+	 * Walks the cache directory and passes the regular files which fit the
+	 * current layout to the visitor.
+	 *
+	 * @return <code>true</code> if the whole directory was scanned,
+	 * <code>false</code> if an I/O error stopped the walk
+	 */
+	private boolean scan(@Nonnull final ScanVisitor visitor) {
+		if (!directory.isDirectory()) {
+			return true;
+		}
+		final Path root = directory.toPath();
+		try {
+			Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+					String key = layout.keyOf(FileLayout.relativePath(root, file));
+					if (attrs.isRegularFile() && null != key && key.matches(VALID_KEY_PATTERN)) {
+						visitor.found(key, attrs);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException e) {
+					return FileVisitResult.CONTINUE; // removed since listed
+				}
+			});
+			return true;
+		} catch (IOException e) {
+			L.error(String.format("Failed to scan cache directory: %s", directory.getAbsolutePath()), e);
+			return false;
+		}
+	}
+
+	/**
+	 * Attaches a counting Bloom filter to this cache, which is kept up to date
+	 * by the operations of this instance. If it's complete, keys it doesn't
+	 * contain are reported missing without disk I/O. Files written by others
+	 * are not noticed, so it should only be used when this instance is the
+	 * only writer of the cache directory.
+	 *
+	 * @param filter The filter, e.g. loaded by {@link
+	 *               CountingBloomFilter#load(File)}, or <code>null</code> to
+	 *               detach the current one
+	 * @see #buildFilter(long, double)
+	 */
+	public void setFilter(@CheckForNull CountingBloomFilter filter) {
+		this.filter = filter;
+	}
+
+	/**
+	 * Attaches an index to this cache, which is kept up to date by the
+	 * operations of this instance, and used to answer {@link
+	 * #contains(String)} and misses without disk I/O. Files written by others
+	 * are not noticed, so it should only be used when this instance is the
+	 * only writer of the cache directory. It's called by {@link
+	 * CacheWarmer#warmUp()}.
+	 *
+	 * @param index The index, or <code>null</code> to detach the current one
+	 */
+	public void setIndex(@CheckForNull FileIndex index) {
+		this.index = index;
+	}
+
+	/**
+	 * Sets the layout of the cache directory. It should be called before the
+	 * cache is used, files stored with another layout won't be found. Use
+	 * {@link FileLayout#migrate(File, FileLayout, FileLayout, int)} to move
+	 * existing files to the new layout.
+	 *
+	 * @param layout The new layout
+	 * @see HashedFileLayout
+	 */
+	public void setLayout(@Nonnull FileLayout layout) {
+		this.layout = Check.notNull(layout, "layout must not be null");
+	}
+
+	/**
+	 * Sets the locking mode of this cache. It should be called before the
+	 * cache is used by multiple threads, because operations already holding a
+	 * lock of the previous mode won't block operations using the new mode.
+	 *
+	 * @param locking The new locking mode
+	 * @see Locking
+	 */
+	public void setLocking(@Nonnull Locking locking) {
+		Check.notNull(locking, "locking must not be null");
+		if (Locking.STRIPED == locking) {
+			this.locks = new StripedLocks();
+		} else if (Locking.LOCK_FREE_READS == locking) {
+			this.locks = StripedLocks.writeOnly(StripedLocks.DEFAULT_STRIPES);
+		} else {
+			this.locks = StripedLocks.exclusive();
+		}
+		this.locking = locking;
+	}
+
+	/**
+	 * Sets the number of threads used by bulk operations.
+	 *
+	 * @param parallelism Number of threads
+	 * @see #fetchAll(Collection)
+	 * @see #removeAll(Collection)
+	 * @see #storeAll(Map)
+	 */
+	public void setParallelism(int parallelism) {
+		Check.argument(0 < parallelism, "parallelism must be positive");
+		ExecutorService old;
+		synchronized (this) {
+			old = executor;
+			executor = null;
+			this.parallelism = parallelism;
+		}
+		if (null != old) {
+			old.shutdown();
+		}
+	}
+
+	/**
+	 * Sets the disk quota of this cache. The cache directory is scanned once
+	 * to learn the current usage, then usage is tracked incrementally by the
+	 * operations of this instance, files written by others are not noticed.
+	 * When a store exceeds the quota, entries are evicted on a background
+	 * thread, so the limits may be exceeded for a short time.
+	 *
+	 * @param quota The new quota, or <code>null</code> to remove the quota and
+	 *              stop tracking
+	 * @see #evict()
+	 */
+	public void setQuota(@CheckForNull DiskQuota quota) {
+		if (null == quota) {
+			usage = null;
+			return;
+		}
+		final DiskUsage u = new DiskUsage(quota);
+		usage = u; // stores during the scan are tracked and not overwritten by it
+		scan(new ScanVisitor() {
+			@Override
+			public void found(@Nonnull String key, @Nonnull BasicFileAttributes attrs) {
+				u.found(key, attrs.size(), attrs.lastModifiedTime().toMillis());
+			}
+		});
+		L.info("Disk quota set to {}, {} entries ({} bytes) found in {}", quota, u.getEntries(), u.getBytes(), directory.getAbsolutePath());
+		startEviction(u);
+	}
+
+	/**
+	 * Sets the last modified time of the file of the key, e.g. to keep the
+	 * timestamp of an entry copied from an other cache, and updates the index
+	 * accordingly.
+	 *
+	 * @param key       Key of a stored entry
+	 * @param timestamp The new last modified time
+	 * @return <code>true</code> if the time was set, <code>false</code> if it
+	 * failed
+	 */
+	boolean setTimestamp(@Nonnull String key, long timestamp) {
+		File file = key2File(key); // checks performed inside
+		Lock lock = locks.writeLock(key);
+		lock.lock();
+		try {
+			if (!file.setLastModified(timestamp)) {
+				return false;
+			}
+			FileIndex i = index;
+			if (null != i) {
+				i.stored(key, file.length(), file.lastModified());
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Starts a background eviction if the quota is exceeded and no eviction
+	 * is running. Stores which exceed the quota while an eviction is running
+	 * are handled by a new round.
+	 */
+	private void startEviction(@Nonnull final DiskUsage u) {
+		if (!u.tryStartEviction()) {
+			return;
+		}
+		evictor().execute(new Runnable() {
+			@Override
+			public void run() {
+				boolean progress = true;
+				try {
+					while (progress && u.isExceeded() && usage == u) { // stores may exceed the quota again while evicting
+						progress = 0 < evict(u).getEntries();
+					}
+				} catch (RuntimeException e) {
+					progress = false;
+					L.error(String.format("Eviction failed in %s", directory.getAbsolutePath()), e);
+				} finally {
+					u.finishEviction();
+				}
+				if (progress && usage == u) {
+					startEviction(u); // in case a store missed the running eviction
+				}
+			}
+		});
+	}
+
 	/**
 	 * Stores the given contents into a file in the cache directory. Cache
 	 * directory is created automatically.
@@ -187,10 +1181,133 @@ public abstract class FileCache<T> extends Cache<T> {
 	 * it failed
 	 */
 	@Override
-	public synchronized boolean store(@Nonnull String key, @Nonnull T content) {
+	public boolean store(@Nonnull String key, @Nonnull T content) {
+		return store(key, key2File(key), content, true); // checks performed inside
+	}
+
+	/**
+	 * Stores the content read from the given stream into a file in the cache
+	 * directory, incrementally, so the content doesn't need to fit into
+	 * memory. The content is written into a temporary file first, without
+	 * holding the lock of the key, so a slow stream doesn't block other
+	 * operations. The lock is only held while the file is published. If
+	 * reading or writing fails, the previous content of the key is kept.
+	 *
+	 * @param key     Filename inside cache directory
+	 * @param content Stream providing the content to be stored, it won't be
+	 *                closed
+	 * @return <code>true</code> if the storing succeded, <code>false</code> if
+	 * it failed
+	 */
+	public boolean store(@Nonnull String key, @Nonnull InputStream content) {
+		Check.notNull(content, "content must not be null");
 		File file = key2File(key); // checks performed inside
-		mkdirsForFile(file);
-		return save(key, file, content);
+		long start = System.nanoTime();
+		File temp = null;
+		try {
+			mkdirsForFile(file);
+			temp = tempFileOf(file);
+			long length = 0;
+			try (OutputStream out = openOutputStream(key, temp)) {
+				byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+				int n;
+				while (-1 != (n = content.read(buffer))) {
+					out.write(buffer, 0, n);
+					length += n;
+				}
+			}
+			long size = temp.length();
+			Lock lock = locks.writeLock(key);
+			lock.lock();
+			try {
+				if (!publish(key, temp, file)) {
+					return false;
+				}
+				recordStore(key, start, size);
+			} finally {
+				lock.unlock();
+			}
+			L.info("'{}' stored from stream, content length: {} bytes, file size: {}", key, length, size);
+			L.debug("'{}' -> {}", key, file.getAbsolutePath());
+			return true;
+		} catch (IOException e) {
+			L.error(String.format("Failed to store key '%s' from stream to file: %s", key, file.getAbsolutePath()), e);
+			if (null != temp) {
+				deleteTempFile(temp);
+			}
+			return false;
+		}
+	}
+
+	private boolean store(@Nonnull String key, @Nonnull File file, @Nonnull T content, boolean mkdirs) {
+		long start = System.nanoTime();
+		Lock lock = locks.writeLock(key);
+		lock.lock();
+		try {
+			if (mkdirs) {
+				mkdirsForFile(file);
+			}
+			File temp = tempFileOf(file);
+			if (!save(key, temp, content)) {
+				deleteTempFile(temp);
+				return false;
+			}
+			long size = temp.length();
+			if (!publish(key, temp, file)) {
+				return false;
+			}
+			recordStore(key, start, size);
+			return true;
+		} catch (IOException e) {
+			L.error(String.format("Failed to create temporary file for key '%s' next to file: %s", key, file.getAbsolutePath()), e);
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stores the given contents in parallel, using as many threads as set by
+	 * {@link #setParallelism(int)}. Every key is validated and every needed
+	 * directory is created once, before writing any file.
+	 *
+	 * @param entries Keys and contents to be stored
+	 * @return <code>true</code> if storing of all entries succeeded,
+	 * <code>false</code> if any of them failed
+	 */
+	@Override
+	public boolean storeAll(@Nonnull final Map<String, ? extends T> entries) {
+		Map<String, File> files = keys2Files(entries.keySet());
+		Map<File, File> parents = new HashMap<File, File>();
+		for (File file : files.values()) {
+			parents.put(file.getParentFile(), file);
+		}
+		for (File file : parents.values()) {
+			mkdirsForFile(file);
+		}
+		return parallel(files, new KeyTask() {
+			@Override
+			public boolean run(@Nonnull String key, @Nonnull File file) {
+				T content = entries.get(key);
+				Check.notNull(content, "content must not be null");
+				return store(key, file, content, false);
+			}
+		});
+	}
+
+	/**
+	 * Creates a new, empty temporary file in the directory of the given file,
+	 * where the content of the key can be written before it's {@link
+	 * #publish(String, File, File) published}. Its name is never a valid key,
+	 * so it's ignored by scans of the cache directory.
+	 *
+	 * @param file The file of the key
+	 * @return The temporary file
+	 * @throws IOException If the file could not be created
+	 */
+	@Nonnull
+	protected File tempFileOf(@Nonnull File file) throws IOException {
+		return File.createTempFile("." + file.getName() + TEMP_FILE_MARKER, TEMP_FILE_SUFFIX, file.getParentFile());
 	}
 
 	/**
@@ -202,6 +1319,154 @@ public abstract class FileCache<T> extends Cache<T> {
 	@Override
 	public Date timestampOf(@Nonnull String key) {
 		File file = key2File(key); // checks performed inside
-		return new Date(file.lastModified());
+		FileIndex i = index;
+		Date timestamp = null == i ? null : i.timestampOf(key);
+		return null != timestamp ? timestamp : new Date(file.lastModified());
+	}
+
+	/**
+	 * Transfers the file of the given key into the target channel as it's
+	 * stored, using {@link FileChannel#transferTo(long, long,
+	 * WritableByteChannel)}, so the operating system can copy the data
+	 * directly (e.g. from page cache to a socket) without copying it into
+	 * the JVM heap. Note that caches which transform contents (e.g. compress
+	 * them) transfer the transformed bytes. The read lock of the key is held
+	 * only while the file is opened, so a slow target doesn't block other
+	 * operations; the open file keeps providing the same content even if the
+	 * key is stored or removed meanwhile.
+	 *
+	 * @param key    Filename inside cache directory
+	 * @param target A blocking channel to write into, it won't be closed
+	 * @return Number of bytes transferred, or -1 if the key doesn't exist in
+	 * the cache or the transfer failed
+	 */
+	public long transferTo(@Nonnull String key, @Nonnull WritableByteChannel target) {
+		Check.notNull(target, "target must not be null");
+		File file = key2File(key); // checks performed inside
+		long start = System.nanoTime();
+		FileChannel opened;
+		Lock lock = locks.readLock(key);
+		lock.lock();
+		try {
+			opened = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		} catch (NoSuchFileException e) {
+			getMetrics().recordMiss(start);
+			return -1;
+		} catch (IOException e) {
+			L.error(String.format("Failed to open file of '%s' for transfer: %s", key, file.getAbsolutePath()), e);
+			getMetrics().recordMiss(start);
+			return -1;
+		} finally {
+			lock.unlock();
+		}
+		try (FileChannel channel = opened) {
+			long size = channel.size();
+			long position = 0;
+			long n = 1;
+			while (position < size && 0 < n) {
+				n = channel.transferTo(position, size - position, target);
+				position += n;
+			}
+			getMetrics().recordHit(start, position);
+			DiskUsage u = usage;
+			if (null != u) {
+				u.accessed(key);
+			}
+			L.info("'{}' transferred from cache, bytes: {}", key, position);
+			return position;
+		} catch (IOException e) {
+			L.error(String.format("Failed to transfer '%s' from file: %s", key, file.getAbsolutePath()), e);
+			getMetrics().recordMiss(start);
+			return -1;
+		}
+	}
+
+	/**
+	 * Removes the key from the filter, the index and the disk usage.
+	 *
+	 * @param key     Key of the removed entry
+	 * @param existed <code>false</code> if the key may not have been stored,
+	 *                in which case the filter is not updated, because
+	 *                removing a key which was never added could hide others
+	 */
+	private void untrack(@Nonnull String key, boolean existed) {
+		CountingBloomFilter f = filter;
+		if (existed && null != f) {
+			f.remove(key);
+		}
+		FileIndex i = index;
+		if (null != i) {
+			i.removed(key);
+		}
+		DiskUsage u = usage;
+		if (null != u) {
+			u.removed(key);
+		}
+	}
+
+	/**
+	 * Returns the lock which guards writes of the given key. Child classes
+	 * implementing additional I/O operations should hold it while writing the
+	 * file of the key.
+	 *
+	 * @param key Key to be guarded
+	 * @return The write lock of the key in the current locking mode
+	 */
+	@Nonnull
+	protected Lock writeLock(@Nonnull String key) {
+		return locks.writeLock(key);
+	}
+
+	/**
+	 * Operation of a bulk method, executed for one key.
+	 */
+	private interface KeyTask {
+
+		/**
+		 * @return <code>true</code> on success
+		 */
+		boolean run(@Nonnull String key, @Nonnull File file);
+	}
+
+	/**
+	 * Receives the files found by a scan of the cache directory.
+	 */
+	private interface ScanVisitor {
+
+		void found(@Nonnull String key, @Nonnull BasicFileAttributes attrs);
+	}
+
+	/**
+	 * Concurrency modes of {@link FileCache}.
+	 */
+	public enum Locking {
+
+		/**
+		 * Every operation is serialized on a single lock of the cache
+		 * instance, regardless of the key. This is the default.
+		 */
+		INSTANCE,
+
+		/**
+		 * Operations lock per key using striped read/write locks. Operations
+		 * on independent keys proceed in parallel, reads of the same key can
+		 * run concurrently, but writes and removals of a key are exclusive.
+		 *
+		 * @see StripedLocks
+		 */
+		STRIPED,
+
+		/**
+		 * Reads ({@link FileCache#fetch(String)}, {@link
+		 * FileCache#contains(String)} and the
+		 * other read operations) take no lock at all, writes and removals lock
+		 * per key like in {@link #STRIPED} mode. Reads are safe because stores
+		 * atomically rename a complete temporary file into place, so a reader
+		 * sees either the old or the new content. A read racing a removal of
+		 * the same key may report a miss, and log the file it could not open.
+		 *
+		 * @see FileCache#publish(String, File, File)
+		 */
+		LOCK_FREE_READS
 	}
 }
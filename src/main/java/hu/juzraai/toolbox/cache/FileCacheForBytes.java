@@ -0,0 +1,177 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Check;
+import org.slf4j.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * {@link FileCache} implementation which stores byte arrays in files as they
+ * are, without any decoding or encoding. Files are read and written through
+ * NIO {@link FileChannel}s, and contents can be stored directly from a {@link
+ * ByteBuffer} too. Use {@link #transferTo(String,
+ * java.nio.channels.WritableByteChannel)} to forward cached files to sockets
+ * or other files without copying them into the JVM heap.
+ *
+ * @author Zsolt Jurányi
+ * @see FileCache
+ * @since 26.10
+ */
+public class FileCacheForBytes extends FileCache<byte[]> {
+
+	private static final Logger L = LoggerFactory.getLogger(FileCacheForBytes.class);
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory The cache directory where files will be stored
+	 */
+	public FileCacheForBytes(@Nonnull File directory) {
+		super(directory);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory  The cache directory where files will be stored.
+	 * @param expiration Expiration in milliseconds. Elements in cache will be
+	 *                   handled as expired if this amount of time have elapsed
+	 *                   since their timestamp. If it's <code>null</code>,
+	 *                   cached elements will never expire.
+	 */
+	public FileCacheForBytes(@Nonnull File directory, Long expiration) {
+		super(directory, expiration);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory  The cache directory where files will be stored.
+	 * @param expiration Expiration in the time unit of your choice. Elements in
+	 *                   cache will be handled as expired if this amount of time
+	 *                   have elapsed since their timestamp.
+	 * @param timeUnit   {@link TimeUnit} object representing the time unit you
+	 *                   specified <code>duration</code> in. It's used to
+	 *                   convert <code>duration</code> to milliseconds.
+	 */
+	public FileCacheForBytes(@Nonnull File directory, long expiration, @Nonnull TimeUnit timeUnit) {
+		super(directory, expiration, timeUnit);
+	}
+
+	private static void write(@Nonnull File file, @Nonnull ByteBuffer content) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (content.hasRemaining()) {
+				channel.write(content);
+			}
+		}
+	}
+
+	/**
+	 * Reads the specified {@link File} into a byte array sized from the file
+	 * length.
+	 *
+	 * @param key  The key {@link #fetch(String)} was called with, now can be
+	 *             used in logs
+	 * @param file {@link File} to be loaded
+	 * @return The contents of the file
+	 */
+	@Override
+	@CheckForNull
+	protected byte[] load(@Nonnull String key, @Nonnull File file) {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (Integer.MAX_VALUE < size) {
+				throw new IOException("File is too big: " + size);
+			}
+			ByteBuffer content = ByteBuffer.allocate((int) size);
+			while (content.hasRemaining()) {
+				if (-1 == channel.read(content)) {
+					break; // file was truncated since its size was read
+				}
+			}
+			L.info("'{}' fetched from cache, content length: {}", key, content.position());
+			L.debug("'{}' <- {}", key, file.getAbsolutePath());
+			return content.hasRemaining() ? Arrays.copyOf(content.array(), content.position()) : content.array();
+		} catch (IOException e) {
+			L.error(String.format("IO error when fetching '%s'", key), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Saves the given content in a file as it is.
+	 *
+	 * @param key     The key {@link #fetch(String)} was called with, now can be
+	 *                used in logs
+	 * @param file    {@link File} to write
+	 * @param content Content to be saved
+	 * @return <code>true</code> if the storing succeded, <code>false</code> if
+	 * it failed
+	 */
+	@Override
+	protected boolean save(@Nonnull String key, @Nonnull File file, @Nonnull byte[] content) {
+		return save(key, file, ByteBuffer.wrap(content));
+	}
+
+	private boolean save(@Nonnull String key, @Nonnull File file, @Nonnull ByteBuffer content) {
+		int length = content.remaining();
+		try {
+			write(file, content);
+			L.info("'{}' stored, content length: {}", key, length);
+			L.debug("'{}' -> {}", key, file.getAbsolutePath());
+		} catch (IOException e) {
+			L.error(String.format("Failed to store key '%s' to file: %s", key, file.getAbsolutePath()), e);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Stores the remaining bytes of the given buffer into a file in the cache
+	 * directory, without copying them into an array. Direct buffers are
+	 * written without copying them into the JVM heap. The position of the
+	 * given buffer is not changed. The content is written into a temporary
+	 * file and then atomically renamed into place.
+	 *
+	 * @param key     Filename inside cache directory
+	 * @param content Buffer containing the content to be stored
+	 * @return <code>true</code> if the storing succeded, <code>false</code> if
+	 * it failed
+	 */
+	public boolean store(@Nonnull String key, @Nonnull ByteBuffer content) {
+		Check.notNull(content, "content must not be null");
+		File file = key2File(key); // checks performed inside
+		long start = System.nanoTime();
+		Lock lock = writeLock(key);
+		lock.lock();
+		try {
+			mkdirsForFile(file);
+			File temp = tempFileOf(file);
+			if (!save(key, temp, content.duplicate())) {
+				deleteTempFile(temp);
+				return false;
+			}
+			if (!publish(key, temp, file)) {
+				return false;
+			}
+			recordStore(key, start, content.remaining());
+			return true;
+		} catch (IOException e) {
+			L.error(String.format("Failed to create temporary file for key '%s' next to file: %s", key, file.getAbsolutePath()), e);
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
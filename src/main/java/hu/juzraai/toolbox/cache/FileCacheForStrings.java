@@ -6,7 +6,6 @@ import org.slf4j.Logger;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import java.io.*;
-import java.util.Scanner;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -70,8 +69,8 @@ public class FileCacheForStrings extends FileCache<String> {
 	@CheckForNull
 	protected String load(@Nonnull String key, @Nonnull File file) {
 		String content = null;
-		try (Scanner s = new Scanner(file, "UTF8")) {
-			content = s.useDelimiter("\\Z").next();
+		try {
+			content = TextFiles.readUtf8(file);
 			L.info("'{}' fetched from cache, content length: {}", key, content.length());
 			L.debug("'{}' <- {}", key, file.getAbsolutePath());
 		} catch (IOException e) {
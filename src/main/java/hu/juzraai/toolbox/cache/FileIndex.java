@@ -0,0 +1,151 @@
+package hu.juzraai.toolbox.cache;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory index of the keys of a {@link FileCache} directory, with the
+ * size, last modification and last access time of their files. It's built by
+ * {@link CacheWarmer}, then kept up to date by the operations of the cache
+ * it's attached to.
+ * <p>
+ * A complete index lets the cache answer {@link FileCache#contains(String)}
+ * and misses without touching the disk. An incomplete index, e.g. one whose
+ * build was stopped by a time budget, only answers for the keys it contains.
+ *
+ * @author Zsolt Jurányi
+ * @see CacheWarmer
+ * @see FileCache#setIndex(FileIndex)
+ * @since 26.10
+ */
+public final class FileIndex {
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private final AtomicLong bytes = new AtomicLong();
+	private volatile boolean complete;
+
+	FileIndex() {
+	}
+
+	/**
+	 * @param key Key to be checked
+	 * @return <code>true</code> if the key is in the index
+	 */
+	public boolean contains(@Nonnull String key) {
+		return entries.containsKey(key);
+	}
+
+	/**
+	 * Adds an entry found by a directory scan, unless it's already indexed,
+	 * e.g. because it was stored since the scan started.
+	 */
+	void found(@Nonnull String key, long size, long lastModified, long lastAccess) {
+		if (null == entries.putIfAbsent(key, new Entry(size, lastModified, lastAccess))) {
+			bytes.addAndGet(size);
+		}
+	}
+
+	/**
+	 * @return Total size of the indexed files in bytes
+	 */
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	/**
+	 * @return <code>true</code> if every file of the directory was indexed,
+	 * so keys missing from the index are missing from the cache too
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @return Read-only view of the indexed keys
+	 */
+	@Nonnull
+	public Set<String> keys() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	/**
+	 * @param key Key of the entry
+	 * @return Time of the last access of the file in milliseconds since the
+	 * epoch, as recorded by the file system, or -1 if the key is not indexed
+	 */
+	public long lastAccessOf(@Nonnull String key) {
+		Entry e = entries.get(key);
+		return null == e ? -1 : e.lastAccess;
+	}
+
+	/**
+	 * Removes the entry from the index.
+	 */
+	void removed(@Nonnull String key) {
+		Entry e = entries.remove(key);
+		if (null != e) {
+			bytes.addAndGet(-e.size);
+		}
+	}
+
+	void setComplete() {
+		complete = true;
+	}
+
+	/**
+	 * @return Number of indexed keys
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @param key Key of the entry
+	 * @return Size of the file in bytes, or -1 if the key is not indexed
+	 */
+	public long sizeOf(@Nonnull String key) {
+		Entry e = entries.get(key);
+		return null == e ? -1 : e.size;
+	}
+
+	/**
+	 * Indexes the new size and timestamp of the entry.
+	 */
+	void stored(@Nonnull String key, long size, long timestamp) {
+		Entry old = entries.put(key, new Entry(size, timestamp, timestamp));
+		bytes.addAndGet(null == old ? size : size - old.size);
+	}
+
+	/**
+	 * @param key Key of the entry
+	 * @return Last modification time of the file, or <code>null</code> if the
+	 * key is not indexed
+	 */
+	@CheckForNull
+	public Date timestampOf(@Nonnull String key) {
+		Entry e = entries.get(key);
+		return null == e ? null : new Date(e.lastModified);
+	}
+
+	/**
+	 * Indexed attributes of a file.
+	 */
+	private static final class Entry {
+
+		private final long size;
+		private final long lastModified;
+		private final long lastAccess;
+
+		private Entry(long size, long lastModified, long lastAccess) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.lastAccess = lastAccess;
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Check;
+import org.slf4j.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Describes how {@link FileCache} maps keys to file paths inside the cache
+ * directory, and how file paths can be mapped back to keys.
+ *
+ * @author Zsolt Jurányi
+ * @see FileCache#setLayout(FileLayout)
+ * @see HashedFileLayout
+ * @since 26.10
+ */
+public abstract class FileLayout {
+
+	/**
+	 * The default layout, the key is used as the relative path of the file.
+	 */
+	public static final FileLayout FLAT = new FileLayout() {
+
+		@Override
+		@Nonnull
+		public String keyOf(@Nonnull String path) {
+			return path;
+		}
+
+		@Override
+		@Nonnull
+		public String pathOf(@Nonnull String key) {
+			return key;
+		}
+
+		@Override
+		public String toString() {
+			return "FLAT";
+		}
+	};
+
+	private static final Logger L = LoggerFactory.getLogger(FileLayout.class);
+
+	/**
+	 * Checks whether the path is generated by the layout for a key other
+	 * than the path itself, i.e. the file is already placed by the layout.
+	 * Layouts which use the key as the path (like {@link #FLAT}) accept every
+	 * path, so they can't tell whether a file is placed by them.
+	 */
+	private static boolean isPlaced(@Nonnull FileLayout layout, @Nonnull String path) {
+		String key = layout.keyOf(path);
+		return null != key && !key.equals(path) && path.equals(layout.pathOf(key));
+	}
+
+	/**
+	 * Moves the files of a cache directory from one layout to another, using
+	 * the given number of threads. Files which don't fit the source layout,
+	 * files with invalid keys, temporary files and files which are already in
+	 * the place determined by the target layout are left untouched, so an
+	 * interrupted migration can be run again. Directories which become empty
+	 * are deleted. Existing files are not overwritten. The cache must not be
+	 * used during the migration.
+	 *
+	 * @param directory   The cache directory
+	 * @param from        The current layout of the cache directory
+	 * @param to          The new layout
+	 * @param parallelism Number of threads moving files
+	 * @return Number of files moved
+	 * @throws IOException If the directory could not be walked or any of the
+	 *                     files could not be moved, e.g. because its target
+	 *                     already exists
+	 */
+	public static long migrate(@Nonnull final File directory, @Nonnull final FileLayout from, @Nonnull final FileLayout to, int parallelism) throws IOException {
+		Check.argument(0 < parallelism, "parallelism must be positive");
+		L.info("Migrating cache directory from {} to {} layout: {}", from, to, directory.getAbsolutePath());
+		final Path root = directory.toPath();
+		final List<Callable<Boolean>> moves = new ArrayList<Callable<Boolean>>();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				String path = relativePath(root, file);
+				String key = from.keyOf(path);
+				if (!attrs.isRegularFile() || null == key || !key.matches(FileCache.VALID_KEY_PATTERN)
+						|| FileCache.isTempFile(file.getFileName().toString()) || isPlaced(to, path)) {
+					return FileVisitResult.CONTINUE;
+				}
+				final Path source = file;
+				final Path target = root.resolve(to.pathOf(key));
+				if (!source.equals(target)) {
+					moves.add(new Callable<Boolean>() {
+						@Override
+						public Boolean call() throws IOException {
+							Files.createDirectories(target.getParent());
+							Files.move(source, target); // fails if the target exists
+							return true;
+						}
+					});
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		long moved = 0;
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism, new DaemonThreadFactory("layout-migration"));
+		try {
+			for (Future<Boolean> f : executor.invokeAll(moves)) {
+				f.get();
+				moved++;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Migration interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to move file", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				if (!dir.equals(root)) {
+					try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+						if (!ds.iterator().hasNext()) {
+							Files.delete(dir);
+						}
+					}
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		L.info("Migration finished, {} files moved", moved);
+		return moved;
+	}
+
+	/**
+	 * Generates a relative path string for a file inside a root directory,
+	 * using slash as separator, which can be passed to {@link
+	 * #keyOf(String)}.
+	 *
+	 * @param root The cache directory
+	 * @param file A file inside the cache directory
+	 * @return The relative path
+	 */
+	@Nonnull
+	public static String relativePath(@Nonnull Path root, @Nonnull Path file) {
+		StringBuilder s = new StringBuilder();
+		for (Path p : root.relativize(file)) {
+			if (0 < s.length()) {
+				s.append('/');
+			}
+			s.append(p.toString());
+		}
+		return s.toString();
+	}
+
+	/**
+	 * Determines the key from a file path generated by this layout.
+	 *
+	 * @param path Relative path of a file inside the cache directory, using
+	 *             slash as separator
+	 * @return The key or <code>null</code> if the path cannot be generated by
+	 * this layout
+	 */
+	@CheckForNull
+	public abstract String keyOf(@Nonnull String path);
+
+	/**
+	 * Generates the relative path of the file which stores the given key.
+	 *
+	 * @param key A valid key
+	 * @return Relative path of the file inside the cache directory
+	 */
+	@Nonnull
+	public abstract String pathOf(@Nonnull String key);
+
+}
@@ -5,15 +5,24 @@ import org.slf4j.Logger;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
-import java.io.*;
-import java.util.Scanner;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 /**
  * {@link FileCache} implementation which stores {@link String} objects in
- * GZipped text files.
+ * GZipped text files. Files are written and read by a {@link GzipCodec}, which
+ * reuses its deflaters per thread. Streams returned by {@link
+ * #openStream(String)} decompress on the fly, and {@link #store(String,
+ * InputStream)} compresses on the fly.
  *
  * @author Zsolt Jurányi
  * @see FileCache
@@ -23,6 +32,8 @@ public class GzFileCacheForStrings extends FileCache<String> {
 
 	private static final Logger L = LoggerFactory.getLogger(GzFileCacheForStrings.class);
 
+	private volatile GzipCodec codec = new GzipCodec();
+
 	/**
 	 * Creates a new instance.
 	 *
@@ -60,6 +71,13 @@ public class GzFileCacheForStrings extends FileCache<String> {
 		super(directory, expiration, timeUnit);
 	}
 
+	/**
+	 * @return The compression level used when storing contents
+	 */
+	public int getCompressionLevel() {
+		return codec.getLevel();
+	}
+
 	/**
 	 * Reads the specified {@link File} as a GZipped text file.
 	 *
@@ -72,10 +90,10 @@ public class GzFileCacheForStrings extends FileCache<String> {
 	@CheckForNull
 	protected String load(@Nonnull String key, @Nonnull File file) {
 		String content = null;
-		try (FileInputStream fis = new FileInputStream(file);
-			 InputStream gis = new GZIPInputStream(fis);
-			 Scanner s = new Scanner(gis, "UTF8")) {
-			content = s.useDelimiter("\\Z").next();
+		try {
+			ByteBuffer bytes = TextFiles.readAll(file);
+			byte[] decoded = codec.decode(bytes.array(), 0, bytes.limit(), 0);
+			content = new String(decoded, StandardCharsets.UTF_8);
 			L.info("'{}' fetched from cache, content length: {}", key, content.length());
 			L.debug("'{}' <- {}", key, file.getAbsolutePath());
 		} catch (IOException e) {
@@ -84,6 +102,55 @@ public class GzFileCacheForStrings extends FileCache<String> {
 		return content;
 	}
 
+	/**
+	 * Opens the file through a {@link GZIPInputStream}, so it's decompressed
+	 * while reading.
+	 *
+	 * @param key  The key {@link #openStream(String)} was called with, now
+	 *             can be used in logs
+	 * @param file {@link File} to be read
+	 * @return A stream providing the decompressed content
+	 * @throws IOException If the file cannot be opened or it's not a GZip file
+	 */
+	@Nonnull
+	@Override
+	protected InputStream openInputStream(@Nonnull String key, @Nonnull File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return new GZIPInputStream(in, STREAM_BUFFER_SIZE);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens the file through a {@link GZIPOutputStream} using the configured
+	 * compression level, so data is compressed while writing.
+	 *
+	 * @param key  The key {@link #store(String, InputStream)} was called
+	 *             with, now can be used in logs
+	 * @param file {@link File} to be written
+	 * @return A stream which compresses data into the file
+	 * @throws IOException If the file cannot be opened
+	 */
+	@Nonnull
+	@Override
+	protected OutputStream openOutputStream(@Nonnull String key, @Nonnull File file) throws IOException {
+		final int level = codec.getLevel();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			return new GZIPOutputStream(out, STREAM_BUFFER_SIZE) {
+				{
+					def.setLevel(level);
+				}
+			};
+		} catch (IOException e) {
+			out.close();
+			throw e;
+		}
+	}
+
 	/**
 	 * Saves the given content in a Gzipped text file.
 	 *
@@ -96,11 +163,9 @@ public class GzFileCacheForStrings extends FileCache<String> {
 	 */
 	@Override
 	protected boolean save(@Nonnull String key, @Nonnull File file, @Nonnull String content) {
-		try (FileOutputStream fos = new FileOutputStream(file);
-			 OutputStream gos = new GZIPOutputStream(fos);
-			 Writer w = new OutputStreamWriter(gos, "UTF-8")) {
-			w.write(content);
-			w.flush();
+		try (FileOutputStream fos = new FileOutputStream(file)) {
+			byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+			codec.encode(bytes, 0, bytes.length, fos);
 			L.info("'{}' stored, content length: {}, file size: {}", key, content.length(), file.length());
 			L.debug("'{}' -> {}", key, file.getAbsolutePath());
 		} catch (IOException e) {
@@ -110,4 +175,15 @@ public class GzFileCacheForStrings extends FileCache<String> {
 		return true;
 	}
 
+	/**
+	 * Sets the compression level used when storing contents. Existing files
+	 * are not affected.
+	 *
+	 * @param level Compression level, 0-9 or {@link
+	 *              java.util.zip.Deflater#DEFAULT_COMPRESSION}
+	 */
+	public void setCompressionLevel(int level) {
+		this.codec = new GzipCodec(level);
+	}
+
 }
@@ -0,0 +1,197 @@
+package hu.juzraai.toolbox.cache;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * {@link Codec} which produces standard GZip files, readable by any GZip tool.
+ * Unlike {@link java.util.zip.GZIPOutputStream}, it reuses {@link Deflater}
+ * and {@link Inflater} instances per thread and lets you set the compression
+ * level. Multi-member GZip data is decoded too.
+ *
+ * @author Zsolt Jurányi
+ * @see Codec
+ * @see GzFileCacheForStrings
+ * @since 26.10
+ */
+public class GzipCodec implements Codec {
+
+	/**
+	 * ID of the GZip codec.
+	 */
+	public static final byte ID = 4;
+
+	private static final int MAGIC_1 = 0x1f;
+	private static final int MAGIC_2 = 0x8b;
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+	private static final int HEADER_SIZE = 10;
+	private static final int TRAILER_SIZE = 8;
+	private static final long MAX_RATIO = 1032; // of deflate
+	private static final byte[] HEADER = {MAGIC_1, (byte) MAGIC_2, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+	private final int level;
+	private final ThreadLocal<Deflater> deflater;
+	private final ThreadLocal<Inflater> inflater = new ThreadLocal<Inflater>() {
+		@Override
+		protected Inflater initialValue() {
+			return new Inflater(true);
+		}
+	};
+
+	/**
+	 * Creates a new instance with default compression level.
+	 */
+	public GzipCodec() {
+		this(Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param level Compression level, 0-9 or {@link Deflater#DEFAULT_COMPRESSION}
+	 */
+	public GzipCodec(final int level) {
+		this.level = DeflateCodec.checkLevel(level);
+		this.deflater = new ThreadLocal<Deflater>() {
+			@Override
+			protected Deflater initialValue() {
+				return new Deflater(level, true);
+			}
+		};
+	}
+
+	/**
+	 * Decodes GZip data. The buffer is sized from the ISIZE field of the
+	 * trailer, so <code>decodedLength</code> may be 0 if it's unknown.
+	 */
+	@Nonnull
+	@Override
+	public byte[] decode(@Nonnull byte[] data, int offset, int length, int decodedLength) throws IOException {
+		int end = offset + length;
+		if (length < HEADER_SIZE + TRAILER_SIZE) {
+			throw new IOException("Not in GZip format");
+		}
+		int expectedLength = 0 < decodedLength ? decodedLength : readIntLE(data, end - 4);
+		expectedLength = (int) Math.max(0, Math.min(expectedLength, MAX_RATIO * length)); // ISIZE is only a hint
+		byte[] result = null;
+		int position = offset;
+		CRC32 crc = new CRC32();
+		while (position < end && isGzip(data, position, end - position)) {
+			position = skipHeader(data, position, end);
+			Inflater inf = inflater.get();
+			byte[] member = DeflateCodec.inflate(inf, null, 0, data, position, end - position, null == result ? expectedLength : 0);
+			position = end - inf.getRemaining();
+			if (end < position + TRAILER_SIZE) {
+				throw new IOException("Unexpected end of GZip data");
+			}
+			crc.reset();
+			crc.update(member, 0, member.length);
+			if ((int) crc.getValue() != readIntLE(data, position) || member.length != readIntLE(data, position + 4)) {
+				throw new IOException("Corrupt GZip data");
+			}
+			position += TRAILER_SIZE;
+			if (null == result) {
+				result = member;
+			} else {
+				byte[] joined = new byte[result.length + member.length];
+				System.arraycopy(result, 0, joined, 0, result.length);
+				System.arraycopy(member, 0, joined, result.length, member.length);
+				result = joined;
+			}
+		}
+		if (null == result) {
+			throw new IOException("Not in GZip format");
+		}
+		return result;
+	}
+
+	@Override
+	public void encode(@Nonnull byte[] data, int offset, int length, @Nonnull OutputStream out) throws IOException {
+		out.write(HEADER);
+		DeflateCodec.deflate(deflater.get(), null, data, offset, length, out);
+		CRC32 crc = new CRC32();
+		crc.update(data, offset, length);
+		byte[] trailer = new byte[TRAILER_SIZE];
+		writeIntLE(trailer, 0, (int) crc.getValue());
+		writeIntLE(trailer, 4, length);
+		out.write(trailer);
+	}
+
+	@Override
+	public byte getId() {
+		return ID;
+	}
+
+	/**
+	 * @return Compression level used when encoding
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * @param data   Array to be checked
+	 * @param offset Start of the data
+	 * @param length Length of the data
+	 * @return <code>true</code> if the data starts with the GZip magic number
+	 */
+	public static boolean isGzip(@Nonnull byte[] data, int offset, int length) {
+		return 2 <= length && MAGIC_1 == (data[offset] & 0xff) && MAGIC_2 == (data[offset + 1] & 0xff);
+	}
+
+	private static int readIntLE(@Nonnull byte[] data, int offset) {
+		return (data[offset] & 0xff) | (data[offset + 1] & 0xff) << 8
+				| (data[offset + 2] & 0xff) << 16 | (data[offset + 3] & 0xff) << 24;
+	}
+
+	private int skipHeader(@Nonnull byte[] data, int position, int end) throws IOException {
+		if (end < position + HEADER_SIZE || Deflater.DEFLATED != data[position + 2]) {
+			throw new IOException("Unsupported GZip header");
+		}
+		int flags = data[position + 3] & 0xff;
+		position += HEADER_SIZE;
+		if (0 != (flags & FEXTRA)) {
+			if (end < position + 2) {
+				throw new IOException("Corrupt GZip header");
+			}
+			position += 2 + ((data[position] & 0xff) | (data[position + 1] & 0xff) << 8);
+		}
+		if (0 != (flags & FNAME)) {
+			position = skipZeroTerminated(data, position, end);
+		}
+		if (0 != (flags & FCOMMENT)) {
+			position = skipZeroTerminated(data, position, end);
+		}
+		if (0 != (flags & FHCRC)) {
+			position += 2;
+		}
+		if (end < position) {
+			throw new IOException("Corrupt GZip header");
+		}
+		return position;
+	}
+
+	private static int skipZeroTerminated(@Nonnull byte[] data, int position, int end) throws IOException {
+		while (position < end && 0 != data[position]) {
+			position++;
+		}
+		if (position == end) {
+			throw new IOException("Corrupt GZip header");
+		}
+		return position + 1;
+	}
+
+	private static void writeIntLE(@Nonnull byte[] data, int offset, int value) {
+		data[offset] = (byte) value;
+		data[offset + 1] = (byte) (value >>> 8);
+		data[offset + 2] = (byte) (value >>> 16);
+		data[offset + 3] = (byte) (value >>> 24);
+	}
+}
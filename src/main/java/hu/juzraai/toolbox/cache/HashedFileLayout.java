@@ -0,0 +1,125 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.test.Check;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * {@link FileLayout} which spreads keys over a tree of subdirectories, named
+ * after hexadecimal digits of the hash of the key. For example with 2 levels
+ * and 2 digits per level, key <code>"page-1"</code> may be stored as
+ * <code>"3f/a0/page-1"</code>. This keeps the number of entries per directory
+ * low, which makes file lookups faster on most filesystems.
+ *
+ * @author Zsolt Jurányi
+ * @see FileLayout
+ * @since 26.10
+ */
+public class HashedFileLayout extends FileLayout {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final int levels;
+	private final int width;
+
+	/**
+	 * Creates a new instance with 2 levels and 2 digits per level, which means
+	 * 65536 leaf directories.
+	 */
+	public HashedFileLayout() {
+		this(2, 2);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param levels Number of subdirectory levels
+	 * @param width  Number of hexadecimal digits in the name of a
+	 *               subdirectory, <code>levels * width</code> must not exceed
+	 *               8
+	 */
+	public HashedFileLayout(int levels, int width) {
+		Check.argument(0 < levels, "levels must be positive");
+		Check.argument(0 < width, "width must be positive");
+		Check.argument(levels * width <= 8, "levels * width must not exceed 8");
+		this.levels = levels;
+		this.width = width;
+	}
+
+	/**
+	 * Calculates a well distributed 32-bit hash of the key, using the
+	 * finalizer of MurmurHash3 on {@link String#hashCode()} which is
+	 * specified to be the same on all JVMs.
+	 */
+	private static int hash(@Nonnull String key) {
+		int h = key.hashCode();
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * @return Number of subdirectory levels
+	 */
+	public int getLevels() {
+		return levels;
+	}
+
+	/**
+	 * @return Number of hexadecimal digits in the name of a subdirectory
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Strips the hashed subdirectories from the path and checks whether they
+	 * match the hash of the remaining key.
+	 *
+	 * @param path Relative path of a file inside the cache directory, using
+	 *             slash as separator
+	 * @return The key or <code>null</code> if the path doesn't start with the
+	 * appropriate subdirectories
+	 */
+	@Override
+	@CheckForNull
+	public String keyOf(@Nonnull String path) {
+		int prefix = levels * (width + 1);
+		if (path.length() <= prefix) {
+			return null;
+		}
+		String key = path.substring(prefix);
+		return path.equals(pathOf(key)) ? key : null;
+	}
+
+	/**
+	 * Prepends the hashed subdirectories to the key.
+	 *
+	 * @param key A valid key
+	 * @return Relative path of the file inside the cache directory
+	 */
+	@Override
+	@Nonnull
+	public String pathOf(@Nonnull String key) {
+		int h = hash(key);
+		StringBuilder s = new StringBuilder(levels * (width + 1) + key.length());
+		int shift = 28;
+		for (int l = 0; l < levels; l++) {
+			for (int w = 0; w < width; w++) {
+				s.append(HEX[(h >>> shift) & 0xf]);
+				shift -= 4;
+			}
+			s.append('/');
+		}
+		return s.append(key).toString();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("HASHED(%d x %d)", levels, width);
+	}
+}
@@ -0,0 +1,47 @@
+package hu.juzraai.toolbox.cache;
+
+import javax.annotation.Nonnull;
+
+/**
+ * 64-bit hashing of keys for the caches, stable between JVMs, so hashes can
+ * be persisted or used to assign keys to directories.
+ *
+ * @author Zsolt Jurányi
+ * @since 26.10
+ */
+final class Hashes {
+
+	private Hashes() {
+	}
+
+	/**
+	 * FNV-1a over the characters followed by the finalizer of MurmurHash3.
+	 *
+	 * @param key The string to be hashed
+	 * @return Well distributed 64-bit hash of the string
+	 */
+	static long hash(@Nonnull String key) {
+		long h = 0xCBF29CE484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x100000001B3L;
+		}
+		return mix(h);
+	}
+
+	/**
+	 * The finalizer of MurmurHash3 (fmix64), which spreads every input bit
+	 * over the whole output.
+	 *
+	 * @param h The value to be mixed
+	 * @return The mixed value
+	 */
+	static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,56 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.test.Check;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * {@link Serializer} which uses the built-in Java serialization. It handles
+ * any {@link Serializable} object graph, but it's slower and produces bigger
+ * files than {@link BinarySerializer}.
+ *
+ * @param <T> Type of objects the serializer handles
+ * @author Zsolt Jurányi
+ * @see Serializer
+ * @since 26.10
+ */
+public class JavaSerializer<T extends Serializable> implements Serializer<T> {
+
+	private final Class<T> type;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param type Class of the objects, read objects are checked against it
+	 */
+	public JavaSerializer(@Nonnull Class<T> type) {
+		this.type = Check.notNull(type, "type must not be null");
+	}
+
+	@Nonnull
+	@Override
+	public T read(@Nonnull InputStream in) throws IOException {
+		try {
+			Object value = new ObjectInputStream(in).readObject();
+			if (!type.isInstance(value)) {
+				throw new IOException("Expected " + type.getName() + " but found " + (null == value ? "null" : value.getClass().getName()));
+			}
+			return type.cast(value);
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public void write(@Nonnull T value, @Nonnull OutputStream out) throws IOException {
+		ObjectOutputStream o = new ObjectOutputStream(out);
+		o.writeObject(value);
+		o.flush();
+	}
+}
@@ -0,0 +1,82 @@
+package hu.juzraai.toolbox.cache;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with power of two buckets. Bucket
+ * <code>i</code> counts latencies between <code>2^(i-1)</code> and
+ * <code>2^i - 1</code> nanoseconds, so recording needs only a leading zero
+ * count and two atomic additions, and the relative error of percentiles is at
+ * most 2x, which is enough to tell memory hits from disk reads.
+ *
+ * @author Zsolt Jurányi
+ * @see LatencySnapshot
+ * @since 26.10
+ */
+final class LatencyHistogram {
+
+	static final int BUCKETS = 64;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param nanos Latency in nanoseconds
+	 * @return Index of the bucket which counts the given latency
+	 */
+	static int bucketOf(long nanos) {
+		return BUCKETS - Long.numberOfLeadingZeros(nanos);
+	}
+
+	/**
+	 * @param bucket Index of a bucket
+	 * @return The highest latency counted by the given bucket, in nanoseconds
+	 */
+	static long upperBoundOf(int bucket) {
+		return 0 == bucket ? 0 : -1L >>> (BUCKETS - bucket); // 2^bucket - 1 without overflow
+	}
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param nanos Latency in nanoseconds, negative values are recorded as 0
+	 */
+	void record(long nanos) {
+		long n = Math.max(0, nanos);
+		counts.incrementAndGet(bucketOf(n));
+		total.addAndGet(n);
+		long m = max.get();
+		while (n > m && !max.compareAndSet(m, n)) {
+			m = max.get();
+		}
+	}
+
+	/**
+	 * Clears the recorded latencies.
+	 */
+	void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		total.set(0);
+		max.set(0);
+	}
+
+	/**
+	 * Copies the current state of the histogram. Latencies recorded
+	 * concurrently may be partially reflected.
+	 *
+	 * @return A new snapshot
+	 */
+	@Nonnull
+	LatencySnapshot snapshot() {
+		long[] buckets = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = counts.get(i);
+		}
+		return new LatencySnapshot(buckets, total.get(), max.get());
+	}
+}
@@ -0,0 +1,130 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.test.Check;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable copy of a latency histogram recorded by {@link CacheMetrics}.
+ * Percentiles are estimated from power of two buckets: the returned value is
+ * the upper bound of the bucket containing the percentile, capped by the
+ * maximum latency, so it's at most twice the real one.
+ *
+ * @author Zsolt Jurányi
+ * @see CacheMetrics
+ * @since 26.10
+ */
+public final class LatencySnapshot {
+
+	private final long[] buckets;
+	private final long count;
+	private final long totalNanos;
+	private final long maxNanos;
+
+	LatencySnapshot(@Nonnull long[] buckets, long totalNanos, long maxNanos) {
+		this.buckets = buckets;
+		long count = 0;
+		for (long c : buckets) {
+			count += c;
+		}
+		this.count = count;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+	}
+
+	/**
+	 * @return Number of operations in each bucket, bucket <code>i</code>
+	 * counts latencies between <code>2^(i-1)</code> and <code>2^i - 1</code>
+	 * nanoseconds
+	 */
+	@Nonnull
+	public long[] getBuckets() {
+		return buckets.clone();
+	}
+
+	/**
+	 * @return Number of recorded operations
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return The highest recorded latency in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	/**
+	 * @return Average latency in nanoseconds, or 0 if there are no recorded
+	 * operations
+	 */
+	public long getMeanNanos() {
+		return 0 == count ? 0 : totalNanos / count;
+	}
+
+	/**
+	 * @return Estimated median latency in nanoseconds
+	 */
+	public long getMedianNanos() {
+		return getPercentileNanos(0.5);
+	}
+
+	/**
+	 * @return Estimated 90th percentile latency in nanoseconds
+	 */
+	public long getP90Nanos() {
+		return getPercentileNanos(0.9);
+	}
+
+	/**
+	 * @return Estimated 99th percentile latency in nanoseconds
+	 */
+	public long getP99Nanos() {
+		return getPercentileNanos(0.99);
+	}
+
+	/**
+	 * @return Estimated 99.9th percentile latency in nanoseconds
+	 */
+	public long getP999Nanos() {
+		return getPercentileNanos(0.999);
+	}
+
+	/**
+	 * Estimates the given percentile of recorded latencies.
+	 *
+	 * @param quantile Quantile between 0 and 1, e.g. 0.99 for the 99th
+	 *                 percentile
+	 * @return Estimated latency in nanoseconds, or 0 if there are no recorded
+	 * operations
+	 */
+	public long getPercentileNanos(double quantile) {
+		Check.argument(0 <= quantile && quantile <= 1, "quantile must be between 0 and 1");
+		long rank = Math.max(1, (long) Math.ceil(quantile * count));
+		long seen = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			seen += buckets[i];
+			if (rank <= seen) {
+				return Math.min(LatencyHistogram.upperBoundOf(i), maxNanos);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return Sum of recorded latencies in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("LatencySnapshot{count=%d, mean=%dus, median=%dus, p99=%dus, max=%dus}", count,
+				TimeUnit.NANOSECONDS.toMicros(getMeanNanos()), TimeUnit.NANOSECONDS.toMicros(getMedianNanos()),
+				TimeUnit.NANOSECONDS.toMicros(getP99Nanos()), TimeUnit.NANOSECONDS.toMicros(maxNanos));
+	}
+}
@@ -0,0 +1,183 @@
+package hu.juzraai.toolbox.cache;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Fast, low-ratio {@link Codec} implemented in pure Java. It's an LZ77
+ * variant using the block format of LZ4: a sequence of literal runs and
+ * back-references of at least 4 bytes within a 64 KB window, found with a
+ * single-probe hash table. It trades ratio for speed: it compresses several
+ * times faster than deflate at its default level, but produces bigger output.
+ * It has no checksum.
+ *
+ * @author Zsolt Jurányi
+ * @see Codec
+ * @since 26.10
+ */
+public class LzCodec implements Codec {
+
+	/**
+	 * ID of the LZ codec.
+	 */
+	public static final byte ID = 2;
+
+	private static final int MIN_MATCH = 4;
+	private static final int LAST_LITERALS = 5;
+	private static final int MATCH_FIND_LIMIT = 12;
+	private static final int MAX_OFFSET = 65535;
+	private static final int HASH_LOG = 14;
+	private static final int RUN_MASK = 15;
+
+	private static final ThreadLocal<int[]> HASH_TABLE = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1 << HASH_LOG];
+		}
+	};
+
+	private static final ThreadLocal<byte[]> OUTPUT = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[64 * 1024];
+		}
+	};
+
+	@Nonnull
+	@Override
+	public byte[] decode(@Nonnull byte[] data, int offset, int length, int decodedLength) throws IOException {
+		byte[] out = new byte[decodedLength];
+		int s = offset;
+		int end = offset + length;
+		int d = 0;
+		try {
+			while (true) {
+				int token = data[s++] & 0xff;
+				int literals = token >>> 4;
+				if (RUN_MASK == literals) {
+					int b;
+					do {
+						b = data[s++] & 0xff;
+						literals += b;
+					} while (255 == b);
+				}
+				if (end < s + literals || out.length < d + literals) {
+					throw new IOException("Corrupt LZ data");
+				}
+				System.arraycopy(data, s, out, d, literals);
+				s += literals;
+				d += literals;
+				if (s == end) {
+					break; // last sequence has no match
+				}
+				int distance = (data[s] & 0xff) | (data[s + 1] & 0xff) << 8;
+				s += 2;
+				int matchLength = token & RUN_MASK;
+				if (RUN_MASK == matchLength) {
+					int b;
+					do {
+						b = data[s++] & 0xff;
+						matchLength += b;
+					} while (255 == b);
+				}
+				matchLength += MIN_MATCH;
+				int ref = d - distance;
+				if (0 == distance || ref < 0 || out.length < d + matchLength) {
+					throw new IOException("Corrupt LZ data");
+				}
+				int copyEnd = d + matchLength;
+				while (d < copyEnd) { // overlapping copy repeats the pattern, chunks double
+					int chunk = Math.min(copyEnd - d, d - ref);
+					System.arraycopy(out, ref, out, d, chunk);
+					d += chunk;
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Corrupt LZ data", e);
+		}
+		if (d != out.length) {
+			throw new IOException("Corrupt LZ data");
+		}
+		return out;
+	}
+
+	@Override
+	public void encode(@Nonnull byte[] data, int offset, int length, @Nonnull OutputStream out) throws IOException {
+		int maxLength = length + length / 255 + 16;
+		byte[] buffer = OUTPUT.get();
+		if (buffer.length < maxLength) {
+			buffer = new byte[maxLength];
+			if (maxLength <= TextFiles.MAX_RETAINED_BUFFER_SIZE) {
+				OUTPUT.set(buffer);
+			}
+		}
+		int[] table = HASH_TABLE.get();
+		Arrays.fill(table, -1);
+
+		int o = 0;
+		int end = offset + length;
+		int anchor = offset;
+		int i = offset;
+		int limit = end - MATCH_FIND_LIMIT;
+		int matchLimit = end - LAST_LITERALS;
+		while (i < limit) {
+			int sequence = readInt(data, i);
+			int h = hash(sequence);
+			int ref = table[h];
+			table[h] = i;
+			if (0 <= ref && i - ref <= MAX_OFFSET && readInt(data, ref) == sequence) {
+				int matchLength = MIN_MATCH;
+				while (i + matchLength < matchLimit && data[ref + matchLength] == data[i + matchLength]) {
+					matchLength++;
+				}
+				o = writeLiterals(buffer, o, data, anchor, i - anchor, matchLength - MIN_MATCH);
+				buffer[o++] = (byte) (i - ref);
+				buffer[o++] = (byte) ((i - ref) >>> 8);
+				if (RUN_MASK <= matchLength - MIN_MATCH) {
+					o = writeLength(buffer, o, matchLength - MIN_MATCH - RUN_MASK);
+				}
+				i += matchLength;
+				anchor = i;
+			} else {
+				i++;
+			}
+		}
+		o = writeLiterals(buffer, o, data, anchor, end - anchor, 0);
+		out.write(buffer, 0, o);
+	}
+
+	@Override
+	public byte getId() {
+		return ID;
+	}
+
+	private static int hash(int sequence) {
+		return (sequence * -1640531535) >>> (32 - HASH_LOG);
+	}
+
+	private static int readInt(@Nonnull byte[] data, int offset) {
+		return (data[offset] & 0xff) | (data[offset + 1] & 0xff) << 8
+				| (data[offset + 2] & 0xff) << 16 | (data[offset + 3] & 0xff) << 24;
+	}
+
+	private static int writeLength(@Nonnull byte[] out, int position, int length) {
+		while (255 <= length) {
+			out[position++] = (byte) 255;
+			length -= 255;
+		}
+		out[position++] = (byte) length;
+		return position;
+	}
+
+	private static int writeLiterals(@Nonnull byte[] out, int position, @Nonnull byte[] data, int from, int length, int matchLength) {
+		int token = position++;
+		out[token] = (byte) (Math.min(length, RUN_MASK) << 4 | Math.min(matchLength, RUN_MASK));
+		if (RUN_MASK <= length) {
+			position = writeLength(out, position, length - RUN_MASK);
+		}
+		System.arraycopy(data, from, out, position, length);
+		return position + length;
+	}
+}
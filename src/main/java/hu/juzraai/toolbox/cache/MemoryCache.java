@@ -0,0 +1,414 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.test.Check;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * {@link Cache} decorator which keeps the recently used elements of another
+ * cache in memory, so repeated reads of hot keys don't need to reach the
+ * backend (e.g. disk I/O and decompression in case of {@link
+ * GzFileCacheForStrings}).
+ * <p>
+ * The memory tier is bounded by total weight, which is the number of entries
+ * by default, or can be calculated by a {@link Weigher}. When the bound is
+ * exceeded, the least recently used entries are evicted.
+ * <p>
+ * Writes and removals go through to the backend and update or invalidate the
+ * memory tier. Expiration is the same as the backend's, and the memory tier
+ * remembers the timestamps provided by the backend, so expiration checks of
+ * cached keys don't need to reach the backend either.
+ * <p>
+ * The {@link #getMetrics()} of this cache describe the memory tier: a fetch
+ * is a hit only if it's served from memory, and no bytes are counted. The
+ * backend records its own operations.
+ *
+ * @param <T> Type of content which the cache handles.
+ * @author Zsolt Jurányi
+ * @see Cache
+ * @since 26.10
+ */
+public class MemoryCache<T> extends Cache<T> {
+
+	/**
+	 * {@link Weigher} which returns the length of a string content.
+	 */
+	public static final Weigher<String> STRING_LENGTH = new Weigher<String>() {
+		@Override
+		public long weigh(@Nonnull String key, @Nonnull String content) {
+			return content.length();
+		}
+	};
+
+	private static final Weigher<Object> ONE = new Weigher<Object>() {
+		@Override
+		public long weigh(@Nonnull String key, @Nonnull Object content) {
+			return 1;
+		}
+	};
+
+	private final Cache<T> backend;
+	private final long maxWeight;
+	private final Weigher<? super T> weigher;
+	private final LinkedHashMap<String, Entry<T>> entries = new LinkedHashMap<String, Entry<T>>(16, 0.75f, true);
+	private final StripedLocks locks = new StripedLocks();
+	private long weight;
+
+	/**
+	 * Creates a new instance which holds at most the given number of entries
+	 * in memory.
+	 *
+	 * @param backend    The cache to be decorated
+	 * @param maxEntries Maximum number of entries kept in memory
+	 */
+	public MemoryCache(@Nonnull Cache<T> backend, int maxEntries) {
+		this(backend, maxEntries, ONE);
+	}
+
+	/**
+	 * Creates a new instance which holds entries in memory as long as their
+	 * total weight doesn't exceed the given bound.
+	 *
+	 * @param backend   The cache to be decorated
+	 * @param maxWeight Maximum total weight of entries kept in memory
+	 * @param weigher   Calculates the weight of an entry
+	 */
+	public MemoryCache(@Nonnull Cache<T> backend, long maxWeight, @Nonnull Weigher<? super T> weigher) {
+		super(Check.notNull(backend, "backend must not be null").getExpiration());
+		Check.argument(0 <= maxWeight, "maxWeight must be non-negative");
+		this.backend = backend;
+		this.maxWeight = maxWeight;
+		this.weigher = Check.notNull(weigher, "weigher must not be null");
+	}
+
+	/**
+	 * Checks the memory tier first, then the backend.
+	 *
+	 * @param key Key to be checked
+	 * @return <code>true</code> if the key exists, <code>false</code> otherwise
+	 */
+	@Override
+	public boolean contains(@Nonnull String key) {
+		return null != getEntry(key) || backend.contains(key);
+	}
+
+	/**
+	 * Checks the memory tier first, using the remembered timestamp, then the
+	 * backend.
+	 *
+	 * @param key Key to be checked
+	 * @return <code>true</code> if the key exists and not expired,
+	 * <code>false</code> otherwise
+	 */
+	@Override
+	public boolean containsAndNotExpired(@Nonnull String key) {
+		Entry<T> e = getEntry(key);
+		return null != e ? !isExpired(e.timestamp) : backend.containsAndNotExpired(key);
+	}
+
+	/**
+	 * Returns the content from the memory tier, or loads it from the backend
+	 * and puts it into the memory tier.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content object or <code>null</code> if the key doesn't exist
+	 * in the cache
+	 */
+	@Override
+	@CheckForNull
+	public T fetch(@Nonnull String key) {
+		long start = System.nanoTime();
+		Entry<T> e = getEntry(key);
+		if (null != e) {
+			getMetrics().recordHit(start, 0);
+			return e.content;
+		}
+		CacheEntry<T> entry = fetchEntry(key);
+		return null != entry ? entry.getContent() : null;
+	}
+
+	/**
+	 * Returns the contents found in the memory tier, and fetches the others
+	 * from the backend in one bulk operation. Contents read from the backend
+	 * are not put into the memory tier, so bulk reads don't evict hot
+	 * entries.
+	 *
+	 * @param keys Keys to identify the required contents
+	 * @return Map of the keys found in the cache and their contents, in the
+	 * order of the given keys
+	 */
+	@Override
+	@Nonnull
+	public Map<String, T> fetchAll(@Nonnull Collection<String> keys) {
+		long start = System.nanoTime();
+		Map<String, T> hits = new HashMap<String, T>();
+		List<String> misses = new ArrayList<String>();
+		for (String key : keys) {
+			Entry<T> e = getEntry(key);
+			if (null != e) {
+				hits.put(key, e.content);
+				getMetrics().recordHit(start, 0);
+			} else {
+				misses.add(key);
+			}
+		}
+		Map<String, T> loaded = misses.isEmpty() ? Collections.<String, T>emptyMap() : backend.fetchAll(misses);
+		for (int i = 0; i < misses.size(); i++) {
+			getMetrics().recordMiss(start);
+		}
+		Map<String, T> result = new LinkedHashMap<String, T>();
+		for (String key : keys) {
+			T content = hits.containsKey(key) ? hits.get(key) : loaded.get(key);
+			if (null != content) {
+				result.put(key, content);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the content and its timestamp from the memory tier, or loads
+	 * them from the backend in one call and puts them into the memory tier.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content and its timestamp or <code>null</code> if the key
+	 * doesn't exist in the cache
+	 */
+	@Override
+	@CheckForNull
+	public CacheEntry<T> fetchEntry(@Nonnull String key) {
+		long start = System.nanoTime();
+		Entry<T> e = getEntry(key);
+		if (null != e) {
+			getMetrics().recordHit(start, 0);
+			return new CacheEntry<T>(e.content, e.timestamp);
+		}
+		Lock lock = locks.readLock(key); // a store can't overtake us
+		lock.lock();
+		try {
+			CacheEntry<T> entry = backend.fetchEntry(key);
+			if (null != entry) {
+				put(key, entry.getContent(), entry.getTimestamp());
+			}
+			getMetrics().recordMiss(start);
+			return entry;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the content from the memory tier if it's not expired, or falls
+	 * back to the backend.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content object or <code>null</code> if the key is expired or
+	 * doesn't exist in the cache
+	 */
+	@Override
+	@CheckForNull
+	public T fetchIfNotExpired(@Nonnull String key) {
+		long start = System.nanoTime();
+		Entry<T> e = getEntry(key);
+		if (null != e) {
+			if (isExpired(e.timestamp)) {
+				getMetrics().recordExpiredHit(start);
+				return null;
+			}
+			getMetrics().recordHit(start, 0);
+			return e.content;
+		}
+		CacheEntry<T> entry = fetchEntry(key);
+		return null == entry || isExpired(entry.getTimestamp()) ? null : entry.getContent();
+	}
+
+	/**
+	 * @return The decorated cache
+	 */
+	@Nonnull
+	public Cache<T> getBackend() {
+		return backend;
+	}
+
+	@CheckForNull
+	private Entry<T> getEntry(@Nonnull String key) {
+		Check.notNull(key, "key must not be null");
+		synchronized (entries) {
+			return entries.get(key);
+		}
+	}
+
+	/**
+	 * @return The maximum total weight of entries kept in memory
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * Removes the given key from the memory tier only, the backend is not
+	 * affected.
+	 *
+	 * @param key Key to be removed from memory
+	 */
+	public void invalidate(@Nonnull String key) {
+		synchronized (entries) {
+			Entry<T> e = entries.remove(key);
+			if (null != e) {
+				weight -= e.weight;
+			}
+		}
+	}
+
+	/**
+	 * Clears the memory tier, the backend is not affected.
+	 */
+	public void invalidateAll() {
+		synchronized (entries) {
+			entries.clear();
+			weight = 0;
+		}
+	}
+
+	/**
+	 * Purges expired entries of the backend, and drops expired entries from
+	 * the memory tier.
+	 *
+	 * @return Number of entries and bytes reclaimed in the backend
+	 */
+	@Override
+	@Nonnull
+	public PurgeResult purgeExpired() {
+		PurgeResult result = backend.purgeExpired();
+		synchronized (entries) {
+			Iterator<Entry<T>> i = entries.values().iterator();
+			while (i.hasNext()) {
+				Entry<T> e = i.next();
+				if (isExpired(e.timestamp)) {
+					weight -= e.weight;
+					i.remove();
+				}
+			}
+		}
+		return result;
+	}
+
+	private void put(@Nonnull String key, @Nonnull T content, @CheckForNull Date timestamp) {
+		long w = weigher.weigh(key, content);
+		Check.state(0 <= w, "weigher returned negative weight");
+		synchronized (entries) {
+			Entry<T> old = entries.remove(key);
+			if (null != old) {
+				weight -= old.weight;
+			}
+			if (w > maxWeight) {
+				return; // would evict everything else
+			}
+			entries.put(key, new Entry<T>(content, timestamp, w));
+			weight += w;
+			Iterator<Map.Entry<String, Entry<T>>> i = entries.entrySet().iterator();
+			while (weight > maxWeight && i.hasNext()) {
+				weight -= i.next().getValue().weight;
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Removes the content from both the memory tier and the backend.
+	 *
+	 * @param key Key to be removed from cache
+	 */
+	@Override
+	public void remove(@Nonnull String key) {
+		long start = System.nanoTime();
+		Lock lock = locks.writeLock(key);
+		lock.lock();
+		try {
+			invalidate(key);
+			backend.remove(key);
+			getMetrics().recordRemoval(start);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Number of entries in the memory tier
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Stores the content in the backend, and on success, in the memory tier
+	 * too.
+	 *
+	 * @param key     Key which identifies the content
+	 * @param content The content object to be stored
+	 * @return <code>true</code> if the storing succeded, <code>false</code> if
+	 * it failed
+	 */
+	@Override
+	public boolean store(@Nonnull String key, @Nonnull T content) {
+		long start = System.nanoTime();
+		Lock lock = locks.writeLock(key);
+		lock.lock();
+		try {
+			invalidate(key);
+			boolean stored = backend.store(key, content);
+			if (stored) {
+				put(key, content, backend.timestampOf(key));
+				getMetrics().recordStore(start, 0);
+			}
+			return stored;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the timestamp remembered in the memory tier, or asks the backend
+	 * if the key is not in memory.
+	 *
+	 * @param key Key which identifies the element
+	 * @return Timestamp of the element or <code>null</code> if it's not
+	 * applicable.
+	 */
+	@Override
+	@CheckForNull
+	public Date timestampOf(@Nonnull String key) {
+		Entry<T> e = getEntry(key);
+		return null != e ? e.timestamp : backend.timestampOf(key);
+	}
+
+	/**
+	 * @return Total weight of entries in the memory tier
+	 */
+	public long weight() {
+		synchronized (entries) {
+			return weight;
+		}
+	}
+
+	/**
+	 * Element of the memory tier.
+	 */
+	private static final class Entry<T> {
+
+		private final T content;
+		private final Date timestamp;
+		private final long weight;
+
+		private Entry(T content, Date timestamp, long weight) {
+			this.content = content;
+			this.timestamp = timestamp;
+			this.weight = weight;
+		}
+	}
+}
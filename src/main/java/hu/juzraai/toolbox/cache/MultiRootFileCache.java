@@ -0,0 +1,555 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Check;
+import org.slf4j.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * {@link Cache} implementation which spreads keys over several {@link
+ * FileCache} roots, e.g. one per disk, so the throughput of the devices adds
+ * up. Keys are assigned to roots by consistent hashing: every root owns
+ * points on a hash ring in proportion to its weight, and a key belongs to the
+ * first point after its hash. Bulk operations and purging run on the roots in
+ * parallel.
+ * <p>
+ * Roots can be added with {@link #addRoot(FileCache, int)}, which moves
+ * only about <code>weight / total weight</code> of the keys to the new root.
+ * Until {@link #rebalance()} is called, keys are looked up at their former
+ * roots too, and they are moved to their new root when they are fetched.
+ * Moves, stores and removals of a key are serialized by a lock of the key,
+ * so a moved old entry can't overwrite a concurrently stored new one.
+ * <p>
+ * The roots must have the same expiration, and they should not be used
+ * directly. Roots are identified on the ring by the absolute path of their
+ * directory, so the assignment of keys doesn't depend on the order of roots.
+ * The {@link #getMetrics()} of this cache count operations, bytes are
+ * recorded by the roots.
+ *
+ * @param <T> Type of content which the cache handles
+ * @author Zsolt Jurányi
+ * @see FileCache
+ * @since 26.10
+ */
+public class MultiRootFileCache<T> extends Cache<T> {
+
+	/**
+	 * Number of points a root owns on the hash ring per unit of weight.
+	 */
+	public static final int POINTS_PER_WEIGHT = 160;
+
+	private static final Logger L = LoggerFactory.getLogger(MultiRootFileCache.class);
+
+	private final StripedLocks locks = new StripedLocks();
+	private final Map<FileCache<T>, Integer> weights = new LinkedHashMap<FileCache<T>, Integer>(); // guarded by this
+	private volatile Ring<T> ring;
+	private volatile List<Ring<T>> formerRings = Collections.emptyList();
+	private ExecutorService executor; // guarded by this
+
+	/**
+	 * Creates a new instance with the given roots, each of them with weight
+	 * 1.
+	 *
+	 * @param roots The caches where keys are spread, they must have the same
+	 *              expiration
+	 */
+	@SafeVarargs
+	public MultiRootFileCache(@Nonnull FileCache<T>... roots) {
+		super(0 < Check.notNull(roots, "roots must not be null").length ? expirationOf(roots[0]) : null);
+		Check.argument(0 < roots.length, "at least one root is required");
+		for (FileCache<T> root : roots) {
+			addWeight(root, 1);
+		}
+		this.ring = new Ring<T>(weights);
+	}
+
+	@CheckForNull
+	private static Long expirationOf(@Nonnull FileCache<?> root) {
+		return Check.notNull(root, "root must not be null").getExpiration();
+	}
+
+	/**
+	 * Adds a root to the cache. About <code>weight / total weight</code> of
+	 * the keys will belong to the new root, they are moved lazily when they
+	 * are fetched, or by {@link #rebalance()}.
+	 *
+	 * @param root   The cache to be added, it must have the same expiration as
+	 *               the others
+	 * @param weight Weight of the root, e.g. 2 for a disk which is twice as
+	 *               fast as the one with weight 1
+	 */
+	public synchronized void addRoot(@Nonnull FileCache<T> root, int weight) {
+		addWeight(root, weight);
+		List<Ring<T>> former = new ArrayList<Ring<T>>(formerRings);
+		former.add(0, ring);
+		formerRings = former;
+		ring = new Ring<T>(weights);
+		L.info("Added root with weight {}: {}", weight, root.getDirectory().getAbsolutePath());
+	}
+
+	private void addWeight(@Nonnull FileCache<T> root, int weight) {
+		Check.notNull(root, "root must not be null");
+		Check.argument(0 < weight, "weight must be positive");
+		Check.argument(!weights.containsKey(root), "root is already added");
+		Long expiration = getExpiration();
+		Check.argument(null == expiration ? null == root.getExpiration() : expiration.equals(root.getExpiration()), "roots must have the same expiration");
+		weights.put(root, weight);
+	}
+
+	@Override
+	public boolean contains(@Nonnull String key) {
+		if (ring.rootOf(key).contains(key)) {
+			return true;
+		}
+		for (FileCache<T> former : formerRootsOf(key)) {
+			if (former.contains(key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Nonnull
+	private synchronized ExecutorService executor() {
+		if (null == executor) {
+			executor = Executors.newCachedThreadPool(new DaemonThreadFactory("multi-root-file-cache"));
+		}
+		return executor;
+	}
+
+	@CheckForNull
+	@Override
+	public T fetch(@Nonnull String key) {
+		CacheEntry<T> entry = fetchEntry(key);
+		return null == entry ? null : entry.getContent();
+	}
+
+	/**
+	 * Fetches the contents from their roots, querying the roots in parallel.
+	 *
+	 * @param keys Keys to identify the required contents
+	 * @return Map of the keys found in the cache and their contents, in the
+	 * order of the given keys
+	 */
+	@Nonnull
+	@Override
+	public Map<String, T> fetchAll(@Nonnull Collection<String> keys) {
+		long start = System.nanoTime();
+		final Map<FileCache<T>, List<String>> groups = new LinkedHashMap<FileCache<T>, List<String>>();
+		Ring<T> r = ring;
+		for (String key : keys) {
+			FileCache<T> root = r.rootOf(Check.notNull(key, "key must not be null"));
+			if (!groups.containsKey(root)) {
+				groups.put(root, new ArrayList<String>());
+			}
+			groups.get(root).add(key);
+		}
+		final Map<String, T> found = Collections.synchronizedMap(new LinkedHashMap<String, T>());
+		parallel(groups.keySet(), new RootTask<T>() {
+			@Override
+			public boolean run(@Nonnull FileCache<T> root) {
+				found.putAll(root.fetchAll(groups.get(root)));
+				return true;
+			}
+		});
+		Map<String, T> result = new LinkedHashMap<String, T>();
+		for (String key : keys) {
+			T content = found.get(key);
+			if (null != content) {
+				getMetrics().recordHit(start, 0);
+			} else if (formerRings.isEmpty()) {
+				getMetrics().recordMiss(start);
+			} else {
+				content = fetch(key); // records the metrics
+			}
+			if (null != content) {
+				result.put(key, content);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Fetches the entry from the root of the key. If it's not there, the
+	 * former roots are checked, and an entry found there is moved to its
+	 * root.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content and its timestamp or <code>null</code> if the key
+	 * doesn't exist in the cache
+	 */
+	@CheckForNull
+	@Override
+	public CacheEntry<T> fetchEntry(@Nonnull String key) {
+		long start = System.nanoTime();
+		FileCache<T> root = ring.rootOf(key);
+		CacheEntry<T> entry = root.fetchEntry(key);
+		List<FileCache<T>> formers = null == entry ? formerRootsOf(key) : Collections.<FileCache<T>>emptyList();
+		if (!formers.isEmpty()) {
+			Lock lock = locks.writeLock(key);
+			lock.lock();
+			try {
+				entry = root.fetchEntry(key); // may have been stored meanwhile
+				for (FileCache<T> former : formers) {
+					if (null != entry) {
+						break;
+					}
+					entry = move(key, former, root);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		if (null == entry) {
+			getMetrics().recordMiss(start);
+		} else {
+			getMetrics().recordHit(start, 0);
+		}
+		return entry;
+	}
+
+	/**
+	 * Lists the distinct roots which owned the key before roots were added,
+	 * except its current root.
+	 */
+	@Nonnull
+	private List<FileCache<T>> formerRootsOf(@Nonnull String key) {
+		List<Ring<T>> former = formerRings;
+		if (former.isEmpty()) {
+			return Collections.emptyList();
+		}
+		FileCache<T> root = ring.rootOf(key);
+		List<FileCache<T>> roots = new ArrayList<FileCache<T>>();
+		for (Ring<T> r : former) {
+			FileCache<T> f = r.rootOf(key);
+			if (root != f && !roots.contains(f)) {
+				roots.add(f);
+			}
+		}
+		return roots;
+	}
+
+	/**
+	 * @return The roots of the cache, in the order they were added
+	 */
+	@Nonnull
+	public synchronized List<FileCache<T>> getRoots() {
+		return Collections.unmodifiableList(new ArrayList<FileCache<T>>(weights.keySet()));
+	}
+
+	/**
+	 * Moves the entry from its former root to its new root, keeping its
+	 * timestamp, then removes it from its former root. If the new root
+	 * already has a newer entry, only the former one is removed. It must be
+	 * called while holding the lock of the key.
+	 *
+	 * @return The moved entry, or <code>null</code> if nothing was moved
+	 */
+	@CheckForNull
+	private CacheEntry<T> move(@Nonnull String key, @Nonnull FileCache<T> from, @Nonnull FileCache<T> to) {
+		CacheEntry<T> entry = from.fetchEntry(key);
+		if (null == entry) {
+			return null;
+		}
+		Date timestamp = entry.getTimestamp();
+		Date newer = to.contains(key) ? to.timestampOf(key) : null;
+		if (null != newer && (null == timestamp || !newer.before(timestamp))) {
+			from.remove(key); // stored at its new root meanwhile
+			return null;
+		}
+		if (!to.store(key, entry.getContent())) {
+			return null;
+		}
+		if (null != timestamp && !to.setTimestamp(key, timestamp.getTime())) {
+			L.warn("Failed to keep timestamp of '{}' while moving it to {}", key, to.getDirectory().getAbsolutePath());
+		}
+		from.remove(key);
+		L.debug("'{}' moved from {} to {}", key, from.getDirectory().getAbsolutePath(), to.getDirectory().getAbsolutePath());
+		return entry;
+	}
+
+	/**
+	 * Runs the task on the given roots in parallel.
+	 *
+	 * @return <code>true</code> if the task succeeded on every root
+	 */
+	private boolean parallel(@Nonnull Collection<FileCache<T>> roots, @Nonnull final RootTask<T> task) {
+		if (1 == roots.size()) {
+			return task.run(roots.iterator().next());
+		}
+		List<Callable<Boolean>> calls = new ArrayList<Callable<Boolean>>();
+		for (final FileCache<T> root : roots) {
+			calls.add(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					return task.run(root);
+				}
+			});
+		}
+		boolean success = true;
+		try {
+			for (Future<Boolean> f : executor().invokeAll(calls)) {
+				success &= f.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			L.error("Operation failed on a root", e.getCause());
+			return false;
+		}
+		return success;
+	}
+
+	/**
+	 * Removes every expired entry from every root, purging the roots in
+	 * parallel.
+	 *
+	 * @return Number of entries and bytes reclaimed
+	 */
+	@Nonnull
+	@Override
+	public PurgeResult purgeExpired() {
+		final AtomicLong entries = new AtomicLong();
+		final AtomicLong bytes = new AtomicLong();
+		parallel(getRoots(), new RootTask<T>() {
+			@Override
+			public boolean run(@Nonnull FileCache<T> root) {
+				PurgeResult result = root.purgeExpired();
+				entries.addAndGet(result.getEntries());
+				bytes.addAndGet(result.getBytes());
+				return true;
+			}
+		});
+		return new PurgeResult(entries.get(), bytes.get());
+	}
+
+	/**
+	 * Moves every key which is not stored at its root, walking the roots in
+	 * parallel. After it finished, keys are looked up only at their root. The
+	 * cache can be used meanwhile.
+	 *
+	 * @return Number of keys moved
+	 */
+	public long rebalance() {
+		long t = System.currentTimeMillis();
+		final List<Ring<T>> former = formerRings;
+		final Ring<T> r = ring;
+		final AtomicLong moved = new AtomicLong();
+		boolean success = parallel(getRoots(), new RootTask<T>() {
+			@Override
+			public boolean run(@Nonnull final FileCache<T> root) {
+				final Path directory = root.getDirectory().toPath();
+				final List<String> misplaced = new ArrayList<String>();
+				if (Files.isDirectory(directory)) {
+					try {
+						Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+							@Override
+							public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+								String key = root.getLayout().keyOf(FileLayout.relativePath(directory, file));
+								if (attrs.isRegularFile() && null != key && key.matches(FileCache.VALID_KEY_PATTERN) && root != r.rootOf(key)) {
+									misplaced.add(key);
+								}
+								return FileVisitResult.CONTINUE;
+							}
+						});
+					} catch (IOException e) {
+						L.error(String.format("Failed to walk root: %s", directory), e);
+						return false;
+					}
+				}
+				for (String key : misplaced) {
+					Lock lock = locks.writeLock(key);
+					lock.lock();
+					try {
+						if (null != move(key, root, r.rootOf(key))) {
+							moved.incrementAndGet();
+						}
+					} finally {
+						lock.unlock();
+					}
+				}
+				return true;
+			}
+		});
+		if (success) {
+			synchronized (this) {
+				List<Ring<T>> remaining = new ArrayList<Ring<T>>(formerRings);
+				remaining.removeAll(former);
+				formerRings = remaining; // roots added meanwhile need another rebalance
+			}
+		}
+		L.info("Rebalanced {} roots, {} keys moved in {} ms", getRoots().size(), moved.get(), System.currentTimeMillis() - t);
+		return moved.get();
+	}
+
+	@Override
+	public void remove(@Nonnull String key) {
+		long start = System.nanoTime();
+		Lock lock = locks.writeLock(key);
+		lock.lock();
+		try {
+			ring.rootOf(key).remove(key);
+			for (FileCache<T> former : formerRootsOf(key)) {
+				former.remove(key);
+			}
+		} finally {
+			lock.unlock();
+		}
+		getMetrics().recordRemoval(start);
+	}
+
+	/**
+	 * Returns the root which the key belongs to.
+	 *
+	 * @param key A valid key
+	 * @return The root of the key
+	 */
+	@Nonnull
+	public FileCache<T> rootOf(@Nonnull String key) {
+		return ring.rootOf(key);
+	}
+
+	/**
+	 * Stores the content at the root of the key, and removes the former copy
+	 * of the key from its former roots.
+	 *
+	 * @param key     Key to identify the content
+	 * @param content Content to be stored
+	 * @return <code>true</code> if the storing succeded, <code>false</code> if
+	 * it failed
+	 */
+	@Override
+	public boolean store(@Nonnull String key, @Nonnull T content) {
+		long start = System.nanoTime();
+		Lock lock = locks.writeLock(key);
+		lock.lock();
+		try {
+			if (!ring.rootOf(key).store(key, content)) {
+				return false;
+			}
+			for (FileCache<T> former : formerRootsOf(key)) {
+				former.remove(key);
+			}
+		} finally {
+			lock.unlock();
+		}
+		getMetrics().recordStore(start, 0);
+		return true;
+	}
+
+	/**
+	 * Stores the entries at their roots, writing the roots in parallel. While
+	 * keys may be at their former roots, entries are stored one by one with
+	 * {@link #store(String, Object)}, holding the lock of their key.
+	 *
+	 * @param entries Keys and contents to be stored
+	 * @return <code>true</code> if storing of all entries succeeded,
+	 * <code>false</code> if any of them failed
+	 */
+	@Override
+	public boolean storeAll(@Nonnull Map<String, ? extends T> entries) {
+		final Map<FileCache<T>, Map<String, T>> groups = new LinkedHashMap<FileCache<T>, Map<String, T>>();
+		Ring<T> r = ring;
+		for (Map.Entry<String, ? extends T> e : entries.entrySet()) {
+			FileCache<T> root = r.rootOf(Check.notNull(e.getKey(), "key must not be null"));
+			if (!groups.containsKey(root)) {
+				groups.put(root, new LinkedHashMap<String, T>());
+			}
+			groups.get(root).put(e.getKey(), e.getValue());
+		}
+		final boolean moving = !formerRings.isEmpty();
+		return groups.isEmpty() || parallel(groups.keySet(), new RootTask<T>() {
+			@Override
+			public boolean run(@Nonnull FileCache<T> root) {
+				if (!moving) {
+					return root.storeAll(groups.get(root));
+				}
+				boolean success = true;
+				for (Map.Entry<String, T> e : groups.get(root).entrySet()) {
+					success &= store(e.getKey(), e.getValue());
+				}
+				return success;
+			}
+		});
+	}
+
+	/**
+	 * Returns the timestamp of the key from its root, or from the former root
+	 * where it's still stored.
+	 *
+	 * @param key Key which identifies the element
+	 * @return The timestamp of the entry
+	 */
+	@CheckForNull
+	@Override
+	public Date timestampOf(@Nonnull String key) {
+		FileCache<T> root = ring.rootOf(key);
+		List<FileCache<T>> formers = formerRootsOf(key);
+		if (!formers.isEmpty() && !root.contains(key)) {
+			for (FileCache<T> former : formers) {
+				if (former.contains(key)) { // missing files have epoch timestamp
+					return former.timestampOf(key);
+				}
+			}
+		}
+		return root.timestampOf(key);
+	}
+
+	/**
+	 * Hash ring of the roots, immutable.
+	 */
+	private static final class Ring<T> {
+
+		private final TreeMap<Long, FileCache<T>> points = new TreeMap<Long, FileCache<T>>();
+
+		private Ring(@Nonnull Map<FileCache<T>, Integer> weights) {
+			for (Map.Entry<FileCache<T>, Integer> e : weights.entrySet()) {
+				String id = e.getKey().getDirectory().getAbsolutePath();
+				for (int i = 0; i < e.getValue() * POINTS_PER_WEIGHT; i++) {
+					points.put(Hashes.hash(id + "#" + i), e.getKey());
+				}
+			}
+		}
+
+		@Nonnull
+		private FileCache<T> rootOf(@Nonnull String key) {
+			Map.Entry<Long, FileCache<T>> e = points.ceilingEntry(Hashes.hash(Check.notNull(key, "key must not be null")));
+			return null == e ? points.firstEntry().getValue() : e.getValue();
+		}
+	}
+
+	/**
+	 * Operation executed on one root.
+	 */
+	private interface RootTask<T> {
+
+		boolean run(@Nonnull FileCache<T> root);
+	}
+}
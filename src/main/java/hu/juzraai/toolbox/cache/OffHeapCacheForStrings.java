@@ -0,0 +1,389 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.test.Check;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * {@link Cache} which keeps strings outside of the Java heap, as UTF-8 bytes
+ * in direct buffer slabs, so large numbers of cached pages don't put pressure
+ * on the garbage collector. Only a small index entry per key lives on the
+ * heap, contents are decoded into a new string at every read.
+ * <p>
+ * It can be used on its own, or as a tier decorating another cache, e.g.
+ * between a {@link MemoryCache} and a {@link GzFileCacheForStrings}: then
+ * writes and removals go through to the backend, and misses are loaded from
+ * the backend and kept off-heap, like in {@link MemoryCache}.
+ * <p>
+ * Memory is allocated in slabs of a fixed size up to the capacity, and
+ * entries are evicted in least recently used order within groups of similar
+ * size. Contents bigger than a slab are not kept off-heap. The direct memory
+ * is freed when the cache is garbage collected, or when {@link
+ * #invalidateAll()} is called.
+ * <p>
+ * The {@link #getMetrics()} of this cache describe the off-heap tier: a fetch
+ * is a hit only if it's served from off-heap memory, and bytes are counted
+ * as UTF-8 lengths.
+ *
+ * @author Zsolt Jurányi
+ * @see Cache
+ * @see MemoryCache
+ * @since 26.10
+ */
+public class OffHeapCacheForStrings extends Cache<String> {
+
+	/**
+	 * Default slab size: 1 MB, which is also the maximum size of an entry.
+	 */
+	public static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+
+	private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+	private final Cache<String> backend;
+	private final SlabStore slabs;
+	private final StripedLocks locks = new StripedLocks();
+
+	/**
+	 * Creates a new standalone instance with no expiration.
+	 *
+	 * @param capacity Maximum off-heap memory in bytes, at least a slab
+	 */
+	public OffHeapCacheForStrings(long capacity) {
+		this(null, null, capacity, DEFAULT_SLAB_SIZE);
+	}
+
+	/**
+	 * Creates a new standalone instance with the given expiration.
+	 *
+	 * @param capacity   Maximum off-heap memory in bytes, at least a slab
+	 * @param expiration Expiration time
+	 * @param timeUnit   Time unit of <code>expiration</code>
+	 */
+	public OffHeapCacheForStrings(long capacity, long expiration, @Nonnull TimeUnit timeUnit) {
+		this(null, timeUnit.toMillis(expiration), capacity, DEFAULT_SLAB_SIZE);
+	}
+
+	/**
+	 * Creates a new instance which decorates the given cache, with the same
+	 * expiration.
+	 *
+	 * @param backend  The cache to be decorated
+	 * @param capacity Maximum off-heap memory in bytes, at least a slab
+	 */
+	public OffHeapCacheForStrings(@Nonnull Cache<String> backend, long capacity) {
+		this(backend, capacity, DEFAULT_SLAB_SIZE);
+	}
+
+	/**
+	 * Creates a new instance which decorates the given cache, with the same
+	 * expiration.
+	 *
+	 * @param backend  The cache to be decorated
+	 * @param capacity Maximum off-heap memory in bytes, at least a slab
+	 * @param slabSize Size of the allocation unit, and the maximum size of an
+	 *                 entry in bytes
+	 */
+	public OffHeapCacheForStrings(@Nonnull Cache<String> backend, long capacity, int slabSize) {
+		this(Check.notNull(backend, "backend must not be null"), backend.getExpiration(), capacity, slabSize);
+	}
+
+	private OffHeapCacheForStrings(@CheckForNull Cache<String> backend, Long expiration, long capacity, int slabSize) {
+		super(expiration);
+		this.backend = backend;
+		this.slabs = new SlabStore(capacity, slabSize);
+	}
+
+	@Nonnull
+	private static String decode(@Nonnull byte[] bytes) {
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@CheckForNull
+	private static Date toDate(long timestamp) {
+		return NO_TIMESTAMP == timestamp ? null : new Date(timestamp);
+	}
+
+	/**
+	 * Checks the off-heap tier first, then the backend.
+	 *
+	 * @param key Key to be checked
+	 * @return <code>true</code> if the key exists, <code>false</code> otherwise
+	 */
+	@Override
+	public boolean contains(@Nonnull String key) {
+		Check.notNull(key, "key must not be null");
+		return slabs.contains(key) || (null != backend && backend.contains(key));
+	}
+
+	/**
+	 * Checks the off-heap tier first, using the remembered timestamp, then the
+	 * backend.
+	 *
+	 * @param key Key to be checked
+	 * @return <code>true</code> if the key exists and not expired,
+	 * <code>false</code> otherwise
+	 */
+	@Override
+	public boolean containsAndNotExpired(@Nonnull String key) {
+		Check.notNull(key, "key must not be null");
+		Long timestamp = slabs.timestampOf(key);
+		if (null != timestamp) {
+			return !isExpired(toDate(timestamp));
+		}
+		return null != backend && backend.containsAndNotExpired(key);
+	}
+
+	/**
+	 * Returns the content from the off-heap tier, or loads it from the backend
+	 * and puts it into the off-heap tier.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content or <code>null</code> if the key doesn't exist in the
+	 * cache
+	 */
+	@Override
+	@CheckForNull
+	public String fetch(@Nonnull String key) {
+		CacheEntry<String> entry = fetchEntry(key);
+		return null != entry ? entry.getContent() : null;
+	}
+
+	/**
+	 * Returns the content and its timestamp from the off-heap tier, or loads
+	 * them from the backend in one call and puts them into the off-heap tier.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content and its timestamp or <code>null</code> if the key
+	 * doesn't exist in the cache
+	 */
+	@Override
+	@CheckForNull
+	public CacheEntry<String> fetchEntry(@Nonnull String key) {
+		Check.notNull(key, "key must not be null");
+		long start = System.nanoTime();
+		SlabStore.Value v = slabs.get(key);
+		if (null != v) {
+			getMetrics().recordHit(start, v.bytes.length);
+			return new CacheEntry<String>(decode(v.bytes), toDate(v.timestamp));
+		}
+		if (null == backend) {
+			getMetrics().recordMiss(start);
+			return null;
+		}
+		Lock lock = locks.readLock(key); // a store can't overtake us
+		lock.lock();
+		try {
+			CacheEntry<String> entry = backend.fetchEntry(key);
+			if (null != entry) {
+				put(key, entry.getContent(), entry.getTimestamp());
+			}
+			getMetrics().recordMiss(start);
+			return entry;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the content from the off-heap tier if it's not expired, or falls
+	 * back to the backend.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content or <code>null</code> if the key is expired or
+	 * doesn't exist in the cache
+	 */
+	@Override
+	@CheckForNull
+	public String fetchIfNotExpired(@Nonnull String key) {
+		Check.notNull(key, "key must not be null");
+		long start = System.nanoTime();
+		SlabStore.Value v = slabs.get(key);
+		if (null != v) {
+			if (isExpired(toDate(v.timestamp))) {
+				getMetrics().recordExpiredHit(start);
+				return null;
+			}
+			getMetrics().recordHit(start, v.bytes.length);
+			return decode(v.bytes);
+		}
+		CacheEntry<String> entry = fetchEntry(key);
+		return null == entry || isExpired(entry.getTimestamp()) ? null : entry.getContent();
+	}
+
+	/**
+	 * @return Number of bytes allocated off-heap
+	 */
+	public long getAllocatedBytes() {
+		return slabs.getAllocatedBytes();
+	}
+
+	/**
+	 * @return The decorated cache, or <code>null</code> if this cache is used
+	 * on its own
+	 */
+	@CheckForNull
+	public Cache<String> getBackend() {
+		return backend;
+	}
+
+	/**
+	 * @return Maximum number of bytes allocated off-heap
+	 */
+	public long getCapacity() {
+		return slabs.getCapacity();
+	}
+
+	/**
+	 * @return Number of entries evicted from the off-heap tier to make room
+	 * for others
+	 */
+	public long getEvictions() {
+		return slabs.getEvictions();
+	}
+
+	/**
+	 * @return Total UTF-8 length of the contents in the off-heap tier
+	 */
+	public long getUsedBytes() {
+		return slabs.getUsedBytes();
+	}
+
+	/**
+	 * Removes the given key from the off-heap tier only, the backend is not
+	 * affected.
+	 *
+	 * @param key Key to be removed from the off-heap tier
+	 */
+	public void invalidate(@Nonnull String key) {
+		slabs.remove(key);
+	}
+
+	/**
+	 * Clears the off-heap tier and drops its slabs, so their memory can be
+	 * freed by the garbage collector. The backend is not affected.
+	 */
+	public void invalidateAll() {
+		slabs.clear();
+	}
+
+	/**
+	 * Purges expired entries of the backend, and drops expired entries from
+	 * the off-heap tier.
+	 *
+	 * @return Number of entries and bytes reclaimed in the backend, or in the
+	 * off-heap tier if this cache is used on its own
+	 */
+	@Override
+	@Nonnull
+	public PurgeResult purgeExpired() {
+		PurgeResult result = null == backend ? PurgeResult.EMPTY : backend.purgeExpired();
+		long entries = 0;
+		long bytes = slabs.getUsedBytes();
+		for (Map.Entry<String, Long> e : slabs.timestamps().entrySet()) {
+			if (isExpired(toDate(e.getValue())) && slabs.remove(e.getKey())) {
+				entries++;
+			}
+		}
+		bytes -= slabs.getUsedBytes(); // approximately, stores may run meanwhile
+		return null == backend ? new PurgeResult(entries, Math.max(0, bytes)) : result;
+	}
+
+	private void put(@Nonnull String key, @Nonnull String content, @CheckForNull Date timestamp) {
+		slabs.put(key, content.getBytes(StandardCharsets.UTF_8), null == timestamp ? NO_TIMESTAMP : timestamp.getTime());
+	}
+
+	/**
+	 * Removes the content from both the off-heap tier and the backend.
+	 *
+	 * @param key Key to be removed from cache
+	 */
+	@Override
+	public void remove(@Nonnull String key) {
+		Check.notNull(key, "key must not be null");
+		long start = System.nanoTime();
+		Lock lock = locks.writeLock(key);
+		lock.lock();
+		try {
+			boolean removed = slabs.remove(key);
+			if (null != backend) {
+				backend.remove(key);
+			}
+			if (removed || null != backend) {
+				getMetrics().recordRemoval(start);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Number of entries in the off-heap tier
+	 */
+	public int size() {
+		return slabs.size();
+	}
+
+	/**
+	 * Stores the content in the backend, and on success, in the off-heap tier
+	 * too. Without backend, the store fails if the content is bigger than a
+	 * slab.
+	 *
+	 * @param key     Key which identifies the content
+	 * @param content The content to be stored
+	 * @return <code>true</code> if the storing succeded, <code>false</code> if
+	 * it failed
+	 */
+	@Override
+	public boolean store(@Nonnull String key, @Nonnull String content) {
+		Check.notNull(key, "key must not be null");
+		Check.notNull(content, "content must not be null");
+		long start = System.nanoTime();
+		Lock lock = locks.writeLock(key);
+		lock.lock();
+		try {
+			byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+			boolean stored;
+			if (null == backend) {
+				stored = slabs.put(key, bytes, System.currentTimeMillis());
+			} else {
+				slabs.remove(key);
+				stored = backend.store(key, content);
+				if (stored) {
+					Date timestamp = backend.timestampOf(key);
+					slabs.put(key, bytes, null == timestamp ? NO_TIMESTAMP : timestamp.getTime());
+				}
+			}
+			if (stored) {
+				getMetrics().recordStore(start, bytes.length);
+			}
+			return stored;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the timestamp remembered in the off-heap tier, or asks the
+	 * backend if the key is not off-heap.
+	 *
+	 * @param key Key which identifies the element
+	 * @return Timestamp of the element or <code>null</code> if it's not
+	 * applicable.
+	 */
+	@Override
+	@CheckForNull
+	public Date timestampOf(@Nonnull String key) {
+		Check.notNull(key, "key must not be null");
+		Long timestamp = slabs.timestampOf(key);
+		if (null != timestamp) {
+			return toDate(timestamp);
+		}
+		return null == backend ? null : backend.timestampOf(key);
+	}
+}
@@ -0,0 +1,643 @@
+package hu.juzraai.toolbox.cache;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.stmt.DeleteBuilder;
+import com.j256.ormlite.stmt.SelectArg;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.TableInfo;
+import hu.juzraai.toolbox.data.OrmLiteDatabase;
+import hu.juzraai.toolbox.jdbc.MySqlConnectionString;
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Check;
+import org.slf4j.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Abstract {@link Cache} implementation which stores contents in a database
+ * table of key, content and timestamp columns, accessed through an {@link
+ * OrmLiteDatabase}. Unlike a {@link FileCache} on local disk, a MySQL database
+ * can be shared by several nodes. SQLite database files are supported too,
+ * e.g. for tests. The concrete conversion of contents to bytes must be
+ * implemented in child classes.
+ * <p>
+ * Writes are grouped: while a thread writes the database, stores of other
+ * threads are queued, and then the next writer upserts every queued entry
+ * with multi-row statements in one transaction (<code>INSERT ... ON
+ * DUPLICATE KEY UPDATE</code> on MySQL, <code>INSERT OR REPLACE ...
+ * SELECT</code> on SQLite). A store returns when its group has been
+ * committed, and fails if its group fails.
+ * <p>
+ * Reads go through a small local memory tier, which absorbs repeated reads of
+ * hot keys. Its entries are reloaded from the database after a short time,
+ * so changes written by other nodes are seen with at most this delay. It can
+ * be configured or turned off by {@link #setLocalTier(int, long, TimeUnit)}.
+ * <p>
+ * The table is created if it doesn't exist. On MySQL the key column is
+ * created as <code>VARBINARY</code>, because the default collations would
+ * treat keys differing in case or trailing spaces as equal. The cache doesn't
+ * close the database, it's the caller's responsibility.
+ *
+ * @param <T> Type of content which the cache handles
+ * @author Zsolt Jurányi
+ * @see OrmLiteCacheForStrings
+ * @since 26.10
+ */
+public abstract class OrmLiteCache<T> extends Cache<T> {
+
+	/**
+	 * Default maximum number of entries in the local memory tier.
+	 */
+	public static final int DEFAULT_LOCAL_ENTRIES = 1000;
+
+	/**
+	 * Default time in milliseconds while an entry is served from the local
+	 * memory tier.
+	 */
+	public static final long DEFAULT_LOCAL_TTL = 5000;
+
+	private static final Logger L = LoggerFactory.getLogger(OrmLiteCache.class);
+
+	/**
+	 * Maximum number of rows in one upsert: SQLite allows 999 parameters and
+	 * 500 terms in a compound select.
+	 */
+	private static final int MAX_ROWS = 300;
+
+	/**
+	 * Maximum number of rows in one upsert on MySQL.
+	 */
+	private static final int MAX_MYSQL_ROWS = 1000;
+
+	/**
+	 * Size of contents after which an upsert is executed, to keep statements
+	 * below <code>max_allowed_packet</code> of MySQL.
+	 */
+	private static final long MAX_STATEMENT_BYTES = 1024 * 1024;
+
+	/**
+	 * Maximum number of keys in one <code>IN</code> query.
+	 */
+	private static final int MAX_KEYS = 500;
+
+	private final OrmLiteDatabase database;
+	private final Dao<OrmLiteCacheRecord, String> dao;
+	private final FieldType[] rowTypes;
+	private final boolean mySql;
+	private final List<Group<T>> queue = new ArrayList<Group<T>>();
+	private boolean writing; // guarded by queue
+	private final LinkedHashMap<String, Local<T>> local = new LinkedHashMap<String, Local<T>>(16, 0.75f, true);
+	private int localEntries = DEFAULT_LOCAL_ENTRIES; // guarded by local
+	private long localTtl = DEFAULT_LOCAL_TTL; // guarded by local
+
+	/**
+	 * Creates a new instance. Elements of the cache will never expire.
+	 *
+	 * @param database Database where the cache table is stored, it's created
+	 *                 if it doesn't exist
+	 * @throws IllegalStateException If the table could not be created
+	 */
+	public OrmLiteCache(@Nonnull OrmLiteDatabase database) {
+		this(database, null);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param database   Database where the cache table is stored, it's
+	 *                   created if it doesn't exist
+	 * @param expiration Expiration in milliseconds. Elements in cache will be
+	 *                   handled as expired if this amount of time have elapsed
+	 *                   since their timestamp. If it's <code>null</code>,
+	 *                   cached elements will never expire.
+	 * @throws IllegalStateException If the table could not be created
+	 */
+	public OrmLiteCache(@Nonnull OrmLiteDatabase database, Long expiration) {
+		super(expiration);
+		this.database = Check.notNull(database, "database must not be null");
+		this.mySql = database.getConnectionString() instanceof MySqlConnectionString;
+		try {
+			this.dao = DaoManager.createDao(database.getConnectionSource(), OrmLiteCacheRecord.class);
+			TableInfo<OrmLiteCacheRecord, String> table = new TableInfo<OrmLiteCacheRecord, String>(database.getConnectionSource(), null, OrmLiteCacheRecord.class);
+			this.rowTypes = new FieldType[]{
+					table.getFieldTypeByColumnName(OrmLiteCacheRecord.KEY),
+					table.getFieldTypeByColumnName(OrmLiteCacheRecord.CONTENT),
+					table.getFieldTypeByColumnName(OrmLiteCacheRecord.TIMESTAMP)
+			};
+			if (!dao.isTableExists()) {
+				database.createTables(OrmLiteCacheRecord.class);
+				if (mySql) {
+					database.modifyMySqlColumn(OrmLiteCacheRecord.class, OrmLiteCacheRecord.KEY, "VARBINARY(765) NOT NULL"); // 255 characters in UTF-8
+					database.modifyMySqlColumn(OrmLiteCacheRecord.class, OrmLiteCacheRecord.CONTENT, "LONGBLOB NOT NULL");
+				}
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException("Failed to create cache table in " + database.getConnectionString(), e);
+		}
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param database   Database where the cache table is stored, it's
+	 *                   created if it doesn't exist
+	 * @param expiration Expiration in the time unit of your choice. Elements in
+	 *                   cache will be handled as expired if this amount of time
+	 *                   have elapsed since their timestamp.
+	 * @param timeUnit   {@link TimeUnit} object representing the time unit you
+	 *                   specified <code>duration</code> in. It's used to
+	 *                   convert <code>duration</code> to milliseconds.
+	 * @throws IllegalStateException If the table could not be created
+	 */
+	public OrmLiteCache(@Nonnull OrmLiteDatabase database, long expiration, @Nonnull TimeUnit timeUnit) {
+		this(database, timeUnit.toMillis(expiration));
+	}
+
+	@Override
+	public boolean contains(@Nonnull String key) {
+		return null != timestampOf(key);
+	}
+
+	/**
+	 * Converts the bytes read from the database to content.
+	 *
+	 * @param bytes Bytes of the content
+	 * @return The content
+	 */
+	@Nonnull
+	protected abstract T decode(@Nonnull byte[] bytes);
+
+	/**
+	 * Converts the content to bytes to be written into the database.
+	 *
+	 * @param content The content
+	 * @return Bytes of the content
+	 */
+	@Nonnull
+	protected abstract byte[] encode(@Nonnull T content);
+
+	@Nonnull
+	private String escape(@Nonnull String name) {
+		StringBuilder sb = new StringBuilder();
+		database.getConnectionSource().getDatabaseType().appendEscapedEntityName(sb, name);
+		return sb.toString();
+	}
+
+	@CheckForNull
+	@Override
+	public T fetch(@Nonnull String key) {
+		CacheEntry<T> entry = fetchEntry(key);
+		return null == entry ? null : entry.getContent();
+	}
+
+	/**
+	 * Fetches the contents of the given keys from the local memory tier, and
+	 * the rest of them with one query per 500 keys.
+	 *
+	 * @param keys Keys to identify the required contents
+	 * @return Map of the keys found in the cache and their contents, in the
+	 * order of the given keys
+	 */
+	@Nonnull
+	@Override
+	public Map<String, T> fetchAll(@Nonnull Collection<String> keys) {
+		long start = System.nanoTime();
+		Map<String, Local<T>> found = new HashMap<String, Local<T>>();
+		List<String> missing = new ArrayList<String>();
+		for (String key : keys) {
+			Local<T> l = fromLocalTier(Check.notNull(key, "key must not be null"));
+			if (null == l) {
+				missing.add(key);
+			} else {
+				found.put(key, l);
+			}
+		}
+		try {
+			for (int from = 0; from < missing.size(); from += MAX_KEYS) {
+				List<String> chunk = missing.subList(from, Math.min(missing.size(), from + MAX_KEYS));
+				Object[] args = new Object[chunk.size()];
+				for (int i = 0; i < args.length; i++) {
+					args[i] = new SelectArg(chunk.get(i));
+				}
+				for (OrmLiteCacheRecord r : dao.queryBuilder().where().in(OrmLiteCacheRecord.KEY, args).query()) {
+					found.put(r.getKey(), toLocalTier(r));
+				}
+			}
+		} catch (SQLException e) {
+			L.error(String.format("Failed to fetch %d keys from %s", missing.size(), database.getConnectionString()), e);
+		}
+		Map<String, T> result = new LinkedHashMap<String, T>();
+		for (String key : keys) {
+			Local<T> l = found.get(key);
+			if (null == l) {
+				getMetrics().recordMiss(start);
+			} else {
+				result.put(key, l.entry.getContent());
+				getMetrics().recordHit(start, l.bytes);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Fetches the content and the timestamp of the key from the local memory
+	 * tier, or with one query.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content and its timestamp or <code>null</code> if the key
+	 * doesn't exist in the cache
+	 */
+	@CheckForNull
+	@Override
+	public CacheEntry<T> fetchEntry(@Nonnull String key) {
+		Check.notNull(key, "key must not be null");
+		long start = System.nanoTime();
+		Local<T> l = fromLocalTier(key);
+		if (null == l) {
+			try {
+				OrmLiteCacheRecord r = dao.queryForId(key);
+				l = null == r ? null : toLocalTier(r);
+			} catch (SQLException e) {
+				L.error(String.format("Failed to fetch key '%s' from %s", key, database.getConnectionString()), e);
+			}
+		}
+		if (null == l) {
+			getMetrics().recordMiss(start);
+			return null;
+		}
+		getMetrics().recordHit(start, l.bytes);
+		return l.entry;
+	}
+
+	/**
+	 * Returns the entry from the local memory tier if it's there and it was
+	 * loaded recently.
+	 */
+	@CheckForNull
+	private Local<T> fromLocalTier(@Nonnull String key) {
+		synchronized (local) {
+			Local<T> l = local.get(key);
+			if (null != l && System.currentTimeMillis() - l.loaded > localTtl) {
+				local.remove(key);
+				return null;
+			}
+			return l;
+		}
+	}
+
+	/**
+	 * @return The database where the cache table is stored
+	 */
+	@Nonnull
+	public OrmLiteDatabase getDatabase() {
+		return database;
+	}
+
+	private void invalidate(@Nonnull Collection<String> keys) {
+		synchronized (local) {
+			for (String key : keys) {
+				local.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Removes every expired entry with one indexed query in a transaction.
+	 * The local memory tier is cleared too.
+	 *
+	 * @return Number of entries and bytes reclaimed
+	 */
+	@Nonnull
+	@Override
+	public PurgeResult purgeExpired() {
+		Long expiration = getExpiration();
+		if (null == expiration) {
+			return PurgeResult.EMPTY;
+		}
+		final long t = System.currentTimeMillis();
+		final long limit = t - expiration;
+		try {
+			PurgeResult result = TransactionManager.callInTransaction(database.getConnectionSource(), new Callable<PurgeResult>() {
+				@Override
+				public PurgeResult call() throws SQLException {
+					long bytes = dao.queryRawValue(String.format("SELECT SUM(LENGTH(%s)) FROM %s WHERE %s < ?",
+							escape(OrmLiteCacheRecord.CONTENT), escape(OrmLiteCacheRecord.TABLE), escape(OrmLiteCacheRecord.TIMESTAMP)), Long.toString(limit));
+					DeleteBuilder<OrmLiteCacheRecord, String> delete = dao.deleteBuilder();
+					delete.where().lt(OrmLiteCacheRecord.TIMESTAMP, limit);
+					return new PurgeResult(delete.delete(), bytes);
+				}
+			});
+			synchronized (local) {
+				local.clear();
+			}
+			L.info("Purged {} expired entries ({} bytes) in {} ms from {}", result.getEntries(), result.getBytes(), System.currentTimeMillis() - t, database.getConnectionString());
+			return result;
+		} catch (SQLException e) {
+			L.error(String.format("Failed to purge expired entries from %s", database.getConnectionString()), e);
+			return PurgeResult.EMPTY;
+		}
+	}
+
+	@Override
+	public void remove(@Nonnull String key) {
+		removeAll(Collections.singletonList(key));
+	}
+
+	/**
+	 * Removes the given keys with one statement per 500 keys, in one
+	 * transaction.
+	 *
+	 * @param keys Keys to be removed from cache
+	 */
+	@Override
+	public void removeAll(@Nonnull Collection<String> keys) {
+		if (keys.isEmpty()) {
+			return;
+		}
+		long start = System.nanoTime();
+		final List<String> list = new ArrayList<String>(keys);
+		for (String key : list) {
+			Check.notNull(key, "key must not be null");
+		}
+		invalidate(list);
+		try {
+			int removed = TransactionManager.callInTransaction(database.getConnectionSource(), new Callable<Integer>() {
+				@Override
+				public Integer call() throws SQLException {
+					int removed = 0;
+					for (int from = 0; from < list.size(); from += MAX_KEYS) {
+						removed += dao.deleteIds(list.subList(from, Math.min(list.size(), from + MAX_KEYS)));
+					}
+					return removed;
+				}
+			});
+			for (int i = 0; i < removed; i++) {
+				getMetrics().recordRemoval(start);
+			}
+		} catch (SQLException e) {
+			L.error(String.format("Failed to remove %d keys from %s", list.size(), database.getConnectionString()), e);
+		}
+	}
+
+	/**
+	 * Configures the local memory tier and clears its current entries.
+	 *
+	 * @param maxEntries Maximum number of entries kept in memory, 0 turns the
+	 *                   local memory tier off
+	 * @param ttl        Time while an entry is served from memory, after that
+	 *                   it's reloaded from the database
+	 * @param timeUnit   {@link TimeUnit} object representing the time unit
+	 *                   you specified <code>ttl</code> in
+	 */
+	public void setLocalTier(int maxEntries, long ttl, @Nonnull TimeUnit timeUnit) {
+		Check.argument(0 <= maxEntries, "maxEntries must be non-negative");
+		Check.argument(0 <= ttl, "ttl must be non-negative");
+		synchronized (local) {
+			localEntries = maxEntries;
+			localTtl = timeUnit.toMillis(ttl);
+			local.clear();
+		}
+	}
+
+	@Override
+	public boolean store(@Nonnull String key, @Nonnull T content) {
+		return storeAll(Collections.singletonMap(key, content));
+	}
+
+	/**
+	 * Stores the given entries in the next group of writes. Either every
+	 * entry is stored or none of them.
+	 *
+	 * @param entries Keys and contents to be stored
+	 * @return <code>true</code> if storing of all entries succeeded,
+	 * <code>false</code> if it failed
+	 */
+	@Override
+	public boolean storeAll(@Nonnull Map<String, ? extends T> entries) {
+		if (entries.isEmpty()) {
+			return true;
+		}
+		long start = System.nanoTime();
+		Group<T> group = new Group<T>(System.currentTimeMillis());
+		for (Map.Entry<String, ? extends T> e : entries.entrySet()) {
+			T content = Check.notNull(e.getValue(), "content must not be null");
+			group.add(Check.notNull(e.getKey(), "key must not be null"), content, encode(content));
+		}
+		List<Group<T>> groups;
+		boolean interrupted = false;
+		synchronized (queue) {
+			queue.add(group);
+			while (writing && !group.done) {
+				try {
+					queue.wait();
+				} catch (InterruptedException e) {
+					interrupted = true; // the write is already queued
+				}
+			}
+			if (group.done) {
+				groups = Collections.emptyList();
+			} else {
+				writing = true;
+				groups = new ArrayList<Group<T>>(queue);
+				queue.clear();
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (!groups.isEmpty()) {
+			boolean success = false;
+			try {
+				success = upsert(groups);
+			} finally {
+				synchronized (queue) {
+					for (Group<T> g : groups) {
+						g.success = success;
+						g.done = true;
+					}
+					writing = false;
+					queue.notifyAll();
+				}
+			}
+		}
+		if (group.success) {
+			getMetrics().recordStore(start, group.bytes);
+		}
+		return group.success;
+	}
+
+	@CheckForNull
+	@Override
+	public Date timestampOf(@Nonnull String key) {
+		Check.notNull(key, "key must not be null");
+		Local<T> l = fromLocalTier(key);
+		if (null != l) {
+			return l.entry.getTimestamp();
+		}
+		try {
+			OrmLiteCacheRecord r = dao.queryBuilder()
+					.selectColumns(OrmLiteCacheRecord.KEY, OrmLiteCacheRecord.TIMESTAMP)
+					.where().eq(OrmLiteCacheRecord.KEY, new SelectArg(key))
+					.queryForFirst();
+			return null == r ? null : new Date(r.getTimestamp());
+		} catch (SQLException e) {
+			L.error(String.format("Failed to read timestamp of key '%s' from %s", key, database.getConnectionString()), e);
+			return null;
+		}
+	}
+
+	@Nonnull
+	private Local<T> toLocalTier(@Nonnull OrmLiteCacheRecord r) {
+		byte[] bytes = r.getContent();
+		return toLocalTier(r.getKey(), decode(bytes), r.getTimestamp(), bytes.length);
+	}
+
+	@Nonnull
+	private Local<T> toLocalTier(@Nonnull String key, @Nonnull T content, long timestamp, long bytes) {
+		Local<T> l = new Local<T>(new CacheEntry<T>(content, new Date(timestamp)), bytes);
+		synchronized (local) {
+			if (0 < localEntries) {
+				local.put(key, l);
+				Iterator<Local<T>> i = local.values().iterator();
+				while (local.size() > localEntries) {
+					i.next();
+					i.remove();
+				}
+			}
+		}
+		return l;
+	}
+
+	/**
+	 * Writes the given groups with multi-row upserts in one transaction, then
+	 * updates the local memory tier.
+	 */
+	private boolean upsert(@Nonnull List<Group<T>> groups) {
+		final Map<String, Object[]> rows = new LinkedHashMap<String, Object[]>(); // later stores of a key win
+		for (Group<T> g : groups) {
+			for (Map.Entry<String, byte[]> e : g.encoded.entrySet()) {
+				rows.put(e.getKey(), new Object[]{e.getKey(), e.getValue(), g.timestamp});
+			}
+		}
+		final ConnectionSource connectionSource = database.getConnectionSource();
+		try {
+			TransactionManager.callInTransaction(connectionSource, new Callable<Void>() {
+				@Override
+				public Void call() throws SQLException {
+					DatabaseConnection connection = connectionSource.getReadWriteConnection();
+					try {
+						List<Object[]> statement = new ArrayList<Object[]>();
+						long bytes = 0;
+						for (Object[] row : rows.values()) {
+							statement.add(row);
+							bytes += ((byte[]) row[1]).length;
+							if (statement.size() == (mySql ? MAX_MYSQL_ROWS : MAX_ROWS) || MAX_STATEMENT_BYTES <= bytes) {
+								upsert(connection, statement);
+								statement.clear();
+								bytes = 0;
+							}
+						}
+						if (!statement.isEmpty()) {
+							upsert(connection, statement);
+						}
+					} finally {
+						connectionSource.releaseConnection(connection);
+					}
+					return null;
+				}
+			});
+		} catch (SQLException e) {
+			L.error(String.format("Failed to store %d entries into %s", rows.size(), database.getConnectionString()), e);
+			invalidate(rows.keySet());
+			return false;
+		}
+		for (Group<T> g : groups) {
+			for (Map.Entry<String, T> e : g.contents.entrySet()) {
+				toLocalTier(e.getKey(), e.getValue(), g.timestamp, g.encoded.get(e.getKey()).length);
+			}
+		}
+		L.debug("Stored {} entries of {} groups into {}", rows.size(), groups.size(), database.getConnectionString());
+		return true;
+	}
+
+	private void upsert(@Nonnull DatabaseConnection connection, @Nonnull List<Object[]> rows) throws SQLException {
+		String key = escape(OrmLiteCacheRecord.KEY);
+		String content = escape(OrmLiteCacheRecord.CONTENT);
+		String timestamp = escape(OrmLiteCacheRecord.TIMESTAMP);
+		StringBuilder sql = new StringBuilder(mySql ? "INSERT INTO " : "INSERT OR REPLACE INTO ")
+				.append(escape(OrmLiteCacheRecord.TABLE))
+				.append(" (").append(key).append(", ").append(content).append(", ").append(timestamp).append(')');
+		Object[] args = new Object[rows.size() * 3];
+		FieldType[] types = new FieldType[args.length];
+		for (int i = 0; i < rows.size(); i++) {
+			if (mySql) {
+				sql.append(0 == i ? " VALUES (?, ?, ?)" : ", (?, ?, ?)");
+			} else {
+				sql.append(0 == i ? " SELECT ?, ?, ?" : " UNION ALL SELECT ?, ?, ?"); // multi-row VALUES needs SQLite 3.7.11
+			}
+			System.arraycopy(rows.get(i), 0, args, i * 3, 3);
+			System.arraycopy(rowTypes, 0, types, i * 3, 3);
+		}
+		if (mySql) {
+			sql.append(" ON DUPLICATE KEY UPDATE ")
+					.append(content).append(" = VALUES(").append(content).append("), ")
+					.append(timestamp).append(" = VALUES(").append(timestamp).append(')');
+		}
+		connection.update(sql.toString(), args, types);
+	}
+
+	/**
+	 * Entries of one store call, waiting to be written.
+	 */
+	private static final class Group<T> {
+
+		private final long timestamp;
+		private final Map<String, T> contents = new LinkedHashMap<String, T>();
+		private final Map<String, byte[]> encoded = new LinkedHashMap<String, byte[]>();
+		private long bytes;
+		private boolean done; // guarded by queue
+		private boolean success; // guarded by queue
+
+		private Group(long timestamp) {
+			this.timestamp = timestamp;
+		}
+
+		private void add(@Nonnull String key, @Nonnull T content, @Nonnull byte[] encoded) {
+			this.contents.put(key, content);
+			this.encoded.put(key, encoded);
+			this.bytes += encoded.length;
+		}
+	}
+
+	/**
+	 * An entry of the local memory tier.
+	 */
+	private static final class Local<T> {
+
+		private final CacheEntry<T> entry;
+		private final long bytes;
+		private final long loaded = System.currentTimeMillis();
+
+		private Local(@Nonnull CacheEntry<T> entry, long bytes) {
+			this.entry = entry;
+			this.bytes = bytes;
+		}
+	}
+}
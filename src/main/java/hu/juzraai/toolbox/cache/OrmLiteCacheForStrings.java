@@ -0,0 +1,73 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.data.OrmLiteDatabase;
+
+import javax.annotation.Nonnull;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link OrmLiteCache} implementation which stores {@link String} objects,
+ * encoded in UTF-8.
+ *
+ * @author Zsolt Jurányi
+ * @see OrmLiteCache
+ * @since 26.10
+ */
+public class OrmLiteCacheForStrings extends OrmLiteCache<String> {
+
+	/**
+	 * Creates a new instance. Elements of the cache will never expire.
+	 *
+	 * @param database Database where the cache table is stored, it's created
+	 *                 if it doesn't exist
+	 * @throws IllegalStateException If the table could not be created
+	 */
+	public OrmLiteCacheForStrings(@Nonnull OrmLiteDatabase database) {
+		super(database);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param database   Database where the cache table is stored, it's
+	 *                   created if it doesn't exist
+	 * @param expiration Expiration in milliseconds. Elements in cache will be
+	 *                   handled as expired if this amount of time have elapsed
+	 *                   since their timestamp. If it's <code>null</code>,
+	 *                   cached elements will never expire.
+	 * @throws IllegalStateException If the table could not be created
+	 */
+	public OrmLiteCacheForStrings(@Nonnull OrmLiteDatabase database, Long expiration) {
+		super(database, expiration);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param database   Database where the cache table is stored, it's
+	 *                   created if it doesn't exist
+	 * @param expiration Expiration in the time unit of your choice. Elements in
+	 *                   cache will be handled as expired if this amount of time
+	 *                   have elapsed since their timestamp.
+	 * @param timeUnit   {@link TimeUnit} object representing the time unit you
+	 *                   specified <code>duration</code> in. It's used to
+	 *                   convert <code>duration</code> to milliseconds.
+	 * @throws IllegalStateException If the table could not be created
+	 */
+	public OrmLiteCacheForStrings(@Nonnull OrmLiteDatabase database, long expiration, @Nonnull TimeUnit timeUnit) {
+		super(database, expiration, timeUnit);
+	}
+
+	@Nonnull
+	@Override
+	protected String decode(@Nonnull byte[] bytes) {
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Nonnull
+	@Override
+	protected byte[] encode(@Nonnull String content) {
+		return content.getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,49 @@
+package hu.juzraai.toolbox.cache;
+
+import com.j256.ormlite.field.DataType;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+/**
+ * Table class of {@link OrmLiteCache}: a row of key, content and timestamp.
+ *
+ * @author Zsolt Jurányi
+ * @see OrmLiteCache
+ * @since 26.10
+ */
+@DatabaseTable(tableName = OrmLiteCacheRecord.TABLE)
+class OrmLiteCacheRecord {
+
+	static final String TABLE = "cache";
+	static final String KEY = "key";
+	static final String CONTENT = "content";
+	static final String TIMESTAMP = "timestamp";
+
+	@DatabaseField(columnName = KEY, id = true, width = 255)
+	private String key;
+
+	@DatabaseField(columnName = CONTENT, dataType = DataType.BYTE_ARRAY, canBeNull = false)
+	private byte[] content;
+
+	@DatabaseField(columnName = TIMESTAMP, canBeNull = false, index = true)
+	private long timestamp;
+
+	OrmLiteCacheRecord() {
+	}
+
+	/**
+	 * @return The content, empty blobs are read as <code>null</code> by some
+	 * drivers
+	 */
+	byte[] getContent() {
+		return null == content ? new byte[0] : content;
+	}
+
+	String getKey() {
+		return key;
+	}
+
+	long getTimestamp() {
+		return timestamp;
+	}
+}
@@ -0,0 +1,77 @@
+package hu.juzraai.toolbox.cache;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Result of {@link Cache#purgeExpired()}: how many entries and bytes were
+ * reclaimed.
+ *
+ * @author Zsolt Jurányi
+ * @see Cache#purgeExpired()
+ * @since 26.10
+ */
+public final class PurgeResult {
+
+	/**
+	 * Result of a purge which removed nothing.
+	 */
+	public static final PurgeResult EMPTY = new PurgeResult(0, 0);
+
+	private final long entries;
+	private final long bytes;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param entries Number of entries removed
+	 * @param bytes   Number of bytes reclaimed
+	 */
+	public PurgeResult(long entries, long bytes) {
+		this.entries = entries;
+		this.bytes = bytes;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof PurgeResult)) return false;
+		PurgeResult that = (PurgeResult) o;
+		return entries == that.entries && bytes == that.bytes;
+	}
+
+	/**
+	 * @return Number of bytes reclaimed
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return Number of entries removed
+	 */
+	public long getEntries() {
+		return entries;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (int) (entries ^ (entries >>> 32)) + (int) (bytes ^ (bytes >>> 32));
+	}
+
+	/**
+	 * @param other Another result
+	 * @return A new instance containing the sum of this and the other result
+	 */
+	@Nonnull
+	public PurgeResult plus(@Nonnull PurgeResult other) {
+		return new PurgeResult(entries + other.entries, bytes + other.bytes);
+	}
+
+	@Override
+	public String toString() {
+		return "PurgeResult{" +
+				"entries=" + entries +
+				", bytes=" + bytes +
+				'}';
+	}
+}
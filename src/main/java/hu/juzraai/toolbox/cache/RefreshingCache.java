@@ -0,0 +1,362 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Check;
+import org.slf4j.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Cache} decorator which keeps the contents of an expiring cache fresh
+ * by reloading them in the background with a {@link CacheLoader}, so callers
+ * of {@link #get(String)} don't have to wait for the loader when an entry
+ * expires.
+ * <p>
+ * In stale-while-revalidate mode (the default), {@link #get(String)} returns
+ * an expired content immediately and reloads it asynchronously. Optionally,
+ * entries can be reloaded ahead of their expiration, when they reach a given
+ * fraction of their time to live, see {@link #setRefreshAhead(double)}. The
+ * refresh point of every entry is moved earlier by a random amount, see
+ * {@link #setJitter(double)}, so entries stored together (e.g. by a bulk load)
+ * are not reloaded all at once. The random amount is derived from the key and
+ * the timestamp, so it's stable between calls.
+ * <p>
+ * Only one refresh runs per key at a time. A failed refresh is logged and the
+ * old content is kept, so it's retried at the next access. Other methods
+ * delegate to the backend without refreshing anything.
+ *
+ * @param <T> Type of content which the cache handles.
+ * @author Zsolt Jurányi
+ * @see Cache
+ * @since 26.10
+ */
+public class RefreshingCache<T> extends Cache<T> implements Closeable {
+
+	/**
+	 * Default jitter: refresh points are moved earlier by at most 10% of the
+	 * time to live.
+	 */
+	public static final double DEFAULT_JITTER = 0.1;
+
+	private static final Logger L = LoggerFactory.getLogger(RefreshingCache.class);
+
+	private final Cache<T> backend;
+	private final CacheLoader<? extends T> loader;
+	private final ExecutorService refreshers;
+	private final ConcurrentMap<String, Boolean> refreshing = new ConcurrentHashMap<String, Boolean>();
+	private volatile boolean staleWhileRevalidate = true;
+	private volatile double refreshAhead;
+	private volatile double jitter = DEFAULT_JITTER;
+	private volatile Long maxStale;
+
+	/**
+	 * Creates a new instance and starts the refresher threads.
+	 *
+	 * @param backend          The cache to be decorated, it must have an
+	 *                         expiration
+	 * @param loader           Computes the contents of missing and expired
+	 *                         keys
+	 * @param refresherThreads Number of background threads running the
+	 *                         loader
+	 */
+	public RefreshingCache(@Nonnull Cache<T> backend, @Nonnull CacheLoader<? extends T> loader, int refresherThreads) {
+		super(Check.notNull(backend, "backend must not be null").getExpiration());
+		Check.argument(null != backend.getExpiration(), "backend must have an expiration");
+		Check.argument(0 < refresherThreads, "refresherThreads must be positive");
+		this.backend = backend;
+		this.loader = Check.notNull(loader, "loader must not be null");
+		this.refreshers = Executors.newFixedThreadPool(refresherThreads, new DaemonThreadFactory("cache-refresh"));
+	}
+
+	/**
+	 * Maps the key and the timestamp to a number uniformly distributed
+	 * between 0 (inclusive) and 1 (exclusive), using the finalizer of
+	 * MurmurHash3.
+	 */
+	private static double spread(@Nonnull String key, long timestamp) {
+		long h = key.hashCode() * 0x9E3779B97F4A7C15L ^ timestamp;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return (h >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * Stops the refresher threads after the scheduled refreshes are finished.
+	 * The backend is not closed.
+	 */
+	@Override
+	public void close() {
+		refreshers.shutdown();
+		try {
+			while (!refreshers.awaitTermination(1, TimeUnit.MINUTES)) {
+				L.warn("Waiting for {} refreshes to finish", refreshing.size());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public boolean contains(@Nonnull String key) {
+		return backend.contains(key);
+	}
+
+	@Override
+	public boolean containsAndNotExpired(@Nonnull String key) {
+		return backend.containsAndNotExpired(key);
+	}
+
+	@Override
+	@CheckForNull
+	public T fetch(@Nonnull String key) {
+		return backend.fetch(key);
+	}
+
+	@Override
+	@Nonnull
+	public Map<String, T> fetchAll(@Nonnull Collection<String> keys) {
+		return backend.fetchAll(keys);
+	}
+
+	@Override
+	@CheckForNull
+	public CacheEntry<T> fetchEntry(@Nonnull String key) {
+		return backend.fetchEntry(key);
+	}
+
+	@Override
+	@CheckForNull
+	public T fetchIfNotExpired(@Nonnull String key) {
+		return backend.fetchIfNotExpired(key);
+	}
+
+	/**
+	 * Returns the content of the given key, loading and storing it if it's
+	 * missing. If the content is past its refresh point, a background refresh
+	 * is scheduled. Expired contents are returned as they are in
+	 * stale-while-revalidate mode, as long as they are not older than the
+	 * maximum staleness, otherwise they are reloaded synchronously, with
+	 * {@link #getOrCompute(String, CacheLoader)} semantics.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content, or <code>null</code> if it's missing and the loader
+	 * returned <code>null</code>
+	 */
+	@CheckForNull
+	public T get(@Nonnull String key) {
+		long start = System.nanoTime();
+		CacheEntry<T> entry = backend.fetchEntry(key);
+		long now = System.currentTimeMillis();
+		long timestamp = null == entry || null == entry.getTimestamp() ? now : entry.getTimestamp().getTime();
+		long ttl = getExpiration();
+		long age = now - timestamp;
+		Long maxStale = this.maxStale;
+		if (null == entry || (ttl < age && (!staleWhileRevalidate || (null != maxStale && ttl + maxStale < age)))) {
+			getMetrics().recordMiss(start);
+			return backend.getOrCompute(key, loader);
+		}
+		if (refreshTimeOf(key, timestamp) <= now) {
+			refresh(key, timestamp);
+		}
+		getMetrics().recordHit(start, 0);
+		return entry.getContent();
+	}
+
+	/**
+	 * @return The decorated cache
+	 */
+	@Nonnull
+	public Cache<T> getBackend() {
+		return backend;
+	}
+
+	/**
+	 * @return The maximum fraction of the time to live refresh points are
+	 * moved earlier by
+	 */
+	public double getJitter() {
+		return jitter;
+	}
+
+	/**
+	 * @return How long an expired content can be returned in
+	 * stale-while-revalidate mode, in milliseconds, or <code>null</code> if
+	 * there's no limit
+	 */
+	@CheckForNull
+	public Long getMaxStale() {
+		return maxStale;
+	}
+
+	/**
+	 * @return The fraction of the time to live after which entries are
+	 * refreshed, or 0 if refresh-ahead is disabled
+	 */
+	public double getRefreshAhead() {
+		return refreshAhead;
+	}
+
+	/**
+	 * @return <code>true</code> if expired contents are returned while they
+	 * are being reloaded
+	 */
+	public boolean isStaleWhileRevalidate() {
+		return staleWhileRevalidate;
+	}
+
+	@Override
+	@Nonnull
+	public PurgeResult purgeExpired() {
+		return backend.purgeExpired();
+	}
+
+	/**
+	 * Schedules a background reload of the given key, unless one is already
+	 * scheduled or running. The loaded content is stored in the backend, if
+	 * the loader fails or returns <code>null</code>, the old content is kept.
+	 *
+	 * @param key Key to be reloaded
+	 * @return <code>true</code> if a new refresh was scheduled
+	 */
+	public boolean refresh(@Nonnull String key) {
+		return refresh(key, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Schedules a background reload of the given key, which is skipped if the
+	 * key was stored after the given timestamp, e.g. by a refresh which
+	 * finished since the caller read the old content.
+	 */
+	private boolean refresh(@Nonnull final String key, final long seen) {
+		Check.notNull(key, "key must not be null");
+		if (null != refreshing.putIfAbsent(key, Boolean.TRUE)) {
+			return false;
+		}
+		try {
+			refreshers.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Date timestamp = backend.timestampOf(key);
+						if (null != timestamp && seen < timestamp.getTime()) {
+							return; // already refreshed
+						}
+						T content = loader.load(key);
+						if (null != content && !backend.store(key, content)) {
+							L.error("Failed to store refreshed content of '{}'", key);
+						}
+					} catch (Exception e) {
+						L.error(String.format("Refresh of '%s' failed, keeping the old content", key), e);
+					} finally {
+						refreshing.remove(key);
+					}
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			refreshing.remove(key);
+			L.warn("Refresh of '{}' rejected, cache is closed", key);
+			return false;
+		}
+	}
+
+	/**
+	 * Calculates when the entry should be refreshed: after the refresh-ahead
+	 * fraction of the time to live, or at expiration if refresh-ahead is
+	 * disabled, moved earlier by the jitter.
+	 *
+	 * @param key       Key of the entry
+	 * @param timestamp Timestamp of the entry
+	 * @return Time of the refresh point, in milliseconds since the epoch
+	 */
+	private long refreshTimeOf(@Nonnull String key, long timestamp) {
+		double fraction = 0 < refreshAhead ? refreshAhead : 1;
+		return timestamp + (long) (getExpiration() * fraction * (1 - jitter * spread(key, timestamp)));
+	}
+
+	@Override
+	public void remove(@Nonnull String key) {
+		backend.remove(key);
+	}
+
+	@Override
+	public void removeAll(@Nonnull Collection<String> keys) {
+		backend.removeAll(keys);
+	}
+
+	/**
+	 * Sets how much refresh points are moved earlier, at most.
+	 *
+	 * @param jitter Fraction of the time to live, between 0 and 1, 0 disables
+	 *               the jitter
+	 */
+	public void setJitter(double jitter) {
+		Check.argument(0 <= jitter && jitter <= 1, "jitter must be between 0 and 1");
+		this.jitter = jitter;
+	}
+
+	/**
+	 * Sets how long an expired content can be returned in
+	 * stale-while-revalidate mode. Older contents are reloaded synchronously.
+	 *
+	 * @param maxStale Time after expiration in milliseconds, or
+	 *                 <code>null</code> for no limit
+	 */
+	public void setMaxStale(@CheckForNull Long maxStale) {
+		Check.argument(null == maxStale || 0 <= maxStale, "maxStale must be non-negative");
+		this.maxStale = maxStale;
+	}
+
+	/**
+	 * Enables refresh-ahead: entries are reloaded in the background when they
+	 * reach the given fraction of their time to live, so frequently read
+	 * entries never expire.
+	 *
+	 * @param refreshAhead Fraction of the time to live, between 0 and 1, 0
+	 *                     disables refresh-ahead
+	 */
+	public void setRefreshAhead(double refreshAhead) {
+		Check.argument(0 <= refreshAhead && refreshAhead < 1, "refreshAhead must be at least 0 and less than 1");
+		this.refreshAhead = refreshAhead;
+	}
+
+	/**
+	 * Sets whether expired contents are returned while they are being
+	 * reloaded in the background, or reloaded synchronously.
+	 *
+	 * @param staleWhileRevalidate <code>true</code> to return expired contents
+	 */
+	public void setStaleWhileRevalidate(boolean staleWhileRevalidate) {
+		this.staleWhileRevalidate = staleWhileRevalidate;
+	}
+
+	@Override
+	public boolean store(@Nonnull String key, @Nonnull T content) {
+		return backend.store(key, content);
+	}
+
+	@Override
+	public boolean storeAll(@Nonnull Map<String, ? extends T> entries) {
+		return backend.storeAll(entries);
+	}
+
+	@Override
+	@CheckForNull
+	public Date timestampOf(@Nonnull String key) {
+		return backend.timestampOf(key);
+	}
+}
@@ -0,0 +1,806 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Check;
+import org.slf4j.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * {@link Cache} implementation which stores {@link String} objects in a few
+ * large, append-only segment files inside the specified cache directory,
+ * instead of creating one file per key. It can be used wherever {@link
+ * FileCacheForStrings} is used, but it needs to be closed.
+ * <p>
+ * Every store and removal appends a record to the active segment. The
+ * location of the latest record of every key is kept in an in-memory index,
+ * which is rebuilt from the records when the cache is opened. When the
+ * active segment reaches the maximum segment size, a new one is started.
+ * Overwritten and removed records are dead bytes, segments containing too much
+ * of them are compacted in the background: their live records are copied to
+ * the active segment and the segment file is deleted.
+ * <p>
+ * A record consists of a type byte (1 = store, 2 = removal), a timestamp
+ * (long), the length of key and value in bytes (int, int), the UTF-8 encoded
+ * key and value, and the CRC32 checksum of all of these (int). Records are
+ * verified when the cache is opened and when values are read. An incomplete
+ * or corrupt record at the end of the last segment (e.g. the zero-filled tail
+ * left by a crash) is truncated, corrupt records of other segments are
+ * skipped.
+ *
+ * @author Zsolt Jurányi
+ * @see Cache
+ * @since 26.10
+ */
+public class SegmentFileCacheForStrings extends Cache<String> implements Closeable {
+
+	/**
+	 * Default of the dead bytes / segment size ratio above which a segment is
+	 * compacted.
+	 */
+	public static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+
+	/**
+	 * Default interval of background compaction, in seconds.
+	 */
+	public static final long DEFAULT_COMPACTION_INTERVAL = 60;
+
+	/**
+	 * Default size of a segment file, in bytes.
+	 */
+	public static final long DEFAULT_MAX_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+	private static final Logger L = LoggerFactory.getLogger(SegmentFileCacheForStrings.class);
+	private static final String SEGMENT_FILENAME_FORMAT = "%08d.seg";
+	private static final String SEGMENT_FILENAME_SUFFIX = ".seg";
+	private static final int HEADER_SIZE = 1 + 8 + 4 + 4;
+	private static final int TRAILER_SIZE = 4;
+	private static final byte STORE = 1;
+	private static final byte REMOVAL = 2;
+
+	private final File directory;
+	private final ConcurrentMap<String, Location> index = new ConcurrentHashMap<String, Location>();
+	private final ConcurrentMap<Integer, FileChannel> segments = new ConcurrentHashMap<Integer, FileChannel>();
+	private final ConcurrentMap<Integer, AtomicLong> deadBytes = new ConcurrentHashMap<Integer, AtomicLong>();
+	private final Object writeMonitor = new Object();
+	private final Object compactionMonitor = new Object();
+	private final ScheduledExecutorService compactor;
+	private volatile double compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+	private volatile long maxSegmentSize = DEFAULT_MAX_SEGMENT_SIZE;
+	private volatile boolean closed;
+	private int activeSegment;
+	private long activeSize;
+
+	/**
+	 * Creates a new instance. Elements of the cache will never expire.
+	 *
+	 * @param directory The cache directory where segment files will be stored
+	 */
+	public SegmentFileCacheForStrings(@Nonnull File directory) {
+		this(directory, null);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory  The cache directory where segment files will be
+	 *                   stored
+	 * @param expiration Expiration in milliseconds. Elements in cache will be
+	 *                   handled as expired if this amount of time have elapsed
+	 *                   since their timestamp. If it's <code>null</code>,
+	 *                   cached elements will never expire.
+	 */
+	public SegmentFileCacheForStrings(@Nonnull File directory, Long expiration) {
+		super(expiration);
+		this.directory = directory;
+		open();
+		compactor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("segment-compactor"));
+		compactor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				compact();
+			}
+		}, DEFAULT_COMPACTION_INTERVAL, DEFAULT_COMPACTION_INTERVAL, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory  The cache directory where segment files will be
+	 *                   stored
+	 * @param expiration Expiration in the time unit of your choice. Elements in
+	 *                   cache will be handled as expired if this amount of time
+	 *                   have elapsed since their timestamp.
+	 * @param timeUnit   {@link TimeUnit} object representing the time unit you
+	 *                   specified <code>duration</code> in. It's used to
+	 *                   convert <code>duration</code> to milliseconds.
+	 */
+	public SegmentFileCacheForStrings(@Nonnull File directory, long expiration, @Nonnull TimeUnit timeUnit) {
+		this(directory, timeUnit.toMillis(expiration));
+	}
+
+	private int activeSegment() {
+		synchronized (writeMonitor) {
+			return activeSegment;
+		}
+	}
+
+	/**
+	 * Appends a record to the active segment, starting a new segment if
+	 * needed. The caller must hold <code>writeMonitor</code>.
+	 */
+	@Nonnull
+	private Location append(byte type, @Nonnull String key, long timestamp, @Nonnull byte[] value) throws IOException {
+		byte[] k = key.getBytes(StandardCharsets.UTF_8);
+		int size = HEADER_SIZE + k.length + value.length + TRAILER_SIZE;
+		if (0 < activeSize && activeSize + size > maxSegmentSize) {
+			roll();
+		}
+		ByteBuffer b = ByteBuffer.allocate(size);
+		b.put(type).putLong(timestamp).putInt(k.length).putInt(value.length).put(k).put(value);
+		CRC32 crc = new CRC32();
+		crc.update(b.array(), 0, size - TRAILER_SIZE);
+		b.putInt((int) crc.getValue());
+		((Buffer) b).flip();
+		FileChannel ch = channel(activeSegment);
+		long position = activeSize;
+		while (b.hasRemaining()) {
+			position += ch.write(b, position);
+		}
+		Location location = new Location(activeSegment, activeSize, value.length, size, timestamp);
+		activeSize = position;
+		return location;
+	}
+
+	/**
+	 * Returns the open channel of the given segment. A channel is closed by
+	 * NIO when a thread using it gets interrupted, in this case it's reopened.
+	 *
+	 * @throws ClosedChannelException If the segment was compacted or the
+	 *                                cache was closed
+	 */
+	@Nonnull
+	private FileChannel channel(int segment) throws IOException {
+		FileChannel ch = segments.get(segment);
+		if (null != ch && !ch.isOpen() && !closed) {
+			synchronized (writeMonitor) {
+				ch = segments.get(segment);
+				if (null != ch && !ch.isOpen() && !closed) {
+					L.warn("Reopening segment {} closed by an interrupted thread", segment);
+					ch = new RandomAccessFile(segmentFile(segment), "rw").getChannel();
+					segments.put(segment, ch);
+				}
+			}
+		}
+		if (null == ch) {
+			throw new ClosedChannelException();
+		}
+		return ch;
+	}
+
+	/**
+	 * Stops background compaction and closes segment files.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		compactor.shutdownNow();
+		synchronized (compactionMonitor) {
+			synchronized (writeMonitor) {
+				for (FileChannel ch : segments.values()) {
+					ch.close();
+				}
+				segments.clear();
+			}
+		}
+	}
+
+	/**
+	 * Compacts segments where the ratio of dead bytes reached the compaction
+	 * threshold. It's called periodically in the background, but can be called
+	 * manually too.
+	 *
+	 * @return Number of bytes reclaimed
+	 */
+	public long compact() {
+		long reclaimed = 0;
+		synchronized (compactionMonitor) {
+			if (closed) {
+				return 0;
+			}
+			for (int id : segmentIds()) {
+				if (id == activeSegment()) {
+					continue;
+				}
+				try {
+					long size = channel(id).size();
+					if (0 == size || deadBytesOf(id).get() >= compactionThreshold * size) {
+						reclaimed += size - compact(id);
+					}
+				} catch (IOException e) {
+					L.error(String.format("Failed to compact segment %d in %s", id, directory.getAbsolutePath()), e);
+				}
+			}
+		}
+		if (0 < reclaimed) {
+			L.info("Compaction finished in {}, segment bytes reclaimed: {}", directory.getAbsolutePath(), reclaimed);
+		}
+		return reclaimed;
+	}
+
+	/**
+	 * Copies live records of the given segment to the active one then deletes
+	 * the segment file.
+	 *
+	 * @return Number of bytes copied
+	 */
+	private long compact(int id) throws IOException {
+		long copied = 0;
+		boolean olderExists = segmentIds().get(0) < id;
+		File file = segmentFile(id);
+		L.debug("Compacting segment: {}", file.getAbsolutePath());
+		try (RecordReader r = new RecordReader(file, true, true)) {
+			Record record;
+			while (null != (record = r.next())) {
+				synchronized (writeMonitor) {
+					Location current = index.get(record.key);
+					if (STORE == record.type) {
+						if (null != current && current.segment == id && current.offset == record.offset) {
+							index.put(record.key, append(STORE, record.key, record.timestamp, record.value));
+							copied += record.size;
+						}
+					} else if (olderExists && null == current) {
+						// older segments may still contain the removed record
+						deadBytesOf(append(REMOVAL, record.key, record.timestamp, new byte[0]).segment).addAndGet(record.size);
+						copied += record.size;
+					}
+				}
+			}
+		}
+		FileChannel ch = segments.remove(id);
+		ch.close();
+		deadBytes.remove(id);
+		if (!file.delete()) {
+			L.error("Failed to delete compacted segment: {}", file.getAbsolutePath());
+		}
+		return copied;
+	}
+
+	/**
+	 * Checks if the given key exists in the in-memory index.
+	 *
+	 * @param key Key to be checked
+	 * @return <code>true</code> if the key exists, <code>false</code> otherwise
+	 */
+	@Override
+	public boolean contains(@Nonnull String key) {
+		return index.containsKey(key);
+	}
+
+	@Nonnull
+	private AtomicLong deadBytesOf(int segment) {
+		AtomicLong d = deadBytes.get(segment);
+		if (null == d) {
+			AtomicLong n = new AtomicLong();
+			d = deadBytes.putIfAbsent(segment, n);
+			if (null == d) {
+				d = n;
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * Reads the value of the given key from its segment file.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content object or <code>null</code> if the key doesn't exist
+	 * in the cache
+	 */
+	@Override
+	@CheckForNull
+	public String fetch(@Nonnull String key) {
+		CacheEntry<String> entry = fetchEntry(key, false);
+		return null != entry ? entry.getContent() : null;
+	}
+
+	/**
+	 * Reads the value of the given key from its segment file, and returns it
+	 * with the timestamp of the same index entry.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content and its timestamp or <code>null</code> if the key
+	 * doesn't exist in the cache
+	 */
+	@Override
+	@CheckForNull
+	public CacheEntry<String> fetchEntry(@Nonnull String key) {
+		return fetchEntry(key, false);
+	}
+
+	@CheckForNull
+	private CacheEntry<String> fetchEntry(@Nonnull String key, boolean skipExpired) {
+		long start = System.nanoTime();
+		Location location = index.get(key);
+		int attempts = 0;
+		while (null != location) {
+			if (skipExpired && isExpired(location.timestamp)) {
+				getMetrics().recordExpiredHit(start);
+				return null;
+			}
+			try {
+				byte[] value = read(location);
+				String content = new String(value, StandardCharsets.UTF_8);
+				getMetrics().recordHit(start, value.length);
+				L.info("'{}' fetched from cache, content length: {}", key, content.length());
+				return new CacheEntry<String>(content, new Date(location.timestamp));
+			} catch (ClosedChannelException e) {
+				// segment compacted or closed by an interrupt, try again with the current location
+				if (closed || ++attempts > 3) {
+					L.error(String.format("Segment closed when fetching '%s'", key), e);
+					break;
+				}
+				location = index.get(key);
+			} catch (IOException e) {
+				L.error(String.format("IO error when fetching '%s'", key), e);
+				break;
+			}
+		}
+		getMetrics().recordMiss(start);
+		return null;
+	}
+
+	/**
+	 * Checks the timestamp in the index before reading the segment file, so
+	 * expired values are not read at all.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content object or <code>null</code> if the key is expired or
+	 * doesn't exist in the cache
+	 */
+	@Override
+	@CheckForNull
+	public String fetchIfNotExpired(@Nonnull String key) {
+		CacheEntry<String> entry = fetchEntry(key, true);
+		return null != entry ? entry.getContent() : null;
+	}
+
+	/**
+	 * @return The cache directory
+	 */
+	@Nonnull
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Rebuilds the index by reading the records of all segments, and opens
+	 * the last segment for writing. Only the last segment can have a torn
+	 * write at its end, so it's truncated at its first invalid record.
+	 */
+	private void open() {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IllegalStateException("Could not create cache directory: " + directory.getAbsolutePath());
+		}
+		long t = System.currentTimeMillis();
+		try {
+			List<Integer> ids = segmentIds();
+			for (int i = 0; i < ids.size(); i++) {
+				int id = ids.get(i);
+				File file = segmentFile(id);
+				boolean last = i == ids.size() - 1;
+				long valid = replay(id, file, !last);
+				FileChannel ch = new RandomAccessFile(file, "rw").getChannel();
+				if (last && valid < ch.size()) {
+					L.warn("Truncating incomplete record at {} in segment: {}", valid, file.getAbsolutePath());
+					ch.truncate(valid);
+				}
+				segments.put(id, ch);
+			}
+			synchronized (writeMonitor) {
+				if (ids.isEmpty()) {
+					activeSegment = 0;
+					activeSize = 0;
+					segments.put(0, new RandomAccessFile(segmentFile(0), "rw").getChannel());
+				} else {
+					activeSegment = ids.get(ids.size() - 1);
+					activeSize = segments.get(activeSegment).size();
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to open segment cache: " + directory.getAbsolutePath(), e);
+		}
+		L.info("Segment cache opened in {} ms, {} keys, directory: {}", System.currentTimeMillis() - t, index.size(), directory.getAbsolutePath());
+	}
+
+	/**
+	 * Appends a removal record for every expired key. The space is reclaimed
+	 * by the next compaction.
+	 *
+	 * @return Number of entries removed and the size of their records
+	 */
+	@Override
+	@Nonnull
+	public PurgeResult purgeExpired() {
+		if (null == getExpiration()) {
+			return PurgeResult.EMPTY;
+		}
+		long entries = 0;
+		long bytes = 0;
+		for (Map.Entry<String, Location> e : index.entrySet()) {
+			Location location = e.getValue();
+			if (isExpired(location.timestamp)) {
+				synchronized (writeMonitor) {
+					if (location == index.get(e.getKey())) {
+						remove(e.getKey());
+						entries++;
+						bytes += location.size;
+					}
+				}
+			}
+		}
+		L.info("Purged {} expired entries ({} bytes) from {}", entries, bytes, directory.getAbsolutePath());
+		return new PurgeResult(entries, bytes);
+	}
+
+	@Nonnull
+	private byte[] read(@Nonnull Location location) throws IOException {
+		FileChannel ch = channel(location.segment);
+		ByteBuffer b = ByteBuffer.allocate(location.size);
+		long position = location.offset;
+		while (b.hasRemaining()) {
+			int n = ch.read(b, position);
+			if (n < 0) {
+				throw new EOFException("Unexpected end of segment " + location.segment);
+			}
+			position += n;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(b.array(), 0, location.size - TRAILER_SIZE);
+		if ((int) crc.getValue() != b.getInt(location.size - TRAILER_SIZE)) {
+			throw new IOException("Checksum mismatch in segment " + location.segment + " at " + location.offset);
+		}
+		int valueOffset = location.size - TRAILER_SIZE - location.length;
+		return Arrays.copyOfRange(b.array(), valueOffset, valueOffset + location.length);
+	}
+
+	/**
+	 * Appends a removal record and removes the key from the index.
+	 *
+	 * @param key Key to be removed from cache
+	 */
+	@Override
+	public void remove(@Nonnull String key) {
+		Check.notNull(key, "key must not be null");
+		long start = System.nanoTime();
+		synchronized (writeMonitor) {
+			Check.state(!closed, "cache is closed");
+			Location old = index.get(key);
+			if (null != old) {
+				try {
+					Location removal = append(REMOVAL, key, System.currentTimeMillis(), new byte[0]);
+					index.remove(key);
+					deadBytesOf(old.segment).addAndGet(old.size);
+					deadBytesOf(removal.segment).addAndGet(removal.size);
+					getMetrics().recordRemoval(start);
+				} catch (IOException e) {
+					L.error(String.format("Failed to remove '%s'", key), e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the records of a segment and updates the index. Corrupt records of
+	 * a sealed segment are skipped and counted as dead bytes, so the segment
+	 * gets compacted.
+	 *
+	 * @return Position of the end of the last valid record
+	 */
+	private long replay(int id, @Nonnull File file, boolean sealed) throws IOException {
+		try (RecordReader r = new RecordReader(file, false, sealed)) {
+			Record record;
+			while (null != (record = r.next())) {
+				Location old;
+				if (STORE == record.type) {
+					old = index.put(record.key, new Location(id, record.offset, record.valueLength, record.size, record.timestamp));
+				} else {
+					old = index.remove(record.key);
+					deadBytesOf(id).addAndGet(record.size);
+				}
+				if (null != old) {
+					deadBytesOf(old.segment).addAndGet(old.size);
+				}
+			}
+			deadBytesOf(id).addAndGet(r.skipped);
+			return r.position;
+		}
+	}
+
+	/**
+	 * Starts a new active segment. The caller must hold
+	 * <code>writeMonitor</code>.
+	 */
+	private void roll() throws IOException {
+		int id = activeSegment + 1;
+		segments.put(id, new RandomAccessFile(segmentFile(id), "rw").getChannel());
+		activeSegment = id;
+		activeSize = 0;
+		L.debug("New active segment: {}", segmentFile(id).getAbsolutePath());
+	}
+
+	@Nonnull
+	private File segmentFile(int id) {
+		return new File(directory, String.format(SEGMENT_FILENAME_FORMAT, id));
+	}
+
+	@Nonnull
+	private List<Integer> segmentIds() {
+		List<Integer> ids = new ArrayList<Integer>();
+		String[] names = directory.list();
+		if (null != names) {
+			for (String name : names) {
+				if (name.endsWith(SEGMENT_FILENAME_SUFFIX)) {
+					try {
+						ids.add(Integer.parseInt(name.substring(0, name.length() - SEGMENT_FILENAME_SUFFIX.length())));
+					} catch (NumberFormatException e) {
+						L.warn("Unknown file in segment cache directory: {}", name);
+					}
+				}
+			}
+		}
+		Collections.sort(ids);
+		return ids;
+	}
+
+	/**
+	 * Sets the ratio of dead bytes / segment size above which a segment is
+	 * compacted.
+	 *
+	 * @param compactionThreshold A number between 0 and 1
+	 */
+	public void setCompactionThreshold(double compactionThreshold) {
+		Check.argument(0 <= compactionThreshold && compactionThreshold <= 1, "compactionThreshold must be between 0 and 1");
+		this.compactionThreshold = compactionThreshold;
+	}
+
+	/**
+	 * Sets the size above which a new segment is started.
+	 *
+	 * @param maxSegmentSize Size in bytes
+	 */
+	public void setMaxSegmentSize(long maxSegmentSize) {
+		Check.argument(0 < maxSegmentSize, "maxSegmentSize must be positive");
+		this.maxSegmentSize = maxSegmentSize;
+	}
+
+	/**
+	 * Appends the given content to the active segment and updates the index.
+	 *
+	 * @param key     Key which identifies the content
+	 * @param content The content to be stored
+	 * @return <code>true</code> if the storing succeded, <code>false</code> if
+	 * it failed
+	 */
+	@Override
+	public boolean store(@Nonnull String key, @Nonnull String content) {
+		Check.notNull(key, "key must not be null");
+		long start = System.nanoTime();
+		byte[] value = content.getBytes(StandardCharsets.UTF_8);
+		synchronized (writeMonitor) {
+			Check.state(!closed, "cache is closed");
+			try {
+				Location old = index.put(key, append(STORE, key, System.currentTimeMillis(), value));
+				if (null != old) {
+					deadBytesOf(old.segment).addAndGet(old.size);
+				}
+			} catch (IOException e) {
+				L.error(String.format("Failed to store key '%s' in %s", key, directory.getAbsolutePath()), e);
+				return false;
+			}
+		}
+		getMetrics().recordStore(start, value.length);
+		L.info("'{}' stored, content length: {}", key, content.length());
+		return true;
+	}
+
+	/**
+	 * Returns the timestamp of the latest record of the given key.
+	 *
+	 * @param key Key which identifies the element
+	 * @return The timestamp or <code>null</code> if the key doesn't exist
+	 */
+	@Override
+	@CheckForNull
+	public Date timestampOf(@Nonnull String key) {
+		Location location = index.get(key);
+		return null == location ? null : new Date(location.timestamp);
+	}
+
+	/**
+	 * Entry of the in-memory index.
+	 */
+	private static final class Location {
+
+		private final int segment;
+		private final long offset;
+		private final int length;
+		private final int size;
+		private final long timestamp;
+
+		/**
+		 * @param segment   ID of the segment
+		 * @param offset    Position of the record in the segment file
+		 * @param length    Length of the value in bytes
+		 * @param size      Size of the whole record in bytes
+		 * @param timestamp Timestamp of the record
+		 */
+		private Location(int segment, long offset, int length, int size, long timestamp) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+			this.size = size;
+			this.timestamp = timestamp;
+		}
+	}
+
+	/**
+	 * A record read from a segment file.
+	 */
+	private static final class Record {
+
+		private byte type;
+		private long timestamp;
+		private String key;
+		private long offset;
+		private int valueLength;
+		private int size;
+		private byte[] value;
+	}
+
+	/**
+	 * Reads and verifies records sequentially from a segment file, optionally
+	 * keeping values, and optionally skipping corrupt records.
+	 */
+	private static final class RecordReader implements Closeable {
+
+		private static final int WINDOW_SIZE = 64 * 1024;
+
+		private final File file;
+		private final FileChannel channel;
+		private final long length;
+		private final boolean readValues;
+		private final boolean skipCorrupt;
+		private final ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE);
+		private long windowStart;
+		private long position;
+		private long skipped;
+
+		private RecordReader(@Nonnull File file, boolean readValues, boolean skipCorrupt) throws IOException {
+			this.file = file;
+			this.channel = new FileInputStream(file).getChannel();
+			this.length = channel.size();
+			this.readValues = readValues;
+			this.skipCorrupt = skipCorrupt;
+			((Buffer) window).limit(0);
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+		/**
+		 * @return The next valid record or <code>null</code> at the end of the
+		 * file, or at an incomplete or corrupt record if corrupt records are
+		 * not skipped
+		 */
+		@CheckForNull
+		private Record next() throws IOException {
+			Record r = parse(position);
+			if (null == r && skipCorrupt && position < length) {
+				long corrupt = position;
+				while (null == r && ++position < length) {
+					r = parse(position);
+				}
+				skipped += position - corrupt;
+				L.warn("Skipped {} bytes of corrupt records at {} in segment: {}", position - corrupt, corrupt, file.getAbsolutePath());
+			}
+			if (null != r) {
+				position += r.size;
+			}
+			return r;
+		}
+
+		/**
+		 * Lengths are checked against the size of the file before allocating
+		 * anything, so a corrupt header can't exhaust the memory.
+		 *
+		 * @return The record starting at the given position or
+		 * <code>null</code> if it's incomplete or corrupt
+		 */
+		@CheckForNull
+		private Record parse(long at) throws IOException {
+			long remaining = length - at - HEADER_SIZE - TRAILER_SIZE;
+			if (remaining < 0) {
+				return null;
+			}
+			byte[] header = read(at, HEADER_SIZE);
+			ByteBuffer h = ByteBuffer.wrap(header);
+			Record r = new Record();
+			r.type = h.get();
+			if (STORE != r.type && REMOVAL != r.type) {
+				return null;
+			}
+			r.timestamp = h.getLong();
+			int keyLength = h.getInt();
+			r.valueLength = h.getInt();
+			if (keyLength < 0 || r.valueLength < 0 || remaining < (long) keyLength + r.valueLength) {
+				return null;
+			}
+			byte[] body = read(at + HEADER_SIZE, keyLength + r.valueLength + TRAILER_SIZE);
+			CRC32 crc = new CRC32();
+			crc.update(header);
+			crc.update(body, 0, keyLength + r.valueLength);
+			if ((int) crc.getValue() != ByteBuffer.wrap(body).getInt(keyLength + r.valueLength)) {
+				return null;
+			}
+			r.key = new String(body, 0, keyLength, StandardCharsets.UTF_8);
+			if (readValues) {
+				r.value = Arrays.copyOfRange(body, keyLength, keyLength + r.valueLength);
+			}
+			r.offset = at;
+			r.size = HEADER_SIZE + body.length;
+			return r;
+		}
+
+		/**
+		 * Reads bytes of the file which must exist. Small reads are served
+		 * from a window of the file, so small records don't need a system call
+		 * each.
+		 */
+		@Nonnull
+		private byte[] read(long at, int n) throws IOException {
+			byte[] bytes = new byte[n];
+			if (WINDOW_SIZE < n) {
+				ByteBuffer b = ByteBuffer.wrap(bytes);
+				while (b.hasRemaining()) {
+					if (channel.read(b, at + b.position()) < 0) {
+						throw new EOFException("Unexpected end of segment");
+					}
+				}
+				return bytes;
+			}
+			if (at < windowStart || windowStart + window.limit() < at + n) {
+				((Buffer) window).clear();
+				windowStart = at;
+				while (window.hasRemaining() && 0 <= channel.read(window, windowStart + window.position())) {
+					// fills the window up to the end of the file
+				}
+				((Buffer) window).flip();
+				if (window.limit() < n) {
+					throw new EOFException("Unexpected end of segment");
+				}
+			}
+			ByteBuffer b = window.duplicate();
+			((Buffer) b).position((int) (at - windowStart));
+			b.get(bytes);
+			return bytes;
+		}
+	}
+}
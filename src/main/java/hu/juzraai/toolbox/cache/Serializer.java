@@ -0,0 +1,39 @@
+package hu.juzraai.toolbox.cache;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Converts objects to bytes and back, used by {@link SerializerFileCache}.
+ * Implementations must be thread-safe.
+ *
+ * @param <T> Type of objects the serializer handles
+ * @author Zsolt Jurányi
+ * @see BinarySerializer
+ * @see JavaSerializer
+ * @see SerializerFileCache
+ * @since 26.10
+ */
+public interface Serializer<T> {
+
+	/**
+	 * Reads an object from the stream.
+	 *
+	 * @param in Stream to read the object from, it won't be closed
+	 * @return The object
+	 * @throws IOException If reading the stream failed or the data is corrupt
+	 */
+	@Nonnull
+	T read(@Nonnull InputStream in) throws IOException;
+
+	/**
+	 * Writes the object into the stream.
+	 *
+	 * @param value Object to be written
+	 * @param out   Stream to write the object into, it won't be closed
+	 * @throws IOException If writing the stream failed
+	 */
+	void write(@Nonnull T value, @Nonnull OutputStream out) throws IOException;
+}
@@ -0,0 +1,134 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Check;
+import org.slf4j.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FileCache} implementation which stores objects of any type, converted
+ * to bytes by a {@link Serializer}. Files are read and written through {@link
+ * #openInputStream(String, File)} and {@link #openOutputStream(String, File)},
+ * so child classes can transform them, e.g. compress them.
+ * <p>
+ * Files which can't be read by the serializer (e.g. they were written by an
+ * other version of the class) are reported as misses.
+ *
+ * @param <T> Type of content which the cache handles
+ * @author Zsolt Jurányi
+ * @see BinarySerializer
+ * @see JavaSerializer
+ * @since 26.10
+ */
+public class SerializerFileCache<T> extends FileCache<T> {
+
+	private static final Logger L = LoggerFactory.getLogger(SerializerFileCache.class);
+
+	private final Serializer<T> serializer;
+
+	/**
+	 * Creates a new instance. Elements of the cache will never expire.
+	 *
+	 * @param directory  The cache directory where files will be stored
+	 * @param serializer Converts the contents to bytes and back
+	 */
+	public SerializerFileCache(@Nonnull File directory, @Nonnull Serializer<T> serializer) {
+		super(directory);
+		this.serializer = Check.notNull(serializer, "serializer must not be null");
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory  The cache directory where files will be stored.
+	 * @param expiration Expiration in milliseconds. Elements in cache will be
+	 *                   handled as expired if this amount of time have elapsed
+	 *                   since their timestamp. If it's <code>null</code>,
+	 *                   cached elements will never expire.
+	 * @param serializer Converts the contents to bytes and back
+	 */
+	public SerializerFileCache(@Nonnull File directory, Long expiration, @Nonnull Serializer<T> serializer) {
+		super(directory, expiration);
+		this.serializer = Check.notNull(serializer, "serializer must not be null");
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory  The cache directory where files will be stored.
+	 * @param expiration Expiration in the time unit of your choice. Elements in
+	 *                   cache will be handled as expired if this amount of time
+	 *                   have elapsed since their timestamp.
+	 * @param timeUnit   {@link TimeUnit} object representing the time unit you
+	 *                   specified <code>duration</code> in. It's used to
+	 *                   convert <code>duration</code> to milliseconds.
+	 * @param serializer Converts the contents to bytes and back
+	 */
+	public SerializerFileCache(@Nonnull File directory, long expiration, @Nonnull TimeUnit timeUnit, @Nonnull Serializer<T> serializer) {
+		super(directory, expiration, timeUnit);
+		this.serializer = Check.notNull(serializer, "serializer must not be null");
+	}
+
+	/**
+	 * @return The serializer which converts the contents to bytes and back
+	 */
+	@Nonnull
+	public Serializer<T> getSerializer() {
+		return serializer;
+	}
+
+	/**
+	 * Reads the specified {@link File} with the serializer.
+	 *
+	 * @param key  The key {@link #fetch(String)} was called with, now can be
+	 *             used in logs
+	 * @param file {@link File} to be loaded
+	 * @return The deserialized content, or <code>null</code> if the file
+	 * could not be read
+	 */
+	@Override
+	@CheckForNull
+	protected T load(@Nonnull String key, @Nonnull File file) {
+		try (InputStream in = new BufferedInputStream(openInputStream(key, file), STREAM_BUFFER_SIZE)) {
+			T content = serializer.read(in);
+			L.info("'{}' fetched from cache, file size: {}", key, file.length());
+			L.debug("'{}' <- {}", key, file.getAbsolutePath());
+			return content;
+		} catch (IOException e) {
+			L.error(String.format("IO error when fetching '%s'", key), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Saves the given content with the serializer.
+	 *
+	 * @param key     The key {@link #fetch(String)} was called with, now can be
+	 *                used in logs
+	 * @param file    {@link File} to write
+	 * @param content Content to be saved
+	 * @return <code>true</code> if the storing succeded, <code>false</code> if
+	 * it failed
+	 */
+	@Override
+	protected boolean save(@Nonnull String key, @Nonnull File file, @Nonnull T content) {
+		try (OutputStream out = new BufferedOutputStream(openOutputStream(key, file), STREAM_BUFFER_SIZE)) {
+			serializer.write(content, out);
+		} catch (IOException e) {
+			L.error(String.format("Failed to store key '%s' to file: %s", key, file.getAbsolutePath()), e);
+			return false;
+		}
+		L.info("'{}' stored, file size: {}", key, file.length());
+		L.debug("'{}' -> {}", key, file.getAbsolutePath());
+		return true;
+	}
+}
@@ -0,0 +1,353 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.test.Check;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Byte array store in direct {@link ByteBuffer} slabs, outside of the Java
+ * heap, used by {@link OffHeapCacheForStrings}. Only the index (key, slab,
+ * offset, length, timestamp) is kept on the heap.
+ * <p>
+ * Memory is managed like in memcached: slabs are allocated lazily up to the
+ * capacity, and every slab is cut into chunks of one size class, sizes
+ * growing by 25%. A value goes into the smallest chunk it fits in. When a
+ * size class runs out of chunks and no more slabs can be allocated, its
+ * least recently used entry is evicted, or if it has no entries, a slab of
+ * the size class with the most slabs is emptied and reassigned. Values
+ * bigger than a slab are not stored.
+ * <p>
+ * All methods are synchronized, values are copied while holding the lock.
+ *
+ * @author Zsolt Jurányi
+ * @see OffHeapCacheForStrings
+ * @since 26.10
+ */
+final class SlabStore {
+
+	/**
+	 * Size of the smallest chunks in bytes.
+	 */
+	static final int MIN_CHUNK_SIZE = 64;
+
+	/**
+	 * Ratio of the chunk sizes of neighbouring size classes.
+	 */
+	static final double GROWTH_FACTOR = 1.25;
+
+	private final int slabSize;
+	private final ByteBuffer[] slabs;
+	private final int[] slabClasses;
+	private final SizeClass[] classes;
+	private final Map<String, Chunk> chunks = new HashMap<String, Chunk>();
+	private int allocatedSlabs;
+	private long usedBytes;
+	private long evictions;
+
+	/**
+	 * Creates a new instance, slabs are allocated when they are needed.
+	 *
+	 * @param capacity Maximum number of bytes allocated, it's rounded down to
+	 *                 a multiple of the slab size
+	 * @param slabSize Size of a slab, the maximum size of a value
+	 */
+	SlabStore(long capacity, int slabSize) {
+		Check.argument(MIN_CHUNK_SIZE <= slabSize, "slabSize must be at least " + MIN_CHUNK_SIZE);
+		Check.argument(slabSize <= capacity, "capacity must be at least slabSize");
+		Check.argument(capacity / slabSize <= Integer.MAX_VALUE, "capacity is too big for slabSize");
+		this.slabSize = slabSize;
+		int maxSlabs = (int) (capacity / slabSize);
+		this.slabs = new ByteBuffer[maxSlabs];
+		this.slabClasses = new int[maxSlabs];
+		List<SizeClass> sizes = new ArrayList<SizeClass>();
+		for (long size = MIN_CHUNK_SIZE; size < slabSize; size = (long) (size * GROWTH_FACTOR + 7) / 8 * 8) {
+			sizes.add(new SizeClass((int) size));
+		}
+		sizes.add(new SizeClass(slabSize));
+		this.classes = sizes.toArray(new SizeClass[sizes.size()]);
+	}
+
+	/**
+	 * Takes a free chunk of the size class, making room if needed.
+	 *
+	 * @return Position of the chunk (slab index in the upper, offset in the
+	 * lower 32 bits), or <code>null</code> if no room could be made
+	 */
+	@CheckForNull
+	private Long allocate(int sizeClass) {
+		SizeClass c = classes[sizeClass];
+		if (c.free.isEmpty() && allocatedSlabs < slabs.length) {
+			slabs[allocatedSlabs] = ByteBuffer.allocateDirect(slabSize);
+			carve(allocatedSlabs++, sizeClass);
+		}
+		if (c.free.isEmpty() && !c.lru.isEmpty()) {
+			evict(c.lru.keySet().iterator().next());
+		}
+		if (c.free.isEmpty()) {
+			reassignSlab(sizeClass);
+		}
+		return c.free.poll();
+	}
+
+	/**
+	 * Assigns the slab to the size class and cuts it into free chunks.
+	 */
+	private void carve(int slab, int sizeClass) {
+		SizeClass c = classes[sizeClass];
+		slabClasses[slab] = sizeClass;
+		c.slabs++;
+		for (long offset = 0; offset + c.chunkSize <= slabSize; offset += c.chunkSize) {
+			c.free.add((long) slab << 32 | offset);
+		}
+	}
+
+	/**
+	 * @return Index of the smallest size class the value fits in, or -1 if
+	 * it's bigger than a slab
+	 */
+	private int classOf(int length) {
+		for (int i = 0; i < classes.length; i++) {
+			if (length <= classes[i].chunkSize) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	synchronized void clear() {
+		chunks.clear();
+		for (SizeClass c : classes) {
+			c.free.clear();
+			c.lru.clear();
+			c.slabs = 0;
+		}
+		for (int i = 0; i < allocatedSlabs; i++) {
+			slabs[i] = null; // freed when the buffer is garbage collected
+		}
+		allocatedSlabs = 0;
+		usedBytes = 0;
+	}
+
+	synchronized boolean contains(@Nonnull String key) {
+		return chunks.containsKey(key);
+	}
+
+	private void evict(@Nonnull String key) {
+		remove(key);
+		evictions++;
+	}
+
+	/**
+	 * Copies the value of the key to the heap, and marks it as recently used.
+	 *
+	 * @return The value and its timestamp, or <code>null</code> if the key is
+	 * not stored
+	 */
+	@CheckForNull
+	synchronized Value get(@Nonnull String key) {
+		Chunk chunk = chunks.get(key);
+		if (null == chunk) {
+			return null;
+		}
+		classes[chunk.sizeClass].lru.get(key);
+		byte[] value = new byte[chunk.length];
+		ByteBuffer b = slabs[chunk.slab].duplicate();
+		b.position(chunk.offset);
+		b.get(value);
+		return new Value(value, chunk.timestamp);
+	}
+
+	/**
+	 * @return Number of bytes allocated in slabs
+	 */
+	synchronized long getAllocatedBytes() {
+		return (long) allocatedSlabs * slabSize;
+	}
+
+	/**
+	 * @return Maximum number of bytes which can be allocated in slabs
+	 */
+	long getCapacity() {
+		return (long) slabs.length * slabSize;
+	}
+
+	/**
+	 * @return Number of entries evicted to make room for others
+	 */
+	synchronized long getEvictions() {
+		return evictions;
+	}
+
+	int getSlabSize() {
+		return slabSize;
+	}
+
+	/**
+	 * @return Total length of the stored values, without the unused parts of
+	 * their chunks
+	 */
+	synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	/**
+	 * Stores the value, replacing the old value of the key.
+	 *
+	 * @return <code>true</code> if the value was stored, <code>false</code> if
+	 * it's bigger than a slab or no room could be made for it
+	 */
+	synchronized boolean put(@Nonnull String key, @Nonnull byte[] value, long timestamp) {
+		remove(key);
+		int sizeClass = classOf(value.length);
+		if (0 > sizeClass) {
+			return false;
+		}
+		Long position = allocate(sizeClass);
+		if (null == position) {
+			return false;
+		}
+		Chunk chunk = new Chunk((int) (position >>> 32), (int) (long) position, value.length, timestamp, sizeClass);
+		ByteBuffer b = slabs[chunk.slab].duplicate();
+		b.position(chunk.offset);
+		b.put(value);
+		chunks.put(key, chunk);
+		classes[sizeClass].lru.put(key, chunk);
+		usedBytes += value.length;
+		return true;
+	}
+
+	/**
+	 * Empties a slab of the size class with the most slabs and assigns it to
+	 * the given size class.
+	 */
+	private void reassignSlab(int sizeClass) {
+		int victim = -1;
+		for (int i = 0; i < classes.length; i++) {
+			if (i != sizeClass && 0 < classes[i].slabs && (0 > victim || classes[victim].slabs < classes[i].slabs)) {
+				victim = i;
+			}
+		}
+		if (0 > victim) {
+			return;
+		}
+		int slab = 0;
+		while (slabClasses[slab] != victim || null == slabs[slab]) {
+			slab++;
+		}
+		SizeClass c = classes[victim];
+		for (String key : new ArrayList<String>(c.lru.keySet())) {
+			if (chunks.get(key).slab == slab) { // not touching the LRU order
+				evict(key);
+			}
+		}
+		Iterator<Long> i = c.free.iterator();
+		while (i.hasNext()) {
+			if (i.next() >>> 32 == slab) {
+				i.remove();
+			}
+		}
+		c.slabs--;
+		carve(slab, sizeClass);
+	}
+
+	/**
+	 * Removes the key and frees its chunk.
+	 *
+	 * @return <code>true</code> if the key was stored
+	 */
+	synchronized boolean remove(@Nonnull String key) {
+		Chunk chunk = chunks.remove(key);
+		if (null == chunk) {
+			return false;
+		}
+		SizeClass c = classes[chunk.sizeClass];
+		c.lru.remove(key);
+		c.free.push((long) chunk.slab << 32 | chunk.offset); // reused first, while it's in CPU cache
+		usedBytes -= chunk.length;
+		return true;
+	}
+
+	synchronized int size() {
+		return chunks.size();
+	}
+
+	/**
+	 * @return Timestamp of the value, or <code>null</code> if the key is not
+	 * stored
+	 */
+	@CheckForNull
+	synchronized Long timestampOf(@Nonnull String key) {
+		Chunk chunk = chunks.get(key);
+		return null == chunk ? null : chunk.timestamp;
+	}
+
+	/**
+	 * @return Snapshot of the keys and their timestamps
+	 */
+	@Nonnull
+	synchronized Map<String, Long> timestamps() {
+		Map<String, Long> timestamps = new HashMap<String, Long>(chunks.size());
+		for (Map.Entry<String, Chunk> e : chunks.entrySet()) {
+			timestamps.put(e.getKey(), e.getValue().timestamp);
+		}
+		return timestamps;
+	}
+
+	/**
+	 * Location and metadata of a stored value.
+	 */
+	private static final class Chunk {
+
+		private final int slab;
+		private final int offset;
+		private final int length;
+		private final long timestamp;
+		private final int sizeClass;
+
+		private Chunk(int slab, int offset, int length, long timestamp, int sizeClass) {
+			this.slab = slab;
+			this.offset = offset;
+			this.length = length;
+			this.timestamp = timestamp;
+			this.sizeClass = sizeClass;
+		}
+	}
+
+	/**
+	 * Free chunks and entries of a chunk size.
+	 */
+	private static final class SizeClass {
+
+		private final int chunkSize;
+		private final ArrayDeque<Long> free = new ArrayDeque<Long>();
+		private final LinkedHashMap<String, Chunk> lru = new LinkedHashMap<String, Chunk>(16, 0.75f, true);
+		private int slabs;
+
+		private SizeClass(int chunkSize) {
+			this.chunkSize = chunkSize;
+		}
+	}
+
+	/**
+	 * A value copied to the heap, with its timestamp.
+	 */
+	static final class Value {
+
+		final byte[] bytes;
+		final long timestamp;
+
+		private Value(@Nonnull byte[] bytes, long timestamp) {
+			this.bytes = bytes;
+			this.timestamp = timestamp;
+		}
+	}
+}
@@ -0,0 +1,612 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.jdbc.SqliteConnectionString;
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Check;
+import org.slf4j.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Abstract {@link Cache} implementation which stores contents in a single
+ * SQLite database file, in a table of key, content and timestamp columns. For
+ * many small entries it needs far less inodes, disk syncs and backup time
+ * than a {@link FileCache}. The concrete conversion of contents to bytes must
+ * be implemented in child classes.
+ * <p>
+ * The database runs in WAL mode, so readers don't block the writer and the
+ * writer doesn't block readers. Writes go through a single connection, reads
+ * use a pool of connections, every operation uses prepared statements. Bulk
+ * stores and removals are executed as a batch in one transaction. Timestamps
+ * are indexed, so {@link #purgeExpired()} doesn't scan the table.
+ * <p>
+ * An in-memory database (a connection string without file) can only be
+ * accessed through one connection, so reads use the writer connection too.
+ * The cache must be closed to release its connections.
+ *
+ * @param <T> Type of content which the cache handles
+ * @author Zsolt Jurányi
+ * @see SqliteCacheForBytes
+ * @see SqliteCacheForStrings
+ * @since 26.10
+ */
+public abstract class SqliteCache<T> extends Cache<T> implements Closeable {
+
+	/**
+	 * Default maximum number of reader connections.
+	 */
+	public static final int DEFAULT_READERS = 4;
+
+	private static final Logger L = LoggerFactory.getLogger(SqliteCache.class);
+	private static final String TABLE = "cache";
+
+	private final SqliteConnectionString connectionString;
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private final Session writer; // guarded by writeLock
+	private final BlockingQueue<Session> readers;
+	private final int maxReaders;
+	private int openedReaders; // guarded by readers
+	private volatile boolean closed;
+
+	/**
+	 * Creates a new instance. Elements of the cache will never expire.
+	 *
+	 * @param connectionString Connection string of the database, the table is
+	 *                         created if it doesn't exist
+	 * @throws IllegalStateException If the database could not be opened
+	 */
+	public SqliteCache(@Nonnull SqliteConnectionString connectionString) {
+		this(connectionString, null);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param connectionString Connection string of the database, the table is
+	 *                         created if it doesn't exist
+	 * @param expiration       Expiration in milliseconds. Elements in cache
+	 *                         will be handled as expired if this amount of
+	 *                         time have elapsed since their timestamp. If it's
+	 *                         <code>null</code>, cached elements will never
+	 *                         expire.
+	 * @throws IllegalStateException If the database could not be opened
+	 */
+	public SqliteCache(@Nonnull SqliteConnectionString connectionString, Long expiration) {
+		super(expiration);
+		this.connectionString = Check.notNull(connectionString, "connectionString must not be null");
+		this.maxReaders = null == connectionString.getDatabaseFile() ? 0 : DEFAULT_READERS;
+		this.readers = new ArrayBlockingQueue<Session>(Math.max(1, maxReaders));
+		try {
+			this.writer = new Session(open(true));
+		} catch (SQLException e) {
+			throw new IllegalStateException("Failed to open SQLite database: " + connectionString, e);
+		}
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param connectionString Connection string of the database, the table is
+	 *                         created if it doesn't exist
+	 * @param expiration       Expiration in the time unit of your choice.
+	 *                         Elements in cache will be handled as expired if
+	 *                         this amount of time have elapsed since their
+	 *                         timestamp.
+	 * @param timeUnit         {@link TimeUnit} object representing the time
+	 *                         unit you specified <code>duration</code> in.
+	 *                         It's used to convert <code>duration</code> to
+	 *                         milliseconds.
+	 * @throws IllegalStateException If the database could not be opened
+	 */
+	public SqliteCache(@Nonnull SqliteConnectionString connectionString, long expiration, @Nonnull TimeUnit timeUnit) {
+		this(connectionString, timeUnit.toMillis(expiration));
+	}
+
+	private static void execute(@Nonnull Connection connection, @Nonnull String sql) throws SQLException {
+		try (Statement s = connection.createStatement()) {
+			s.execute(sql);
+		}
+	}
+
+	@Nonnull
+	private static String selectIn(int keys) {
+		StringBuilder sql = new StringBuilder("SELECT key, content FROM ").append(TABLE).append(" WHERE key IN (?");
+		for (int i = 1; i < keys; i++) {
+			sql.append(", ?");
+		}
+		return sql.append(')').toString();
+	}
+
+	/**
+	 * Takes a reader session from the pool, opening a new connection if every
+	 * opened one is in use and the limit is not reached yet. In-memory
+	 * databases are read through the writer session.
+	 */
+	@Nonnull
+	private Session acquireReader() throws SQLException {
+		Check.state(!closed, "cache is closed");
+		if (0 == maxReaders) {
+			writeLock.lock();
+			return writer;
+		}
+		Session session = readers.poll();
+		if (null != session) {
+			return session;
+		}
+		synchronized (readers) {
+			if (openedReaders < maxReaders) {
+				openedReaders++;
+				try {
+					return new Session(open(false));
+				} catch (SQLException e) {
+					openedReaders--;
+					throw e;
+				}
+			}
+		}
+		try {
+			return readers.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a connection", e);
+		}
+	}
+
+	/**
+	 * Closes every connection of the cache. Operations called after closing
+	 * throw {@link IllegalStateException}.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		writeLock.lock();
+		try {
+			writer.close();
+		} finally {
+			writeLock.unlock();
+		}
+		closeIdleReaders();
+		L.debug("Closed SQLite cache - {}", connectionString);
+	}
+
+	/**
+	 * Closes the reader sessions which are in the pool.
+	 */
+	private void closeIdleReaders() {
+		List<Session> sessions = new ArrayList<Session>();
+		readers.drainTo(sessions);
+		for (Session session : sessions) {
+			session.close();
+		}
+	}
+
+	@Override
+	public boolean contains(@Nonnull String key) {
+		return null != timestampOf(key);
+	}
+
+	/**
+	 * Converts the bytes read from the database to content.
+	 *
+	 * @param bytes Bytes of the content
+	 * @return The content
+	 */
+	@Nonnull
+	protected abstract T decode(@Nonnull byte[] bytes);
+
+	/**
+	 * Converts the content to bytes to be written into the database.
+	 *
+	 * @param content The content
+	 * @return Bytes of the content
+	 */
+	@Nonnull
+	protected abstract byte[] encode(@Nonnull T content);
+
+	@CheckForNull
+	@Override
+	public T fetch(@Nonnull String key) {
+		CacheEntry<T> entry = fetchEntry(key);
+		return null == entry ? null : entry.getContent();
+	}
+
+	/**
+	 * Fetches the contents of the given keys with one query per 999 keys.
+	 *
+	 * @param keys Keys to identify the required contents
+	 * @return Map of the keys found in the cache and their contents, in the
+	 * order of the given keys
+	 */
+	@Nonnull
+	@Override
+	public Map<String, T> fetchAll(@Nonnull Collection<String> keys) {
+		long start = System.nanoTime();
+		Map<String, byte[]> found = new HashMap<String, byte[]>();
+		List<String> list = new ArrayList<String>(keys);
+		try {
+			Session session = acquireReader();
+			try {
+				for (int from = 0; from < list.size(); from += Session.MAX_PARAMETERS) {
+					List<String> chunk = list.subList(from, Math.min(list.size(), from + Session.MAX_PARAMETERS));
+					try (PreparedStatement s = session.connection.prepareStatement(selectIn(chunk.size()))) {
+						for (int i = 0; i < chunk.size(); i++) {
+							s.setString(i + 1, Check.notNull(chunk.get(i), "key must not be null"));
+						}
+						try (ResultSet r = s.executeQuery()) {
+							while (r.next()) {
+								byte[] bytes = r.getBytes(2);
+								found.put(r.getString(1), null == bytes ? new byte[0] : bytes); // empty blobs are read as null
+							}
+						}
+					}
+				}
+			} finally {
+				releaseReader(session);
+			}
+		} catch (SQLException e) {
+			L.error(String.format("Failed to fetch %d keys from %s", list.size(), connectionString), e);
+		}
+		Map<String, T> result = new LinkedHashMap<String, T>();
+		for (String key : list) {
+			byte[] bytes = found.get(key);
+			if (null == bytes) {
+				getMetrics().recordMiss(start);
+			} else {
+				result.put(key, decode(bytes));
+				getMetrics().recordHit(start, bytes.length);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Fetches the content and the timestamp of the key with one query.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content and its timestamp or <code>null</code> if the key
+	 * doesn't exist in the cache
+	 */
+	@CheckForNull
+	@Override
+	public CacheEntry<T> fetchEntry(@Nonnull String key) {
+		Check.notNull(key, "key must not be null");
+		long start = System.nanoTime();
+		try {
+			Session session = acquireReader();
+			try {
+				PreparedStatement s = session.select();
+				s.setString(1, key);
+				try (ResultSet r = s.executeQuery()) {
+					if (r.next()) {
+						byte[] bytes = r.getBytes(1);
+						bytes = null == bytes ? new byte[0] : bytes; // empty blobs are read as null
+						CacheEntry<T> entry = new CacheEntry<T>(decode(bytes), new Date(r.getLong(2)));
+						getMetrics().recordHit(start, bytes.length);
+						return entry;
+					}
+				}
+			} finally {
+				releaseReader(session);
+			}
+		} catch (SQLException e) {
+			L.error(String.format("Failed to fetch key '%s' from %s", key, connectionString), e);
+		}
+		getMetrics().recordMiss(start);
+		return null;
+	}
+
+	/**
+	 * @return The connection string of the database
+	 */
+	@Nonnull
+	public SqliteConnectionString getConnectionString() {
+		return connectionString;
+	}
+
+	/**
+	 * Opens a new connection. The writer connection sets up WAL mode and the
+	 * table, reader connections are set read-only.
+	 */
+	@Nonnull
+	private Connection open(boolean writer) throws SQLException {
+		try {
+			Class.forName("org.sqlite.JDBC");
+		} catch (ClassNotFoundException e) {
+			throw new SQLException("SQLite JDBC driver not found", e);
+		}
+		Connection connection = DriverManager.getConnection(connectionString.toString());
+		try {
+			if (writer) {
+				try (Statement s = connection.createStatement();
+					 ResultSet r = s.executeQuery("PRAGMA journal_mode=WAL")) {
+					if (!r.next() || !"wal".equalsIgnoreCase(r.getString(1))) {
+						L.warn("WAL mode is not available, readers and writer will block each other - {}", connectionString);
+					}
+				}
+				execute(connection, "PRAGMA synchronous=NORMAL"); // durable at checkpoints in WAL mode
+				execute(connection, "CREATE TABLE IF NOT EXISTS " + TABLE + " (key TEXT PRIMARY KEY NOT NULL, content BLOB NOT NULL, timestamp INTEGER NOT NULL)");
+				execute(connection, "CREATE INDEX IF NOT EXISTS " + TABLE + "_timestamp_idx ON " + TABLE + " (timestamp)");
+			} else {
+				connection.setReadOnly(true);
+			}
+			L.debug("Opened SQLite {} connection - {}", writer ? "writer" : "reader", connectionString);
+			return connection;
+		} catch (SQLException e) {
+			connection.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Removes every expired entry with one indexed query in a transaction.
+	 *
+	 * @return Number of entries and bytes reclaimed
+	 */
+	@Nonnull
+	@Override
+	public PurgeResult purgeExpired() {
+		Long expiration = getExpiration();
+		if (null == expiration) {
+			return PurgeResult.EMPTY;
+		}
+		final long t = System.currentTimeMillis();
+		final long limit = t - expiration;
+		writeLock.lock();
+		try {
+			Check.state(!closed, "cache is closed");
+			return writer.inTransaction(new Transaction<PurgeResult>() {
+				@Override
+				public PurgeResult run(@Nonnull Session session) throws SQLException {
+					long bytes = 0;
+					try (PreparedStatement s = session.connection.prepareStatement("SELECT SUM(length(content)) FROM " + TABLE + " WHERE timestamp < ?")) {
+						s.setLong(1, limit);
+						try (ResultSet r = s.executeQuery()) {
+							bytes = r.next() ? r.getLong(1) : 0;
+						}
+					}
+					try (PreparedStatement s = session.connection.prepareStatement("DELETE FROM " + TABLE + " WHERE timestamp < ?")) {
+						s.setLong(1, limit);
+						PurgeResult result = new PurgeResult(s.executeUpdate(), bytes);
+						L.info("Purged {} expired entries ({} bytes) in {} ms from {}", result.getEntries(), result.getBytes(), System.currentTimeMillis() - t, connectionString);
+						return result;
+					}
+				}
+			});
+		} catch (SQLException e) {
+			L.error(String.format("Failed to purge expired entries from %s", connectionString), e);
+			return PurgeResult.EMPTY;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private void releaseReader(@Nonnull Session session) {
+		if (writer == session) {
+			writeLock.unlock();
+		} else if (closed) {
+			session.close();
+		} else {
+			readers.offer(session);
+			if (closed) {
+				closeIdleReaders(); // close() may have drained the pool before the offer
+			}
+		}
+	}
+
+	@Override
+	public void remove(@Nonnull String key) {
+		removeAll(Collections.singletonList(key));
+	}
+
+	/**
+	 * Removes the given keys as a batch, in one transaction.
+	 *
+	 * @param keys Keys to be removed from cache
+	 */
+	@Override
+	public void removeAll(@Nonnull final Collection<String> keys) {
+		if (keys.isEmpty()) {
+			return;
+		}
+		long start = System.nanoTime();
+		writeLock.lock();
+		try {
+			Check.state(!closed, "cache is closed");
+			int[] counts = writer.inTransaction(new Transaction<int[]>() {
+				@Override
+				public int[] run(@Nonnull Session session) throws SQLException {
+					PreparedStatement s = session.delete();
+					for (String key : keys) {
+						s.setString(1, Check.notNull(key, "key must not be null"));
+						s.addBatch();
+					}
+					return s.executeBatch();
+				}
+			});
+			for (int count : counts) {
+				if (0 < count) {
+					getMetrics().recordRemoval(start);
+				}
+			}
+		} catch (SQLException e) {
+			L.error(String.format("Failed to remove %d keys from %s", keys.size(), connectionString), e);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public boolean store(@Nonnull String key, @Nonnull T content) {
+		return storeAll(Collections.singletonMap(key, content));
+	}
+
+	/**
+	 * Stores the given entries as a batch, in one transaction. Either every
+	 * entry is stored or none of them.
+	 *
+	 * @param entries Keys and contents to be stored
+	 * @return <code>true</code> if storing of all entries succeeded,
+	 * <code>false</code> if it failed
+	 */
+	@Override
+	public boolean storeAll(@Nonnull final Map<String, ? extends T> entries) {
+		if (entries.isEmpty()) {
+			return true;
+		}
+		long start = System.nanoTime();
+		final long timestamp = System.currentTimeMillis();
+		final long[] bytes = new long[1];
+		writeLock.lock();
+		try {
+			Check.state(!closed, "cache is closed");
+			writer.inTransaction(new Transaction<Void>() {
+				@Override
+				public Void run(@Nonnull Session session) throws SQLException {
+					PreparedStatement s = session.insert();
+					for (Map.Entry<String, ? extends T> e : entries.entrySet()) {
+						byte[] content = encode(Check.notNull(e.getValue(), "content must not be null"));
+						s.setString(1, Check.notNull(e.getKey(), "key must not be null"));
+						s.setBytes(2, content);
+						s.setLong(3, timestamp);
+						s.addBatch();
+						bytes[0] += content.length;
+					}
+					s.executeBatch();
+					return null;
+				}
+			});
+			getMetrics().recordStore(start, bytes[0]);
+			return true;
+		} catch (SQLException e) {
+			L.error(String.format("Failed to store %d entries into %s", entries.size(), connectionString), e);
+			return false;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@CheckForNull
+	@Override
+	public Date timestampOf(@Nonnull String key) {
+		Check.notNull(key, "key must not be null");
+		try {
+			Session session = acquireReader();
+			try {
+				PreparedStatement s = session.timestamp();
+				s.setString(1, key);
+				try (ResultSet r = s.executeQuery()) {
+					return r.next() ? new Date(r.getLong(1)) : null;
+				}
+			} finally {
+				releaseReader(session);
+			}
+		} catch (SQLException e) {
+			L.error(String.format("Failed to read timestamp of key '%s' from %s", key, connectionString), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Work done by the writer session in a transaction.
+	 */
+	private interface Transaction<R> {
+
+		R run(@Nonnull Session session) throws SQLException;
+	}
+
+	/**
+	 * A connection with its prepared statements, used by one thread at a
+	 * time.
+	 */
+	private static final class Session {
+
+		/**
+		 * Maximum number of parameters of a statement in old SQLite versions.
+		 */
+		private static final int MAX_PARAMETERS = 999;
+
+		private final Connection connection;
+		private PreparedStatement select;
+		private PreparedStatement timestamp;
+		private PreparedStatement insert;
+		private PreparedStatement delete;
+
+		private Session(@Nonnull Connection connection) {
+			this.connection = connection;
+		}
+
+		private void close() {
+			try {
+				connection.close(); // closes its statements
+			} catch (SQLException e) {
+				L.warn("Failed to close SQLite connection", e);
+			}
+		}
+
+		@Nonnull
+		private PreparedStatement delete() throws SQLException {
+			if (null == delete) {
+				delete = connection.prepareStatement("DELETE FROM " + TABLE + " WHERE key = ?");
+			}
+			return delete;
+		}
+
+		private <R> R inTransaction(@Nonnull Transaction<R> transaction) throws SQLException {
+			connection.setAutoCommit(false);
+			try {
+				R result = transaction.run(this);
+				connection.commit();
+				return result;
+			} catch (SQLException | RuntimeException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		}
+
+		@Nonnull
+		private PreparedStatement insert() throws SQLException {
+			if (null == insert) {
+				insert = connection.prepareStatement("INSERT OR REPLACE INTO " + TABLE + " (key, content, timestamp) VALUES (?, ?, ?)");
+			}
+			return insert;
+		}
+
+		@Nonnull
+		private PreparedStatement select() throws SQLException {
+			if (null == select) {
+				select = connection.prepareStatement("SELECT content, timestamp FROM " + TABLE + " WHERE key = ?");
+			}
+			return select;
+		}
+
+		@Nonnull
+		private PreparedStatement timestamp() throws SQLException {
+			if (null == timestamp) {
+				timestamp = connection.prepareStatement("SELECT timestamp FROM " + TABLE + " WHERE key = ?");
+			}
+			return timestamp;
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.test.Check;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A fixed set of {@link ReadWriteLock}s which are assigned to keys by their
+ * hash code. Operations on the same key always get the same lock, operations
+ * on different keys get different locks with high probability, so they can
+ * proceed in parallel.
+ *
+ * @author Zsolt Jurányi
+ * @see FileCache
+ * @since 26.10
+ */
+public class StripedLocks {
+
+	/**
+	 * Default number of stripes.
+	 */
+	public static final int DEFAULT_STRIPES = 256;
+
+	private final ReadWriteLock[] stripes;
+	private final int mask;
+
+	/**
+	 * Creates a new instance with {@link #DEFAULT_STRIPES} stripes.
+	 */
+	public StripedLocks() {
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param stripes Number of locks, it will be rounded up to the next power
+	 *                of two
+	 */
+	public StripedLocks(int stripes) {
+		this(stripes, Mode.SHARED);
+	}
+
+	private StripedLocks(int stripes, @Nonnull Mode mode) {
+		Check.argument(0 < stripes && stripes <= (1 << 30), "stripes must be positive");
+		int size = Integer.highestOneBit(stripes);
+		if (size < stripes) {
+			size <<= 1;
+		}
+		this.stripes = new ReadWriteLock[size];
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = Mode.EXCLUSIVE == mode ? new ExclusiveLock() : (Mode.WRITE_ONLY == mode ? new WriteOnlyLock() : new ReentrantReadWriteLock());
+		}
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Creates an instance which has only one stripe and its read lock is the
+	 * same as its write lock. This means every operation will be serialized,
+	 * just like if they were <code>synchronized</code>.
+	 *
+	 * @return A new instance with a single, exclusive lock
+	 */
+	@Nonnull
+	public static StripedLocks exclusive() {
+		return new StripedLocks(1, Mode.EXCLUSIVE);
+	}
+
+	/**
+	 * Creates an instance whose read locks don't lock anything, only writes
+	 * of the same key exclude each other. It can be used when writes are
+	 * published atomically, so readers can't see them half-done.
+	 *
+	 * @param stripes Number of locks, it will be rounded up to the next power
+	 *                of two
+	 * @return A new instance with no-op read locks
+	 */
+	@Nonnull
+	public static StripedLocks writeOnly(int stripes) {
+		return new StripedLocks(stripes, Mode.WRITE_ONLY);
+	}
+
+	/**
+	 * @param key Key to find the lock for
+	 * @return The lock which guards the given key
+	 */
+	@Nonnull
+	public ReadWriteLock forKey(@Nonnull String key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16); // spreading higher bits, as HashMap does
+		return stripes[h & mask];
+	}
+
+	/**
+	 * @param key Key to find the lock for
+	 * @return The read lock which guards the given key
+	 */
+	@Nonnull
+	public Lock readLock(@Nonnull String key) {
+		return forKey(key).readLock();
+	}
+
+	/**
+	 * @return Number of stripes
+	 */
+	public int size() {
+		return stripes.length;
+	}
+
+	/**
+	 * @param key Key to find the lock for
+	 * @return The write lock which guards the given key
+	 */
+	@Nonnull
+	public Lock writeLock(@Nonnull String key) {
+		return forKey(key).writeLock();
+	}
+
+	/**
+	 * {@link ReadWriteLock} which returns the same {@link ReentrantLock} for
+	 * reading and writing.
+	 */
+	private static final class ExclusiveLock implements ReadWriteLock {
+
+		private final Lock lock = new ReentrantLock();
+
+		@Override
+		@Nonnull
+		public Lock readLock() {
+			return lock;
+		}
+
+		@Override
+		@Nonnull
+		public Lock writeLock() {
+			return lock;
+		}
+	}
+
+	/**
+	 * Kinds of locks in the stripes.
+	 */
+	private enum Mode {
+		SHARED, EXCLUSIVE, WRITE_ONLY
+	}
+
+	/**
+	 * {@link Lock} which doesn't lock anything.
+	 */
+	private static final class NoLock implements Lock {
+
+		private static final NoLock INSTANCE = new NoLock();
+
+		@Override
+		public void lock() {
+		}
+
+		@Override
+		public void lockInterruptibly() {
+		}
+
+		@Override
+		@Nonnull
+		public Condition newCondition() {
+			throw new UnsupportedOperationException("NoLock has no conditions");
+		}
+
+		@Override
+		public boolean tryLock() {
+			return true;
+		}
+
+		@Override
+		public boolean tryLock(long time, @Nonnull TimeUnit unit) {
+			return true;
+		}
+
+		@Override
+		public void unlock() {
+		}
+	}
+
+	/**
+	 * {@link ReadWriteLock} whose read lock is a {@link NoLock}.
+	 */
+	private static final class WriteOnlyLock implements ReadWriteLock {
+
+		private final Lock lock = new ReentrantLock();
+
+		@Override
+		@Nonnull
+		public Lock readLock() {
+			return NoLock.INSTANCE;
+		}
+
+		@Override
+		@Nonnull
+		public Lock writeLock() {
+			return lock;
+		}
+	}
+}
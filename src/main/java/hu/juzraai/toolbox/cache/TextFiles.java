@@ -0,0 +1,110 @@
+package hu.juzraai.toolbox.cache;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Fast file reading for the string caches. The buffer is sized from the file
+ * length, filled without intermediate copies and decoded in one pass.
+ * Buffers are reused per thread, up to {@link #MAX_RETAINED_BUFFER_SIZE}.
+ *
+ * @author Zsolt Jurányi
+ * @since 26.10
+ */
+final class TextFiles {
+
+	/**
+	 * Per-thread buffers bigger than this are dropped after use, so a single
+	 * huge file won't pin memory in every thread.
+	 */
+	static final int MAX_RETAINED_BUFFER_SIZE = 4 * 1024 * 1024;
+
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+	private static final int MIN_BUFFER_SIZE = 8 * 1024;
+
+	private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[MIN_BUFFER_SIZE];
+		}
+	};
+
+	private TextFiles() {
+	}
+
+	/**
+	 * Reads the whole file into the buffer of the current thread, sizing it
+	 * from the file length.
+	 *
+	 * @param file File to be read
+	 * @return A buffer wrapping the array which contains the bytes of the
+	 * file from index 0 to its limit. It's only valid until the next call on
+	 * the same thread.
+	 * @throws IOException If the file cannot be read
+	 */
+	@Nonnull
+	static ByteBuffer readAll(@Nonnull File file) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			return readAll(in, (int) Math.min(file.length(), MAX_ARRAY_SIZE));
+		}
+	}
+
+	/**
+	 * Reads the stream until its end into the buffer of the current thread.
+	 * The stream is not closed.
+	 *
+	 * @param in             Stream to be read
+	 * @param expectedLength Expected number of bytes, the buffer grows if the
+	 *                       stream turns out to be longer
+	 * @return A buffer wrapping the array which contains the bytes read from
+	 * index 0 to its limit. It's only valid until the next call on the same
+	 * thread.
+	 * @throws IOException If the stream cannot be read
+	 */
+	@Nonnull
+	static ByteBuffer readAll(@Nonnull InputStream in, int expectedLength) throws IOException {
+		byte[] buffer = BUFFER.get();
+		int required = (int) Math.min((long) expectedLength + 1, MAX_ARRAY_SIZE); // +1 to see EOF without growing
+		if (buffer.length < required) {
+			buffer = new byte[required];
+		}
+		int length = 0;
+		int n;
+		while (true) {
+			if (length == buffer.length) {
+				if (MAX_ARRAY_SIZE == length) {
+					throw new IOException("Content is too long");
+				}
+				buffer = Arrays.copyOf(buffer, (int) Math.min(2L * length, MAX_ARRAY_SIZE));
+			}
+			n = in.read(buffer, length, buffer.length - length);
+			if (n < 0) {
+				break;
+			}
+			length += n;
+		}
+		if (buffer.length <= MAX_RETAINED_BUFFER_SIZE) {
+			BUFFER.set(buffer);
+		}
+		return ByteBuffer.wrap(buffer, 0, length);
+	}
+
+	/**
+	 * Reads a plain UTF-8 text file.
+	 *
+	 * @param file File to be read
+	 * @return The decoded content
+	 * @throws IOException If the file cannot be read
+	 */
+	@Nonnull
+	static String readUtf8(@Nonnull File file) throws IOException {
+		ByteBuffer bytes = readAll(file);
+		return new String(bytes.array(), 0, bytes.limit(), StandardCharsets.UTF_8);
+	}
+}
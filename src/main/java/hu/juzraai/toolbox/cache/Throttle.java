@@ -0,0 +1,73 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.test.Check;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simple rate limiter which can be shared between threads. Background tasks
+ * use it to avoid starving foreground I/O operations.
+ *
+ * @author Zsolt Jurányi
+ * @since 26.10
+ */
+class Throttle {
+
+	/**
+	 * A throttle which never waits.
+	 */
+	static final Throttle UNLIMITED = new Throttle();
+
+	private final long interval;
+	private long next; // guarded by this
+
+	private Throttle() {
+		this.interval = 0;
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param permitsPerSecond Maximum number of {@link #acquire()} calls
+	 *                         returning in a second
+	 */
+	Throttle(int permitsPerSecond) {
+		Check.argument(0 < permitsPerSecond, "permitsPerSecond must be positive");
+		this.interval = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+	}
+
+	/**
+	 * Creates a new instance or returns {@link #UNLIMITED}.
+	 *
+	 * @param permitsPerSecond Maximum number of {@link #acquire()} calls
+	 *                         returning in a second, or 0 for no limit
+	 * @return A throttle
+	 */
+	static Throttle of(int permitsPerSecond) {
+		Check.argument(0 <= permitsPerSecond, "permitsPerSecond must be non-negative");
+		return 0 == permitsPerSecond ? UNLIMITED : new Throttle(permitsPerSecond);
+	}
+
+	/**
+	 * Waits until the next permit is available.
+	 *
+	 * @throws InterruptedException If the thread was interrupted while waiting
+	 */
+	void acquire() throws InterruptedException {
+		if (0 == interval) {
+			return;
+		}
+		long wait;
+		synchronized (this) {
+			long now = System.nanoTime();
+			if (next < now) {
+				next = now;
+			}
+			wait = next - now;
+			next += interval;
+		}
+		if (0 < wait) {
+			TimeUnit.NANOSECONDS.sleep(wait);
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package hu.juzraai.toolbox.cache;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Calculates the weight of a cache entry, which is used by bounded caches to
+ * decide when they need to evict entries. The weight can be any measure which
+ * is proportional to memory usage, e.g. content length.
+ *
+ * @param <T> Type of content which the cache handles.
+ * @author Zsolt Jurányi
+ * @see MemoryCache
+ * @since 26.10
+ */
+public interface Weigher<T> {
+
+	/**
+	 * Calculates the weight of the given entry.
+	 *
+	 * @param key     Key of the entry
+	 * @param content Content of the entry
+	 * @return The weight of the entry, must be non-negative
+	 */
+	long weigh(@Nonnull String key, @Nonnull T content);
+}
@@ -0,0 +1,384 @@
+package hu.juzraai.toolbox.cache;
+
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Check;
+import org.slf4j.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.Date;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * {@link Cache} decorator which stores contents asynchronously: {@link
+ * #store(String, Object)} only puts the content into a pending map and a
+ * bounded queue, and background writer threads store it into the backend
+ * (e.g. a {@link FileCache}). This way disk latency is removed from the
+ * caller's path.
+ * <p>
+ * Repeated writes of the same key are coalesced, only the latest pending
+ * content is written. Reads see pending writes. When the queue is full,
+ * {@link #store(String, Object)} blocks until a writer thread takes a key
+ * from it. {@link #flush()} and {@link #close()} wait until all writes
+ * queued before the call reach the backend.
+ * <p>
+ * If the backend is a {@link FileCache}, using it in {@link
+ * FileCache.Locking#STRIPED} mode lets writer threads work in parallel.
+ *
+ * @param <T> Type of content which the cache handles.
+ * @author Zsolt Jurányi
+ * @see Cache
+ * @since 26.10
+ */
+public class WriteBehindCache<T> extends Cache<T> implements Closeable {
+
+	private static final Logger L = LoggerFactory.getLogger(WriteBehindCache.class);
+
+	private final Cache<T> backend;
+	private final ConcurrentMap<String, Pending<T>> pending = new ConcurrentHashMap<String, Pending<T>>();
+	private final BlockingQueue<Ticket> queue;
+	private final StripedLocks locks = new StripedLocks();
+	private final ExecutorService writers;
+	private final Object monitor = new Object();
+	private long lastTicket; // guarded by monitor
+	private final TreeSet<Long> unfinished = new TreeSet<Long>(); // guarded by monitor
+	private volatile boolean closed;
+
+	/**
+	 * Creates a new instance and starts the writer threads.
+	 *
+	 * @param backend       The cache to be decorated
+	 * @param queueCapacity Maximum number of distinct keys waiting to be
+	 *                      written
+	 * @param writerThreads Number of background threads writing into the
+	 *                      backend
+	 */
+	public WriteBehindCache(@Nonnull Cache<T> backend, int queueCapacity, int writerThreads) {
+		super(Check.notNull(backend, "backend must not be null").getExpiration());
+		Check.argument(0 < queueCapacity, "queueCapacity must be positive");
+		Check.argument(0 < writerThreads, "writerThreads must be positive");
+		this.backend = backend;
+		this.queue = new ArrayBlockingQueue<Ticket>(queueCapacity);
+		this.writers = Executors.newFixedThreadPool(writerThreads, new DaemonThreadFactory("write-behind"));
+		for (int i = 0; i < writerThreads; i++) {
+			writers.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						while (!Thread.currentThread().isInterrupted()) {
+							write(queue.take());
+						}
+					} catch (InterruptedException e) {
+						// closing
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Waits for pending writes then stops the writer threads. The backend is
+	 * not closed.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		flush();
+		writers.shutdownNow();
+	}
+
+	/**
+	 * Checks pending writes first, then the backend.
+	 *
+	 * @param key Key to be checked
+	 * @return <code>true</code> if the key exists, <code>false</code> otherwise
+	 */
+	@Override
+	public boolean contains(@Nonnull String key) {
+		return pending.containsKey(key) || backend.contains(key);
+	}
+
+	/**
+	 * Checks pending writes first, then the backend.
+	 *
+	 * @param key Key to be checked
+	 * @return <code>true</code> if the key exists and not expired,
+	 * <code>false</code> otherwise
+	 */
+	@Override
+	public boolean containsAndNotExpired(@Nonnull String key) {
+		Pending<T> p = pending.get(key);
+		return null != p ? !isExpired(p.timestamp) : backend.containsAndNotExpired(key);
+	}
+
+	/**
+	 * Returns the pending content of the key if there's any, otherwise reads
+	 * the backend.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content object or <code>null</code> if the key doesn't exist
+	 * in the cache
+	 */
+	@Override
+	@CheckForNull
+	public T fetch(@Nonnull String key) {
+		Pending<T> p = pending.get(key);
+		return null != p ? p.content : backend.fetch(key);
+	}
+
+	/**
+	 * Returns the pending content of the key and its timestamp if there's any,
+	 * otherwise reads the backend.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content and its timestamp or <code>null</code> if the key
+	 * doesn't exist in the cache
+	 */
+	@Override
+	@CheckForNull
+	public CacheEntry<T> fetchEntry(@Nonnull String key) {
+		Pending<T> p = pending.get(key);
+		return null != p ? new CacheEntry<T>(p.content, p.timestamp) : backend.fetchEntry(key);
+	}
+
+	/**
+	 * Returns the pending content of the key if there's any and it's not
+	 * expired, otherwise asks the backend.
+	 *
+	 * @param key Key to identify the required content
+	 * @return The content or <code>null</code> if the key is expired or
+	 * doesn't exist in the cache
+	 */
+	@Override
+	@CheckForNull
+	public T fetchIfNotExpired(@Nonnull String key) {
+		Pending<T> p = pending.get(key);
+		if (null != p) {
+			return isExpired(p.timestamp) ? null : p.content;
+		}
+		return backend.fetchIfNotExpired(key);
+	}
+
+	/**
+	 * Blocks until every write which was queued at the time of the call
+	 * reaches the backend. Writes queued later are not waited for, so
+	 * continuous stores of other threads can't hold up the caller. After
+	 * {@link #close()} the calling thread processes the queue itself, as the
+	 * writer threads may be stopped already.
+	 */
+	public void flush() {
+		long last;
+		synchronized (monitor) {
+			last = lastTicket;
+		}
+		if (closed) {
+			Ticket ticket;
+			while (null != (ticket = queue.poll())) {
+				write(ticket);
+			}
+		}
+		synchronized (monitor) {
+			boolean interrupted = false;
+			while (!unfinished.isEmpty() && unfinished.first() <= last) {
+				try {
+					monitor.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @return The decorated cache
+	 */
+	@Nonnull
+	public Cache<T> getBackend() {
+		return backend;
+	}
+
+	/**
+	 * @return Number of keys waiting to be written
+	 */
+	public int pendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Flushes pending writes then purges expired entries of the backend.
+	 *
+	 * @return Number of entries and bytes reclaimed in the backend
+	 */
+	@Override
+	@Nonnull
+	public PurgeResult purgeExpired() {
+		flush();
+		return backend.purgeExpired();
+	}
+
+	/**
+	 * Drops the pending write of the key and removes it from the backend.
+	 *
+	 * @param key Key to be removed from cache
+	 */
+	@Override
+	public void remove(@Nonnull String key) {
+		Lock lock = locks.writeLock(key);
+		lock.lock();
+		try {
+			pending.remove(key);
+			backend.remove(key);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Puts the content into the pending map and queues the key, if it's not
+	 * queued already or a writer thread has taken it already. Blocks while the
+	 * queue is full. If the calling thread is interrupted while waiting, the
+	 * content is written synchronously. If the cache was closed meanwhile, the
+	 * caller flushes the queue itself, because the writer threads may be
+	 * stopped already.
+	 *
+	 * @param key     Key which identifies the content
+	 * @param content The content object to be stored
+	 * @return <code>true</code> if the content was accepted, failures of the
+	 * background write are only logged
+	 */
+	@Override
+	public boolean store(@Nonnull String key, @Nonnull T content) {
+		Check.notNull(key, "key must not be null");
+		Check.notNull(content, "content must not be null");
+		Check.state(!closed, "cache is closed");
+		Pending<T> p = new Pending<T>(content);
+		Pending<T> previous = pending.put(key, p);
+		Ticket queued = null == previous ? null : previous.ticket;
+		if (null != queued && !queued.claimed) {
+			p.ticket = queued;
+			return true; // coalesced with a queued write
+		}
+		Ticket ticket = new Ticket(key, issueTicket());
+		p.ticket = ticket;
+		try {
+			queue.put(ticket);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			L.warn("Interrupted while waiting for queue, storing '{}' synchronously", key);
+			write(ticket);
+		}
+		if (closed) {
+			flush(); // racing close(), which may have drained the queue already
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the timestamp of the pending write if there's any, otherwise
+	 * asks the backend.
+	 *
+	 * @param key Key which identifies the element
+	 * @return Timestamp of the element or <code>null</code> if it's not
+	 * applicable.
+	 */
+	@Override
+	@CheckForNull
+	public Date timestampOf(@Nonnull String key) {
+		Pending<T> p = pending.get(key);
+		return null != p ? p.timestamp : backend.timestampOf(key);
+	}
+
+	/**
+	 * Marks a ticket finished and wakes up the threads waiting in {@link
+	 * #flush()}.
+	 */
+	private void finishTicket(long number) {
+		synchronized (monitor) {
+			unfinished.remove(number);
+			monitor.notifyAll();
+		}
+	}
+
+	/**
+	 * Registers a new unfinished write.
+	 *
+	 * @return Number of the ticket, greater than any earlier one
+	 */
+	private long issueTicket() {
+		synchronized (monitor) {
+			unfinished.add(++lastTicket);
+			return lastTicket;
+		}
+	}
+
+	/**
+	 * Claims the ticket, so later stores of the key are queued again instead
+	 * of being coalesced, then writes the latest pending content of the key
+	 * into the backend. Contents stored in the meantime are written by their
+	 * own tickets.
+	 */
+	private void write(@Nonnull Ticket ticket) {
+		String key = ticket.key;
+		ticket.claimed = true;
+		try {
+			Lock lock = locks.writeLock(key);
+			lock.lock();
+			try {
+				Pending<T> p = pending.get(key);
+				if (null != p) {
+					if (!backend.store(key, p.content)) {
+						L.error("Background store of '{}' failed", key);
+					}
+					pending.remove(key, p);
+				}
+			} finally {
+				lock.unlock();
+			}
+		} catch (RuntimeException e) {
+			L.error(String.format("Background store of '%s' failed", key), e);
+		} finally {
+			finishTicket(ticket.number);
+		}
+	}
+
+	/**
+	 * Content waiting to be written.
+	 */
+	private static final class Pending<T> {
+
+		private final T content;
+		private final Date timestamp = new Date();
+		private volatile Ticket ticket;
+
+		private Pending(T content) {
+			this.content = content;
+		}
+	}
+
+	/**
+	 * Queued key with the number of its write. Once a writer thread claims
+	 * it, no more contents are coalesced into it.
+	 */
+	private static final class Ticket {
+
+		private final String key;
+		private final long number;
+		private volatile boolean claimed;
+
+		private Ticket(String key, long number) {
+			this.key = key;
+			this.number = number;
+		}
+	}
+}
@@ -41,6 +41,11 @@ public class MD5 { // TODO doc
 		return complete.digest();
 	}
 
+	@Nonnull
+	public static String fromBytes(@Nonnull byte[] bytes) throws NoSuchAlgorithmException {
+		return byteArrToString(MessageDigest.getInstance("MD5").digest(bytes));
+	}
+
 	@Nonnull
 	public static String fromFile(@Nonnull String filename) throws Exception {
 		byte[] b = createChecksum(filename);
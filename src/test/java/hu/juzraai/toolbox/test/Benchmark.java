@@ -0,0 +1,12 @@
+package hu.juzraai.toolbox.test;
+
+/**
+ * JUnit category of tests which only measure and log performance. They are
+ * excluded from the default build, run them with <code>mvn test
+ * -Pbenchmark</code>.
+ *
+ * @author Zsolt Jurányi
+ * @since 26.10
+ */
+public interface Benchmark {
+}
@@ -0,0 +1,162 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.Cache;
+import hu.juzraai.toolbox.cache.CacheMetrics;
+import hu.juzraai.toolbox.cache.CacheMetricsSnapshot;
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import hu.juzraai.toolbox.cache.GzFileCacheForStrings;
+import hu.juzraai.toolbox.cache.LatencySnapshot;
+import hu.juzraai.toolbox.cache.MemoryCache;
+import hu.juzraai.toolbox.cache.SegmentFileCacheForStrings;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the functionalities of {@link CacheMetrics} and the recording of
+ * operations in cache implementations.
+ *
+ * @author Zsolt Jurányi
+ * @see CacheMetrics
+ * @since 26.10
+ */
+public class CacheMetricsTest {
+
+	private static final File DIRECTORY = new File("test-data-metrics");
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteCacheDirectory() throws IOException {
+		FileUtils.deleteDirectory(DIRECTORY);
+	}
+
+	private static void assertOperationsRecorded(Cache<String> cache) throws InterruptedException {
+		CacheMetrics metrics = cache.getMetrics();
+		metrics.reset();
+		assertTrue(cache.store("a", "Árvíztűrő"));
+		assertTrue(cache.store("b", "tükörfúrógép"));
+		assertEquals("Árvíztűrő", cache.fetch("a"));
+		assertNull(cache.fetch("missing"));
+		Thread.sleep(1500);
+		assertNull(cache.fetchIfNotExpired("b"));
+		cache.remove("a");
+
+		CacheMetricsSnapshot s = metrics.snapshot();
+		assertEquals(1, s.getHits());
+		assertEquals(1, s.getMisses());
+		assertEquals(1, s.getExpiredHits());
+		assertEquals(3, s.getFetches());
+		assertEquals(1.0 / 3, s.getHitRatio(), 0.0001);
+		assertEquals(2, s.getStores());
+		assertEquals(1, s.getRemovals());
+		assertEquals("Árvíztűrő".getBytes(StandardCharsets.UTF_8).length, s.getBytesRead());
+		assertEquals(3, s.getFetchLatency().getCount());
+		assertEquals(2, s.getStoreLatency().getCount());
+		assertEquals(1, s.getRemoveLatency().getCount());
+		assertTrue(0 < s.getStoreLatency().getMaxNanos());
+	}
+
+	@Test
+	public void fileCacheShouldRecordOperations() throws InterruptedException {
+		assertOperationsRecorded(new FileCacheForStrings(new File(DIRECTORY, "plain"), 1, TimeUnit.SECONDS));
+		FileCacheForStrings cache = new FileCacheForStrings(new File(DIRECTORY, "plain"));
+		cache.store("c", "content");
+		assertEquals(new File(cache.getDirectory(), "c").length(), cache.getMetrics().getBytesWritten());
+	}
+
+	@Test
+	public void fileSizesShouldBeCountedAsBytes() {
+		GzFileCacheForStrings cache = new GzFileCacheForStrings(new File(DIRECTORY, "gz"));
+		cache.store("page", "<html></html>");
+		cache.fetch("page");
+		long size = new File(cache.getDirectory(), "page").length();
+		assertEquals(size, cache.getMetrics().getBytesWritten());
+		assertEquals(size, cache.getMetrics().getBytesRead());
+	}
+
+	@Test
+	public void latencySnapshotShouldEstimatePercentiles() {
+		CacheMetrics metrics = new CacheMetrics();
+		for (int i = 0; i < 99; i++) {
+			metrics.recordHit(System.nanoTime(), 0); // sub-millisecond
+		}
+		metrics.recordMiss(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(100));
+		LatencySnapshot latency = metrics.getFetchLatency();
+		assertEquals(100, latency.getCount());
+		assertTrue(latency.getMedianNanos() < TimeUnit.MILLISECONDS.toNanos(1));
+		assertTrue(latency.getP99Nanos() < TimeUnit.MILLISECONDS.toNanos(1));
+		assertTrue(TimeUnit.MILLISECONDS.toNanos(100) <= latency.getP999Nanos());
+		assertEquals(latency.getMaxNanos(), latency.getPercentileNanos(1));
+		assertTrue(latency.getMedianNanos() <= latency.getP90Nanos());
+		long sum = 0;
+		for (long count : latency.getBuckets()) {
+			sum += count;
+		}
+		assertEquals(100, sum);
+
+		metrics.reset();
+		assertEquals(0, metrics.getFetchLatency().getCount());
+		assertEquals(0, metrics.getFetchLatency().getMedianNanos());
+		assertEquals(0, metrics.getHitRatio(), 0);
+	}
+
+	@Test
+	public void memoryCacheShouldRecordMemoryTier() {
+		FileCacheForStrings backend = new FileCacheForStrings(new File(DIRECTORY, "memory"));
+		MemoryCache<String> cache = new MemoryCache<String>(backend, 10);
+		backend.store("a", "a");
+		backend.store("b", "b");
+		assertEquals("a", cache.fetch("a")); // miss, loaded from backend
+		assertEquals("a", cache.fetch("a"));
+		assertEquals(2, cache.fetchAll(Arrays.asList("a", "b")).size());
+		assertEquals(2, cache.getMetrics().getHits());
+		assertEquals(2, cache.getMetrics().getMisses());
+		assertEquals(0, cache.getMetrics().getBytesRead());
+		assertEquals(2, backend.getMetrics().getHits());
+	}
+
+	@Test
+	public void metricsShouldBeExposedOverJmx() throws Exception {
+		FileCacheForStrings cache = new FileCacheForStrings(new File(DIRECTORY, "jmx"));
+		cache.store("a", "a");
+		cache.fetch("a");
+		cache.fetch("missing");
+		ObjectName name = cache.getMetrics().register("test \"jmx\" cache");
+		assertNotNull(name);
+		assertEquals(name, cache.getMetrics().getObjectName());
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			assertEquals(1L, server.getAttribute(name, "Hits"));
+			assertEquals(0.5, (Double) server.getAttribute(name, "HitRatio"), 0.0001);
+			CompositeData latency = (CompositeData) server.getAttribute(name, "FetchLatency");
+			assertEquals(2L, latency.get("count"));
+			assertTrue(latency.containsKey("p99Nanos"));
+			server.invoke(name, "reset", null, null);
+			assertEquals(0L, server.getAttribute(name, "Hits"));
+		} finally {
+			cache.getMetrics().unregister();
+		}
+		assertFalse(server.isRegistered(name));
+		assertNull(cache.getMetrics().getObjectName());
+	}
+
+	@Test
+	public void segmentFileCacheShouldRecordOperations() throws IOException, InterruptedException {
+		try (SegmentFileCacheForStrings cache = new SegmentFileCacheForStrings(new File(DIRECTORY, "segment"), 1, TimeUnit.SECONDS)) {
+			assertOperationsRecorded(cache);
+		}
+	}
+}
@@ -1,13 +1,16 @@
 package hu.juzraai.toolbox.test.cache;
 
 import hu.juzraai.toolbox.cache.Cache;
+import hu.juzraai.toolbox.cache.CacheEntry;
+import hu.juzraai.toolbox.cache.CacheLoader;
+import hu.juzraai.toolbox.cache.PurgeResult;
 import org.junit.After;
 import org.junit.Test;
 
-import java.util.Date;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -89,6 +92,33 @@ public abstract class CacheTest<T> {
 		return true;
 	}
 
+	@Test
+	public void fetchAllShouldReturnExistingKeys() {
+		T value1 = provideUniqueTestData();
+		T value2 = provideUniqueTestData();
+		cache.store(KEY_1, value1);
+		cache.store(KEY_2, value2);
+		Map<String, T> result = cache.fetchAll(Arrays.asList(KEY_2, NON_EXISTENT_KEY, KEY_1));
+		assertEquals(Arrays.asList(KEY_2, KEY_1), new ArrayList<String>(result.keySet()));
+		assertEquals(value1, result.get(KEY_1));
+		assertEquals(value2, result.get(KEY_2));
+	}
+
+	@Test
+	public void fetchEntryShouldReturnContentAndTimestamp() {
+		T value = provideUniqueTestData();
+		cache.store(KEY_1, value);
+		CacheEntry<T> entry = cache.fetchEntry(KEY_1);
+		assertNotNull(entry);
+		assertEquals(value, entry.getContent());
+		assertEquals(cache.timestampOf(KEY_1), entry.getTimestamp());
+	}
+
+	@Test
+	public void fetchEntryShouldReturnNullForNonExistentKey() {
+		assertNull(cache.fetchEntry(NON_EXISTENT_KEY));
+	}
+
 	@Test
 	public void fetchIfNotExpiredShouldReturnAppropriateValues() {
 		T value1 = provideUniqueTestData();
@@ -135,6 +165,106 @@ public abstract class CacheTest<T> {
 		assertNull(cache.fetch(REMOVED_KEY));
 	}
 
+	@Test
+	public void getOrComputeAsyncShouldCollapseConcurrentLoads() throws Exception {
+		final AtomicInteger computations = new AtomicInteger();
+		final T value = provideUniqueTestData();
+		CacheLoader<T> loader = new CacheLoader<T>() {
+			@Override
+			public T load(@Nonnull String key) throws Exception {
+				computations.incrementAndGet();
+				Thread.sleep(300);
+				return value;
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<T>> futures = new ArrayList<Future<T>>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(cache.getOrComputeAsync(KEY_1, loader, executor));
+			}
+			for (Future<T> future : futures) {
+				assertEquals(value, future.get());
+			}
+			assertEquals(1, computations.get());
+			assertEquals(value, cache.getOrComputeAsync(KEY_1, loader, executor).get());
+			assertEquals(1, computations.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void getOrComputeShouldNotStoreWhenLoaderFails() {
+		try {
+			cache.getOrCompute(KEY_1, new CacheLoader<T>() {
+				@Override
+				public T load(@Nonnull String key) throws Exception {
+					throw new UnsupportedOperationException("remote fetch failed");
+				}
+			});
+			fail();
+		} catch (UnsupportedOperationException e) {
+			assertEquals("remote fetch failed", e.getMessage());
+		}
+		assertFalse(cache.contains(KEY_1));
+		final T value = provideUniqueTestData();
+		assertEquals(value, cache.getOrCompute(KEY_1, new CacheLoader<T>() {
+			@Override
+			public T load(@Nonnull String key) {
+				return value;
+			}
+		}));
+	}
+
+	@Test
+	public void getOrComputeShouldReturnCachedContent() {
+		T value = provideUniqueTestData();
+		cache.store(KEY_1, value);
+		assertEquals(value, cache.getOrCompute(KEY_1, new CacheLoader<T>() {
+			@Override
+			public T load(@Nonnull String key) {
+				throw new AssertionError("loader should not be called");
+			}
+		}));
+	}
+
+	@Test
+	public void getOrComputeShouldRunOneComputationForConcurrentCallers() throws Exception {
+		final AtomicInteger computations = new AtomicInteger();
+		final T value = provideUniqueTestData();
+		final CacheLoader<T> loader = new CacheLoader<T>() {
+			@Override
+			public T load(@Nonnull String key) throws Exception {
+				computations.incrementAndGet();
+				Thread.sleep(300);
+				return value;
+			}
+		};
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<T>> results = new ArrayList<Future<T>>();
+			for (int i = 0; i < 8; i++) {
+				results.add(executor.submit(new Callable<T>() {
+					@Override
+					public T call() throws Exception {
+						start.await();
+						return cache.getOrCompute(KEY_1, loader);
+					}
+				}));
+			}
+			start.countDown();
+			for (Future<T> result : results) {
+				assertEquals(value, result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1, computations.get());
+		assertEquals(value, cache.fetch(KEY_1));
+	}
+
 	protected abstract T provideUniqueTestData();
 
 	@Test
@@ -151,6 +281,29 @@ public abstract class CacheTest<T> {
 		assertEquals(100, set.size());
 	}
 
+	@Test
+	public void purgeExpiredShouldRemoveOnlyExpiredEntries() throws InterruptedException {
+		if (expirationEnabled()) {
+			cache.store(KEY_1, provideUniqueTestData());
+			Thread.sleep(EXPIRATION_TEST_SLEEP);
+			cache.store(KEY_2, provideUniqueTestData());
+			PurgeResult result = cache.purgeExpired();
+			assertTrue(1 <= result.getEntries());
+			assertTrue(0 < result.getBytes());
+			assertFalse(cache.contains(KEY_1));
+			assertTrue(cache.contains(KEY_2));
+		}
+	}
+
+	@Test
+	public void removeAllShouldRemoveKeys() {
+		cache.store(KEY_1, provideUniqueTestData());
+		cache.store(KEY_2, provideUniqueTestData());
+		cache.removeAll(Arrays.asList(KEY_1, KEY_2, NON_EXISTENT_KEY));
+		assertFalse(cache.contains(KEY_1));
+		assertFalse(cache.contains(KEY_2));
+	}
+
 	@Test
 	public void removeIfExpiredShouldNotRemoveIfNotExpired() {
 		if (expirationEnabled()) {
@@ -178,6 +331,16 @@ public abstract class CacheTest<T> {
 		cache.remove(REMOVED_KEY);
 	}
 
+	@Test
+	public void storeAllShouldStoreEntries() {
+		Map<String, T> entries = new HashMap<String, T>();
+		entries.put(KEY_1, provideUniqueTestData());
+		entries.put(KEY_2, provideUniqueTestData());
+		assertTrue(cache.storeAll(entries));
+		assertEquals(entries.get(KEY_1), cache.fetch(KEY_1));
+		assertEquals(entries.get(KEY_2), cache.fetch(KEY_2));
+	}
+
 	@Test
 	public void storeShouldGenerateTimestamp() throws InterruptedException {
 		if (expirationEnabled()) {
@@ -0,0 +1,144 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.CacheWarmer;
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import hu.juzraai.toolbox.cache.FileIndex;
+import hu.juzraai.toolbox.cache.MemoryCache;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the functionalities of {@link CacheWarmer} and {@link FileIndex}.
+ *
+ * @author Zsolt Jurányi
+ * @see CacheWarmer
+ * @see FileIndex
+ * @since 26.10
+ */
+public class CacheWarmerTest {
+
+	private static final File DIRECTORY = new File("test-data-warmer");
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteCacheDirectory() throws IOException {
+		FileUtils.deleteDirectory(DIRECTORY);
+	}
+
+	private static FileCacheForStrings populate(String name, int dirs, int filesPerDir) {
+		FileCacheForStrings writer = new FileCacheForStrings(new File(DIRECTORY, name));
+		for (int d = 0; d < dirs; d++) {
+			for (int f = 0; f < filesPerDir; f++) {
+				assertTrue(writer.store(String.format("dir-%d/key-%d", d, f), "content-" + f));
+			}
+		}
+		return new FileCacheForStrings(writer.getDirectory(), 1L, TimeUnit.HOURS);
+	}
+
+	@Test
+	public void completeIndexShouldAnswerContainsAndMisses() throws IOException {
+		FileCacheForStrings cache = populate("index", 5, 10);
+		final AtomicLong reports = new AtomicLong();
+		CacheWarmer<String> warmer = new CacheWarmer<String>(cache);
+		warmer.setParallelism(3);
+		warmer.setProgressListener(new CacheWarmer.ProgressListener() {
+			@Override
+			public void progress(long indexedEntries, long indexedBytes, long preloadedEntries, long elapsedMillis) {
+				reports.incrementAndGet();
+			}
+		});
+		FileIndex index = warmer.warmUp();
+		assertSame(index, cache.getIndex());
+		assertTrue(index.isComplete());
+		assertEquals(50, index.size());
+		assertEquals(FileUtils.sizeOfDirectory(cache.getDirectory()), index.getBytes());
+		assertEquals("content-3".length(), index.sizeOf("dir-4/key-3"));
+		assertTrue(0 < reports.get());
+
+		assertTrue(cache.contains("dir-0/key-0"));
+		assertFalse(cache.contains("dir-0/missing"));
+		assertTrue(cache.store("new", "content"));
+		assertTrue(index.contains("new"));
+		cache.remove("dir-0/key-0");
+		assertFalse(index.contains("dir-0/key-0"));
+		assertEquals(50, index.size());
+
+		File external = new File(cache.getDirectory(), "external");
+		Files.write(external.toPath(), "content".getBytes(StandardCharsets.UTF_8));
+		assertNull(cache.fetch("external")); // not written through the cache, so not looked up
+		cache.setIndex(null);
+		assertEquals("content", cache.fetch("external"));
+	}
+
+	@Test
+	public void hottestEntriesShouldBePreloaded() throws IOException {
+		FileCacheForStrings cache = populate("preload", 2, 10);
+		long now = System.currentTimeMillis();
+		for (int f = 0; f < 10; f++) {
+			File file = new File(cache.getDirectory(), "dir-1/key-" + f);
+			Files.setAttribute(file.toPath(), "lastAccessTime", FileTime.fromMillis(now - 1000 * (10 - f)));
+		}
+		for (int f = 0; f < 10; f++) {
+			File file = new File(cache.getDirectory(), "dir-0/key-" + f);
+			Files.setAttribute(file.toPath(), "lastAccessTime", FileTime.fromMillis(now - 100000));
+		}
+		MemoryCache<String> memory = new MemoryCache<String>(cache, 100);
+		CacheWarmer<String> warmer = new CacheWarmer<String>(cache);
+		warmer.setPreload(memory, 5);
+		warmer.warmUp();
+		assertEquals(5, memory.size());
+		for (int f = 5; f < 10; f++) {
+			assertEquals("content-" + f, memory.fetch("dir-1/key-" + f));
+		}
+		assertEquals(5, memory.getMetrics().snapshot().getHits());
+	}
+
+	@Test
+	public void indexShouldBeIncompleteWhenTimeBudgetRunsOut() {
+		FileCacheForStrings cache = populate("budget", 100, 10);
+		CacheWarmer<String> warmer = new CacheWarmer<String>(cache);
+		warmer.setParallelism(1);
+		warmer.setTimeBudget(1, TimeUnit.MILLISECONDS);
+		FileIndex index = warmer.warmUp();
+		assertFalse(index.isComplete());
+		assertTrue(index.size() < 1000);
+		for (int d = 0; d < 100; d++) {
+			assertTrue(cache.contains(String.format("dir-%d/key-9", d))); // missing keys are looked up on the disk
+		}
+		assertFalse(cache.contains("dir-0/missing"));
+	}
+
+	@Test
+	public void missingDirectoryShouldResultInCompleteEmptyIndex() {
+		FileCacheForStrings cache = new FileCacheForStrings(new File(DIRECTORY, "missing"));
+		FileIndex index = new CacheWarmer<String>(cache).warmUp();
+		assertTrue(index.isComplete());
+		assertEquals(0, index.size());
+		assertFalse(cache.contains("key"));
+		assertTrue(cache.store("key", "content"));
+		assertTrue(cache.contains("key"));
+	}
+
+	@Test
+	public void storeShouldIndexTimestampOfFile() throws InterruptedException {
+		FileCacheForStrings cache = populate("timestamp", 1, 1);
+		new CacheWarmer<String>(cache).warmUp();
+		for (int i = 0; i < 5; i++) {
+			assertTrue(cache.store("dir-0/key-0", "content-" + i));
+			assertEquals(cache.fetchEntry("dir-0/key-0").getTimestamp(), cache.timestampOf("dir-0/key-0"));
+			Thread.sleep(3);
+		}
+	}
+}
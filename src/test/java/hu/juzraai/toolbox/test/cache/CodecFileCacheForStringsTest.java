@@ -0,0 +1,210 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.Codec;
+import hu.juzraai.toolbox.cache.CodecFileCacheForStrings;
+import hu.juzraai.toolbox.cache.DeflateCodec;
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import hu.juzraai.toolbox.cache.GzFileCacheForStrings;
+import hu.juzraai.toolbox.cache.GzipCodec;
+import hu.juzraai.toolbox.cache.LzCodec;
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Benchmark;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the functionalities of {@link CodecFileCacheForStrings} and the
+ * {@link Codec} implementations.
+ *
+ * @author Zsolt Jurányi
+ * @see FileCacheTest
+ * @see CodecFileCacheForStrings
+ * @since 26.10
+ */
+public class CodecFileCacheForStringsTest extends FileCacheTest<String> {
+
+	private static final Logger L = LoggerFactory.getLogger(CodecFileCacheForStringsTest.class);
+	private static final String DICTIONARY = "<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title></title>"
+			+ "<link rel=\"stylesheet\" href=\"/static/style.css\"></head><body><div id=\"header\"><ul class=\"menu\">"
+			+ "<li><a href=\"/\">Home</a></li><li><a href=\"/about\">About</a></li></ul></div><div id=\"content\">"
+			+ "</div><div id=\"footer\">Copyright</div></body></html>";
+	private static final String[] WORDS = {"cache", "file", "page", "gyorsítótár", "fájl", "oldal", "key", "value", "tömörítés"};
+
+	public CodecFileCacheForStringsTest() {
+		super(newCache(new LzCodec()));
+	}
+
+	private static CodecFileCacheForStrings newCache(Codec codec) {
+		CodecFileCacheForStrings cache = new CodecFileCacheForStrings(FileCacheTest.DIRECTORY, EXPIRATION, EXPIRATION_TIME_UNIT);
+		cache.setCodec(codec);
+		return cache;
+	}
+
+	private static String page(int i) {
+		return DICTIONARY.replace("<title></title>", "<title>Page " + i + "</title>")
+				.replace("<div id=\"content\">", "<div id=\"content\"><p>Árvíztűrő tükörfúrógép #" + i + "</p>");
+	}
+
+	private static String pages(int length) {
+		Random random = new Random(42);
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; s.length() < length; i++) {
+			s.append(page(i));
+			for (int w = random.nextInt(50); 0 < w; w--) {
+				s.append(' ').append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(1000));
+			}
+			s.append('\n');
+		}
+		return s.toString();
+	}
+
+	private static byte[] roundTrip(Codec codec, byte[] data) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		codec.encode(data, 0, data.length, out);
+		byte[] encoded = out.toByteArray();
+		return codec.decode(encoded, 0, encoded.length, data.length);
+	}
+
+	@Test
+	public void codecsShouldRoundTrip() throws IOException {
+		Codec[] codecs = {new DeflateCodec(1), new DeflateCodec(9), new DeflateCodec(6, DICTIONARY.getBytes(StandardCharsets.UTF_8)),
+				new GzipCodec(), new LzCodec()};
+		byte[] repeated = new byte[100000]; // long matches and overlapping copies
+		String[] contents = {"", "a", "abcabcabcabcabcabcabc", page(1), pages(300000)};
+		for (Codec codec : codecs) {
+			for (String content : contents) {
+				byte[] data = content.getBytes(StandardCharsets.UTF_8);
+				assertArrayEquals(codec.getClass().getSimpleName(), data, roundTrip(codec, data));
+			}
+			assertArrayEquals(repeated, roundTrip(codec, repeated));
+		}
+	}
+
+	@Test
+	public void dictionaryShouldImproveRatioOfSimilarPages() {
+		CodecFileCacheForStrings plain = new CodecFileCacheForStrings(new File(DIRECTORY, "plain"));
+		CodecFileCacheForStrings dictionary = new CodecFileCacheForStrings(new File(DIRECTORY, "dictionary"));
+		dictionary.setCodec(new DeflateCodec(6, DICTIONARY.getBytes(StandardCharsets.UTF_8)));
+		plain.store("page", page(42));
+		dictionary.store("page", page(42));
+		assertEquals(page(42), dictionary.fetch("page"));
+		assertTrue(new File(dictionary.getDirectory(), "page").length() < new File(plain.getDirectory(), "page").length());
+	}
+
+	@Test
+	public void entryOfOtherDictionaryShouldBeRejected() throws IOException {
+		byte[] data = page(1).getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new DeflateCodec(6, DICTIONARY.getBytes(StandardCharsets.UTF_8)).encode(data, 0, data.length, out);
+		byte[] encoded = out.toByteArray();
+		try {
+			new DeflateCodec(6, "other dictionary".getBytes(StandardCharsets.UTF_8)).decode(encoded, 0, encoded.length, data.length);
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Entry was encoded with another dictionary"));
+		}
+	}
+
+	@Test
+	public void entryOfUnregisteredCodecShouldNotBeFetched() {
+		CodecFileCacheForStrings writer = newCache(new DeflateCodec(6, DICTIONARY.getBytes(StandardCharsets.UTF_8)));
+		writer.store(KEY_1, page(1));
+		CodecFileCacheForStrings reader = new CodecFileCacheForStrings(FileCacheTest.DIRECTORY);
+		assertNull(reader.fetch(KEY_1));
+		reader.registerCodec(new DeflateCodec(1, "wrong dictionary".getBytes(StandardCharsets.UTF_8)));
+		assertNull(reader.fetch(KEY_1));
+	}
+
+	@Test
+	public void gzFileCacheShouldWriteStandardGzipWithConfiguredLevel() throws IOException {
+		GzFileCacheForStrings gz = new GzFileCacheForStrings(FileCacheTest.DIRECTORY);
+		gz.setCompressionLevel(1);
+		assertEquals(1, gz.getCompressionLevel());
+		String content = pages(10000);
+		gz.store(KEY_1, content);
+		try (GZIPInputStream in = new GZIPInputStream(new FileInputStream(new File(DIRECTORY, KEY_1)))) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int n;
+			while (-1 != (n = in.read(buffer))) {
+				out.write(buffer, 0, n);
+			}
+			assertEquals(content, out.toString("UTF-8"));
+		}
+	}
+
+	@Test
+	public void gzipCodecShouldDecodeMultiMemberData() throws IOException {
+		GzipCodec codec = new GzipCodec();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] a = "first member, ".getBytes(StandardCharsets.UTF_8);
+		byte[] b = "second member".getBytes(StandardCharsets.UTF_8);
+		codec.encode(a, 0, a.length, out);
+		codec.encode(b, 0, b.length, out);
+		byte[] encoded = out.toByteArray();
+		assertEquals("first member, second member", new String(codec.decode(encoded, 0, encoded.length, 0), StandardCharsets.UTF_8));
+	}
+
+	@Test(expected = IOException.class)
+	public void lzCodecShouldRejectCorruptData() throws IOException {
+		byte[] data = pages(1000).getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new LzCodec().encode(data, 0, data.length, out);
+		byte[] encoded = out.toByteArray();
+		new LzCodec().decode(encoded, 0, encoded.length / 2, data.length);
+	}
+
+	@Test
+	public void mixedFormatsShouldBeReadable() {
+		CodecFileCacheForStrings cache = (CodecFileCacheForStrings) this.cache;
+		new FileCacheForStrings(FileCacheTest.DIRECTORY).store("mixed/plain", "plain");
+		new GzFileCacheForStrings(FileCacheTest.DIRECTORY).store("mixed/gzip", "gzip");
+		cache.setCodec(new DeflateCodec());
+		cache.store("mixed/deflate", "deflate");
+		cache.setCodec(new LzCodec());
+		cache.store("mixed/lz", "lz");
+		for (String format : new String[]{"plain", "gzip", "deflate", "lz"}) {
+			assertEquals(format, cache.fetch("mixed/" + format));
+		}
+	}
+
+	@Override
+	protected String provideUniqueTestData() {
+		return Long.toString(System.nanoTime());
+	}
+
+	@Test
+	@Category(Benchmark.class)
+	public void ratioAndThroughputShouldBeReportedForEachCodec() throws IOException {
+		byte[] data = pages(2 * 1024 * 1024).getBytes(StandardCharsets.UTF_8);
+		Codec[] codecs = {new GzipCodec(), new DeflateCodec(1), new DeflateCodec(), new DeflateCodec(9), new LzCodec()};
+		for (Codec codec : codecs) { // warm-up
+			roundTrip(codec, data);
+		}
+		L.info("Codecs on {} bytes of similar HTML pages:", data.length);
+		for (Codec codec : codecs) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			long t0 = System.nanoTime();
+			codec.encode(data, 0, data.length, out);
+			long t1 = System.nanoTime();
+			byte[] encoded = out.toByteArray();
+			byte[] decoded = codec.decode(encoded, 0, encoded.length, data.length);
+			long t2 = System.nanoTime();
+			assertArrayEquals(data, decoded);
+			L.info(String.format("  %-12s ratio: %5.1f%%, encode: %4d ms, decode: %4d ms", codec.getClass().getSimpleName(),
+					100.0 * encoded.length / data.length, TimeUnit.NANOSECONDS.toMillis(t1 - t0), TimeUnit.NANOSECONDS.toMillis(t2 - t1)));
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.ContentAddressedFileCache;
+import hu.juzraai.toolbox.cache.ContentAddressedFileCacheForStrings;
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import hu.juzraai.toolbox.cache.HashedFileLayout;
+import hu.juzraai.toolbox.cache.PurgeResult;
+import hu.juzraai.toolbox.log.LoggerFactory;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the functionalities of {@link ContentAddressedFileCacheForStrings},
+ * and measuring its disk usage against {@link FileCacheForStrings}.
+ *
+ * @author Zsolt Jurányi
+ * @see CacheTest
+ * @see ContentAddressedFileCache
+ * @since 26.10
+ */
+public class ContentAddressedFileCacheForStringsTest extends CacheTest<String> {
+
+	private static final Logger L = LoggerFactory.getLogger(ContentAddressedFileCacheForStringsTest.class);
+	private static final File DIRECTORY = new File("test-data-cas");
+
+	public ContentAddressedFileCacheForStringsTest() {
+		super(new ContentAddressedFileCacheForStrings(new File(DIRECTORY, "cache"), EXPIRATION, EXPIRATION_TIME_UNIT));
+	}
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteCacheDirectory() throws IOException {
+		FileUtils.deleteDirectory(DIRECTORY);
+	}
+
+	private static long files(File directory) {
+		return FileUtils.listFiles(directory, null, true).size();
+	}
+
+	private static String repeat(String s, int n) {
+		StringBuilder b = new StringBuilder(s.length() * n);
+		for (int i = 0; i < n; i++) {
+			b.append(s);
+		}
+		return b.toString();
+	}
+
+	@Test
+	public void diskUsageShouldBeFractionOfFileCache() {
+		ContentAddressedFileCacheForStrings dedup = new ContentAddressedFileCacheForStrings(new File(DIRECTORY, "usage-cas"));
+		FileCacheForStrings plain = new FileCacheForStrings(new File(DIRECTORY, "usage-plain"));
+		for (int i = 0; i < 500; i++) {
+			String page = repeat("<p>page " + i % 50 + "</p>", 100); // 10 variants of each page
+			assertTrue(dedup.store("page-" + i, page));
+			assertTrue(plain.store("page-" + i, page));
+		}
+		assertEquals(450, dedup.getDuplicateStores());
+		long dedupBytes = FileUtils.sizeOfDirectory(dedup.getDirectory());
+		long plainBytes = FileUtils.sizeOfDirectory(plain.getDirectory());
+		L.info("Disk usage of 500 pages with 50 distinct contents (bytes):");
+		L.info(String.format("  FileCacheForStrings:                 %7d", plainBytes));
+		L.info(String.format("  ContentAddressedFileCacheForStrings: %7d", dedupBytes));
+		assertTrue(dedupBytes * 5 < plainBytes);
+	}
+
+	@Test
+	public void garbageCollectionShouldDeleteUnreferencedBlobsOnly() throws IOException {
+		File directory = new File(DIRECTORY, "gc");
+		ContentAddressedFileCacheForStrings c = new ContentAddressedFileCacheForStrings(directory);
+		assertTrue(c.store("a", "shared"));
+		assertTrue(c.store("b", "shared"));
+		assertTrue(c.store("c", "changing"));
+		assertTrue(c.store("c", "changed")); // "changing" is not referenced anymore
+		File leftover = new File(directory, "blobs/.x~123.tmp");
+		FileUtils.writeStringToFile(leftover, "partial", "UTF-8");
+		assertEquals(0, c.collectGarbage().getEntries()); // within the default grace period
+
+		PurgeResult result = c.collectGarbage(0, TimeUnit.MILLISECONDS);
+		assertEquals(1, result.getEntries());
+		assertEquals("changing".length() + "partial".length(), result.getBytes());
+		assertFalse(leftover.exists());
+		assertEquals("shared", c.fetch("a"));
+		assertEquals("changed", c.fetch("c"));
+
+		c.remove("a");
+		assertEquals(0, c.collectGarbage(0, TimeUnit.MILLISECONDS).getEntries()); // still referenced by "b"
+		assertEquals("shared", c.fetch("b"));
+		c.remove("b");
+		assertEquals(1, c.collectGarbage(0, TimeUnit.MILLISECONDS).getEntries());
+		assertEquals(1, files(new File(directory, "blobs")));
+	}
+
+	@Test
+	public void legacyMd5BlobsShouldBeRead() throws IOException {
+		File directory = new File(DIRECTORY, "legacy");
+		String blob = "0123456789abcdef0123456789abcdef-6";
+		FileUtils.writeStringToFile(new File(directory, "refs/" + KEY_1), blob, "UTF-8");
+		FileUtils.writeStringToFile(new File(directory, "blobs/" + new HashedFileLayout().pathOf(blob)), "legacy", "UTF-8");
+		ContentAddressedFileCacheForStrings c = new ContentAddressedFileCacheForStrings(directory);
+		assertEquals("legacy", c.fetch(KEY_1));
+		assertEquals(0, c.collectGarbage(0, TimeUnit.MILLISECONDS).getEntries());
+		assertEquals("legacy", c.fetch(KEY_1));
+	}
+
+	@Override
+	protected String provideUniqueTestData() {
+		return Long.toString(System.nanoTime());
+	}
+
+	@Test
+	public void sameContentShouldBeStoredOnce() {
+		ContentAddressedFileCacheForStrings c = (ContentAddressedFileCacheForStrings) cache;
+		String page = "<html>árvíztűrő tükörfúrógép</html>";
+		assertTrue(c.store(KEY_1, page));
+		assertTrue(c.store(KEY_2, page));
+		assertTrue(c.store(KEY_2, page));
+		assertEquals(2, c.getDuplicateStores());
+		assertEquals(page, c.fetch(KEY_1));
+		assertEquals(page, c.fetch(KEY_2));
+		assertEquals(1, files(new File(c.getDirectory(), "blobs")));
+		assertEquals(2, files(new File(c.getDirectory(), "refs")));
+		String blob = FileUtils.listFiles(new File(c.getDirectory(), "blobs"), null, true).iterator().next().getName();
+		assertTrue(blob, blob.matches("[0-9a-f]{64}-[0-9]+")); // SHA-256
+	}
+}
@@ -0,0 +1,126 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.CountingBloomFilter;
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the functionalities of {@link CountingBloomFilter} attached to a
+ * {@link FileCacheForStrings}.
+ *
+ * @author Zsolt Jurányi
+ * @see CountingBloomFilter
+ * @since 26.10
+ */
+public class CountingBloomFilterTest {
+
+	private static final File DIRECTORY = new File("test-data-filter");
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteCacheDirectory() throws IOException {
+		FileUtils.deleteDirectory(DIRECTORY);
+	}
+
+	@Test
+	public void definiteMissesShouldNotTouchTheDisk() throws IOException {
+		FileCacheForStrings cache = new FileCacheForStrings(new File(DIRECTORY, "misses"));
+		for (int i = 0; i < 100; i++) {
+			assertTrue(cache.store("dir/key-" + i, "content"));
+		}
+		cache = new FileCacheForStrings(cache.getDirectory());
+		CountingBloomFilter filter = cache.buildFilter(1000, 0.01);
+		assertSame(filter, cache.getFilter());
+		assertTrue(filter.isComplete());
+		for (int i = 0; i < 100; i++) {
+			assertTrue(cache.contains("dir/key-" + i));
+		}
+
+		assertFalse(filter.mightContain("external"));
+		Files.write(new File(cache.getDirectory(), "external").toPath(), "content".getBytes(StandardCharsets.UTF_8));
+		assertFalse(cache.contains("external")); // not written through the cache, so not looked up
+		assertNull(cache.fetch("external"));
+		cache.setFilter(null);
+		assertTrue(cache.contains("external"));
+	}
+
+	@Test
+	public void falsePositiveRateShouldBeNearTheRequested() {
+		FileCacheForStrings cache = new FileCacheForStrings(new File(DIRECTORY, "rate"));
+		CountingBloomFilter filter = cache.buildFilter(10000, 0.01);
+		for (int i = 0; i < 10000; i++) {
+			filter.add("stored-" + i);
+		}
+		for (int i = 0; i < 10000; i++) {
+			assertTrue(filter.mightContain("stored-" + i));
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (filter.mightContain("missing-" + i)) {
+				falsePositives++;
+			}
+		}
+		assertTrue(String.valueOf(falsePositives), falsePositives < 200);
+		assertEquals(7, filter.getHashes());
+	}
+
+	@Test
+	public void filterShouldBeSavedAndLoaded() throws IOException {
+		FileCacheForStrings cache = new FileCacheForStrings(new File(DIRECTORY, "saved"));
+		CountingBloomFilter filter = cache.buildFilter(100, 0.01);
+		for (int i = 0; i < 50; i++) {
+			assertTrue(cache.store("key-" + i, "content"));
+		}
+		File file = new File(DIRECTORY, "saved.filter");
+		filter.save(file);
+		CountingBloomFilter loaded = CountingBloomFilter.load(file);
+		assertTrue(loaded.isComplete());
+		assertEquals(filter.getSlots(), loaded.getSlots());
+		assertEquals(filter.getHashes(), loaded.getHashes());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(filter.mightContain("key-" + i), loaded.mightContain("key-" + i));
+		}
+
+		Files.write(file.toPath(), "corrupt".getBytes(StandardCharsets.UTF_8));
+		try {
+			CountingBloomFilter.load(file);
+			fail("IOException expected");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void removedKeysShouldBeReportedMissing() {
+		FileCacheForStrings cache = new FileCacheForStrings(new File(DIRECTORY, "removed"));
+		CountingBloomFilter filter = cache.buildFilter(100, 0.01);
+		assertTrue(filter.isComplete());
+		for (int i = 0; i < 20; i++) {
+			assertTrue(cache.store("key-" + i, "content"));
+			assertTrue(cache.store("key-" + i, "overwritten"));
+		}
+		for (int i = 0; i < 10; i++) {
+			cache.remove("key-" + i);
+			cache.remove("key-" + i); // no file, no removal
+		}
+		for (int i = 10; i < 20; i++) {
+			assertTrue(filter.mightContain("key-" + i));
+			assertTrue(cache.contains("key-" + i));
+		}
+		assertTrue(cache.store("single", "content"));
+		assertTrue(filter.mightContain("single"));
+		cache.remove("single");
+		assertFalse(filter.mightContain("single"));
+		assertFalse(cache.contains("single"));
+	}
+}
@@ -0,0 +1,138 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.DiskQuota;
+import hu.juzraai.toolbox.cache.FileCache;
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import hu.juzraai.toolbox.cache.PurgeResult;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the disk quota of {@link FileCache}.
+ *
+ * @author Zsolt Jurányi
+ * @see DiskQuota
+ * @see FileCache#setQuota(DiskQuota)
+ * @since 26.10
+ */
+public class DiskQuotaTest {
+
+	private static final File DIRECTORY = new File("test-data-quota");
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteCacheDirectory() throws IOException {
+		FileUtils.deleteDirectory(DIRECTORY);
+	}
+
+	private static void awaitEviction(FileCache<?> cache) throws InterruptedException {
+		for (int i = 0; i < 100 && cache.getQuota().isExceededBy(cache.getUsedBytes(), cache.getUsedEntries()); i++) {
+			Thread.sleep(50);
+		}
+	}
+
+	private static String repeat(char c, int length) {
+		char[] chars = new char[length];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
+	@Test
+	public void leastRecentlyUsedEntriesShouldBeEvicted() throws InterruptedException {
+		FileCacheForStrings cache = new FileCacheForStrings(new File(DIRECTORY, "lru"));
+		cache.setQuota(new DiskQuota(0, 10, DiskQuota.Eviction.LRU));
+		for (int i = 0; i < 10; i++) {
+			assertTrue(cache.store("key-" + i, "content"));
+			Thread.sleep(5);
+		}
+		for (int i = 0; i < 5; i++) {
+			assertEquals("content", cache.fetch("key-" + i));
+		}
+		assertTrue(cache.store("key-10", "content"));
+		awaitEviction(cache);
+		assertEquals(9, cache.getUsedEntries());
+		assertFalse(cache.contains("key-5"));
+		assertFalse(cache.contains("key-6"));
+		for (String key : new String[]{"key-0", "key-4", "key-7", "key-9", "key-10"}) {
+			assertTrue(key, cache.contains(key));
+		}
+	}
+
+	@Test
+	public void quotaShouldCountExistingFiles() {
+		File directory = new File(DIRECTORY, "existing");
+		FileCacheForStrings writer = new FileCacheForStrings(directory);
+		writer.store("a", repeat('a', 100));
+		writer.store("b/c", repeat('b', 200));
+		writer.store("b/d/e", repeat('c', 300));
+
+		FileCacheForStrings cache = new FileCacheForStrings(directory);
+		cache.setQuota(new DiskQuota(1000, 0, DiskQuota.Eviction.LRU));
+		assertEquals(3, cache.getUsedEntries());
+		assertEquals(600, cache.getUsedBytes());
+
+		cache.setQuota(new DiskQuota(350, 0, DiskQuota.Eviction.SIZE_WEIGHTED_FREQUENCY));
+		PurgeResult result = cache.evict(); // evicts synchronously, unless the background eviction was faster
+		assertTrue(cache.getUsedBytes() <= 315);
+		assertTrue(cache.contains("a"));
+		assertFalse(cache.contains("b/d/e"));
+		assertTrue(result.getEntries() <= 2);
+	}
+
+	@Test
+	public void rarelyReadBigEntriesShouldBeEvictedFirst() throws InterruptedException {
+		FileCacheForStrings cache = new FileCacheForStrings(new File(DIRECTORY, "frequency"));
+		cache.setQuota(new DiskQuota(1000, 0, DiskQuota.Eviction.SIZE_WEIGHTED_FREQUENCY));
+		assertTrue(cache.store("big", repeat('x', 500)));
+		for (int i = 0; i < 4; i++) {
+			assertTrue(cache.store("small-" + i, repeat('x', 100)));
+		}
+		for (int r = 0; r < 2; r++) {
+			for (int i = 0; i < 4; i++) {
+				assertNotNull(cache.fetch("small-" + i));
+			}
+		}
+		assertTrue(cache.store("new", repeat('x', 200)));
+		awaitEviction(cache);
+		assertEquals(600, cache.getUsedBytes());
+		assertFalse(cache.contains("big"));
+		assertTrue(cache.contains("new"));
+		for (int i = 0; i < 4; i++) {
+			assertTrue(cache.contains("small-" + i));
+		}
+	}
+
+	@Test
+	public void usageShouldBeTrackedIncrementally() {
+		FileCacheForStrings cache = new FileCacheForStrings(new File(DIRECTORY, "tracked"));
+		assertNull(cache.getQuota());
+		assertEquals(0, cache.getUsedBytes());
+		assertEquals(PurgeResult.EMPTY, cache.evict());
+
+		DiskQuota quota = new DiskQuota(0, 0, DiskQuota.Eviction.LRU);
+		cache.setQuota(quota);
+		assertSame(quota, cache.getQuota());
+		cache.store("a", repeat('a', 100));
+		cache.store("b", repeat('b', 50));
+		assertEquals(150, cache.getUsedBytes());
+		assertEquals(2, cache.getUsedEntries());
+		cache.store("a", repeat('a', 10));
+		assertEquals(60, cache.getUsedBytes());
+		cache.remove("b");
+		assertEquals(10, cache.getUsedBytes());
+		assertEquals(1, cache.getUsedEntries());
+		assertEquals(new File(cache.getDirectory(), "a").length(), cache.getUsedBytes());
+
+		cache.setQuota(null);
+		assertNull(cache.getQuota());
+		assertEquals(0, cache.getUsedEntries());
+	}
+}
@@ -0,0 +1,51 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.ExpirationSweeper;
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing {@link ExpirationSweeper}.
+ *
+ * @author Zsolt Jurányi
+ * @see ExpirationSweeper
+ * @since 26.10
+ */
+public class ExpirationSweeperTest {
+
+	private static final File DIRECTORY = new File("test-data-sweeper");
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteCacheDirectory() throws IOException {
+		FileUtils.deleteDirectory(DIRECTORY);
+	}
+
+	@Test
+	public void sweeperShouldPurgeExpiredEntriesPeriodically() throws InterruptedException {
+		FileCacheForStrings cache = new FileCacheForStrings(DIRECTORY, 1L, TimeUnit.SECONDS);
+		for (int i = 0; i < 10; i++) {
+			cache.store("sub" + i % 3 + "/key-" + i, "value-" + i);
+		}
+		try (ExpirationSweeper sweeper = new ExpirationSweeper(cache, 500, TimeUnit.MILLISECONDS, 1000)) {
+			long deadline = System.currentTimeMillis() + 10000;
+			while (sweeper.getTotalResult().getEntries() < 10 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(100);
+			}
+			assertEquals(10, sweeper.getTotalResult().getEntries());
+			assertEquals(10 * "value-0".length(), sweeper.getTotalResult().getBytes());
+		}
+		for (int i = 0; i < 10; i++) {
+			assertFalse(cache.contains("sub" + i % 3 + "/key-" + i));
+		}
+	}
+}
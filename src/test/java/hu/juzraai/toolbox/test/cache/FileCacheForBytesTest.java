@@ -0,0 +1,166 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.FileCacheForBytes;
+import hu.juzraai.toolbox.cache.GzFileCacheForStrings;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the functionalities of {@link FileCacheForBytes}.
+ *
+ * @author Zsolt Jurányi
+ * @see FileCacheForBytes
+ * @since 26.10
+ */
+public class FileCacheForBytesTest {
+
+	private static final File DIRECTORY = new File("test-data-bytes");
+
+	private final FileCacheForBytes cache = new FileCacheForBytes(DIRECTORY, 3, TimeUnit.SECONDS);
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteCacheDirectory() throws IOException {
+		FileUtils.deleteDirectory(DIRECTORY);
+	}
+
+	private static byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		new Random(length).nextBytes(bytes);
+		return bytes;
+	}
+
+	@Test
+	public void bulkOperationsShouldHandleArrays() {
+		Map<String, byte[]> entries = new HashMap<String, byte[]>();
+		for (int i = 0; i < 20; i++) {
+			entries.put("bulk/key-" + i, randomBytes(i * 100));
+		}
+		assertTrue(cache.storeAll(entries));
+		Map<String, byte[]> fetched = cache.fetchAll(entries.keySet());
+		assertEquals(entries.size(), fetched.size());
+		for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+			assertArrayEquals(e.getValue(), fetched.get(e.getKey()));
+		}
+	}
+
+	@Test
+	public void fetchShouldReturnNullForNonExistentKey() {
+		assertNull(cache.fetch("non-existent-key"));
+	}
+
+	@Test
+	public void storeShouldAcceptByteBufferWithoutChangingIt() {
+		byte[] bytes = randomBytes(100000);
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 10);
+		direct.put(new byte[10]).put(bytes).flip();
+		direct.position(10);
+		assertTrue(cache.store("direct", direct));
+		assertEquals(10, direct.position());
+		assertArrayEquals(bytes, cache.fetch("direct"));
+	}
+
+	@Test
+	public void storedBytesShouldBeFetchedUnchanged() {
+		for (int length : new int[]{0, 1, 4096, 3 * 1024 * 1024 + 7}) {
+			byte[] bytes = randomBytes(length);
+			assertTrue(cache.store("bytes-" + length, bytes));
+			assertArrayEquals(bytes, cache.fetch("bytes-" + length));
+		}
+	}
+
+	@Test
+	public void transferToShouldCopyFileIntoChannel() throws IOException {
+		byte[] bytes = randomBytes(5 * 1024 * 1024);
+		cache.store("transfer", bytes);
+		File target = new File(DIRECTORY, "transfer-target");
+		try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			assertEquals(bytes.length, cache.transferTo("transfer", channel));
+		}
+		assertTrue(Arrays.equals(bytes, FileUtils.readFileToByteArray(target)));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(bytes.length, cache.transferTo("transfer", Channels.newChannel(out)));
+		assertArrayEquals(bytes, out.toByteArray());
+	}
+
+	@Test
+	public void transferToShouldNotBlockStoresWhileTargetIsSlow() throws Exception {
+		final byte[] bytes = randomBytes(1024 * 1024);
+		cache.store("slow-transfer", bytes);
+		final CountDownLatch writing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream() {
+			@Override
+			public synchronized void write(byte[] b, int off, int len) {
+				writing.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.write(b, off, len);
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Long> transfer = executor.submit(new Callable<Long>() {
+				@Override
+				public Long call() {
+					return cache.transferTo("slow-transfer", Channels.newChannel(out));
+				}
+			});
+			assertTrue(writing.await(10, TimeUnit.SECONDS));
+			Future<Boolean> store = executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					return cache.store("slow-transfer", new byte[]{1, 2, 3});
+				}
+			});
+			assertTrue(store.get(10, TimeUnit.SECONDS)); // while the target is stalled
+			release.countDown();
+			assertEquals(bytes.length, (long) transfer.get(10, TimeUnit.SECONDS));
+			assertArrayEquals(bytes, out.toByteArray()); // the opened file is transferred
+			assertArrayEquals(new byte[]{1, 2, 3}, cache.fetch("slow-transfer"));
+		} finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void transferToShouldReturnMinusOneForNonExistentKey() {
+		assertEquals(-1, cache.transferTo("non-existent-key", Channels.newChannel(new ByteArrayOutputStream())));
+	}
+
+	@Test
+	public void transferToShouldTransferStoredFormat() throws IOException {
+		GzFileCacheForStrings gz = new GzFileCacheForStrings(new File(DIRECTORY, "gz"));
+		gz.store("page", "<html></html>");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(new File(gz.getDirectory(), "page").length(), gz.transferTo("page", Channels.newChannel(out)));
+		assertEquals(0x1f, out.toByteArray()[0] & 0xff); // still compressed, e.g. for Content-Encoding: gzip
+	}
+}
@@ -11,6 +11,10 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 
@@ -41,6 +45,25 @@ public abstract class FileCacheTest<T> extends CacheTest<T> {
 		FileUtils.deleteDirectory(DIRECTORY);
 	}
 
+	@Test
+	public void bulkOperationsShouldWorkInParallel() {
+		FileCache<T> fileCache = (FileCache<T>) cache;
+		fileCache.setParallelism(4);
+		Map<String, T> entries = new HashMap<String, T>();
+		for (int i = 0; i < 100; i++) {
+			entries.put(String.format("bulk/%d/key-%d", i % 10, i), provideUniqueTestData());
+		}
+		List<String> keys = new ArrayList<String>(entries.keySet());
+		try {
+			assertTrue(cache.storeAll(entries));
+			assertEquals(entries, cache.fetchAll(keys));
+		} finally {
+			cache.removeAll(keys);
+			fileCache.setParallelism(FileCache.DEFAULT_PARALLELISM);
+		}
+		assertTrue(cache.fetchAll(keys).isEmpty());
+	}
+
 	@Test(expected = NullPointerException.class)
 	public void containsShouldThrowExceptionForNullArg() {
 		cache.contains(null);
@@ -158,6 +181,19 @@ public abstract class FileCacheTest<T> extends CacheTest<T> {
 		cache.store("file*name", provideUniqueTestData());
 	}
 
+	@Test
+	public void storeAllShouldValidateKeysBeforeWriting() {
+		Map<String, T> entries = new HashMap<String, T>();
+		entries.put(KEY_1, provideUniqueTestData());
+		entries.put("file*name", provideUniqueTestData());
+		try {
+			cache.storeAll(entries);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertFalse(cache.contains(KEY_1));
+		}
+	}
+
 	@Test(expected = NullPointerException.class)
 	public void storeShouldThrowExceptionForNullArg() {
 		cache.store(null, provideUniqueTestData());
@@ -0,0 +1,107 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import hu.juzraai.toolbox.cache.FileLayout;
+import hu.juzraai.toolbox.cache.HashedFileLayout;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the functionalities of {@link FileCacheForStrings} using {@link
+ * HashedFileLayout}, and the migration between layouts.
+ *
+ * @author Zsolt Jurányi
+ * @see FileCacheTest
+ * @see HashedFileLayout
+ * @since 26.10
+ */
+public class HashedFileCacheForStringsTest extends FileCacheTest<String> {
+
+	private static final HashedFileLayout LAYOUT = new HashedFileLayout(2, 2);
+
+	public HashedFileCacheForStringsTest() {
+		super(newCache(LAYOUT));
+	}
+
+	private static FileCacheForStrings newCache(FileLayout layout) {
+		FileCacheForStrings cache = new FileCacheForStrings(FileCacheTest.DIRECTORY);
+		cache.setLayout(layout);
+		return cache;
+	}
+
+	@Test
+	public void keyOfShouldRejectForeignPath() {
+		assertNull(LAYOUT.keyOf("filename"));
+		assertNull(LAYOUT.keyOf("00/00/filename-with-other-hash"));
+	}
+
+	@Test
+	public void keyOfShouldRestoreKey() {
+		assertEquals("dir/filename.ext", LAYOUT.keyOf(LAYOUT.pathOf("dir/filename.ext")));
+	}
+
+	@Test
+	public void migrateShouldMoveFilesBetweenLayouts() throws IOException {
+		FileCacheForStrings flat = newCache(FileLayout.FLAT);
+		for (int i = 0; i < 20; i++) {
+			flat.store("migrated/key-" + i, "value-" + i);
+		}
+		assertEquals(20, FileLayout.migrate(FileCacheTest.DIRECTORY, FileLayout.FLAT, LAYOUT, 4));
+		assertFalse(new File(FileCacheTest.DIRECTORY, "migrated").exists());
+		for (int i = 0; i < 20; i++) {
+			assertEquals("value-" + i, cache.fetch("migrated/key-" + i));
+			assertFalse(flat.contains("migrated/key-" + i));
+		}
+		assertEquals(20, FileLayout.migrate(FileCacheTest.DIRECTORY, LAYOUT, FileLayout.FLAT, 4));
+		for (int i = 0; i < 20; i++) {
+			assertEquals("value-" + i, flat.fetch("migrated/key-" + i));
+			flat.remove("migrated/key-" + i);
+		}
+	}
+
+	@Test
+	public void migrateShouldBeRepeatable() throws IOException {
+		FileCacheForStrings flat = newCache(FileLayout.FLAT);
+		for (int i = 0; i < 20; i++) {
+			flat.store("repeated/key-" + i, "value-" + i);
+		}
+		File temp = new File(FileCacheTest.DIRECTORY, "repeated/.key-0~123.tmp");
+		FileUtils.writeStringToFile(temp, "partial", "UTF-8");
+		assertEquals(20, FileLayout.migrate(FileCacheTest.DIRECTORY, FileLayout.FLAT, LAYOUT, 4));
+		for (int i = 20; i < 25; i++) {
+			flat.store("repeated/key-" + i, "value-" + i); // left behind by an interrupted migration
+		}
+		assertEquals(5, FileLayout.migrate(FileCacheTest.DIRECTORY, FileLayout.FLAT, LAYOUT, 4));
+		assertEquals(0, FileLayout.migrate(FileCacheTest.DIRECTORY, FileLayout.FLAT, LAYOUT, 4));
+		assertTrue(temp.exists());
+		for (int i = 0; i < 25; i++) {
+			assertEquals("value-" + i, cache.fetch("repeated/key-" + i));
+			cache.remove("repeated/key-" + i);
+		}
+		FileUtils.deleteDirectory(temp.getParentFile());
+	}
+
+	@Test
+	public void pathOfShouldPrependHashedDirectories() {
+		String path = LAYOUT.pathOf("filename");
+		assertTrue(path.matches("[0-9a-f]{2}/[0-9a-f]{2}/filename"));
+		assertEquals(path, LAYOUT.pathOf("filename"));
+	}
+
+	@Override
+	protected String provideUniqueTestData() {
+		return Long.toString(System.nanoTime());
+	}
+
+	@Test
+	public void storeShouldUseLayout() {
+		cache.store(KEY_1, provideUniqueTestData());
+		assertTrue(new File(FileCacheTest.DIRECTORY, LAYOUT.pathOf(KEY_1)).exists());
+		assertFalse(new File(FileCacheTest.DIRECTORY, KEY_1).exists());
+	}
+}
@@ -0,0 +1,163 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.FileCache;
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the functionalities of {@link FileCacheForStrings} in
+ * {@link FileCache.Locking#LOCK_FREE_READS} mode, and the atomic publication
+ * of stored files.
+ *
+ * @author Zsolt Jurányi
+ * @see FileCacheTest
+ * @see FileCache.Locking
+ * @since 26.10
+ */
+public class LockFreeFileCacheForStringsTest extends FileCacheTest<String> {
+
+	public LockFreeFileCacheForStringsTest() {
+		super(newCache());
+	}
+
+	private static FileCacheForStrings newCache() {
+		FileCacheForStrings cache = new FileCacheForStrings(FileCacheTest.DIRECTORY, EXPIRATION, EXPIRATION_TIME_UNIT);
+		cache.setLocking(FileCache.Locking.LOCK_FREE_READS);
+		return cache;
+	}
+
+	private static String repeat(char c, int n) {
+		StringBuilder s = new StringBuilder(n);
+		for (int i = 0; i < n; i++) {
+			s.append(c);
+		}
+		return s.toString();
+	}
+
+	private static List<File> tempFiles() {
+		List<File> temps = new ArrayList<File>();
+		for (File file : FileUtils.listFiles(DIRECTORY, null, true)) {
+			if (file.getName().contains("~")) {
+				temps.add(file);
+			}
+		}
+		return temps;
+	}
+
+	@Test
+	public void staleTemporaryFilesShouldBePurged() throws IOException {
+		File temp = new File(DIRECTORY, "purge/.key~123.tmp");
+		FileUtils.writeStringToFile(temp, "incomplete", StandardCharsets.UTF_8);
+		assertTrue(temp.setLastModified(System.currentTimeMillis() - FileCache.TEMP_FILE_MAX_AGE - 60 * 1000));
+		File fresh = new File(DIRECTORY, "purge/.key~456.tmp");
+		FileUtils.writeStringToFile(fresh, "being written", StandardCharsets.UTF_8);
+		assertTrue(fresh.setLastModified(System.currentTimeMillis() - 60 * 1000)); // older than the expiration
+
+		assertEquals(0, ((FileCache<String>) cache).purgeExpired().getEntries());
+		assertFalse(temp.exists());
+		assertTrue(fresh.exists());
+		Files.delete(fresh.toPath());
+	}
+
+	@Test
+	public void staleTemporaryFilesShouldBePurgedWithoutExpiration() throws IOException {
+		File temp = new File(DIRECTORY, "purge/.key~789.tmp");
+		FileUtils.writeStringToFile(temp, "incomplete", StandardCharsets.UTF_8);
+		assertTrue(temp.setLastModified(System.currentTimeMillis() - FileCache.TEMP_FILE_MAX_AGE - 60 * 1000));
+
+		assertEquals(0, new FileCacheForStrings(DIRECTORY).purgeExpired().getEntries());
+		assertFalse(temp.exists());
+	}
+
+	@Test
+	public void failedStreamShouldKeepPreviousContent() {
+		assertTrue(cache.store(KEY_1, "previous"));
+		InputStream failing = new InputStream() {
+			private int count;
+
+			@Override
+			public int read() throws IOException {
+				if (100000 < ++count) {
+					throw new IOException("connection reset");
+				}
+				return 'x';
+			}
+		};
+		assertFalse(((FileCache<String>) cache).store(KEY_1, failing));
+		assertEquals("previous", cache.fetch(KEY_1));
+		assertTrue(tempFiles().isEmpty());
+	}
+
+	@Test
+	public void getLockingShouldReturnLockingMode() {
+		assertEquals(FileCache.Locking.LOCK_FREE_READS, ((FileCache<String>) cache).getLocking());
+	}
+
+	@Override
+	protected String provideUniqueTestData() {
+		return Long.toString(System.nanoTime());
+	}
+
+	@Test
+	public void readersShouldOnlySeeCompleteContent() throws Exception {
+		final String a = repeat('a', 256 * 1024);
+		final String b = repeat('b', 256 * 1024);
+		final AtomicBoolean writing = new AtomicBoolean(true);
+		assertTrue(cache.store(KEY_2, a));
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		tasks.add(new Callable<Void>() {
+			@Override
+			public Void call() {
+				try {
+					for (int i = 0; i < 50; i++) {
+						assertTrue(cache.store(KEY_2, 0 == i % 2 ? b : a));
+					}
+				} finally {
+					writing.set(false);
+				}
+				return null;
+			}
+		});
+		for (int t = 0; t < 4; t++) {
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					do {
+						assertTrue(cache.contains(KEY_2));
+						String fetched = cache.fetch(KEY_2);
+						assertTrue(a.equals(fetched) || b.equals(fetched));
+					} while (writing.get());
+					return null;
+				}
+			});
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		try {
+			for (Future<Void> f : executor.invokeAll(tasks)) {
+				f.get(); // rethrows assertion errors
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		assertEquals(a, cache.fetch(KEY_2)); // last store
+		assertTrue(tempFiles().isEmpty());
+	}
+}
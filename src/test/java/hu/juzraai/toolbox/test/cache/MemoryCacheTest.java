@@ -0,0 +1,113 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import hu.juzraai.toolbox.cache.MemoryCache;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the functionalities of {@link MemoryCache} decorating a {@link
+ * FileCacheForStrings}.
+ *
+ * @author Zsolt Jurányi
+ * @see CacheTest
+ * @see MemoryCache
+ * @since 26.10
+ */
+public class MemoryCacheTest extends CacheTest<String> {
+
+	private static final File DIRECTORY = new File("test-data-memory");
+
+	public MemoryCacheTest() {
+		super(new MemoryCache<String>(new FileCacheForStrings(DIRECTORY, EXPIRATION, EXPIRATION_TIME_UNIT), 100, MemoryCache.STRING_LENGTH));
+	}
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteCacheDirectory() throws IOException {
+		FileUtils.deleteDirectory(DIRECTORY);
+	}
+
+	private MemoryCache<String> memoryCache() {
+		return (MemoryCache<String>) cache;
+	}
+
+	@Test
+	public void fetchShouldNotReachBackendForCachedKey() {
+		cache.store(KEY_1, "value");
+		memoryCache().getBackend().remove(KEY_1);
+		assertEquals("value", cache.fetch(KEY_1));
+		assertTrue(cache.containsAndNotExpired(KEY_1));
+	}
+
+	@Test
+	public void fetchShouldPopulateMemoryTier() {
+		memoryCache().getBackend().store(KEY_1, "value");
+		assertEquals(0, memoryCache().size());
+		assertEquals("value", cache.fetch(KEY_1));
+		assertEquals(1, memoryCache().size());
+	}
+
+	@Override
+	protected String provideUniqueTestData() {
+		return Long.toString(System.nanoTime());
+	}
+
+	@Test
+	public void nullBackendShouldBeRejectedWithMessage() {
+		try {
+			new MemoryCache<String>(null, 10);
+			fail();
+		} catch (NullPointerException e) {
+			assertEquals("backend must not be null", e.getMessage());
+		}
+	}
+
+	@Test
+	public void removeShouldInvalidateMemoryTier() {
+		cache.store(KEY_1, "value");
+		cache.remove(KEY_1);
+		assertEquals(0, memoryCache().size());
+		assertNull(cache.fetch(KEY_1));
+	}
+
+	@Test
+	public void storeShouldEvictLeastRecentlyUsedEntries() {
+		cache.store(KEY_1, "0123456789012345678901234567890123456789");
+		cache.store(KEY_2, "0123456789012345678901234567890123456789");
+		cache.fetch(KEY_1);
+		cache.store(REMOVED_KEY, "0123456789012345678901234567890123456789");
+		assertEquals(2, memoryCache().size());
+		assertTrue(memoryCache().weight() <= memoryCache().getMaxWeight());
+		memoryCache().getBackend().remove(KEY_1);
+		memoryCache().getBackend().remove(KEY_2);
+		assertNotNull(cache.fetch(KEY_1)); // recently used, still in memory
+		assertNull(cache.fetch(KEY_2)); // evicted
+	}
+
+	@Test
+	public void storeShouldNotKeepEntriesHeavierThanBound() {
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < 101; i++) {
+			s.append('x');
+		}
+		cache.store(KEY_1, s.toString());
+		assertEquals(0, memoryCache().size());
+		assertEquals(s.toString(), cache.fetch(KEY_1));
+	}
+
+	@Test
+	public void storeShouldUpdateMemoryTier() {
+		cache.store(KEY_1, "value1");
+		cache.store(KEY_1, "value2");
+		memoryCache().getBackend().remove(KEY_1);
+		assertEquals("value2", cache.fetch(KEY_1));
+	}
+}
@@ -0,0 +1,184 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.FileCache;
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import hu.juzraai.toolbox.cache.MultiRootFileCache;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the functionalities of {@link MultiRootFileCache}.
+ *
+ * @author Zsolt Jurányi
+ * @see CacheTest
+ * @see MultiRootFileCache
+ * @since 26.10
+ */
+public class MultiRootFileCacheTest extends CacheTest<String> {
+
+	private static final File DIRECTORY = new File("test-data-multiroot");
+	private static final int KEYS = 4000;
+
+	public MultiRootFileCacheTest() {
+		super(new MultiRootFileCache<String>(root("cache/a"), root("cache/b"), root("cache/c")));
+	}
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteCacheDirectory() throws IOException {
+		FileUtils.deleteDirectory(DIRECTORY);
+	}
+
+	private static FileCacheForStrings expiring(String name) {
+		return new FileCacheForStrings(new File(DIRECTORY, name), 1L, TimeUnit.HOURS);
+	}
+
+	private static FileCacheForStrings root(String name) {
+		return new FileCacheForStrings(new File(DIRECTORY, name), EXPIRATION, EXPIRATION_TIME_UNIT);
+	}
+
+	private static Map<String, String> entries() {
+		Map<String, String> entries = new LinkedHashMap<String, String>();
+		for (int i = 0; i < KEYS; i++) {
+			entries.put("page-" + i, "value-" + i);
+		}
+		return entries;
+	}
+
+	@Test
+	public void addedRootShouldNotExpireKeysAtFormerRoots() {
+		MultiRootFileCache<String> multi = new MultiRootFileCache<String>(expiring("fresh/a"), expiring("fresh/b"));
+		Map<String, String> entries = entries();
+		assertTrue(multi.storeAll(entries));
+		multi.addRoot(expiring("fresh/c"), 1);
+		for (Map.Entry<String, String> e : entries.entrySet()) {
+			assertTrue(multi.containsAndNotExpired(e.getKey()));
+			assertTrue(multi.timestampOf(e.getKey()).getTime() > 0);
+			assertEquals(e.getValue(), multi.fetchIfNotExpired(e.getKey())); // moves the key
+			assertTrue(multi.containsAndNotExpired(e.getKey()));
+		}
+	}
+
+	@Test
+	public void addedRootShouldTakeOverItsShareOfKeysOnly() throws InterruptedException {
+		MultiRootFileCache<String> multi = new MultiRootFileCache<String>(root("add/a"), root("add/b"), root("add/c"));
+		Map<String, String> entries = entries();
+		assertTrue(multi.storeAll(entries));
+		Map<String, FileCache<String>> before = new HashMap<String, FileCache<String>>();
+		for (String key : entries.keySet()) {
+			before.put(key, multi.rootOf(key));
+		}
+		Date timestamp = multi.timestampOf("page-0");
+		Thread.sleep(50);
+
+		FileCacheForStrings added = root("add/d");
+		multi.addRoot(added, 1);
+		int moved = 0;
+		for (String key : entries.keySet()) {
+			FileCache<String> root = multi.rootOf(key);
+			if (root != before.get(key)) {
+				assertSame(added, root); // keys only move to the new root
+				moved++;
+			}
+		}
+		assertTrue("moved: " + moved, KEYS / 4 - KEYS / 12 < moved && moved < KEYS / 4 + KEYS / 12);
+
+		assertEquals(entries, multi.fetchAll(entries.keySet())); // found at former roots, then moved
+		assertEquals(moved, FileUtils.listFiles(added.getDirectory(), null, true).size());
+		assertEquals(0, multi.rebalance());
+
+		FileCacheForStrings weighted = root("add/e");
+		multi.addRoot(weighted, 4); // half of the total weight
+		assertTrue(multi.rebalance() > KEYS / 3);
+		for (String key : entries.keySet()) {
+			assertTrue(multi.rootOf(key).contains(key));
+		}
+		assertEquals(timestamp, multi.timestampOf("page-0")); // kept while moving
+	}
+
+	@Test
+	public void concurrentStoresShouldNotBeOverwrittenByMoves() throws Exception {
+		final MultiRootFileCache<String> multi = new MultiRootFileCache<String>(root("race/a"), root("race/b"));
+		final Map<String, String> entries = entries();
+		assertTrue(multi.storeAll(entries));
+		multi.addRoot(root("race/c"), 1);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		tasks.add(new Callable<Void>() {
+			@Override
+			public Void call() {
+				for (String key : entries.keySet()) {
+					multi.fetch(key); // moves the old entry
+				}
+				return null;
+			}
+		});
+		tasks.add(new Callable<Void>() {
+			@Override
+			public Void call() {
+				for (String key : entries.keySet()) {
+					assertTrue(multi.store(key, "new-" + key));
+				}
+				return null;
+			}
+		});
+		tasks.add(new Callable<Void>() {
+			@Override
+			public Void call() {
+				multi.rebalance();
+				return null;
+			}
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		try {
+			for (Future<Void> f : executor.invokeAll(tasks)) {
+				f.get(); // rethrows assertion errors
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		for (String key : entries.keySet()) {
+			assertEquals("new-" + key, multi.fetch(key));
+			assertTrue(multi.rootOf(key).contains(key));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void differentExpirationsShouldBeRejected() {
+		new MultiRootFileCache<String>(root("exp/a"), new FileCacheForStrings(new File(DIRECTORY, "exp/b")));
+	}
+
+	@Test
+	public void keysShouldBeSpreadByWeight() {
+		MultiRootFileCache<String> multi = new MultiRootFileCache<String>(root("weight/a"));
+		multi.addRoot(root("weight/b"), 3);
+		assertTrue(multi.storeAll(entries()));
+		long a = FileUtils.listFiles(multi.getRoots().get(0).getDirectory(), null, true).size();
+		long b = FileUtils.listFiles(multi.getRoots().get(1).getDirectory(), null, true).size();
+		assertEquals(KEYS, a + b);
+		assertTrue("a: " + a, KEYS / 4 - KEYS / 12 < a && a < KEYS / 4 + KEYS / 12);
+	}
+
+	@Override
+	protected String provideUniqueTestData() {
+		return Long.toString(System.nanoTime());
+	}
+}
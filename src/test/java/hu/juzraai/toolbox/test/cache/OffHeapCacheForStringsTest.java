@@ -0,0 +1,134 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import hu.juzraai.toolbox.cache.GzFileCacheForStrings;
+import hu.juzraai.toolbox.cache.MemoryCache;
+import hu.juzraai.toolbox.cache.OffHeapCacheForStrings;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the functionalities of {@link OffHeapCacheForStrings}, standalone
+ * and as a tier decorating a file cache.
+ *
+ * @author Zsolt Jurányi
+ * @see CacheTest
+ * @see OffHeapCacheForStrings
+ * @since 26.10
+ */
+public class OffHeapCacheForStringsTest extends CacheTest<String> {
+
+	private static final File DIRECTORY = new File("test-data-offheap");
+
+	public OffHeapCacheForStringsTest() {
+		super(new OffHeapCacheForStrings(4 * OffHeapCacheForStrings.DEFAULT_SLAB_SIZE, EXPIRATION, EXPIRATION_TIME_UNIT));
+	}
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteCacheDirectory() throws IOException {
+		FileUtils.deleteDirectory(DIRECTORY);
+	}
+
+	private static String repeat(char c, int length) {
+		char[] chars = new char[length];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
+	@Test
+	public void contentBiggerThanSlabShouldNotBeKeptOffHeap() {
+		String big = repeat('x', OffHeapCacheForStrings.DEFAULT_SLAB_SIZE + 1);
+		assertFalse(cache.store(KEY_1, big));
+		assertFalse(cache.contains(KEY_1));
+
+		OffHeapCacheForStrings tier = new OffHeapCacheForStrings(new FileCacheForStrings(new File(DIRECTORY, "big")), 1024 * 1024, 4096);
+		assertTrue(tier.store(KEY_1, repeat('x', 5000)));
+		assertEquals(0, tier.size());
+		assertEquals(5000, tier.fetch(KEY_1).length());
+	}
+
+	@Test
+	public void leastRecentlyUsedEntriesShouldBeEvicted() {
+		FileCacheForStrings backend = new FileCacheForStrings(new File(DIRECTORY, "lru"));
+		OffHeapCacheForStrings tier = new OffHeapCacheForStrings(backend, 8192, 4096);
+		String content = repeat('x', 100); // 104 byte chunks, 39 in a slab
+		for (int i = 0; i < 100; i++) {
+			assertTrue(tier.store("key-" + i, content));
+			assertNotNull(tier.fetch("key-0")); // keeps it recently used
+		}
+		assertEquals(78, tier.size());
+		assertEquals(22, tier.getEvictions());
+		assertEquals(8192, tier.getAllocatedBytes());
+		assertEquals(7800, tier.getUsedBytes());
+
+		long hits = tier.getMetrics().snapshot().getHits();
+		assertEquals(content, tier.fetch("key-0"));
+		assertEquals(content, tier.fetch("key-99"));
+		assertEquals(hits + 2, tier.getMetrics().snapshot().getHits());
+		assertEquals(content, tier.fetch("key-1")); // evicted, loaded from backend
+		assertEquals(hits + 2, tier.getMetrics().snapshot().getHits());
+	}
+
+	@Test
+	public void nonAsciiContentShouldBeStoredAsUtf8() {
+		String content = "árvíztűrő tükörfúrógép € 😀";
+		assertTrue(cache.store(KEY_1, content));
+		assertEquals(content, cache.fetch(KEY_1));
+		assertEquals(content.getBytes(StandardCharsets.UTF_8).length, ((OffHeapCacheForStrings) cache).getUsedBytes());
+	}
+
+	@Override
+	protected String provideUniqueTestData() {
+		return Long.toString(System.nanoTime());
+	}
+
+	@Test
+	public void slabsShouldBeReassignedBetweenSizes() {
+		FileCacheForStrings backend = new FileCacheForStrings(new File(DIRECTORY, "reassign"));
+		OffHeapCacheForStrings tier = new OffHeapCacheForStrings(backend, 8192, 4096);
+		for (int i = 0; i < 78; i++) {
+			assertTrue(tier.store("small-" + i, repeat('s', 100)));
+		}
+		assertEquals(0, tier.getEvictions());
+		assertTrue(tier.store("large", repeat('l', 3000)));
+		assertEquals(repeat('l', 3000), tier.fetch("large"));
+		assertEquals(40, tier.size()); // a slab of small entries was emptied
+		assertEquals(39, tier.getEvictions());
+		for (int i = 0; i < 78; i++) {
+			assertEquals(repeat('s', 100), tier.fetch("small-" + i)); // evicted ones are loaded from the backend
+		}
+	}
+
+	@Test
+	public void tierShouldSitBetweenMemoryAndFileCache() {
+		GzFileCacheForStrings files = new GzFileCacheForStrings(new File(DIRECTORY, "tiers"));
+		OffHeapCacheForStrings offHeap = new OffHeapCacheForStrings(files, 1024 * 1024, 64 * 1024);
+		MemoryCache<String> memory = new MemoryCache<String>(offHeap, 1);
+		assertTrue(files.store(KEY_1, "first"));
+		assertTrue(files.store(KEY_2, "second"));
+
+		assertEquals("first", memory.fetch(KEY_1));
+		assertEquals("second", memory.fetch(KEY_2)); // evicts KEY_1 from memory
+		assertEquals(2, offHeap.size());
+		files.remove(KEY_1);
+		assertEquals("first", memory.fetch(KEY_1)); // served off-heap
+
+		memory.remove(KEY_2);
+		assertFalse(offHeap.contains(KEY_2));
+		assertFalse(files.contains(KEY_2));
+
+		offHeap.invalidateAll();
+		assertEquals(0, offHeap.getAllocatedBytes());
+		assertEquals("first", memory.fetch(KEY_1)); // still in memory
+	}
+}
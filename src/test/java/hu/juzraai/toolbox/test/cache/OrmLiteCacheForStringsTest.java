@@ -0,0 +1,173 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.OrmLiteCache;
+import hu.juzraai.toolbox.cache.OrmLiteCacheForStrings;
+import hu.juzraai.toolbox.cache.PurgeResult;
+import hu.juzraai.toolbox.data.OrmLiteDatabase;
+import hu.juzraai.toolbox.jdbc.SqliteConnectionString;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the functionalities of {@link OrmLiteCacheForStrings} on a SQLite
+ * database.
+ *
+ * @author Zsolt Jurányi
+ * @see CacheTest
+ * @see OrmLiteCache
+ * @since 26.10
+ */
+public class OrmLiteCacheForStringsTest extends CacheTest<String> {
+
+	private static final File DIRECTORY = new File("test-data-ormlite");
+
+	public OrmLiteCacheForStringsTest() {
+		super(new OrmLiteCacheForStrings(database("cache"), EXPIRATION, EXPIRATION_TIME_UNIT));
+	}
+
+	private static OrmLiteDatabase database(String name) {
+		assertTrue(DIRECTORY.isDirectory() || DIRECTORY.mkdirs());
+		try {
+			return OrmLiteDatabase.build(new SqliteConnectionString(new File(DIRECTORY, name + ".db")), null, null);
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteCacheDirectory() throws IOException {
+		FileUtils.deleteDirectory(DIRECTORY);
+	}
+
+	@Test
+	public void concurrentStoresShouldBeGrouped() throws Exception {
+		final OrmLiteCacheForStrings shared = (OrmLiteCacheForStrings) cache;
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int t = 0; t < 8; t++) {
+			final int thread = t;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int i = 0; i < 50; i++) {
+						assertTrue(shared.store("grouped-" + thread + "-" + i, "value-" + i));
+					}
+					return null;
+				}
+			});
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		try {
+			for (Future<Void> f : executor.invokeAll(tasks)) {
+				f.get(); // rethrows assertion errors
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		shared.setLocalTier(0, 0, TimeUnit.SECONDS);
+		for (int t = 0; t < 8; t++) {
+			assertEquals("value-49", shared.fetch("grouped-" + t + "-49"));
+		}
+		assertEquals(400, shared.getMetrics().snapshot().getStores());
+	}
+
+	@Test
+	public void keysShouldNotBreakQueries() {
+		String key = "it's a \"key\"; DROP TABLE cache; --";
+		assertTrue(cache.store(key, "value"));
+		((OrmLiteCache<String>) cache).setLocalTier(0, 0, TimeUnit.SECONDS);
+		assertEquals("value", cache.fetch(key));
+		assertNotNull(cache.timestampOf(key));
+		assertEquals(1, cache.fetchAll(Collections.singletonList(key)).size());
+		cache.remove(key);
+		assertFalse(cache.contains(key));
+	}
+
+	@Test
+	public void localTierShouldExpire() throws InterruptedException, IOException {
+		OrmLiteDatabase other = database("cache"); // an other node
+		try {
+			OrmLiteCacheForStrings node = new OrmLiteCacheForStrings(other);
+			node.setLocalTier(10, 300, TimeUnit.MILLISECONDS);
+			assertTrue(cache.store(KEY_1, "old"));
+			assertEquals("old", node.fetch(KEY_1));
+			assertTrue(cache.store(KEY_1, "new"));
+			assertEquals("old", node.fetch(KEY_1)); // served from memory
+			Thread.sleep(400);
+			assertEquals("new", node.fetch(KEY_1));
+		} finally {
+			other.close();
+		}
+	}
+
+	@Test
+	public void purgeExpiredShouldRemoveExpiredRowsOnly() throws InterruptedException, IOException {
+		OrmLiteDatabase db = database("purge");
+		try {
+			OrmLiteCacheForStrings purged = new OrmLiteCacheForStrings(db, 500L);
+			assertTrue(purged.store("old-1", "12345"));
+			assertTrue(purged.store("old-2", "árvíz")); // 7 bytes in UTF-8
+			Thread.sleep(600);
+			assertTrue(purged.store("fresh", "value"));
+			PurgeResult result = purged.purgeExpired();
+			assertEquals(2, result.getEntries());
+			assertEquals(12, result.getBytes());
+			assertFalse(purged.contains("old-1"));
+			assertTrue(purged.contains("fresh"));
+			assertEquals(0, purged.purgeExpired().getEntries());
+		} finally {
+			db.close();
+		}
+	}
+
+	@After
+	@Override
+	public void removeUsedKeys() {
+		super.removeUsedKeys();
+		try {
+			((OrmLiteCache<String>) cache).getDatabase().close();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	protected String provideUniqueTestData() {
+		return Long.toString(System.nanoTime());
+	}
+
+	@Test
+	public void storeAllShouldUpsertInBatches() {
+		Map<String, String> entries = new LinkedHashMap<String, String>();
+		for (int i = 0; i < 2000; i++) {
+			entries.put("batch-" + i, "value-" + i);
+		}
+		assertTrue(cache.storeAll(entries));
+		entries.put("batch-0", "updated");
+		assertTrue(cache.storeAll(entries));
+		((OrmLiteCache<String>) cache).setLocalTier(0, 0, TimeUnit.SECONDS);
+		assertEquals(entries, cache.fetchAll(entries.keySet()));
+		cache.removeAll(entries.keySet());
+		assertTrue(cache.fetchAll(entries.keySet()).isEmpty());
+	}
+}
@@ -0,0 +1,178 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.CacheLoader;
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import hu.juzraai.toolbox.cache.RefreshingCache;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the functionalities of {@link RefreshingCache} decorating a {@link
+ * FileCacheForStrings}.
+ *
+ * @author Zsolt Jurányi
+ * @see CacheTest
+ * @see RefreshingCache
+ * @since 26.10
+ */
+public class RefreshingCacheTest extends CacheTest<String> {
+
+	private static final File DIRECTORY = new File("test-data-refreshing");
+
+	public RefreshingCacheTest() {
+		super(new RefreshingCache<String>(new FileCacheForStrings(DIRECTORY, EXPIRATION, EXPIRATION_TIME_UNIT), new CountingLoader(), 2));
+	}
+
+	@After
+	public void closeCache() {
+		((RefreshingCache<String>) cache).close();
+	}
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteCacheDirectory() throws IOException {
+		FileUtils.deleteDirectory(DIRECTORY);
+	}
+
+	private static RefreshingCache<String> newCache(String name, long ttl, CountingLoader loader) {
+		FileCacheForStrings backend = new FileCacheForStrings(new File(DIRECTORY, name), ttl, TimeUnit.MILLISECONDS);
+		RefreshingCache<String> cache = new RefreshingCache<String>(backend, loader, 2);
+		cache.setJitter(0);
+		return cache;
+	}
+
+	@Test
+	public void expiredContentShouldBeLoadedSynchronouslyWithoutStaleWhileRevalidate() throws InterruptedException {
+		CountingLoader loader = new CountingLoader();
+		RefreshingCache<String> c = newCache("synchronous", 1000, loader);
+		c.setStaleWhileRevalidate(false);
+		c.store(KEY_1, "old");
+		Thread.sleep(1200);
+		assertEquals("loaded-1", c.get(KEY_1));
+		assertEquals("loaded-1", c.fetch(KEY_1));
+		c.close();
+	}
+
+	@Test
+	public void failedRefreshShouldKeepOldContent() throws InterruptedException {
+		CountingLoader loader = new CountingLoader();
+		loader.fail = true;
+		RefreshingCache<String> c = newCache("failing", 500, loader);
+		c.store(KEY_1, "old");
+		Thread.sleep(700);
+		assertEquals("old", c.get(KEY_1));
+		c.close();
+		assertEquals(1, loader.count.get());
+		assertEquals("old", c.fetch(KEY_1));
+		assertFalse(c.refresh(KEY_1)); // closed
+	}
+
+	@Test
+	public void jitterShouldSpreadRefreshesOfEntriesStoredTogether() throws InterruptedException {
+		CountingLoader loader = new CountingLoader();
+		RefreshingCache<String> c = newCache("jitter", 2000, loader);
+		c.setRefreshAhead(0.5);
+		c.setJitter(1);
+		for (int i = 0; i < 50; i++) {
+			c.store("key-" + i, "old");
+		}
+		Thread.sleep(500); // refresh points are between 0 and 1000 ms
+		for (int i = 0; i < 50; i++) {
+			assertEquals("old", c.get("key-" + i));
+		}
+		c.close();
+		assertTrue(0 < loader.count.get() && loader.count.get() < 50);
+	}
+
+	@Test
+	public void missingContentShouldBeLoadedAndStored() {
+		String content = ((RefreshingCache<String>) cache).get(KEY_2);
+		assertNotNull(content);
+		assertEquals(content, cache.fetch(KEY_2));
+	}
+
+	@Override
+	protected String provideUniqueTestData() {
+		return Long.toString(System.nanoTime());
+	}
+
+	@Test
+	public void nullBackendShouldBeRejectedWithMessage() {
+		try {
+			new RefreshingCache<String>(null, new CountingLoader(), 1);
+			fail();
+		} catch (NullPointerException e) {
+			assertEquals("backend must not be null", e.getMessage());
+		}
+	}
+
+	@Test
+	public void refreshAheadShouldReloadBeforeExpiration() throws InterruptedException {
+		CountingLoader loader = new CountingLoader();
+		RefreshingCache<String> c = newCache("ahead", 2000, loader);
+		c.setRefreshAhead(0.5);
+		c.store(KEY_1, "old");
+		assertEquals("old", c.get(KEY_1));
+		Thread.sleep(100);
+		assertEquals(0, loader.count.get());
+		Thread.sleep(1100);
+		assertEquals("old", c.get(KEY_1));
+		c.close();
+		assertEquals(1, loader.count.get());
+		assertEquals("loaded-1", c.fetchIfNotExpired(KEY_1));
+	}
+
+	@Test
+	public void staleContentShouldBeReloadedSynchronouslyAfterMaxStale() throws InterruptedException {
+		CountingLoader loader = new CountingLoader();
+		RefreshingCache<String> c = newCache("max-stale", 500, loader);
+		c.setMaxStale(500L);
+		c.store(KEY_1, "old");
+		Thread.sleep(1200);
+		assertEquals("loaded-1", c.get(KEY_1));
+		c.close();
+	}
+
+	@Test
+	public void staleContentShouldBeReturnedAndRefreshedInBackground() throws InterruptedException {
+		CountingLoader loader = new CountingLoader();
+		RefreshingCache<String> c = newCache("stale", 1000, loader);
+		c.store(KEY_1, "old");
+		Thread.sleep(1200);
+		assertNull(c.fetchIfNotExpired(KEY_1));
+		assertEquals("old", c.get(KEY_1));
+		for (int i = 0; i < 10; i++) {
+			String content = c.get(KEY_1);
+			assertTrue(content, "old".equals(content) || "loaded-1".equals(content)); // until the refresh is stored
+		}
+		c.close();
+		assertEquals(1, loader.count.get());
+		assertEquals("loaded-1", c.get(KEY_1));
+	}
+
+	private static class CountingLoader implements CacheLoader<String> {
+
+		private final AtomicInteger count = new AtomicInteger();
+		private volatile boolean fail;
+
+		@Override
+		public String load(@Nonnull String key) throws IOException {
+			int n = count.incrementAndGet();
+			if (fail) {
+				throw new IOException("remote fetch failed");
+			}
+			return "loaded-" + n;
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.SegmentFileCacheForStrings;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the functionalities of {@link SegmentFileCacheForStrings}.
+ *
+ * @author Zsolt Jurányi
+ * @see CacheTest
+ * @see SegmentFileCacheForStrings
+ * @since 26.10
+ */
+public class SegmentFileCacheForStringsTest extends CacheTest<String> {
+
+	private static final File DIRECTORY = new File("test-data-segments");
+	private static final File CORRUPT_DIRECTORY = new File("test-data-segments-corrupt");
+
+	public SegmentFileCacheForStringsTest() {
+		super(new SegmentFileCacheForStrings(DIRECTORY, EXPIRATION, EXPIRATION_TIME_UNIT));
+	}
+
+	@After
+	public void closeCache() throws IOException {
+		segmentCache().close();
+	}
+
+	@Test
+	public void compactShouldKeepLiveRecordsAndRemovals() throws IOException {
+		segmentCache().setMaxSegmentSize(256);
+		for (int i = 0; i < 50; i++) {
+			cache.store(KEY_1, "value-" + i);
+			cache.store(KEY_2, "value-" + i);
+		}
+		cache.remove(KEY_2);
+		int before = segmentFiles().length;
+		assertTrue(0 < segmentCache().compact());
+		assertTrue(segmentFiles().length < before);
+		assertEquals("value-49", cache.fetch(KEY_1));
+		assertFalse(cache.contains(KEY_2));
+
+		segmentCache().close();
+		SegmentFileCacheForStrings reopened = new SegmentFileCacheForStrings(DIRECTORY);
+		try {
+			assertEquals("value-49", reopened.fetch(KEY_1));
+			assertFalse(reopened.contains(KEY_2));
+		} finally {
+			reopened.close();
+		}
+	}
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteCacheDirectory() throws IOException {
+		FileUtils.deleteDirectory(DIRECTORY);
+		FileUtils.deleteDirectory(CORRUPT_DIRECTORY);
+	}
+
+	@Test
+	public void openShouldIgnoreIncompleteRecord() throws IOException {
+		cache.store(KEY_1, "value");
+		segmentCache().close();
+		File[] files = segmentFiles();
+		try (FileOutputStream fos = new FileOutputStream(files[files.length - 1], true)) {
+			fos.write(new byte[]{1, 0, 0}); // torn write
+		}
+		SegmentFileCacheForStrings reopened = new SegmentFileCacheForStrings(DIRECTORY);
+		try {
+			assertEquals("value", reopened.fetch(KEY_1));
+			assertTrue(reopened.store(KEY_2, "value2"));
+			assertEquals("value2", reopened.fetch(KEY_2));
+		} finally {
+			reopened.close();
+		}
+	}
+
+	@Test
+	public void openShouldIgnoreZeroFilledTailAndCorruptLengths() throws IOException {
+		cache.store(KEY_1, "value");
+		segmentCache().close();
+		File[] files = segmentFiles();
+		try (FileOutputStream fos = new FileOutputStream(files[files.length - 1], true)) {
+			fos.write(new byte[4096]); // allocated but not written before a crash
+		}
+		SegmentFileCacheForStrings reopened = new SegmentFileCacheForStrings(DIRECTORY);
+		try {
+			assertEquals("value", reopened.fetch(KEY_1));
+			assertFalse(reopened.contains(""));
+			assertTrue(reopened.store(KEY_2, "value2"));
+		} finally {
+			reopened.close();
+		}
+		try (FileOutputStream fos = new FileOutputStream(files[files.length - 1], true)) {
+			fos.write(new byte[]{1, 0, 0, 0, 0, 0, 0, 0, 0, 0x7f, -1, -1, -1, 0x7f, -1, -1, -1}); // huge lengths
+		}
+		reopened = new SegmentFileCacheForStrings(DIRECTORY);
+		try {
+			assertEquals("value", reopened.fetch(KEY_1));
+			assertEquals("value2", reopened.fetch(KEY_2)); // the zeros were truncated before it
+		} finally {
+			reopened.close();
+		}
+	}
+
+	@Test
+	public void openShouldKeepRecordsAfterCorruptRecordOfSealedSegment() throws IOException {
+		FileUtils.deleteDirectory(CORRUPT_DIRECTORY);
+		SegmentFileCacheForStrings c = new SegmentFileCacheForStrings(CORRUPT_DIRECTORY);
+		c.setMaxSegmentSize(256); // records are 27 bytes, 9 of them fit in a segment
+		for (int i = 0; i < 20; i++) {
+			assertTrue(c.store("k-" + i, "v-" + i));
+		}
+		c.close();
+		File sealed = new File(CORRUPT_DIRECTORY, "00000000.seg");
+		assertEquals(9 * 27, sealed.length());
+		try (RandomAccessFile f = new RandomAccessFile(sealed, "rw")) {
+			f.seek(27 + 20); // the key of the second record
+			f.write('x');
+		}
+		c = new SegmentFileCacheForStrings(CORRUPT_DIRECTORY);
+		try {
+			assertEquals(9 * 27, sealed.length());
+			assertFalse(c.contains("k-1"));
+			for (int i = 0; i < 20; i++) {
+				if (1 != i) {
+					assertEquals("v-" + i, c.fetch("k-" + i));
+				}
+			}
+		} finally {
+			c.close();
+		}
+	}
+
+	@Test
+	public void openShouldRebuildIndex() throws IOException {
+		cache.store(KEY_1, "value1");
+		cache.store(KEY_2, "value2");
+		cache.store(KEY_2, "value2 árvíztűrő");
+		cache.store(REMOVED_KEY, "removed");
+		cache.remove(REMOVED_KEY);
+		long t = cache.timestampOf(KEY_1).getTime();
+		segmentCache().close();
+		SegmentFileCacheForStrings reopened = new SegmentFileCacheForStrings(DIRECTORY);
+		try {
+			assertEquals("value1", reopened.fetch(KEY_1));
+			assertEquals("value2 árvíztűrő", reopened.fetch(KEY_2));
+			assertFalse(reopened.contains(REMOVED_KEY));
+			assertEquals(t, reopened.timestampOf(KEY_1).getTime());
+		} finally {
+			reopened.close();
+		}
+	}
+
+	@Override
+	protected String provideUniqueTestData() {
+		return Long.toString(System.nanoTime());
+	}
+
+	@Override
+	public void removeUsedKeys() {
+		SegmentFileCacheForStrings c = new SegmentFileCacheForStrings(DIRECTORY);
+		try {
+			c.remove(KEY_1);
+			c.remove(KEY_2);
+			c.remove(REMOVED_KEY);
+		} finally {
+			try {
+				c.close();
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	private SegmentFileCacheForStrings segmentCache() {
+		return (SegmentFileCacheForStrings) cache;
+	}
+
+	private File[] segmentFiles() {
+		File[] files = DIRECTORY.listFiles();
+		assertNotNull(files);
+		Arrays.sort(files);
+		return files;
+	}
+}
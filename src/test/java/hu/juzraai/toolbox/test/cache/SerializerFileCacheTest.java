@@ -0,0 +1,355 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.BinarySerializer;
+import hu.juzraai.toolbox.cache.FileCache;
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import hu.juzraai.toolbox.cache.JavaSerializer;
+import hu.juzraai.toolbox.cache.SerializerFileCache;
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Benchmark;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the functionalities of {@link SerializerFileCache} with {@link
+ * BinarySerializer}, and measuring it against {@link JavaSerializer} and
+ * JSON stored in {@link FileCacheForStrings}.
+ *
+ * @author Zsolt Jurányi
+ * @see FileCacheTest
+ * @see SerializerFileCache
+ * @since 26.10
+ */
+public class SerializerFileCacheTest extends FileCacheTest<SerializerFileCacheTest.Entity> {
+
+	private static final Logger L = LoggerFactory.getLogger(SerializerFileCacheTest.class);
+	private static final File BENCHMARK_DIRECTORY = new File("test-data-serializer");
+	private static final int ENTITIES = 1000;
+
+	public SerializerFileCacheTest() {
+		super(new SerializerFileCache<Entity>(FileCacheTest.DIRECTORY, EXPIRATION, EXPIRATION_TIME_UNIT, BinarySerializer.of(Entity.class)));
+	}
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteBenchmarkDirectory() throws IOException {
+		FileUtils.deleteDirectory(BENCHMARK_DIRECTORY);
+	}
+
+	private static Entity entity(int id) {
+		Entity e = new Entity();
+		e.id = id;
+		e.created = System.currentTimeMillis();
+		e.score = id / 7.0;
+		e.active = 0 == id % 2;
+		e.name = "Entity \"" + id + "\" – árvíztűrő";
+		e.description = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor " + id;
+		e.rank = 0 == id % 3 ? null : id;
+		e.updated = new Date(e.created - id);
+		e.state = State.values()[id % State.values().length];
+		return e;
+	}
+
+	private static long fileSize(File directory) {
+		return FileUtils.sizeOfDirectory(directory) / ENTITIES;
+	}
+
+	private static long micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos / ENTITIES);
+	}
+
+	@Test
+	public void allSupportedTypesShouldBeRoundTripped() {
+		SerializerFileCache<AllTypes> c = new SerializerFileCache<AllTypes>(new File(BENCHMARK_DIRECTORY, "types"), BinarySerializer.of(AllTypes.class));
+		AllTypes full = new AllTypes();
+		full.b = Byte.MIN_VALUE;
+		full.c = 'ű';
+		full.s = Short.MAX_VALUE;
+		full.f = Float.NaN;
+		full.bo = Boolean.TRUE;
+		full.by = (byte) 1;
+		full.ch = "😀".charAt(0); // high surrogate
+		full.sh = (short) -1;
+		full.l = Long.MIN_VALUE;
+		full.fl = Float.MAX_VALUE;
+		full.d = Double.NEGATIVE_INFINITY;
+		full.bytes = new byte[]{1, 2, 3};
+		full.text = "";
+		((Base) full).date = new Date();
+		((Base) full).state = State.ARCHIVED;
+		assertTrue(c.store("full", full));
+		assertEquals(full, c.fetch("full"));
+
+		AllTypes empty = new AllTypes(); // every reference is null
+		assertTrue(c.store("empty", empty));
+		assertEquals(empty, c.fetch("empty"));
+	}
+
+	@Test
+	public void binaryFileShouldBeSmallerThanJavaSerialized() {
+		SerializerFileCache<Entity> binary = new SerializerFileCache<Entity>(new File(BENCHMARK_DIRECTORY, "size-binary"), BinarySerializer.of(Entity.class));
+		SerializerFileCache<Entity> java = new SerializerFileCache<Entity>(new File(BENCHMARK_DIRECTORY, "size-java"), new JavaSerializer<Entity>(Entity.class));
+		assertTrue(binary.store(KEY_1, entity(1)));
+		assertTrue(java.store(KEY_1, entity(1)));
+		assertTrue(FileUtils.sizeOfDirectory(binary.getDirectory()) < FileUtils.sizeOfDirectory(java.getDirectory()));
+	}
+
+	@Test
+	public void changedClassShouldBeReportedAsMiss() {
+		File directory = new File(BENCHMARK_DIRECTORY, "changed");
+		assertTrue(new SerializerFileCache<Entity>(directory, BinarySerializer.of(Entity.class)).store(KEY_1, entity(1)));
+		SerializerFileCache<AllTypes> c = new SerializerFileCache<AllTypes>(directory, BinarySerializer.of(AllTypes.class));
+		assertTrue(c.contains(KEY_1));
+		assertNull(c.fetch(KEY_1));
+	}
+
+	@Override
+	protected Entity provideUniqueTestData() {
+		return entity((int) (System.nanoTime() & Integer.MAX_VALUE));
+	}
+
+	@Test
+	@Category(Benchmark.class)
+	public void throughputShouldBeReportedForEachSerializer() {
+		SerializerFileCache<Entity> binary = new SerializerFileCache<Entity>(new File(BENCHMARK_DIRECTORY, "binary"), BinarySerializer.of(Entity.class));
+		SerializerFileCache<Entity> java = new SerializerFileCache<Entity>(new File(BENCHMARK_DIRECTORY, "java"), new JavaSerializer<Entity>(Entity.class));
+		FileCacheForStrings json = new FileCacheForStrings(new File(BENCHMARK_DIRECTORY, "json"));
+		Entity[] entities = new Entity[ENTITIES];
+		for (int i = 0; i < ENTITIES; i++) {
+			entities[i] = entity(i);
+		}
+		long[] nanos = null;
+		for (int round = 0; round < 2; round++) { // first round warms up
+			long t0 = System.nanoTime();
+			for (Entity e : entities) {
+				binary.store("e" + e.id, e);
+			}
+			long t1 = System.nanoTime();
+			for (Entity e : entities) {
+				assertEquals(e, binary.fetch("e" + e.id));
+			}
+			long t2 = System.nanoTime();
+			for (Entity e : entities) {
+				java.store("e" + e.id, e);
+			}
+			long t3 = System.nanoTime();
+			for (Entity e : entities) {
+				assertEquals(e, java.fetch("e" + e.id));
+			}
+			long t4 = System.nanoTime();
+			for (Entity e : entities) {
+				json.store("e" + e.id, Json.write(e));
+			}
+			long t5 = System.nanoTime();
+			for (Entity e : entities) {
+				assertEquals(e, Json.read(json.fetch("e" + e.id)));
+			}
+			long t6 = System.nanoTime();
+			nanos = new long[]{t1 - t0, t2 - t1, t3 - t2, t4 - t3, t5 - t4, t6 - t5};
+		}
+		L.info("Store and fetch of {} entities (avg us, avg file size in bytes):", ENTITIES);
+		L.info(String.format("  binary: %5d %5d %5d", micros(nanos[0]), micros(nanos[1]), fileSize(binary.getDirectory())));
+		L.info(String.format("  java:   %5d %5d %5d", micros(nanos[2]), micros(nanos[3]), fileSize(java.getDirectory())));
+		L.info(String.format("  json:   %5d %5d %5d", micros(nanos[4]), micros(nanos[5]), fileSize(json.getDirectory())));
+		assertTrue(fileSize(binary.getDirectory()) < fileSize(java.getDirectory()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unsupportedFieldTypeShouldBeRejected() {
+		BinarySerializer.of(Unsupported.class);
+	}
+
+	public enum State {
+		NEW, ACTIVE, ARCHIVED
+	}
+
+	/**
+	 * Every field type supported by {@link BinarySerializer}, in a class
+	 * hierarchy.
+	 */
+	public static class AllTypes extends Base {
+		private byte b;
+		private char c;
+		private short s;
+		private float f;
+		private Boolean bo;
+		private Byte by;
+		private Character ch;
+		private Short sh;
+		private Long l;
+		private Float fl;
+		private Double d;
+		private byte[] bytes;
+		private String text;
+		private transient Object ignored = new Object();
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof AllTypes) || !super.equals(o)) {
+				return false;
+			}
+			AllTypes a = (AllTypes) o;
+			return b == a.b && c == a.c && s == a.s && 0 == Float.compare(f, a.f)
+					&& Arrays.asList(bo, by, ch, sh, l, fl, d, text).equals(Arrays.asList(a.bo, a.by, a.ch, a.sh, a.l, a.fl, a.d, a.text))
+					&& Arrays.equals(bytes, a.bytes);
+		}
+
+		@Override
+		public int hashCode() {
+			return b;
+		}
+	}
+
+	public static class Base {
+		private Date date;
+		private State state;
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Base && Arrays.asList(date, state).equals(Arrays.asList(((Base) o).date, ((Base) o).state));
+		}
+
+		@Override
+		public int hashCode() {
+			return 0;
+		}
+	}
+
+	/**
+	 * A typical cached entity.
+	 */
+	public static class Entity implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private int id;
+		private long created;
+		private double score;
+		private boolean active;
+		private String name;
+		private String description;
+		private Integer rank;
+		private Date updated;
+		private State state;
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Entity)) {
+				return false;
+			}
+			Entity e = (Entity) o;
+			return id == e.id && created == e.created && 0 == Double.compare(score, e.score) && active == e.active
+					&& Arrays.asList(name, description, rank, updated, state).equals(Arrays.asList(e.name, e.description, e.rank, e.updated, e.state));
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+	}
+
+	/**
+	 * Hand-written JSON mapping of {@link Entity}, as it would be done
+	 * without a serializer.
+	 */
+	private static final class Json {
+
+		private static String quote(String s) {
+			if (null == s) {
+				return "null";
+			}
+			StringBuilder b = new StringBuilder(s.length() + 2).append('"');
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				if ('"' == c || '\\' == c) {
+					b.append('\\').append(c);
+				} else if (c < 0x20) {
+					b.append(String.format("\\u%04x", (int) c));
+				} else {
+					b.append(c);
+				}
+			}
+			return b.append('"').toString();
+		}
+
+		private static Entity read(String json) {
+			Map<String, String> values = new HashMap<String, String>();
+			int i = 1; // skipping '{'
+			while (i < json.length() - 1) {
+				int colon = json.indexOf(':', i);
+				String key = json.substring(i + 1, colon - 1);
+				i = colon + 1;
+				String value;
+				if ('"' == json.charAt(i)) {
+					StringBuilder b = new StringBuilder();
+					for (i++; '"' != json.charAt(i); i++) {
+						char c = json.charAt(i);
+						if ('\\' == c) {
+							c = json.charAt(++i);
+							if ('u' == c) {
+								c = (char) Integer.parseInt(json.substring(i + 1, i + 5), 16);
+								i += 4;
+							}
+						}
+						b.append(c);
+					}
+					value = b.toString();
+					i++;
+				} else {
+					int end = i;
+					while (',' != json.charAt(end) && '}' != json.charAt(end)) {
+						end++;
+					}
+					value = json.substring(i, end);
+					value = "null".equals(value) ? null : value;
+					i = end;
+				}
+				values.put(key, value);
+				i++; // skipping ',' or '}'
+			}
+			Entity e = new Entity();
+			e.id = Integer.parseInt(values.get("id"));
+			e.created = Long.parseLong(values.get("created"));
+			e.score = Double.parseDouble(values.get("score"));
+			e.active = Boolean.parseBoolean(values.get("active"));
+			e.name = values.get("name");
+			e.description = values.get("description");
+			e.rank = null == values.get("rank") ? null : Integer.valueOf(values.get("rank"));
+			e.updated = null == values.get("updated") ? null : new Date(Long.parseLong(values.get("updated")));
+			e.state = null == values.get("state") ? null : State.valueOf(values.get("state"));
+			return e;
+		}
+
+		private static String write(Entity e) {
+			return "{\"id\":" + e.id +
+					",\"created\":" + e.created +
+					",\"score\":" + e.score +
+					",\"active\":" + e.active +
+					",\"name\":" + quote(e.name) +
+					",\"description\":" + quote(e.description) +
+					",\"rank\":" + e.rank +
+					",\"updated\":" + (null == e.updated ? null : e.updated.getTime()) +
+					",\"state\":" + (null == e.state ? "null" : quote(e.state.name())) +
+					'}';
+		}
+	}
+
+	public static class Unsupported {
+		private List<String> list;
+	}
+}
@@ -0,0 +1,210 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import hu.juzraai.toolbox.cache.PurgeResult;
+import hu.juzraai.toolbox.cache.SqliteCache;
+import hu.juzraai.toolbox.cache.SqliteCacheForBytes;
+import hu.juzraai.toolbox.cache.SqliteCacheForStrings;
+import hu.juzraai.toolbox.jdbc.SqliteConnectionString;
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Benchmark;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the functionalities of {@link SqliteCacheForStrings} and {@link
+ * SqliteCacheForBytes}, and measuring them against {@link
+ * FileCacheForStrings}.
+ *
+ * @author Zsolt Jurányi
+ * @see CacheTest
+ * @see SqliteCache
+ * @since 26.10
+ */
+public class SqliteCacheForStringsTest extends CacheTest<String> {
+
+	private static final Logger L = LoggerFactory.getLogger(SqliteCacheForStringsTest.class);
+	private static final File DIRECTORY = new File("test-data-sqlite");
+	private static final int ENTRIES = 2000;
+
+	public SqliteCacheForStringsTest() {
+		super(new SqliteCacheForStrings(database("cache"), EXPIRATION, EXPIRATION_TIME_UNIT));
+	}
+
+	private static SqliteConnectionString database(String name) {
+		assertTrue(DIRECTORY.isDirectory() || DIRECTORY.mkdirs());
+		return new SqliteConnectionString(new File(DIRECTORY, name + ".db"));
+	}
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteCacheDirectory() throws IOException {
+		FileUtils.deleteDirectory(DIRECTORY);
+	}
+
+	private static long micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos / ENTRIES);
+	}
+
+	@Test
+	public void bytesShouldBeStoredAsTheyAre() {
+		try (SqliteCacheForBytes bytes = new SqliteCacheForBytes(database("bytes"))) {
+			byte[] content = {0, -1, 127, -128, 10};
+			assertTrue(bytes.store(KEY_1, content));
+			assertArrayEquals(content, bytes.fetch(KEY_1));
+			assertTrue(bytes.store(KEY_2, new byte[0]));
+			assertArrayEquals(new byte[0], bytes.fetch(KEY_2));
+			assertTrue(bytes.contains(KEY_2));
+		}
+	}
+
+	@Test
+	public void inMemoryDatabaseShouldWork() {
+		try (SqliteCacheForStrings memory = new SqliteCacheForStrings(new SqliteConnectionString(null))) {
+			assertTrue(memory.store(KEY_1, "value"));
+			assertEquals("value", memory.fetch(KEY_1));
+			assertNotNull(memory.timestampOf(KEY_1));
+		}
+	}
+
+	@Test
+	public void purgeExpiredShouldRemoveExpiredRowsOnly() throws InterruptedException {
+		try (SqliteCacheForStrings purged = new SqliteCacheForStrings(database("purge"), 500L)) {
+			assertTrue(purged.store("old-1", "12345"));
+			assertTrue(purged.store("old-2", "árvíz")); // 7 bytes in UTF-8
+			Thread.sleep(600);
+			assertTrue(purged.store("fresh", "value"));
+			PurgeResult result = purged.purgeExpired();
+			assertEquals(2, result.getEntries());
+			assertEquals(12, result.getBytes());
+			assertFalse(purged.contains("old-1"));
+			assertTrue(purged.contains("fresh"));
+			assertEquals(0, purged.purgeExpired().getEntries());
+		}
+	}
+
+	@Test
+	public void readersShouldRunWhileWriting() throws Exception {
+		final SqliteCacheForStrings shared = new SqliteCacheForStrings(database("concurrent"));
+		try {
+			assertTrue(new File(DIRECTORY, "concurrent.db-wal").exists());
+			assertTrue(shared.store(KEY_1, "value"));
+			final AtomicBoolean writing = new AtomicBoolean(true);
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					try {
+						for (int i = 0; i < 200; i++) {
+							assertTrue(shared.store("written-" + i, "value-" + i));
+						}
+					} finally {
+						writing.set(false);
+					}
+					return null;
+				}
+			});
+			for (int t = 0; t < 6; t++) { // more readers than connections
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						do {
+							assertEquals("value", shared.fetch(KEY_1));
+						} while (writing.get());
+						return null;
+					}
+				});
+			}
+			ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+			try {
+				for (Future<Void> f : executor.invokeAll(tasks)) {
+					f.get(); // rethrows assertion errors
+				}
+			} finally {
+				executor.shutdown();
+				executor.awaitTermination(1, TimeUnit.MINUTES);
+			}
+			assertEquals("value-199", shared.fetch("written-199"));
+		} finally {
+			shared.close();
+		}
+	}
+
+	@After
+	@Override
+	public void removeUsedKeys() {
+		super.removeUsedKeys();
+		((SqliteCache<String>) cache).close();
+	}
+
+	@Override
+	protected String provideUniqueTestData() {
+		return Long.toString(System.nanoTime());
+	}
+
+	@Test
+	public void storeAllShouldWriteOneTransaction() {
+		Map<String, String> entries = new LinkedHashMap<String, String>();
+		for (int i = 0; i < 5000; i++) {
+			entries.put("batch-" + i, "value-" + i);
+		}
+		assertTrue(cache.storeAll(entries));
+		assertEquals(entries, cache.fetchAll(entries.keySet()));
+		cache.removeAll(entries.keySet());
+		assertTrue(cache.fetchAll(entries.keySet()).isEmpty());
+	}
+
+	@Test
+	@Category(Benchmark.class)
+	public void throughputShouldBeReportedAgainstFileCache() {
+		FileCacheForStrings files = new FileCacheForStrings(new File(DIRECTORY, "files"));
+		Map<String, String> entries = new LinkedHashMap<String, String>();
+		for (int i = 0; i < ENTRIES; i++) {
+			entries.put("dir/key-" + i, "<p>small page " + i + "</p>");
+		}
+		try (SqliteCacheForStrings sqlite = new SqliteCacheForStrings(database("throughput"))) {
+			long t0 = System.nanoTime();
+			for (Map.Entry<String, String> e : entries.entrySet()) {
+				files.store(e.getKey(), e.getValue());
+			}
+			long t1 = System.nanoTime();
+			for (String key : entries.keySet()) {
+				assertNotNull(files.fetch(key));
+			}
+			long t2 = System.nanoTime();
+			for (Map.Entry<String, String> e : entries.entrySet()) {
+				sqlite.store(e.getKey(), e.getValue());
+			}
+			long t3 = System.nanoTime();
+			for (String key : entries.keySet()) {
+				assertNotNull(sqlite.fetch(key));
+			}
+			long t4 = System.nanoTime();
+			sqlite.storeAll(entries);
+			long t5 = System.nanoTime();
+			L.info("Store and fetch of {} small entries (avg us):", ENTRIES);
+			L.info(String.format("  FileCacheForStrings:   %5d %5d", micros(t1 - t0), micros(t2 - t1)));
+			L.info(String.format("  SqliteCacheForStrings: %5d %5d, storeAll: %5d", micros(t3 - t2), micros(t4 - t3), micros(t5 - t4)));
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.Codec;
+import hu.juzraai.toolbox.cache.CodecFileCacheForStrings;
+import hu.juzraai.toolbox.cache.DeflateCodec;
+import hu.juzraai.toolbox.cache.FileCache;
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import hu.juzraai.toolbox.cache.GzFileCacheForStrings;
+import hu.juzraai.toolbox.cache.GzipCodec;
+import hu.juzraai.toolbox.cache.LzCodec;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the streaming methods of {@link FileCache} implementations.
+ *
+ * @author Zsolt Jurányi
+ * @see FileCache#openStream(String)
+ * @see FileCache#openReader(String)
+ * @see FileCache#store(String, InputStream)
+ * @since 26.10
+ */
+public class StreamingFileCacheTest {
+
+	private static final File DIRECTORY = new File("test-data-streaming");
+	private static final String CONTENT = content(3 * 1024 * 1024);
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteCacheDirectory() throws IOException {
+		FileUtils.deleteDirectory(DIRECTORY);
+	}
+
+	private static List<FileCache<String>> caches() {
+		List<FileCache<String>> caches = new ArrayList<FileCache<String>>();
+		caches.add(new FileCacheForStrings(new File(DIRECTORY, "plain")));
+		caches.add(new GzFileCacheForStrings(new File(DIRECTORY, "gz")));
+		caches.add(codecCache("deflate", new DeflateCodec()));
+		caches.add(codecCache("gzip", new GzipCodec(1)));
+		caches.add(codecCache("lz", new LzCodec()));
+		caches.add(codecCache("dictionary", new DeflateCodec(6, "<p>Árvíztűrő".getBytes(StandardCharsets.UTF_8))));
+		return caches;
+	}
+
+	private static CodecFileCacheForStrings codecCache(String name, Codec codec) {
+		CodecFileCacheForStrings cache = new CodecFileCacheForStrings(new File(DIRECTORY, name));
+		cache.setCodec(codec);
+		return cache;
+	}
+
+	private static String content(int length) {
+		StringBuilder s = new StringBuilder(length + 64);
+		for (int i = 0; s.length() < length; i++) {
+			s.append("<p>Árvíztűrő tükörfúrógép ").append(i * 7919 % 10007).append("</p>\n");
+		}
+		return s.toString();
+	}
+
+	private static String readAll(Reader reader) throws IOException {
+		StringBuilder s = new StringBuilder();
+		char[] buffer = new char[8192];
+		int n;
+		while (-1 != (n = reader.read(buffer))) {
+			s.append(buffer, 0, n);
+		}
+		return s.toString();
+	}
+
+	@Test
+	public void failedStreamShouldNotLeaveIncompleteEntry() {
+		for (FileCache<String> cache : caches()) {
+			InputStream failing = new InputStream() {
+				private int count;
+
+				@Override
+				public int read() throws IOException {
+					if (100000 < ++count) {
+						throw new IOException("connection reset");
+					}
+					return 'x';
+				}
+			};
+			assertFalse(cache.store("failed", failing));
+			assertFalse(cache.contains("failed"));
+		}
+	}
+
+	@Test
+	public void openReaderShouldKeepReadingPreviousContentAfterStore() throws IOException {
+		for (FileCache<String> cache : caches()) {
+			cache.store("replaced", CONTENT);
+			try (Reader reader = cache.openReader("replaced")) {
+				assertNotNull(reader);
+				char[] head = new char[1000];
+				int n = reader.read(head);
+				assertTrue(cache.store("replaced", "new content"));
+				assertEquals(cache.getDirectory().getName(), CONTENT, new String(head, 0, n) + readAll(reader));
+			}
+			assertEquals("new content", cache.fetch("replaced"));
+		}
+	}
+
+	@Test
+	public void openStreamShouldReturnNullForNonExistentKey() {
+		for (FileCache<String> cache : caches()) {
+			assertNull(cache.openStream("non-existent-key"));
+			assertNull(cache.openReader("non-existent-key"));
+		}
+	}
+
+	@Test
+	public void readerShouldProvideStoredContent() throws IOException {
+		for (FileCache<String> cache : caches()) {
+			cache.store("stored", CONTENT);
+			try (Reader reader = cache.openReader("stored")) {
+				assertNotNull(reader);
+				assertEquals(cache.getDirectory().getName(), CONTENT, readAll(reader));
+			}
+		}
+	}
+
+	@Test
+	public void readerShouldProvideLegacyEntriesOfCodecCache() throws IOException {
+		CodecFileCacheForStrings cache = codecCache("legacy", new LzCodec());
+		new FileCacheForStrings(cache.getDirectory()).store("plain", "plain");
+		new GzFileCacheForStrings(cache.getDirectory()).store("gzip", "gzip");
+		for (String key : new String[]{"plain", "gzip"}) {
+			try (Reader reader = cache.openReader(key)) {
+				assertNotNull(reader);
+				assertEquals(key, readAll(reader));
+			}
+		}
+	}
+
+	@Test
+	public void slowStreamShouldNotBlockOtherOperations() throws Exception {
+		final FileCacheForStrings cache = new FileCacheForStrings(new File(DIRECTORY, "slow")); // one lock for all keys
+		final CountDownLatch reading = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final InputStream slow = new InputStream() {
+			private int count;
+
+			@Override
+			public int read() throws IOException {
+				if (0 == count) {
+					reading.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						throw new IOException(e);
+					}
+				}
+				return 10 < ++count ? -1 : 'x';
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Boolean> slowStore = executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					return cache.store("slow", slow);
+				}
+			});
+			assertTrue(reading.await(10, TimeUnit.SECONDS));
+			Future<String> other = executor.submit(new Callable<String>() {
+				@Override
+				public String call() {
+					assertTrue(cache.store("other", "content"));
+					return cache.fetch("other");
+				}
+			});
+			assertEquals("content", other.get(10, TimeUnit.SECONDS)); // while the stream is stalled
+			release.countDown();
+			assertTrue(slowStore.get(10, TimeUnit.SECONDS));
+			assertEquals("xxxxxxxxxx", cache.fetch("slow"));
+		} finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void storedStreamShouldBeFetched() {
+		byte[] bytes = CONTENT.getBytes(StandardCharsets.UTF_8);
+		for (FileCache<String> cache : caches()) {
+			assertTrue(cache.store("streamed", new ByteArrayInputStream(bytes)));
+			assertEquals(cache.getDirectory().getName(), CONTENT, cache.fetch("streamed"));
+			assertTrue(cache.store("streamed-empty", new ByteArrayInputStream(new byte[0])));
+			assertEquals("", cache.fetch("streamed-empty"));
+		}
+	}
+}
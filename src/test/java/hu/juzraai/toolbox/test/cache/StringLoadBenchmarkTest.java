@@ -0,0 +1,124 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.FileCache;
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import hu.juzraai.toolbox.cache.GzFileCacheForStrings;
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Benchmark;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Testing the load path of {@link FileCacheForStrings} and {@link
+ * GzFileCacheForStrings}, and measuring it against the former {@link Scanner}
+ * based implementation.
+ *
+ * @author Zsolt Jurányi
+ * @see FileCacheForStrings
+ * @see GzFileCacheForStrings
+ * @since 26.10
+ */
+public class StringLoadBenchmarkTest {
+
+	private static final Logger L = LoggerFactory.getLogger(StringLoadBenchmarkTest.class);
+	private static final File DIRECTORY = new File("test-data-load");
+	private static final int ITERATIONS = 5;
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteCacheDirectory() throws IOException {
+		FileUtils.deleteDirectory(DIRECTORY);
+	}
+
+	private static String page(int length) {
+		StringBuilder s = new StringBuilder(length + 64);
+		for (int i = 0; s.length() < length; i++) {
+			s.append("<p id=\"").append(i).append("\">Árvíztűrő tükörfúrógép ✓ ").append(i).append("</p>\n");
+		}
+		return s.toString();
+	}
+
+	private static String scannerLoad(File file) throws IOException {
+		try (Scanner s = new Scanner(file, "UTF8")) {
+			return s.useDelimiter("\\Z").next();
+		}
+	}
+
+	private static String scannerLoadGzipped(File file) throws IOException {
+		try (InputStream in = new GZIPInputStream(new FileInputStream(file));
+			 Scanner s = new Scanner(in, "UTF8")) {
+			return s.useDelimiter("\\Z").next();
+		}
+	}
+
+	private static void assertRoundTrip(FileCache<String> cache, String content) {
+		cache.store("round-trip", content);
+		assertEquals(content, cache.fetch("round-trip"));
+	}
+
+	@Test
+	public void loadShouldReturnExactContent() {
+		List<FileCache<String>> caches = new ArrayList<FileCache<String>>();
+		caches.add(new FileCacheForStrings(new File(DIRECTORY, "plain")));
+		caches.add(new GzFileCacheForStrings(new File(DIRECTORY, "gz")));
+		for (FileCache<String> cache : caches) {
+			assertRoundTrip(cache, "");
+			assertRoundTrip(cache, "trailing newline\n");
+			assertRoundTrip(cache, "trailing newlines\r\n\r\n");
+			assertRoundTrip(cache, "Árvíztűrő tükörfúrógép 😀");
+			assertRoundTrip(cache, page(3 * 1024 * 1024)); // bigger than retained buffer
+		}
+	}
+
+	@Test
+	@Category(Benchmark.class)
+	public void throughputShouldBeReportedForScannerAndCurrentLoad() throws IOException {
+		String content = page(4 * 1024 * 1024);
+		FileCacheForStrings plain = new FileCacheForStrings(new File(DIRECTORY, "plain"));
+		GzFileCacheForStrings gz = new GzFileCacheForStrings(new File(DIRECTORY, "gz"));
+		plain.store("page", content);
+		gz.store("page", content);
+		File plainFile = new File(plain.getDirectory(), "page");
+		File gzFile = new File(gz.getDirectory(), "page");
+
+		long scanner = 0, current = 0, gzScanner = 0, gzCurrent = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long t0 = System.nanoTime();
+			assertEquals(content.trim(), scannerLoad(plainFile).trim());
+			long t1 = System.nanoTime();
+			assertEquals(content, plain.fetch("page"));
+			long t2 = System.nanoTime();
+			assertEquals(content.trim(), scannerLoadGzipped(gzFile).trim());
+			long t3 = System.nanoTime();
+			assertEquals(content, gz.fetch("page"));
+			long t4 = System.nanoTime();
+			scanner += t1 - t0;
+			current += t2 - t1;
+			gzScanner += t3 - t2;
+			gzCurrent += t4 - t3;
+		}
+		L.info("Load of {} chars (avg ms of {} runs):", content.length(), ITERATIONS);
+		L.info(String.format("  plain, Scanner: %6d, current: %6d", ms(scanner), ms(current)));
+		L.info(String.format("  gzip,  Scanner: %6d, current: %6d", ms(gzScanner), ms(gzCurrent)));
+	}
+
+	private static long ms(long totalNanos) {
+		return TimeUnit.NANOSECONDS.toMillis(totalNanos / ITERATIONS);
+	}
+}
@@ -0,0 +1,149 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.FileCache;
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import hu.juzraai.toolbox.log.LoggerFactory;
+import hu.juzraai.toolbox.test.Benchmark;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing the functionalities of {@link FileCacheForStrings} in
+ * {@link FileCache.Locking#STRIPED} mode, and measuring its throughput against
+ * {@link FileCache.Locking#INSTANCE} mode.
+ *
+ * @author Zsolt Jurányi
+ * @see FileCacheTest
+ * @see FileCache.Locking
+ * @since 26.10
+ */
+public class StripedFileCacheForStringsTest extends FileCacheTest<String> {
+
+	private static final Logger L = LoggerFactory.getLogger(StripedFileCacheForStringsTest.class);
+	private static final int OPERATIONS_PER_THREAD = 200;
+
+	public StripedFileCacheForStringsTest() {
+		super(newCache(FileCache.Locking.STRIPED));
+	}
+
+	private static FileCacheForStrings newCache(FileCache.Locking locking) {
+		FileCacheForStrings cache = new FileCacheForStrings(FileCacheTest.DIRECTORY, EXPIRATION, EXPIRATION_TIME_UNIT);
+		cache.setLocking(locking);
+		return cache;
+	}
+
+	@Test
+	public void concurrentWritesOfSameKeyShouldLeaveCompleteContent() throws Exception {
+		final String a = repeat('a', 64 * 1024);
+		final String b = repeat('b', 64 * 1024);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int t = 0; t < 8; t++) {
+			final String content = 0 == t % 2 ? a : b;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for (int i = 0; i < 20; i++) {
+						cache.store(KEY_1, content);
+						String fetched = cache.fetch(KEY_1);
+						assertTrue(a.equals(fetched) || b.equals(fetched));
+					}
+					return null;
+				}
+			});
+		}
+		runAll(tasks, tasks.size());
+	}
+
+	@Test
+	public void getLockingShouldReturnLockingMode() {
+		assertEquals(FileCache.Locking.STRIPED, ((FileCache<String>) cache).getLocking());
+	}
+
+	@Override
+	protected String provideUniqueTestData() {
+		return Long.toString(System.nanoTime());
+	}
+
+	private static String repeat(char c, int n) {
+		StringBuilder s = new StringBuilder(n);
+		for (int i = 0; i < n; i++) {
+			s.append(c);
+		}
+		return s.toString();
+	}
+
+	private static void runAll(List<Callable<Void>> tasks, int threads) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (Future<Void> f : executor.invokeAll(tasks)) {
+				f.get(); // rethrows assertion errors
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	private static long throughput(final FileCache<String> cache, int threads) throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int t = 0; t < threads; t++) {
+			final String prefix = String.format("throughput/%s/t%d-", cache.getLocking(), t);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					start.await();
+					for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+						String key = prefix + (i % 16);
+						cache.store(key, key);
+						assertEquals(key, cache.fetch(key));
+					}
+					return null;
+				}
+			});
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (Callable<Void> task : tasks) {
+				futures.add(executor.submit(task));
+			}
+			long t0 = System.nanoTime();
+			start.countDown();
+			for (Future<Void> f : futures) {
+				f.get();
+			}
+			long elapsed = Math.max(1, System.nanoTime() - t0);
+			return 2L * threads * OPERATIONS_PER_THREAD * TimeUnit.SECONDS.toNanos(1) / elapsed;
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	@Test
+	@Category(Benchmark.class)
+	public void throughputShouldBeReportedForEachThreadCount() throws Exception {
+		int cores = Runtime.getRuntime().availableProcessors();
+		FileCache<String> instance = newCache(FileCache.Locking.INSTANCE);
+		FileCache<String> striped = newCache(FileCache.Locking.STRIPED);
+		L.info("Throughput (ops/s) on {} core(s):", cores);
+		for (int threads = 1; threads <= 2 * cores; threads *= 2) {
+			L.info(String.format("  threads: %2d, INSTANCE: %8d, STRIPED: %8d", threads,
+					throughput(instance, threads), throughput(striped, threads)));
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package hu.juzraai.toolbox.test.cache;
+
+import hu.juzraai.toolbox.cache.Cache;
+import hu.juzraai.toolbox.cache.FileCache;
+import hu.juzraai.toolbox.cache.FileCacheForStrings;
+import hu.juzraai.toolbox.cache.WriteBehindCache;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the functionalities of {@link WriteBehindCache} decorating a {@link
+ * FileCacheForStrings}.
+ *
+ * @author Zsolt Jurányi
+ * @see CacheTest
+ * @see WriteBehindCache
+ * @since 26.10
+ */
+public class WriteBehindCacheTest extends CacheTest<String> {
+
+	private static final File DIRECTORY = new File("test-data-write-behind");
+
+	public WriteBehindCacheTest() {
+		super(new WriteBehindCache<String>(newBackend(), 16, 2));
+	}
+
+	@After
+	public void closeCache() {
+		((WriteBehindCache<String>) cache).close();
+	}
+
+	@AfterClass
+	@BeforeClass
+	public static void deleteCacheDirectory() throws IOException {
+		FileUtils.deleteDirectory(DIRECTORY);
+	}
+
+	private static FileCacheForStrings newBackend() {
+		FileCacheForStrings backend = new FileCacheForStrings(DIRECTORY, EXPIRATION, EXPIRATION_TIME_UNIT);
+		backend.setLocking(FileCache.Locking.STRIPED);
+		return backend;
+	}
+
+	@Test
+	public void flushShouldNotWaitForLaterStores() throws Exception {
+		SlowBackend backend = new SlowBackend();
+		final WriteBehindCache<String> c = new WriteBehindCache<String>(backend, 4, 1);
+		c.store("flushed", "value");
+		final AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; running.get(); i++) {
+						c.store("stored-" + i % 8, "value-" + i);
+					}
+				}
+			});
+			executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					c.flush();
+				}
+			}).get(10, TimeUnit.SECONDS);
+			assertEquals("value", backend.fetch("flushed"));
+		} finally {
+			running.set(false);
+			executor.shutdownNow();
+			assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+			c.close();
+		}
+	}
+
+	@Test
+	public void flushShouldWritePendingContentsToBackend() {
+		WriteBehindCache<String> c = (WriteBehindCache<String>) cache;
+		for (int i = 0; i < 100; i++) {
+			c.store(KEY_1, "value-" + i);
+			c.store(KEY_2, "value-" + i);
+		}
+		c.flush();
+		assertEquals(0, c.pendingCount());
+		assertEquals("value-99", c.getBackend().fetch(KEY_1));
+		assertEquals("value-99", c.getBackend().fetch(KEY_2));
+	}
+
+	@Override
+	protected String provideUniqueTestData() {
+		return Long.toString(System.nanoTime());
+	}
+
+	@Test
+	public void nullBackendShouldBeRejectedWithMessage() {
+		try {
+			new WriteBehindCache<String>(null, 10, 1);
+			fail();
+		} catch (NullPointerException e) {
+			assertEquals("backend must not be null", e.getMessage());
+		}
+	}
+
+	@Test
+	public void storeShouldBlockWhenQueueIsFull() throws InterruptedException {
+		BlockingBackend backend = new BlockingBackend();
+		final WriteBehindCache<String> c = new WriteBehindCache<String>(backend, 1, 1);
+		c.store("a", "a"); // taken by the writer, blocks in backend
+		assertTrue(backend.entered.await(5, TimeUnit.SECONDS));
+		c.store("b", "b"); // fills the queue
+		final CountDownLatch stored = new CountDownLatch(1);
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				c.store("c", "c");
+				stored.countDown();
+			}
+		}).start();
+		assertFalse(stored.await(200, TimeUnit.MILLISECONDS));
+		assertEquals("c", c.fetch("c")); // pending writes are visible
+		backend.release.countDown();
+		assertTrue(stored.await(5, TimeUnit.SECONDS));
+		c.close();
+		assertEquals("c", backend.fetch("c"));
+	}
+
+	@Test
+	public void storeShouldCoalesceWritesOfSameKey() throws InterruptedException {
+		BlockingBackend backend = new BlockingBackend();
+		WriteBehindCache<String> c = new WriteBehindCache<String>(backend, 16, 1);
+		c.store("blocker", "x");
+		assertTrue(backend.entered.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 100; i++) {
+			c.store(KEY_1, "value-" + i);
+		}
+		backend.release.countDown();
+		c.close();
+		assertEquals("value-99", backend.fetch(KEY_1));
+		assertEquals(2, backend.stores.get());
+	}
+
+	/**
+	 * In-memory cache which blocks its first store until released.
+	 */
+	private static class BlockingBackend extends Cache<String> {
+
+		private final Map<String, String> map = new ConcurrentHashMap<String, String>();
+		private final CountDownLatch entered = new CountDownLatch(1);
+		private final CountDownLatch release = new CountDownLatch(1);
+		private final AtomicInteger stores = new AtomicInteger();
+
+		private BlockingBackend() {
+			super(null);
+		}
+
+		@Override
+		public boolean contains(@Nonnull String key) {
+			return map.containsKey(key);
+		}
+
+		@Override
+		public String fetch(@Nonnull String key) {
+			return map.get(key);
+		}
+
+		@Override
+		public void remove(@Nonnull String key) {
+			map.remove(key);
+		}
+
+		@Override
+		public boolean store(@Nonnull String key, @Nonnull String content) {
+			entered.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			stores.incrementAndGet();
+			map.put(key, content);
+			return true;
+		}
+
+		@Override
+		public Date timestampOf(@Nonnull String key) {
+			return null;
+		}
+	}
+
+	/**
+	 * In-memory cache which needs a millisecond for each store.
+	 */
+	private static class SlowBackend extends BlockingBackend {
+
+		private SlowBackend() {
+			super.release.countDown();
+		}
+
+		@Override
+		public boolean store(@Nonnull String key, @Nonnull String content) {
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return super.store(key, content);
+		}
+	}
+}